@@ -1,23 +1,38 @@
 package com.sproutloud.starter.stream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.sproutloud.starter.stream.pool.SatoriConnection;
+import com.sproutloud.starter.stream.cache.AddressCache;
+import com.sproutloud.starter.stream.cache.CertifiedAddress;
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.pool.SatoriClient;
+import com.sproutloud.starter.stream.prescreen.AddressPreScreen;
 import static com.sproutloud.starter.stream.properties.ApplicationConstants.*;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.messaging.Processor;
-import org.springframework.integration.annotation.Transformer;
+import org.springframework.integration.annotation.Splitter;
 import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.PreDestroy;
 
 /**
  * Application class for address certification
@@ -29,12 +44,44 @@ import java.util.Map;
 @EnableBinding(Processor.class)
 public class AddressCertificationApplication {
 
+    /**
+     * Satori connection pool, or the satori gateway client when address.certification.mode is kafka
+     */
+    @Autowired
+    private SatoriClient satoriClient;
+
+    @Autowired
+    private AddressCache addressCache;
+
     @Autowired
-    private SatoriConnection satoriConnection;
+    private AddressPreScreen addressPreScreen;
 
     @Autowired
     private ObjectMapper mapper;
 
+    /**
+     * Maximum number of records of a batch certified concurrently
+     */
+    @Value("${address.certification.concurrency:16}")
+    private int concurrency;
+
+    /**
+     * Maximum number of addresses retained for the redelivery of the failed batches
+     */
+    @Value("${address.certification.max-retained:10000}")
+    private int maxRetained;
+
+    /**
+     * Addresses certified by Satori for the records of the failed batches, with key as the canonical address, so that the records
+     * already certified are not sent to Satori again when their batch is redelivered, whether or not the address cache is enabled.
+     */
+    private final Map<String, CertifiedAddress> retainedAddresses = new ConcurrentHashMap<>();
+
+    /**
+     * {@link ExecutorService} the records of a batch are certified on, created on first use.
+     */
+    private ExecutorService certificationExecutor;
+
     /**
      * main method of the address certification application
      *
@@ -45,16 +92,128 @@ public class AddressCertificationApplication {
         SpringApplication.run(AddressCertificationApplication.class, args);
     }
 
-    @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
+    /**
+     * Certifies the address of the incoming record. When the input binding consumes in batch mode, the payload is a list of records,
+     * which are certified concurrently, see {@link #verifyAddressBatch(List)}.
+     *
+     * @param message incoming {@link Message} with the record or records
+     * @return the certified json of each record, in input order
+     * @throws JsonProcessingException when unable to parse a payload
+     */
+    @Splitter(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
+    public List<Map<String, Object>> certifyAddresses(Message<?> message) throws JsonProcessingException {
+        if (message.getPayload() instanceof List) {
+            return verifyAddressBatch((List<?>) message.getPayload());
+        }
+        return Collections.singletonList(verifyAddress(message));
+    }
+
+    /**
+     * Certifies the address of a record. A record without a satori permit within satori.rate-limit.max-wait-ms waits for another one,
+     * as failing it would only have the binder retry it a few times and then drop it.
+     *
+     * @param message incoming {@link Message} with the record
+     * @return the certified json of the record
+     * @throws JsonProcessingException when unable to parse the payload
+     */
     public Map<String, Object> verifyAddress(Message<?> message) throws JsonProcessingException {
+        Map<String, Object> processInput = PayloadDecoder.decode(mapper, message);
+        while (true) {
+            try {
+                return verifyAddress(processInput, null);
+            } catch (SatoriRateLimitException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn(e.getMessage() + ", waiting for another permit");
+            }
+        }
+    }
+
+    /**
+     * Certifies the records of a micro-batch with up to the configured concurrency on Satori, and returns them in input order, once every
+     * record of the batch is certified. When the batch fails, e.g. on a record without a satori permit, the addresses already certified
+     * by Satori are retained for its redelivery. See the batch-mode consumers section of the README for the binding properties.
+     *
+     * @param payloads payload of each record of the batch
+     * @return the certified json of each record, in input order
+     * @throws JsonProcessingException when unable to parse a payload
+     */
+    private List<Map<String, Object>> verifyAddressBatch(List<?> payloads) throws JsonProcessingException {
+        List<Map<String, Object>> inputs = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            inputs.add(PayloadDecoder.decode(mapper, payload));
+        }
+        Map<String, CertifiedAddress> batchAddresses = new ConcurrentHashMap<>();
+        try {
+            List<Map<String, Object>> output = certifyBatch(inputs, batchAddresses);
+            log.info("Certified " + output.size() + " addresses of batch");
+            return output;
+        } catch (RuntimeException e) {
+            retainAddresses(batchAddresses);
+            throw e;
+        }
+    }
+
+    /**
+     * @param inputs         decoded records of the batch
+     * @param batchAddresses addresses of the batch, to which each address certified by Satori is added
+     * @return the certified json of each record, in input order
+     */
+    private List<Map<String, Object>> certifyBatch(List<Map<String, Object>> inputs, Map<String, CertifiedAddress> batchAddresses) {
+        List<Map<String, Object>> output = new ArrayList<>(inputs.size());
+        if (concurrency <= 1 || inputs.size() <= 1) {
+            for (Map<String, Object> input : inputs) {
+                output.add(verifyAddress(input, batchAddresses));
+            }
+            return output;
+        }
+        List<Future<Map<String, Object>>> results = new ArrayList<>(inputs.size());
+        for (Map<String, Object> input : inputs) {
+            results.add(getCertificationExecutor().submit(() -> verifyAddress(input, batchAddresses)));
+        }
+        try {
+            for (Future<Map<String, Object>> result : results) {
+                output.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.forEach(result -> result.cancel(true));
+            throw new IllegalStateException("Interrupted while certifying addresses of batch", e);
+        } catch (ExecutionException e) {
+            results.forEach(result -> result.cancel(true));
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+        return output;
+    }
+
+    /**
+     * Retains the addresses certified for a failed batch until its redelivery. The addresses retained for earlier batches are dropped
+     * once address.certification.max-retained would be exceeded, as their batches may not be redelivered to this instance.
+     *
+     * @param batchAddresses addresses certified by Satori for the records of the batch
+     */
+    private void retainAddresses(Map<String, CertifiedAddress> batchAddresses) {
+        if (retainedAddresses.size() + batchAddresses.size() > maxRetained) {
+            log.warn("Dropping " + retainedAddresses.size() + " addresses retained for the redelivery of failed batches");
+            retainedAddresses.clear();
+        }
+        retainedAddresses.putAll(batchAddresses);
+        log.info("Retained " + batchAddresses.size() + " certified addresses of failed batch for its redelivery");
+    }
+
+    /**
+     * @param processInput   decoded record
+     * @param batchAddresses addresses of the batch of the record, to which its address certified by Satori is added, null if the
+     *                       record is not part of a batch
+     * @return the certified json of the record
+     */
+    private Map<String, Object> verifyAddress(Map<String, Object> processInput, Map<String, CertifiedAddress> batchAddresses) {
         long startTime = System.currentTimeMillis();
-        JsonNode jsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> processInput = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
         processInput.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
         log.debug("********* Address Certification Started: ******************* \n" + processInput);
 
-        certifyAddress(processInput);
+        certifyAddress(processInput, batchAddresses);
         log.debug("********* Address Certification Ended in : ******************* \n" + (System.currentTimeMillis() - startTime));
         processInput.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "address_certification");
         processInput.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
@@ -65,9 +224,10 @@ public class AddressCertificationApplication {
      * Method to fetch the required address fields and then all certification method for that input
      *
      * @param processInput
+     * @param batchAddresses addresses of the batch of the record, null if the record is not part of a batch
      * @return
      */
-    private Map<String, Object> certifyAddress(Map<String, Object> processInput) {
+    private Map<String, Object> certifyAddress(Map<String, Object> processInput, Map<String, CertifiedAddress> batchAddresses) {
         Map<String, Object> fieldValueMap = (Map<String, Object>) processInput.get("fields_data");
         if (!CollectionUtils.isEmpty(fieldValueMap)) {
             String address1 = (String) fieldValueMap.get(ADDRESS1);
@@ -75,46 +235,37 @@ public class AddressCertificationApplication {
             String city = (String) fieldValueMap.get(CITY);
             String state = (String) fieldValueMap.get(STATE);
             String zip = (String) fieldValueMap.get(ZIP);
-            String data = "\t" + address1 + '\t' + address2 + '\t' + city + '\t' + state + '\t' + zip + '\n';
-            String requestCode = INPUTMSGCODE + String.valueOf(data.length()) + data;
-            String satoriResponse = satoriConnection.sendMessage(requestCode, false);
-            if (!StringUtils.isEmpty(satoriResponse)) {
-                String cassCode = "";
-                String cassMessage = "";
-                String[] responseComponents = satoriResponse.split("\t");
-                if (responseComponents[0].contains(OUTPUTMSGCODE) && responseComponents.length >= 8) {
-                    address1 = responseComponents[1];
-                    address2 = responseComponents[2];
-                    city = responseComponents[3];
-                    state = responseComponents[4];
-                    zip = responseComponents[5];
-                    cassCode = responseComponents[6];
-                    cassMessage = responseComponents[7];
-
-                } else {
-                    address1 = responseComponents[0];
-                    address2 = responseComponents[1];
-                    city = responseComponents[2];
-                    state = responseComponents[3];
-                    zip = responseComponents[4];
-                    cassCode = responseComponents[5];
-                    if (responseComponents.length >= 7) {
-                        cassMessage = responseComponents[6];
-                    }
-                }
-
-                // after standarization, the address2 field might contain
-                // address1 and address1 might be empty. Check if this is the case
-                // and populate address1 with value in address2
-                if (StringUtils.isEmpty(address1) && !StringUtils.isEmpty(address2)) {
-                    address1 = address2;
-                    address2 = "";
+            String rejection = addressPreScreen.screen(address1, address2, city, state, zip);
+            if (rejection != null) {
+                // mark address Invalid without sending it to Satori
+                fieldValueMap.put(MAIL_STATUS, INVALID_MAIL_STATUS);
+                fieldValueMap.put(MAIL_MESSAGE, rejection);
+                processInput.put(com.sproutloud.starter.stream.StringUtils.ADDRESS_CERTIFICATION, "done");
+                processInput.put("fields_data", fieldValueMap);
+                return processInput;
+            }
+            String cacheKey = AddressCache.key(address1, address2, city, state, zip);
+            CertifiedAddress certifiedAddress = addressCache.get(cacheKey);
+            if (certifiedAddress == null) {
+                certifiedAddress = retainedAddresses.remove(cacheKey);
+            }
+            if (certifiedAddress == null) {
+                String data = "\t" + address1 + '\t' + address2 + '\t' + city + '\t' + state + '\t' + zip + '\n';
+                String requestCode = INPUTMSGCODE + String.valueOf(data.length()) + data;
+                certifiedAddress = parseSatoriResponse(satoriClient.sendMessage(requestCode));
+                if (certifiedAddress != null) {
+                    addressCache.put(cacheKey, certifiedAddress);
                 }
-
-                Integer cassCodeInt = Integer.parseInt(cassCode);
+            }
+            if (certifiedAddress != null && batchAddresses != null) {
+                batchAddresses.put(cacheKey, certifiedAddress);
+            }
+            if (certifiedAddress != null) {
+                Integer cassCodeInt = Integer.parseInt(certifiedAddress.getCassCode());
 
                 // Codes 0 - 99 and 500 - 599 are considered successful.
-                if (((cassCodeInt >= 0 && cassCodeInt < 100) || (cassCodeInt >= 500 && cassCodeInt < 600)) && !StringUtils.isEmpty(address1)) {
+                if (((cassCodeInt >= 0 && cassCodeInt < 100) || (cassCodeInt >= 500 && cassCodeInt < 600))
+                        && !StringUtils.isEmpty(certifiedAddress.getAddress1())) {
 
                     // mark address Valid
                     fieldValueMap.put(MAIL_STATUS, VALID_MAIL_STATUS);
@@ -123,16 +274,16 @@ public class AddressCertificationApplication {
                     // mark address Invalid
                     fieldValueMap.put(MAIL_STATUS, INVALID_MAIL_STATUS);
 
-                    cassMessage = cassMessage.replace("\n", "").trim();
+                    String cassMessage = certifiedAddress.getCassMessage().replace("\n", "").trim();
                     cassMessage = StringUtils.isEmpty(cassMessage) ? "Invalid Address or Postal code" : cassMessage;
                     fieldValueMap.put(MAIL_MESSAGE, cassMessage);
                 }
 
-                fieldValueMap.put(ADDRESS1, address1);
-                fieldValueMap.put(ADDRESS2, address2);
-                fieldValueMap.put(CITY, city);
-                fieldValueMap.put(STATE, state);
-                fieldValueMap.put(ZIP, zip);
+                fieldValueMap.put(ADDRESS1, certifiedAddress.getAddress1());
+                fieldValueMap.put(ADDRESS2, certifiedAddress.getAddress2());
+                fieldValueMap.put(CITY, certifiedAddress.getCity());
+                fieldValueMap.put(STATE, certifiedAddress.getState());
+                fieldValueMap.put(ZIP, certifiedAddress.getZip());
                 processInput.put(com.sproutloud.starter.stream.StringUtils.ADDRESS_CERTIFICATION, "done");
                 processInput.put("fields_data", fieldValueMap);
 
@@ -148,4 +299,68 @@ public class AddressCertificationApplication {
         return processInput;
     }
 
+    /**
+     * Parses the standardized address, CASS code and CASS message of a Satori response.
+     *
+     * @param satoriResponse tab separated Satori response
+     * @return {@link CertifiedAddress} of the response, null if the response is empty.
+     */
+    private CertifiedAddress parseSatoriResponse(String satoriResponse) {
+        if (StringUtils.isEmpty(satoriResponse)) {
+            return null;
+        }
+        CertifiedAddress certifiedAddress = new CertifiedAddress();
+        certifiedAddress.setCassMessage("");
+        String[] responseComponents = satoriResponse.split("\t", -1);
+        if (responseComponents[0].contains(OUTPUTMSGCODE) && responseComponents.length >= 8) {
+            certifiedAddress.setAddress1(responseComponents[1]);
+            certifiedAddress.setAddress2(responseComponents[2]);
+            certifiedAddress.setCity(responseComponents[3]);
+            certifiedAddress.setState(responseComponents[4]);
+            certifiedAddress.setZip(responseComponents[5]);
+            certifiedAddress.setCassCode(responseComponents[6]);
+            certifiedAddress.setCassMessage(responseComponents[7]);
+
+        } else {
+            certifiedAddress.setAddress1(responseComponents[0]);
+            certifiedAddress.setAddress2(responseComponents[1]);
+            certifiedAddress.setCity(responseComponents[2]);
+            certifiedAddress.setState(responseComponents[3]);
+            certifiedAddress.setZip(responseComponents[4]);
+            certifiedAddress.setCassCode(responseComponents[5]);
+            if (responseComponents.length >= 7) {
+                certifiedAddress.setCassMessage(responseComponents[6]);
+            }
+        }
+
+        // after standarization, the address2 field might contain
+        // address1 and address1 might be empty. Check if this is the case
+        // and populate address1 with value in address2
+        if (StringUtils.isEmpty(certifiedAddress.getAddress1()) && !StringUtils.isEmpty(certifiedAddress.getAddress2())) {
+            certifiedAddress.setAddress1(certifiedAddress.getAddress2());
+            certifiedAddress.setAddress2("");
+        }
+        return certifiedAddress;
+    }
+
+    /**
+     * @return {@link ExecutorService} with a thread per concurrently certified record.
+     */
+    private synchronized ExecutorService getCertificationExecutor() {
+        if (Objects.isNull(certificationExecutor)) {
+            certificationExecutor = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("address-certification-"));
+        }
+        return certificationExecutor;
+    }
+
+    /**
+     * Stops the certification threads.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (Objects.nonNull(certificationExecutor)) {
+            certificationExecutor.shutdownNow();
+        }
+    }
+
 }
@@ -0,0 +1,247 @@
+package com.sproutloud.starter.stream.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Cache of the certified addresses, keyed by the canonical form of address1, address2, city, state and zip, so that an address recurring
+ * across uploads and accounts is sent to Satori once per time to live.
+ *
+ * Memory is bounded by the maximum number of entries; the least recently used address is evicted first. When a snapshot path is set, the
+ * cache is written to it periodically and on shutdown, and loaded from it on startup, so a restarted instance comes back warm.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+@Component
+public class AddressCache {
+
+    /**
+     * Enables the address cache.
+     */
+    @Value("${address.cache.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * Maximum number of addresses held in memory.
+     */
+    @Value("${address.cache.max-entries:100000}")
+    private int maxEntries;
+
+    /**
+     * Time in milliseconds for which a certified address is served from the cache.
+     */
+    @Value("${address.cache.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    /**
+     * File the cache is snapshotted to, no snapshot if empty.
+     */
+    @Value("${address.cache.snapshot-path:}")
+    private String snapshotPath;
+
+    /**
+     * Time in milliseconds between snapshots.
+     */
+    @Value("${address.cache.snapshot-interval-ms:300000}")
+    private long snapshotIntervalMillis;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Certified addresses with key as the canonical address, in access order.
+     */
+    private Map<String, CertifiedAddress> addresses;
+
+    private Counter hits;
+
+    private Counter misses;
+
+    private ScheduledExecutorService snapshotWriter;
+
+    @PostConstruct
+    public void initialize() {
+        addresses = new LinkedHashMap<String, CertifiedAddress>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CertifiedAddress> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        hits = meterRegistry.counter("address.cache.lookups", "result", "hit");
+        misses = meterRegistry.counter("address.cache.lookups", "result", "miss");
+        Gauge.builder("address.cache.entries", this, cache -> cache.size()).register(meterRegistry);
+        if (enabled && StringUtils.hasText(snapshotPath)) {
+            loadSnapshot();
+            snapshotWriter = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("address-cache-snapshot-"));
+            snapshotWriter.scheduleWithFixedDelay(this::writeSnapshot, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return true if the address cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Canonical form of an address: upper cased, without periods and commas, with whitespace collapsed, and the fields joined by tabs.
+     *
+     * @param address1 address1 field
+     * @param address2 address2 field
+     * @param city     city field
+     * @param state    state field
+     * @param zip      zip field
+     * @return key of the address.
+     */
+    public static String key(String address1, String address2, String city, String state, String zip) {
+        StringBuilder key = new StringBuilder();
+        for (String field : new String[] { address1, address2, city, state, zip }) {
+            if (key.length() > 0) {
+                key.append('\t');
+            }
+            if (field != null) {
+                key.append(field.toUpperCase(Locale.ROOT).replaceAll("[.,]", " ").replaceAll("\\s+", " ").trim());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key canonical address
+     * @return certified address, null if not cached, expired or the cache is disabled.
+     */
+    public CertifiedAddress get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        CertifiedAddress address;
+        synchronized (addresses) {
+            address = addresses.get(key);
+            if (address != null && address.getExpiresAt() < System.currentTimeMillis()) {
+                addresses.remove(key);
+                address = null;
+            }
+        }
+        (address == null ? misses : hits).increment();
+        return address;
+    }
+
+    /**
+     * Caches a certified address for the time to live.
+     *
+     * @param key     canonical address
+     * @param address certified address
+     */
+    public void put(String key, CertifiedAddress address) {
+        if (!enabled) {
+            return;
+        }
+        address.setExpiresAt(System.currentTimeMillis() + ttlMillis);
+        synchronized (addresses) {
+            addresses.put(key, address);
+        }
+    }
+
+    /**
+     * Writes the unexpired addresses to the snapshot file, replacing it atomically.
+     */
+    void writeSnapshot() {
+        Map<String, CertifiedAddress> snapshot;
+        long now = System.currentTimeMillis();
+        synchronized (addresses) {
+            snapshot = new LinkedHashMap<>();
+            addresses.forEach((key, address) -> {
+                if (address.getExpiresAt() >= now) {
+                    snapshot.put(key, address);
+                }
+            });
+        }
+        try {
+            File target = new File(snapshotPath);
+            File temp = new File(snapshotPath + ".tmp");
+            mapper.writeValue(temp, snapshot);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Wrote " + snapshot.size() + " addresses to cache snapshot " + snapshotPath);
+        } catch (IOException e) {
+            log.error("Unable to write address cache snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the unexpired addresses of the snapshot file, if any.
+     */
+    void loadSnapshot() {
+        File source = new File(snapshotPath);
+        if (!source.isFile()) {
+            return;
+        }
+        try {
+            Map<String, CertifiedAddress> snapshot = mapper.readValue(source, new TypeReference<LinkedHashMap<String, CertifiedAddress>>() {
+            });
+            long now = System.currentTimeMillis();
+            synchronized (addresses) {
+                snapshot.forEach((key, address) -> {
+                    if (address.getExpiresAt() >= now) {
+                        addresses.put(key, address);
+                    }
+                });
+            }
+            log.info("Loaded " + size() + " addresses from cache snapshot " + snapshotPath);
+        } catch (IOException e) {
+            log.error("Unable to load address cache snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the final snapshot.
+     */
+    @PreDestroy
+    public void close() {
+        if (snapshotWriter != null) {
+            snapshotWriter.shutdownNow();
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * @return number of addresses held in memory.
+     */
+    private int size() {
+        synchronized (addresses) {
+            return addresses.size();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.sproutloud.starter.stream.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Standardized address with its CASS code and message, as parsed from a Satori response.
+ *
+ * @author mgande
+ */
+@Getter
+@Setter
+public class CertifiedAddress {
+
+    private String address1;
+
+    private String address2;
+
+    private String city;
+
+    private String state;
+
+    private String zip;
+
+    private String cassCode;
+
+    private String cassMessage;
+
+    /**
+     * Time in milliseconds after which the address is not served from the cache.
+     */
+    private long expiresAt;
+}
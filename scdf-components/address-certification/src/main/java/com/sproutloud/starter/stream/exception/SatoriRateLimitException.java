@@ -0,0 +1,29 @@
+package com.sproutloud.starter.stream.exception;
+
+/**
+ * Runtime Exception when no permit to send a satori request is available in time. It fails the batch of the record instead of skipping
+ * the record, so that the batch is redelivered.
+ *
+ * @author mgande
+ */
+public class SatoriRateLimitException extends RuntimeException {
+
+    /**
+     * {@link RuntimeException} when a message is passed
+     *
+     * @param message to be sent in the exception with details on why exception occurred
+     */
+    public SatoriRateLimitException(String message) {
+        super(message);
+    }
+
+    /**
+     * {@link RuntimeException} when a message and the cause are passed
+     *
+     * @param message   to be sent in the exception with details on why exception occurred
+     * @param throwable exception object
+     */
+    public SatoriRateLimitException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
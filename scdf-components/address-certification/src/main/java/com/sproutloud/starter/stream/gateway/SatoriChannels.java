@@ -0,0 +1,37 @@
+package com.sproutloud.starter.stream.gateway;
+
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+
+/**
+ * Bindings of the address certification processor to the satori gateway: the requests are published to satori-in-channel and their
+ * responses received from satori-out-channel.
+ *
+ * @author mgande
+ */
+public interface SatoriChannels {
+
+    /**
+     * Name of the satori request output binding
+     */
+    String REQUEST_OUTPUT = "satoriRequestOutput";
+
+    /**
+     * Name of the satori reply input binding
+     */
+    String REPLY_INPUT = "satoriReplyInput";
+
+    /**
+     * @return channel the satori requests are published to
+     */
+    @Output(REQUEST_OUTPUT)
+    MessageChannel satoriRequestOutput();
+
+    /**
+     * @return channel the satori responses are received from
+     */
+    @Input(REPLY_INPUT)
+    SubscribableChannel satoriReplyInput();
+}
@@ -0,0 +1,103 @@
+package com.sproutloud.starter.stream.gateway;
+
+import org.springframework.messaging.MessageHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pending satori requests of this instance, keyed by correlation id, joined with their responses as they arrive on
+ * satori-out-channel.
+ *
+ * @author mgande
+ *
+ */
+public class SatoriCorrelationStore {
+
+    /**
+     * Header of the id correlating a satori request with its response
+     */
+    public static final String CORRELATION_ID = "satori_correlation_id";
+
+    /**
+     * Header of the partition of satori-out-channel the response is published to
+     */
+    public static final String REPLY_PARTITION = "satori_reply_partition";
+
+    /**
+     * Header of the time in milliseconds after which the requester no longer waits for the response
+     */
+    public static final String DEADLINE = "satori_deadline";
+
+    /**
+     * Header of a response whose request was not sent to satori within the rate limit of the gateway
+     */
+    public static final String RATE_LIMITED = "satori_rate_limited";
+
+    private final Map<String, CompletableFuture<String>> pendingRequests = new ConcurrentHashMap<>();
+
+    /**
+     * @param correlationId id of a request about to be sent.
+     * @return response of the request, completed when it arrives.
+     */
+    public CompletableFuture<String> register(String correlationId) {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        pendingRequests.put(correlationId, response);
+        return response;
+    }
+
+    /**
+     * Completes the pending request of a response.
+     *
+     * @param correlationId id of the request.
+     * @param response      satori response.
+     * @return true if the request was pending, false if it belongs to another instance or is no longer awaited.
+     */
+    public boolean complete(String correlationId, String response) {
+        CompletableFuture<String> pending = correlationId == null ? null : pendingRequests.remove(correlationId);
+        return pending != null && pending.complete(response);
+    }
+
+    /**
+     * Fails the pending request of a response.
+     *
+     * @param correlationId id of the request.
+     * @param error         failure of the request.
+     * @return true if the request was pending, false if it belongs to another instance or is no longer awaited.
+     */
+    public boolean fail(String correlationId, Throwable error) {
+        CompletableFuture<String> pending = correlationId == null ? null : pendingRequests.remove(correlationId);
+        return pending != null && pending.completeExceptionally(error);
+    }
+
+    /**
+     * Stops waiting for the response of a request.
+     *
+     * @param correlationId id of the request.
+     */
+    public void remove(String correlationId) {
+        pendingRequests.remove(correlationId);
+    }
+
+    /**
+     * @return number of requests waiting for their response.
+     */
+    public int size() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * @param headers headers of a kafka message.
+     * @param name    name of the header.
+     * @return value of the header as a String, null if absent.
+     */
+    static String header(MessageHeaders headers, String name) {
+        Object value = headers.get(name);
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.sproutloud.starter.stream.gateway;
+
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.CORRELATION_ID;
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.DEADLINE;
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.RATE_LIMITED;
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.REPLY_PARTITION;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.pool.SatoriConnectionPool;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Satori gateway worker, run when address.certification.mode is gateway: answers the address requests of satori-in-channel on
+ * satori-out-channel over the {@link SatoriConnectionPool}, so that the satori capacity is scaled with the gateway instances, apart from
+ * the pipeline processors. The processor input binding of a gateway instance is not used, and is not started with
+ * spring.cloud.stream.bindings.input.consumer.auto-startup=false.
+ *
+ * The requests are answered by a pool of satori.gateway.workers threads. Once all of them are busy and their queue is full, the request
+ * is answered on the consumer thread, which holds back the consumer from polling further requests. Requests whose requester stopped
+ * waiting are dropped without being sent. A request without a permit of the satori rate limit is answered as rate limited, for the
+ * requester to fail its batch rather than skip the record.
+ *
+ * Metrics: satori.gateway.requests, satori.gateway.expired.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "address.certification.mode", havingValue = "gateway")
+@EnableBinding(SatoriGatewayChannels.class)
+public class SatoriGateway {
+
+    /**
+     * Number of requests of satori-in-channel answered concurrently
+     */
+    @Value("${satori.gateway.workers:64}")
+    private int workers;
+
+    @Autowired
+    private SatoriConnectionPool satoriConnectionPool;
+
+    @Autowired
+    private SatoriGatewayChannels satoriGatewayChannels;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService workerPool;
+
+    private Counter requests;
+
+    private Counter expired;
+
+    @PostConstruct
+    public void initialize() {
+        int threads = Math.max(1, workers);
+        workerPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads),
+                new CustomizableThreadFactory("satori-gateway-"), new ThreadPoolExecutor.CallerRunsPolicy());
+        requests = meterRegistry.counter("satori.gateway.requests");
+        expired = meterRegistry.counter("satori.gateway.expired");
+    }
+
+    /**
+     * Answers an address request on a worker thread.
+     *
+     * @param request address request with its correlation id and reply partition
+     */
+    @StreamListener(SatoriGatewayChannels.REQUEST_INPUT)
+    public void receiveRequest(Message<String> request) {
+        workerPool.execute(() -> answer(request));
+    }
+
+    /**
+     * Sends an address request to satori and publishes its response, an empty response if satori did not answer, or a rate limited
+     * response if no permit was available in time.
+     *
+     * @param request address request with its correlation id and reply partition
+     */
+    void answer(Message<String> request) {
+        String deadline = SatoriCorrelationStore.header(request.getHeaders(), DEADLINE);
+        if (deadline != null && Long.parseLong(deadline) < System.currentTimeMillis()) {
+            expired.increment();
+            return;
+        }
+        requests.increment();
+        String response;
+        boolean rateLimited = false;
+        try {
+            response = satoriConnectionPool.sendMessage(request.getPayload());
+        } catch (SatoriRateLimitException e) {
+            log.warn(e.getMessage());
+            response = null;
+            rateLimited = true;
+        }
+        // an Integer key, as the partition of the reply is selected by its hash code
+        String replyPartition = SatoriCorrelationStore.header(request.getHeaders(), REPLY_PARTITION);
+        MessageBuilder<String> reply = MessageBuilder.withPayload(response == null ? "" : response)
+                .setHeader(CORRELATION_ID, SatoriCorrelationStore.header(request.getHeaders(), CORRELATION_ID))
+                .setHeader(REPLY_PARTITION, replyPartition == null ? 0 : Integer.valueOf(replyPartition));
+        if (rateLimited) {
+            reply.setHeader(RATE_LIMITED, "true");
+        }
+        satoriGatewayChannels.satoriReplyOutput().send(reply.build());
+    }
+
+    /**
+     * Answers the requests already received before shutting down.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        workerPool.shutdown();
+        if (!workerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Satori gateway stopped with unanswered requests");
+            workerPool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.sproutloud.starter.stream.gateway;
+
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+
+/**
+ * Bindings of the satori gateway: the requests are received from satori-in-channel and their responses published to
+ * satori-out-channel.
+ *
+ * @author mgande
+ */
+public interface SatoriGatewayChannels {
+
+    /**
+     * Name of the satori request input binding
+     */
+    String REQUEST_INPUT = "satoriRequestInput";
+
+    /**
+     * Name of the satori reply output binding
+     */
+    String REPLY_OUTPUT = "satoriReplyOutput";
+
+    /**
+     * @return channel the satori requests are received from
+     */
+    @Input(REQUEST_INPUT)
+    SubscribableChannel satoriRequestInput();
+
+    /**
+     * @return channel the satori responses are published to
+     */
+    @Output(REPLY_OUTPUT)
+    MessageChannel satoriReplyOutput();
+}
@@ -0,0 +1,140 @@
+package com.sproutloud.starter.stream.gateway;
+
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.CORRELATION_ID;
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.DEADLINE;
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.RATE_LIMITED;
+import static com.sproutloud.starter.stream.gateway.SatoriCorrelationStore.REPLY_PARTITION;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.pool.SatoriClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Certifies addresses through the satori gateway when address.certification.mode is kafka: each request is published to
+ * satori-in-channel with a correlation id, and the calling thread waits for the response with the same id on satori-out-channel, so
+ * that the processor holds no satori connection and certification scales with the gateway instances.
+ *
+ * The request carries the instance index of this processor as the partition of satori-out-channel to answer on. With the reply input
+ * consuming its partitions by instance index, each processor instance receives the responses of its own requests; responses of other
+ * instances, or of requests no longer awaited, are ignored.
+ *
+ * Metrics: satori.gateway.reply.latency, satori.gateway.reply.timeouts, satori.gateway.reply.unmatched, satori.gateway.pending.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "address.certification.mode", havingValue = "kafka")
+@EnableBinding(SatoriChannels.class)
+public class SatoriKafkaClient implements SatoriClient {
+
+    /**
+     * Maximum time in milliseconds to wait for the response of a request published to the satori gateway
+     */
+    @Value("${satori.gateway.reply-timeout-ms:30000}")
+    private long replyTimeoutMillis;
+
+    /**
+     * Index of this instance, also the partition of satori-out-channel its responses are published to
+     */
+    @Value("${spring.cloud.stream.instanceIndex:0}")
+    private int instanceIndex;
+
+    @Autowired
+    private SatoriChannels satoriChannels;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final SatoriCorrelationStore correlationStore = new SatoriCorrelationStore();
+
+    private Timer replyLatency;
+
+    private Counter timeouts;
+
+    private Counter unmatched;
+
+    @PostConstruct
+    public void initialize() {
+        replyLatency = meterRegistry.timer("satori.gateway.reply.latency");
+        timeouts = meterRegistry.counter("satori.gateway.reply.timeouts");
+        unmatched = meterRegistry.counter("satori.gateway.reply.unmatched");
+        Gauge.builder("satori.gateway.pending", correlationStore, SatoriCorrelationStore::size).register(meterRegistry);
+    }
+
+    /**
+     * Publishes an address request to the satori gateway and waits for its response.
+     *
+     * @param msg address String
+     * @return certified address String, null if the gateway had no response or none arrived within the reply timeout.
+     * @throws SatoriRateLimitException if the gateway answered that the request was not sent within the satori rate limit.
+     */
+    @Override
+    public String sendMessage(String msg) {
+        String correlationId = UUID.randomUUID().toString();
+        CompletableFuture<String> response = correlationStore.register(correlationId);
+        long startTime = System.nanoTime();
+        try {
+            satoriChannels.satoriRequestOutput().send(MessageBuilder.withPayload(msg).setHeader(CORRELATION_ID, correlationId)
+                    .setHeader(REPLY_PARTITION, instanceIndex).setHeader(DEADLINE, System.currentTimeMillis() + replyTimeoutMillis).build());
+            String resp = response.get(replyTimeoutMillis, TimeUnit.MILLISECONDS);
+            return StringUtils.isEmpty(resp) ? null : resp;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.error("No response from the satori gateway within " + replyTimeoutMillis + " ms");
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SatoriRateLimitException) {
+                throw new SatoriRateLimitException(e.getCause().getMessage(), e.getCause());
+            }
+            log.error("Satori gateway request failed: " + e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            correlationStore.remove(correlationId);
+            replyLatency.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Joins a response of the satori gateway with its pending request.
+     *
+     * @param message satori response with its correlation id
+     */
+    @StreamListener(SatoriChannels.REPLY_INPUT)
+    public void receiveReply(Message<String> message) {
+        String correlationId = SatoriCorrelationStore.header(message.getHeaders(), CORRELATION_ID);
+        boolean rateLimited = Boolean.parseBoolean(SatoriCorrelationStore.header(message.getHeaders(), RATE_LIMITED));
+        boolean matched = rateLimited ? correlationStore.fail(correlationId, new SatoriRateLimitException("Satori gateway rate limited"))
+                : correlationStore.complete(correlationId, message.getPayload());
+        if (!matched) {
+            unmatched.increment();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.sproutloud.starter.stream.limiter;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.properties.AddressCertificationProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Limits the satori requests of all the address-certification replicas to an aggregate rate, through a token bucket in redis updated
+ * atomically by a lua script. While redis is unavailable, each replica admits its share of the rate from a local {@link TokenBucket}.
+ *
+ * A request waits for its permit on the calling thread. As the records of a batch are only acknowledged after all of them are
+ * certified, the wait holds back the kafka consumer from polling further records instead of sending more requests to satori. A request
+ * without a permit within satori.rate-limit.max-wait-ms fails with a {@link SatoriRateLimitException}, so that its batch is
+ * redelivered before the consumer exceeds max.poll.interval.ms, instead of its record being skipped. The addresses already certified
+ * for the batch are retained for its redelivery, and a record consumed on its own waits for another permit instead, see
+ * {@link com.sproutloud.starter.stream.AddressCertificationApplication}.
+ *
+ * Metrics: satori.rate-limit.wait (time to acquire), satori.rate-limit.rejected, satori.rate-limit.fallbacks.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+@Component
+public class SatoriRateLimiter {
+
+    private static final String SCRIPT = "scripts/satori-rate-limit.lua";
+
+    @Autowired
+    private AddressCertificationProperties properties;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private DefaultRedisScript<Long> script;
+
+    private List<String> keys;
+
+    private double capacity;
+
+    /**
+     * Bucket of this replica's share of the rate, used while redis is unavailable.
+     */
+    private TokenBucket localBucket;
+
+    /**
+     * Time in milliseconds until which the local bucket is used.
+     */
+    private volatile long fallbackUntil;
+
+    private Timer waitTimer;
+
+    private Counter rejected;
+
+    private Counter fallbacks;
+
+    @PostConstruct
+    public void initialize() {
+        script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(SCRIPT)));
+        script.setResultType(Long.class);
+        keys = Collections.singletonList(properties.getRateLimitKey());
+        double permitsPerSecond = properties.getRateLimitPermitsPerSecond();
+        capacity = properties.getRateLimitBurst() > 0 ? properties.getRateLimitBurst() : Math.max(1, permitsPerSecond);
+        int replicas = Math.max(1, properties.getRateLimitReplicas());
+        localBucket = new TokenBucket(permitsPerSecond / replicas, Math.max(1, capacity / replicas), System.currentTimeMillis());
+        waitTimer = meterRegistry.timer("satori.rate-limit.wait");
+        rejected = meterRegistry.counter("satori.rate-limit.rejected");
+        fallbacks = meterRegistry.counter("satori.rate-limit.fallbacks");
+        if (properties.isRateLimitEnabled()) {
+            log.info("Limiting satori requests to " + permitsPerSecond + " per second across " + replicas + " replicas");
+        }
+    }
+
+    /**
+     * Waits for a permit to send a satori request, up to satori.rate-limit.max-wait-ms.
+     *
+     * @throws SatoriRateLimitException if no permit was available in time, or the wait was interrupted.
+     */
+    public void acquire() {
+        if (!properties.isRateLimitEnabled()) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        long deadline = System.currentTimeMillis() + properties.getRateLimitMaxWaitMillis();
+        try {
+            while (true) {
+                long wait = tryTake();
+                if (wait == 0) {
+                    return;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    rejected.increment();
+                    throw new SatoriRateLimitException(
+                            "No satori permit available within " + properties.getRateLimitMaxWaitMillis() + " ms");
+                }
+                // jitter spreads the retries of the threads waiting for the same token
+                Thread.sleep(Math.min(remaining, wait + ThreadLocalRandom.current().nextLong(wait / 4 + 1)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SatoriRateLimitException("Interrupted while waiting for a satori permit", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Takes a permit to send a satori request if one is available, without waiting.
+     *
+     * @return true if the request may be sent.
+     */
+    public boolean tryAcquire() {
+        return !properties.isRateLimitEnabled() || tryTake() == 0;
+    }
+
+    /**
+     * Takes a token from the redis bucket, or from the local bucket while redis is unavailable.
+     *
+     * @return 0 if a token was taken, otherwise the time in milliseconds until a token is available.
+     */
+    private long tryTake() {
+        long now = System.currentTimeMillis();
+        if (now >= fallbackUntil) {
+            try {
+                Long wait = redisTemplate.execute(script, keys, String.valueOf(properties.getRateLimitPermitsPerSecond()),
+                        String.valueOf(capacity), String.valueOf(now));
+                if (fallbackUntil != 0) {
+                    log.info("Redis available again, using the shared satori rate limit");
+                    fallbackUntil = 0;
+                }
+                return wait == null ? 0 : wait;
+            } catch (DataAccessException e) {
+                if (fallbackUntil == 0) {
+                    log.warn("Redis unavailable, using the local satori rate limit: " + e.getMessage());
+                }
+                fallbacks.increment();
+                fallbackUntil = now + properties.getRateLimitFallbackMillis();
+            }
+        }
+        return localBucket.tryTake(now);
+    }
+}
@@ -0,0 +1,51 @@
+package com.sproutloud.starter.stream.limiter;
+
+/**
+ * Token bucket refilled at a constant rate up to its capacity, one token admitting one request. It is the local counterpart of the
+ * redis token bucket of satori-rate-limit.lua, and follows the same arithmetic.
+ *
+ * @author mgande
+ *
+ */
+class TokenBucket {
+
+    private final double permitsPerSecond;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long timestamp;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param permitsPerSecond rate at which tokens are added.
+     * @param capacity         maximum number of tokens.
+     * @param now              current time in milliseconds.
+     */
+    TokenBucket(double permitsPerSecond, double capacity, long now) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.timestamp = now;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now current time in milliseconds.
+     * @return 0 if a token was taken, otherwise the time in milliseconds until a token is available.
+     */
+    synchronized long tryTake(long now) {
+        if (now > timestamp) {
+            tokens = Math.min(capacity, tokens + (now - timestamp) * permitsPerSecond / 1000);
+            timestamp = now;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * 1000 / permitsPerSecond);
+    }
+}
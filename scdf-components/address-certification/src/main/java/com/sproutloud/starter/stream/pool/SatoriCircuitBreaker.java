@@ -0,0 +1,102 @@
+package com.sproutloud.starter.stream.pool;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Circuit breaker of the Satori requests. After the configured number of consecutive failed requests the circuit opens, and requests
+ * are rejected without being sent, so that the records are skipped fast while Satori is unhealthy. Once the open time has passed, a
+ * single trial request is let through; its success closes the circuit, and its failure opens it again.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+public class SatoriCircuitBreaker {
+
+    /**
+     * State of the circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private boolean trialInProgress;
+
+    /**
+     * @param failureThreshold number of consecutive failures opening the circuit.
+     * @param openMillis       time in milliseconds for which the circuit stays open.
+     */
+    public SatoriCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true if a request may be sent, false if it must be rejected.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialInProgress = false;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !trialInProgress) {
+            trialInProgress = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Releases a request that was allowed but not sent, so that the trial request of a half-open circuit is let through again.
+     */
+    public synchronized void releaseRequest() {
+        if (state == State.HALF_OPEN) {
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * Records a successful request, closing the circuit.
+     */
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Closing satori circuit");
+        }
+        consecutiveFailures = 0;
+        trialInProgress = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records a failed request, opening the circuit after the failure threshold or a failed trial request.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Opening satori circuit for " + openMillis + " ms after " + consecutiveFailures + " consecutive failures");
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * @return current state of the circuit.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+}
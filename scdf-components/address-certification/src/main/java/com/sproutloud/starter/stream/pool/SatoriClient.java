@@ -0,0 +1,22 @@
+package com.sproutloud.starter.stream.pool;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+
+/**
+ * Sends address requests to Satori, directly over the {@link SatoriConnectionPool}, or through the satori gateway over kafka when
+ * address.certification.mode is kafka.
+ *
+ * @author mgande
+ *
+ */
+public interface SatoriClient {
+
+    /**
+     * Sends an address request and waits for its response.
+     *
+     * @param msg address String
+     * @return certified address String, null if no response was received.
+     * @throws SatoriRateLimitException if the request could not be sent within the satori rate limit, so that the batch is redelivered.
+     */
+    String sendMessage(String msg);
+}
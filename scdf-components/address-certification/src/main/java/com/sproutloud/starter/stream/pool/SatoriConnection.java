@@ -8,117 +8,400 @@ import static com.sproutloud.starter.stream.properties.ApplicationConstants.HAND
 import static com.sproutloud.starter.stream.properties.ApplicationConstants.HANDSHAKEMSG6;
 import static com.sproutloud.starter.stream.properties.ApplicationConstants.HANDSHAKEMSG7;
 
-import com.sproutloud.starter.stream.properties.AddressCertificationProperties;
-
+import io.micrometer.core.instrument.Counter;
 import lombok.extern.log4j.Log4j2;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
 import java.util.Objects;
-
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 /**
- * Initiates the Satori connection and does satori verification.
- * 
+ * Connection to a Satori instance, which performs the initial handshake once per socket and does satori verification. A connection is
+ * used by one thread at a time, as borrowed from the {@link SatoriConnectionPool}.
+ *
+ * With a pipeline window above 1, requests are written without waiting for the previous response, up to the window in flight. Satori
+ * answers in request order, so a reader thread completes the pending requests in FIFO order. When the socket is lost, all the pending
+ * requests fail and the connection is re-established by its next use.
+ *
  * @author mgande
  *
  */
 @Log4j2
-@Component
 public class SatoriConnection {
 
-    @Autowired
-    private AddressCertificationProperties properties;
+    private final SatoriEndpoint endpoint;
+
+    private final String licence;
+
+    private final int connectTimeoutMillis;
+
+    private final Counter reconnects;
+
+    /**
+     * Maximum number of requests in flight when pipelined, 1 for one request at a time.
+     */
+    private final int pipelineWindow;
+
+    /**
+     * Requests written and not yet answered, in write order, when pipelined. Guarded by itself, along with broken.
+     */
+    private final Queue<CompletableFuture<String>> pendingRequests = new ArrayDeque<>();
+
+    private Semaphore windowPermits;
+
+    /**
+     * True until the reader of the pipelined socket is started, and once it stopped.
+     */
+    private boolean broken = true;
+
+    /**
+     * Incremented for the reader of each pipelined socket, so that a stopped reader does not affect the next socket.
+     */
+    private int readerGeneration;
 
     private Socket clientSocket;
     private PrintWriter out;
     private BufferedReader in;
 
     /**
-     * Initiates the connctions and performs initial handshakes.
+     * Time in milliseconds at which the connection was last used.
+     */
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    /**
+     * @param endpoint             Satori instance to connect to.
+     * @param licence              licence used for accessing the satori instance.
+     * @param connectTimeoutMillis timeout of establishing the socket.
+     * @param pipelineWindow       maximum number of requests in flight, 1 for one request at a time.
+     * @param reconnects           counter of the reconnects of the endpoint.
+     */
+    public SatoriConnection(SatoriEndpoint endpoint, String licence, int connectTimeoutMillis, int pipelineWindow, Counter reconnects) {
+        this.endpoint = endpoint;
+        this.licence = licence;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.pipelineWindow = Math.max(1, pipelineWindow);
+        this.reconnects = reconnects;
+    }
+
+    /**
+     * Initiates the connctions and performs initial handshakes. An existing socket is closed and counted as a reconnect.
      */
-    @PostConstruct
     public void startConnection() {
+        if (Objects.nonNull(clientSocket)) {
+            reconnects.increment();
+            if (isPipelined()) {
+                failPendingRequests();
+            }
+            closeQuietly();
+        }
         try {
-            log.debug("trying to establish connection to satori");
-            this.clientSocket = new Socket(InetAddress.getByName(properties.getSatoriIp()), properties.getSatoriPort());
+            log.debug("trying to establish connection to satori " + endpoint);
+            this.clientSocket = new Socket();
+            clientSocket.connect(new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), connectTimeoutMillis);
             log.debug("connected to satori +" + clientSocket.isConnected());
             this.out = new PrintWriter(clientSocket.getOutputStream(), true);
             this.in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+            clientSocket.setSoTimeout(connectTimeoutMillis);
 
-            String data = "\t" + "0" + "\t" + properties.getSatoriLicence() + "\n";
+            String data = "\t" + "0" + "\t" + licence + "\n";
             String requestCode = HANDSHAKEMSG1 + String.valueOf(data.length()) + data;
-            sendMessage(requestCode, false);
-            sendMessage(HANDSHAKEMSG2, false);
-            sendMessage(HANDSHAKEMSG3, false);
-            sendMessage(HANDSHAKEMSG4, false);
-            sendMessage(HANDSHAKEMSG5, false);
-            sendMessage(HANDSHAKEMSG6, false);
-            sendMessage(HANDSHAKEMSG7, false);
+            exchange(requestCode);
+            exchange(HANDSHAKEMSG2);
+            exchange(HANDSHAKEMSG3);
+            exchange(HANDSHAKEMSG4);
+            exchange(HANDSHAKEMSG5);
+            exchange(HANDSHAKEMSG6);
+            exchange(HANDSHAKEMSG7);
 
             log.debug("Initial Handshake done");
+            clientSocket.setSoTimeout(0);
+            if (isPipelined()) {
+                startReader();
+            }
         } catch (Exception e) {
-            log.debug("failed while connecting" + e.getMessage());
-            e.printStackTrace();
+            log.error("failed while connecting to satori " + endpoint + ": " + e.getMessage());
+            // a socket without a completed handshake must not be used
+            closeQuietly();
         }
     }
 
     /**
-     * Sends the messages to Satori and verifies the address.
-     * 
-     * @param msg address String
-     * @param forceReconnect satori has to be force restarted if true.
-     * @return certified address String.
+     * Sends the messages to Satori and verifies the address, waiting up to the timeout for the response. The socket is re-established
+     * first if it was lost. On a failure or an empty response the socket is closed, as its next response might not match its next
+     * request, and the connection is re-established by its next use.
+     *
+     * @param msg           address String
+     * @param timeoutMillis maximum time to wait for the response.
+     * @return certified address String, empty if Satori answered with an empty line.
+     * @throws IOException if the socket could not be established, was closed or timed out.
      */
-    public String sendMessage(String msg, boolean forceReconnect) {
-        if (forceReconnect || Objects.isNull(clientSocket) || !clientSocket.isConnected()) {
+    public String call(String msg, int timeoutMillis) throws IOException {
+        lastUsed = System.currentTimeMillis();
+        if (!isConnected() || out.checkError()) {
             log.debug("********* Reconnecting the socket: ******************* \n");
             startConnection();
+            if (!isConnected()) {
+                throw new IOException("not connected to satori " + endpoint);
+            }
         }
         log.debug("incoming data: " + msg);
-        String resp = null;
         try {
-            if (out.checkError()) {
-                log.debug("********* Reconnecting the socket as out has errors: ******************* \n");
-                startConnection();
+            clientSocket.setSoTimeout(Math.max(1, timeoutMillis));
+            String resp = exchange(msg);
+            if (resp == null) {
+                throw new EOFException("satori connection to " + endpoint + " closed");
             }
-            out.write(msg);
-            out.flush();
-            resp = (String) in.readLine();
-            if (!forceReconnect && StringUtils.isEmpty(resp)) {
-                log.debug("********* Retrying as response is null for : ******************* \n" + msg);
-                resp = sendMessage(msg, true);
+            if (StringUtils.isEmpty(resp)) {
+                invalidate();
             }
             log.debug("response is: " + resp);
-        } catch (Exception e) {
-            log.debug("inside catch block for data: " + e.getMessage());
+            return resp;
+        } catch (IOException e) {
+            invalidate();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the socket of the connection, failing its pending requests if pipelined. The connection is re-established by its next use.
+     */
+    public void invalidate() {
+        closeQuietly();
+    }
+
+    /**
+     * Writes a request without waiting for its response, once a slot of the pipeline window is free. The socket is re-established first
+     * if it was lost.
+     *
+     * @param msg address String
+     * @return response of the request, completed exceptionally if the socket is lost before it is answered.
+     */
+    public CompletableFuture<String> submit(String msg) {
+        lastUsed = System.currentTimeMillis();
+        if (!isConnected() || isBroken() || out.checkError()) {
+            log.debug("********* Reconnecting the pipelined socket: ******************* \n");
+            startConnection();
+        }
+        CompletableFuture<String> response = new CompletableFuture<>();
+        Semaphore permits = windowPermits;
+        if (permits == null) {
+            response.completeExceptionally(new IOException("not connected to satori " + endpoint));
+            return response;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.completeExceptionally(e);
+            return response;
+        }
+        response.whenComplete((resp, error) -> permits.release());
+        synchronized (pendingRequests) {
+            if (broken) {
+                response.completeExceptionally(new IOException("satori connection to " + endpoint + " closed"));
+                return response;
+            }
+            pendingRequests.add(response);
+        }
+        log.debug("pipelined data: " + msg);
+        out.write(msg);
+        out.flush();
+        if (out.checkError()) {
+            failPendingRequests();
+        }
+        return response;
+    }
+
+    /**
+     * @return true if requests are pipelined on the connection.
+     */
+    public boolean isPipelined() {
+        return pipelineWindow > 1;
+    }
+
+    /**
+     * Checks an idle connection without sending a request. The connection is unhealthy if its socket is closed, it has write errors, the
+     * server closed its end, or unsolicited data is waiting, as the next response would not match its request.
+     *
+     * @return true if the connection can be used.
+     */
+    public boolean isHealthy() {
+        if (!isConnected() || out.checkError()) {
+            return false;
+        }
+        if (isPipelined()) {
+            return !isBroken();
+        }
+        try {
+            if (in.ready()) {
+                return false;
+            }
+            clientSocket.setSoTimeout(1);
+            try {
+                clientSocket.getInputStream().read();
+                return false;
+            } catch (SocketTimeoutException e) {
+                return true;
+            } finally {
+                clientSocket.setSoTimeout(0);
+            }
+        } catch (IOException e) {
+            log.debug("health check failed for satori " + endpoint + ": " + e.getMessage());
+            return false;
         }
-        return resp;
     }
 
     /**
      * Closes the Satori connection.
      */
-    @PreDestroy
     public void stopConnection() {
+        closeQuietly();
+        clientSocket = null;
+    }
+
+    /**
+     * @return Satori instance of the connection.
+     */
+    public SatoriEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return time in milliseconds at which the connection was last used.
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @return true if the socket is open.
+     */
+    private boolean isConnected() {
+        return Objects.nonNull(clientSocket) && clientSocket.isConnected() && !clientSocket.isClosed() && Objects.nonNull(out);
+    }
+
+    /**
+     * Starts the reader completing the pending requests of the pipelined socket with its response lines.
+     */
+    private void startReader() {
+        BufferedReader reader = in;
+        int generation;
+        synchronized (pendingRequests) {
+            broken = false;
+            generation = ++readerGeneration;
+        }
+        windowPermits = new Semaphore(pipelineWindow);
+        Thread thread = new Thread(() -> readResponses(reader, generation), "satori-reader-" + endpoint);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Completes the pending requests in order until the socket is closed, then fails the rest.
+     *
+     * @param reader     input of the socket.
+     * @param generation generation of the reader.
+     */
+    private void readResponses(BufferedReader reader, int generation) {
+        try {
+            String resp;
+            while ((resp = reader.readLine()) != null) {
+                CompletableFuture<String> response;
+                synchronized (pendingRequests) {
+                    response = pendingRequests.poll();
+                }
+                if (response == null) {
+                    log.error("Unexpected response from satori " + endpoint + ": " + resp);
+                    break;
+                }
+                log.debug("response is: " + resp);
+                response.complete(resp);
+            }
+        } catch (IOException e) {
+            log.debug("pipelined socket to satori " + endpoint + " closed: " + e.getMessage());
+        }
+        failPendingRequests(generation);
+    }
+
+    /**
+     * Marks the current pipelined socket broken and fails its pending requests, so that the callers can fail over.
+     */
+    private void failPendingRequests() {
+        int generation;
+        synchronized (pendingRequests) {
+            generation = readerGeneration;
+        }
+        failPendingRequests(generation);
+    }
+
+    /**
+     * Marks the pipelined socket of a reader broken and fails its pending requests, unless the socket was already replaced.
+     *
+     * @param generation generation of the reader.
+     */
+    private void failPendingRequests(int generation) {
+        Queue<CompletableFuture<String>> failed;
+        synchronized (pendingRequests) {
+            if (generation != readerGeneration) {
+                return;
+            }
+            broken = true;
+            failed = new ArrayDeque<>(pendingRequests);
+            pendingRequests.clear();
+        }
+        IOException cause = new IOException("satori connection to " + endpoint + " closed");
+        failed.forEach(response -> response.completeExceptionally(cause));
+    }
+
+    /**
+     * @return true if the reader of the pipelined socket stopped.
+     */
+    private boolean isBroken() {
+        synchronized (pendingRequests) {
+            return broken;
+        }
+    }
+
+    /**
+     * Writes a message and reads its response line.
+     *
+     * @param msg message to send.
+     * @return response line, null if the server closed the socket.
+     * @throws IOException if unable to read the response.
+     */
+    private String exchange(String msg) throws IOException {
+        out.write(msg);
+        out.flush();
+        return in.readLine();
+    }
+
+    /**
+     * Closes the streams and socket, ignoring failures.
+     */
+    private void closeQuietly() {
         try {
-            in.close();
-            out.close();
-            if (clientSocket != null && clientSocket.isConnected())
+            // the socket is closed first, to unblock a pipelined reader holding the lock of in
+            if (clientSocket != null && !clientSocket.isClosed())
                 clientSocket.close();
+            if (in != null)
+                in.close();
+            if (out != null)
+                out.close();
         } catch (IOException e) {
             log.error("Error stopping connection.");
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,506 @@
+package com.sproutloud.starter.stream.pool;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.limiter.SatoriRateLimiter;
+import com.sproutloud.starter.stream.properties.AddressCertificationProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Pool of pre-handshaked Satori connections over one or more Satori instances. A request borrows an idle connection of the instance with
+ * the least outstanding requests, and returns it once the response is read, so the handshake is only repeated when a socket is lost.
+ * Idle connections are health checked in the background and reconnected when broken. The pool is not created when the records are
+ * certified through the satori gateway, see {@link com.sproutloud.starter.stream.gateway.SatoriGateway}.
+ *
+ * With satori.pipeline.window above 1, a connection is only borrowed to write a request, and the response is awaited after returning it,
+ * so several requests are in flight per connection. The outstanding requests of an endpoint then include the ones in flight.
+ *
+ * Every request has a deadline, failed requests are retried with backoff, a slow request can be hedged on a second connection, and a
+ * {@link SatoriCircuitBreaker} skips the requests while Satori is unhealthy. Every request, retry and hedge let through by the circuit
+ * takes a permit of the {@link SatoriRateLimiter} before it is sent, so that a skipped request does not use up a permit.
+ *
+ * Metrics: satori.pool.wait (time to borrow), satori.call.latency and satori.reconnects per endpoint, satori.pool.outstanding per endpoint,
+ * satori.request.latency, satori.retries, satori.hedges, satori.timeouts, satori.circuit.rejected and satori.circuit.open.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+@Component
+@ConditionalOnExpression("'${address.certification.mode:direct}' != 'kafka'")
+public class SatoriConnectionPool implements SatoriClient {
+
+    /**
+     * Number of requests after which the p95 latency is used for hedging.
+     */
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    @Autowired
+    private AddressCertificationProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SatoriRateLimiter rateLimiter;
+
+    private List<SatoriEndpoint> endpoints;
+
+    /**
+     * Permits for the idle connections of all the endpoints.
+     */
+    private Semaphore idlePermits;
+
+    private Timer poolWait;
+
+    /**
+     * Latency of the requests, including the duplicate requests, with its p95 for the hedging delay.
+     */
+    private Timer requestLatency;
+
+    private Counter retries;
+
+    private Counter hedges;
+
+    private Counter timeouts;
+
+    private Counter rejected;
+
+    private SatoriCircuitBreaker circuitBreaker;
+
+    /**
+     * Runs the idle health checks and the deadlines of the pipelined requests.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Runs the requests not pipelined when hedging is enabled, so that a duplicate request can be sent while waiting.
+     */
+    private ExecutorService hedgeExecutor;
+
+    /**
+     * Opens the connections of all the endpoints and starts the idle health checks.
+     */
+    @PostConstruct
+    public void initialize() {
+        endpoints = new ArrayList<>();
+        if (StringUtils.hasText(properties.getSatoriEndpoints())) {
+            for (String endpoint : properties.getSatoriEndpoints().split(",")) {
+                endpoints.add(SatoriEndpoint.parse(endpoint, properties.getSatoriPort()));
+            }
+        } else {
+            endpoints.add(new SatoriEndpoint(properties.getSatoriIp(), properties.getSatoriPort()));
+        }
+        poolWait = meterRegistry.timer("satori.pool.wait");
+        requestLatency = Timer.builder("satori.request.latency").publishPercentiles(0.95).register(meterRegistry);
+        retries = meterRegistry.counter("satori.retries");
+        hedges = meterRegistry.counter("satori.hedges");
+        timeouts = meterRegistry.counter("satori.timeouts");
+        rejected = meterRegistry.counter("satori.circuit.rejected");
+        circuitBreaker = new SatoriCircuitBreaker(properties.getCircuitFailureThreshold(), properties.getCircuitOpenMillis());
+        Gauge.builder("satori.circuit.open", circuitBreaker, breaker -> breaker.getState() == SatoriCircuitBreaker.State.OPEN ? 1 : 0)
+                .register(meterRegistry);
+        int connections = Math.max(1, properties.getConnectionsPerEndpoint());
+        for (SatoriEndpoint endpoint : endpoints) {
+            endpoint.setCallLatency(meterRegistry.timer("satori.call.latency", "endpoint", endpoint.toString()));
+            Counter reconnects = meterRegistry.counter("satori.reconnects", "endpoint", endpoint.toString());
+            Gauge.builder("satori.pool.outstanding", endpoint, this::outstandingRequests).tag("endpoint", endpoint.toString())
+                    .register(meterRegistry);
+            for (int i = 0; i < connections; i++) {
+                SatoriConnection connection = new SatoriConnection(endpoint, properties.getSatoriLicence(),
+                        properties.getConnectTimeoutMillis(), properties.getPipelineWindow(), reconnects);
+                connection.startConnection();
+                endpoint.getIdleConnections().add(connection);
+            }
+        }
+        idlePermits = new Semaphore(connections * endpoints.size(), true);
+        log.info("Opened " + connections + " satori connections to each of " + endpoints);
+
+        long interval = Math.max(1, properties.getHealthCheckIntervalMillis());
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("satori-scheduler-"));
+        hedgeExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory("satori-request-"));
+        scheduler.scheduleWithFixedDelay(this::checkIdleConnections, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a message on a pooled connection and returns its response. Each attempt has a deadline of satori.request.timeout-ms; a failed,
+     * timed out or empty attempt is retried up to satori.request.max-attempts with an exponential backoff. While the circuit is open the
+     * message is not sent at all, and takes no rate limit permit.
+     *
+     * @param msg address String
+     * @return certified address String, null if every attempt failed or the circuit is open.
+     * @throws SatoriRateLimitException if no rate limit permit was available in time, so that the batch is redelivered.
+     */
+    @Override
+    public String sendMessage(String msg) {
+        if (!circuitBreaker.allowRequest()) {
+            rejected.increment();
+            log.debug("Skipping satori request as the circuit is open");
+            return null;
+        }
+        acquirePermit();
+        long backoff = Math.max(1, properties.getRetryBackoffMillis());
+        for (int attempt = 1;; attempt++) {
+            String resp = sendHedged(msg);
+            if (!StringUtils.isEmpty(resp)) {
+                circuitBreaker.recordSuccess();
+                return resp;
+            }
+            circuitBreaker.recordFailure();
+            if (attempt >= properties.getMaxAttempts() || !circuitBreaker.allowRequest()) {
+                log.error("Satori request failed after " + attempt + " attempts");
+                return null;
+            }
+            retries.increment();
+            try {
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                circuitBreaker.releaseRequest();
+                return null;
+            }
+            backoff *= 2;
+            acquirePermit();
+        }
+    }
+
+    /**
+     * Waits for a rate limit permit for a request let through by the circuit, releasing the request if no permit is available.
+     *
+     * @throws SatoriRateLimitException if no rate limit permit was available in time.
+     */
+    private void acquirePermit() {
+        try {
+            rateLimiter.acquire();
+        } catch (SatoriRateLimitException e) {
+            circuitBreaker.releaseRequest();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a message, and when hedging is enabled and no response arrived within the p95 latency, sends it once more on a second
+     * connection, returning the first non empty response.
+     *
+     * @param msg address String
+     * @return certified address String, null or empty if the attempt failed.
+     */
+    private String sendHedged(String msg) {
+        long startTime = System.nanoTime();
+        try {
+            Attempt primary = attempt(msg, null);
+            if (primary == null) {
+                return null;
+            }
+            long hedgeDelay = hedgeDelayMillis();
+            if (hedgeDelay < 0 || primary.response.isDone()) {
+                return primary.response.get();
+            }
+            try {
+                return primary.response.get(hedgeDelay, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (!rateLimiter.tryAcquire()) {
+                    return primary.response.get();
+                }
+                Attempt hedge = attempt(msg, primary.connection);
+                if (hedge == null) {
+                    return primary.response.get();
+                }
+                hedges.increment();
+                return firstResponse(primary.response, hedge.response).get();
+            }
+        } catch (ExecutionException e) {
+            log.debug("Satori request failed: " + e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            requestLatency.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sends a message on a borrowed connection. A pipelined connection is only held for the write, and its response fails at the deadline;
+     * otherwise the response is read on the calling thread, or on a hedging thread when hedging is enabled. A duplicate request is only
+     * sent on an idle connection, without waiting for one to be released.
+     *
+     * @param msg    address String
+     * @param hedged connection of the request being duplicated, null for a first request.
+     * @return {@link Attempt} of the message, null if no connection was available.
+     */
+    private Attempt attempt(String msg, SatoriConnection hedged) {
+        SatoriConnection connection = borrow(hedged, hedged == null);
+        if (connection == null) {
+            if (hedged == null) {
+                log.error("Timed out waiting for a satori connection");
+            }
+            return null;
+        }
+        CompletableFuture<String> response;
+        if (connection.isPipelined()) {
+            SatoriEndpoint endpoint = connection.getEndpoint();
+            long startTime = System.nanoTime();
+            synchronized (this) {
+                endpoint.setOutstandingRequests(endpoint.getOutstandingRequests() + 1);
+            }
+            try {
+                response = connection.submit(msg);
+            } finally {
+                release(connection);
+            }
+            ScheduledFuture<?> deadline = scheduler.schedule(() -> {
+                if (response.completeExceptionally(new TimeoutException("no response from satori " + endpoint))) {
+                    timeouts.increment();
+                    // the late response would be matched with the next request
+                    connection.invalidate();
+                }
+            }, properties.getRequestTimeoutMillis(), TimeUnit.MILLISECONDS);
+            response.whenComplete((value, error) -> {
+                deadline.cancel(false);
+                endpoint.getCallLatency().record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                synchronized (this) {
+                    endpoint.setOutstandingRequests(endpoint.getOutstandingRequests() - 1);
+                }
+            });
+        } else if (properties.isHedgeEnabled()) {
+            response = CompletableFuture.supplyAsync(() -> call(connection, msg), hedgeExecutor);
+        } else {
+            response = CompletableFuture.completedFuture(call(connection, msg));
+        }
+        return new Attempt(connection, response);
+    }
+
+    /**
+     * Sends a message on a borrowed connection and waits for its response, releasing the connection after.
+     *
+     * @param connection borrowed {@link SatoriConnection}
+     * @param msg        address String
+     * @return certified address String, null if the call failed.
+     */
+    private String call(SatoriConnection connection, String msg) {
+        long startTime = System.nanoTime();
+        try {
+            return connection.call(msg, properties.getRequestTimeoutMillis());
+        } catch (SocketTimeoutException e) {
+            timeouts.increment();
+            log.debug("No response from satori " + connection.getEndpoint() + " within " + properties.getRequestTimeoutMillis() + " ms");
+            return null;
+        } catch (IOException e) {
+            log.debug("Satori request to " + connection.getEndpoint() + " failed: " + e.getMessage());
+            return null;
+        } finally {
+            connection.getEndpoint().getCallLatency().record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            release(connection);
+        }
+    }
+
+    /**
+     * @param primary response of the first request.
+     * @param hedge   response of the duplicate request.
+     * @return the first non empty response, or the last response if both are empty or failed.
+     */
+    private static CompletableFuture<String> firstResponse(CompletableFuture<String> primary, CompletableFuture<String> hedge) {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        BiConsumer<String, Throwable> onResponse = (value, error) -> {
+            if (error == null && !StringUtils.isEmpty(value)) {
+                first.complete(value);
+            } else if (pending.decrementAndGet() == 0) {
+                first.complete(null);
+            }
+        };
+        primary.whenComplete(onResponse);
+        hedge.whenComplete(onResponse);
+        return first;
+    }
+
+    /**
+     * @return time in milliseconds after which a duplicate request is sent, the p95 request latency bounded by the minimum delay, or -1
+     *         if hedging is disabled or the latency is not yet known.
+     */
+    private long hedgeDelayMillis() {
+        if (!properties.isHedgeEnabled()) {
+            return -1;
+        }
+        HistogramSnapshot snapshot = requestLatency.takeSnapshot();
+        if (snapshot.count() < HEDGE_MIN_SAMPLES || snapshot.percentileValues().length == 0) {
+            return -1;
+        }
+        long p95 = (long) snapshot.percentileValues()[0].value(TimeUnit.MILLISECONDS);
+        return Math.max(properties.getHedgeMinDelayMillis(), p95);
+    }
+
+    /**
+     * Borrows an idle connection of the endpoint with the least outstanding requests, waiting up to the borrow timeout.
+     *
+     * @return {@link SatoriConnection} to be released after use, null on timeout.
+     */
+    public SatoriConnection borrow() {
+        return borrow(null, true);
+    }
+
+    /**
+     * Borrows an idle connection of the endpoint with the least outstanding requests, other than the excluded connection unless it is the
+     * only idle one.
+     *
+     * @param exclude connection not to be used if another is idle, null for any.
+     * @param wait    whether to wait up to the borrow timeout, otherwise only an idle connection is borrowed.
+     * @return {@link SatoriConnection} to be released after use, null on timeout or if none is idle.
+     */
+    private SatoriConnection borrow(SatoriConnection exclude, boolean wait) {
+        long startTime = System.nanoTime();
+        try {
+            boolean acquired = wait ? idlePermits.tryAcquire(properties.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    : idlePermits.tryAcquire();
+            if (!acquired) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            poolWait.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+        synchronized (this) {
+            SatoriEndpoint selected = null;
+            for (SatoriEndpoint endpoint : endpoints) {
+                Deque<SatoriConnection> idle = endpoint.getIdleConnections();
+                boolean available = !idle.isEmpty() && !(idle.size() == 1 && idle.peekFirst() == exclude);
+                if (available && (selected == null || endpoint.getOutstandingRequests() < selected.getOutstandingRequests())) {
+                    selected = endpoint;
+                }
+            }
+            if (selected == null) {
+                // the excluded connection is the only idle one
+                selected = exclude.getEndpoint();
+            }
+            SatoriConnection connection = selected.getIdleConnections().peekFirst();
+            for (SatoriConnection idle : selected.getIdleConnections()) {
+                if (idle != exclude) {
+                    connection = idle;
+                    break;
+                }
+            }
+            selected.getIdleConnections().remove(connection);
+            selected.setOutstandingRequests(selected.getOutstandingRequests() + 1);
+            return connection;
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool.
+     *
+     * @param connection borrowed {@link SatoriConnection}
+     */
+    public void release(SatoriConnection connection) {
+        SatoriEndpoint endpoint = connection.getEndpoint();
+        synchronized (this) {
+            endpoint.setOutstandingRequests(endpoint.getOutstandingRequests() - 1);
+            endpoint.getIdleConnections().addFirst(connection);
+        }
+        idlePermits.release();
+    }
+
+    /**
+     * Health checks the connections idle for longer than the health check interval, reconnecting the broken ones. A connection is taken
+     * out of the pool while it is checked.
+     */
+    void checkIdleConnections() {
+        long idleSince = System.currentTimeMillis() - properties.getHealthCheckIntervalMillis();
+        for (SatoriEndpoint endpoint : endpoints) {
+            List<SatoriConnection> checked = new ArrayList<>();
+            while (idlePermits.tryAcquire()) {
+                SatoriConnection connection;
+                synchronized (this) {
+                    SatoriConnection eldest = endpoint.getIdleConnections().peekLast();
+                    connection = eldest != null && eldest.getLastUsed() < idleSince ? endpoint.getIdleConnections().pollLast() : null;
+                }
+                if (connection == null) {
+                    idlePermits.release();
+                    break;
+                }
+                if (!connection.isHealthy()) {
+                    log.info("Reconnecting idle satori connection to " + endpoint);
+                    connection.startConnection();
+                }
+                checked.add(connection);
+            }
+            for (SatoriConnection connection : checked) {
+                synchronized (this) {
+                    endpoint.getIdleConnections().addLast(connection);
+                }
+                idlePermits.release();
+            }
+        }
+    }
+
+    /**
+     * Closes all the connections.
+     */
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        hedgeExecutor.shutdownNow();
+        synchronized (this) {
+            for (SatoriEndpoint endpoint : endpoints) {
+                endpoint.getIdleConnections().forEach(SatoriConnection::stopConnection);
+            }
+        }
+    }
+
+    /**
+     * @param endpoint satori instance
+     * @return number of outstanding requests of the endpoint.
+     */
+    private synchronized int outstandingRequests(SatoriEndpoint endpoint) {
+        return endpoint.getOutstandingRequests();
+    }
+
+    /**
+     * Request sent on a connection, with its response.
+     */
+    private static class Attempt {
+
+        private final SatoriConnection connection;
+
+        private final CompletableFuture<String> response;
+
+        Attempt(SatoriConnection connection, CompletableFuture<String> response) {
+            this.connection = connection;
+            this.response = response;
+        }
+    }
+}
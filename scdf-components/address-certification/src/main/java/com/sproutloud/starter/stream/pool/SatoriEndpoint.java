@@ -0,0 +1,93 @@
+package com.sproutloud.starter.stream.pool;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Satori instance of the {@link SatoriConnectionPool}, with its idle connections and number of outstanding requests. The state is
+ * guarded by the pool.
+ *
+ * @author mgande
+ *
+ */
+public class SatoriEndpoint {
+
+    private final String host;
+
+    private final int port;
+
+    /**
+     * Idle connections, most recently used first.
+     */
+    private final Deque<SatoriConnection> idleConnections = new ArrayDeque<>();
+
+    /**
+     * Number of requests in progress on the connections of the endpoint.
+     */
+    private int outstandingRequests;
+
+    /**
+     * Latency of the calls made to the endpoint.
+     */
+    private Timer callLatency;
+
+    /**
+     * @param host host name or IP address of the satori instance.
+     * @param port port of the satori instance.
+     */
+    public SatoriEndpoint(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Parses an endpoint of the form host:port.
+     *
+     * @param hostAndPort  endpoint String.
+     * @param defaultPort  port used if none is given.
+     * @return {@link SatoriEndpoint} of the String.
+     */
+    public static SatoriEndpoint parse(String hostAndPort, int defaultPort) {
+        String value = hostAndPort.trim();
+        int separator = value.lastIndexOf(':');
+        if (separator < 0) {
+            return new SatoriEndpoint(value, defaultPort);
+        }
+        return new SatoriEndpoint(value.substring(0, separator), Integer.parseInt(value.substring(separator + 1)));
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    Deque<SatoriConnection> getIdleConnections() {
+        return idleConnections;
+    }
+
+    int getOutstandingRequests() {
+        return outstandingRequests;
+    }
+
+    void setOutstandingRequests(int outstandingRequests) {
+        this.outstandingRequests = outstandingRequests;
+    }
+
+    Timer getCallLatency() {
+        return callLatency;
+    }
+
+    void setCallLatency(Timer callLatency) {
+        this.callLatency = callLatency;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
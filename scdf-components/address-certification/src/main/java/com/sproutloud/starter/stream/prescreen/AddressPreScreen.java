@@ -0,0 +1,147 @@
+package com.sproutloud.starter.stream.prescreen;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Pre-screen of the addresses before they are sent to Satori, rejecting locally the ones that cannot be certified:
+ * <ul>
+ * <li>no street, address1 and address2 both empty</li>
+ * <li>no postal code, and no city and state to find it from</li>
+ * <li>a postal code that is not 5 or 9 digits, and no city and state to correct it from</li>
+ * <li>a state that is neither a USPS state code nor a state name, and no valid postal code to correct it from</li>
+ * <li>a postal code whose 3 digit prefix belongs to another state, unless the postal code is listed as delivered in another state than
+ * its prefix, see {@link ZipStateTable}</li>
+ * </ul>
+ * Whatever Satori could still correct is let through. The city is not checked, as a ZIP code has many acceptable city names.
+ *
+ * Metrics: address.prescreen.rejected per reason.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+@Component
+public class AddressPreScreen {
+
+    static final String MISSING_STREET = "Missing street address";
+
+    static final String MISSING_POSTAL_CODE = "Missing postal code, city or state";
+
+    static final String INVALID_POSTAL_CODE = "Invalid postal code";
+
+    static final String UNKNOWN_STATE = "Unknown state";
+
+    static final String POSTAL_CODE_STATE_MISMATCH = "Postal code does not match state";
+
+    /**
+     * USPS codes of the states, territories and military states, with key as the upper cased state name.
+     */
+    private static final Map<String, String> STATES = new HashMap<>();
+
+    static {
+        String[] states = { "AL", "ALABAMA", "AK", "ALASKA", "AZ", "ARIZONA", "AR", "ARKANSAS", "CA", "CALIFORNIA", "CO", "COLORADO",
+                "CT", "CONNECTICUT", "DE", "DELAWARE", "DC", "DISTRICT OF COLUMBIA", "FL", "FLORIDA", "GA", "GEORGIA", "HI", "HAWAII",
+                "ID", "IDAHO", "IL", "ILLINOIS", "IN", "INDIANA", "IA", "IOWA", "KS", "KANSAS", "KY", "KENTUCKY", "LA", "LOUISIANA",
+                "ME", "MAINE", "MD", "MARYLAND", "MA", "MASSACHUSETTS", "MI", "MICHIGAN", "MN", "MINNESOTA", "MS", "MISSISSIPPI",
+                "MO", "MISSOURI", "MT", "MONTANA", "NE", "NEBRASKA", "NV", "NEVADA", "NH", "NEW HAMPSHIRE", "NJ", "NEW JERSEY",
+                "NM", "NEW MEXICO", "NY", "NEW YORK", "NC", "NORTH CAROLINA", "ND", "NORTH DAKOTA", "OH", "OHIO", "OK", "OKLAHOMA",
+                "OR", "OREGON", "PA", "PENNSYLVANIA", "RI", "RHODE ISLAND", "SC", "SOUTH CAROLINA", "SD", "SOUTH DAKOTA",
+                "TN", "TENNESSEE", "TX", "TEXAS", "UT", "UTAH", "VT", "VERMONT", "VA", "VIRGINIA", "WA", "WASHINGTON",
+                "WV", "WEST VIRGINIA", "WI", "WISCONSIN", "WY", "WYOMING", "AS", "AMERICAN SAMOA", "GU", "GUAM",
+                "MP", "NORTHERN MARIANA ISLANDS", "PR", "PUERTO RICO", "VI", "VIRGIN ISLANDS", "FM", "MICRONESIA",
+                "MH", "MARSHALL ISLANDS", "PW", "PALAU", "AA", "ARMED FORCES AMERICAS", "AE", "ARMED FORCES EUROPE",
+                "AP", "ARMED FORCES PACIFIC" };
+        for (int i = 0; i < states.length; i += 2) {
+            STATES.put(states[i], states[i]);
+            STATES.put(states[i + 1], states[i]);
+        }
+    }
+
+    /**
+     * Enables the address pre-screen.
+     */
+    @Value("${address.prescreen.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * ZIP state table file to be memory-mapped, the bundled table if empty.
+     */
+    @Value("${address.prescreen.table-path:}")
+    private String tablePath;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ZipStateTable zipStateTable;
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        String table = StringUtils.hasText(tablePath) ? tablePath : ZipStateTable.BUNDLED_TABLE;
+        zipStateTable = StringUtils.hasText(tablePath) ? ZipStateTable.map(tablePath) : ZipStateTable.bundled();
+        log.info("Pre-screening addresses with the ZIP state table " + table);
+    }
+
+    /**
+     * @param address1 address1 field
+     * @param address2 address2 field
+     * @param city     city field
+     * @param state    state field
+     * @param zip      zip field
+     * @return the reason the address cannot be certified, as the mail message, null if it is to be sent to Satori.
+     */
+    public String screen(String address1, String address2, String city, String state, String zip) {
+        if (!enabled) {
+            return null;
+        }
+        String reason = findReason(address1, address2, city, state, zip);
+        if (reason != null) {
+            meterRegistry.counter("address.prescreen.rejected", "reason", reason).increment();
+        }
+        return reason;
+    }
+
+    /**
+     * @return the first reason the address cannot be certified, null if none.
+     */
+    private String findReason(String address1, String address2, String city, String state, String zip) {
+        if (!StringUtils.hasText(address1) && !StringUtils.hasText(address2)) {
+            return MISSING_STREET;
+        }
+        boolean hasCityAndState = StringUtils.hasText(city) && StringUtils.hasText(state);
+        String digits = zip == null ? "" : zip.replaceAll("[\\s-]", "");
+        boolean validZip = digits.matches("\\d{5}|\\d{9}");
+        if (digits.isEmpty() && !hasCityAndState) {
+            return MISSING_POSTAL_CODE;
+        }
+        if (!digits.isEmpty() && !validZip && !hasCityAndState) {
+            return INVALID_POSTAL_CODE;
+        }
+        String stateCode = StringUtils.hasText(state) ? STATES.get(state.trim().replace(".", "").toUpperCase(Locale.ROOT)) : null;
+        if (StringUtils.hasText(state) && stateCode == null && !validZip) {
+            return UNKNOWN_STATE;
+        }
+        if (validZip && stateCode != null) {
+            String zipState = zipStateTable.state(digits);
+            if (zipState != null && !zipState.equals(stateCode)) {
+                return POSTAL_CODE_STATE_MISMATCH;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.sproutloud.starter.stream.prescreen;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reference table of the state of each 3 digit ZIP prefix, in fixed width records so that a prefix is looked up by offset without
+ * parsing: the record of prefix n starts at byte 3 * n and holds the two letter state followed by a newline. "--" marks an unassigned
+ * prefix and "**" a prefix shared by several states or territories, neither of which is checked against the state.
+ *
+ * The prefix records are followed by the 5 digit ZIP codes delivered in another state than their prefix, or across a state line, such
+ * as 83414 (Alta, WY) of the ID prefix 834. They are held in ascending order, in 6 byte records of the ZIP code followed by a newline,
+ * and looked up by binary search. A listed ZIP code is not checked against the state, so an incomplete list only lets more addresses
+ * through to Satori.
+ *
+ * The table bundled as reference/zip3-states.txt is read into memory; a table file given by path is memory-mapped.
+ *
+ * @author mgande
+ *
+ */
+public class ZipStateTable {
+
+    /**
+     * Bundled table resource
+     */
+    public static final String BUNDLED_TABLE = "reference/zip3-states.txt";
+
+    private static final int PREFIXES = 1000;
+
+    private static final int RECORD_LENGTH = 3;
+
+    private static final int ZIP_RECORD_LENGTH = 6;
+
+    private final ByteBuffer records;
+
+    /**
+     * Number of 5 digit ZIP code records after the prefix records
+     */
+    private final int zipRecords;
+
+    /**
+     * @param records fixed width records of the 1000 prefixes.
+     */
+    private ZipStateTable(ByteBuffer records) {
+        if (records.capacity() < PREFIXES * RECORD_LENGTH) {
+            throw new IllegalArgumentException(
+                    "ZIP state table holds " + records.capacity() / RECORD_LENGTH + " of " + PREFIXES + " prefixes");
+        }
+        this.records = records;
+        this.zipRecords = (records.capacity() - PREFIXES * RECORD_LENGTH) / ZIP_RECORD_LENGTH;
+    }
+
+    /**
+     * @return the table bundled with the application.
+     * @throws IOException if unable to read the resource.
+     */
+    public static ZipStateTable bundled() throws IOException {
+        try (InputStream in = new ClassPathResource(BUNDLED_TABLE).getInputStream()) {
+            return new ZipStateTable(ByteBuffer.wrap(StreamUtils.copyToByteArray(in)));
+        }
+    }
+
+    /**
+     * @param path file of the table.
+     * @return the table memory-mapped from the file.
+     * @throws IOException if unable to map the file.
+     */
+    public static ZipStateTable map(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return new ZipStateTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @param zip ZIP code of at least 3 digits.
+     * @return two letter state of the ZIP code, null if the prefix is unassigned or shared by several states, or the ZIP code is listed
+     *         as delivered in another state than its prefix.
+     */
+    public String state(String zip) {
+        if (zip.length() >= 5 && isListed(zip)) {
+            return null;
+        }
+        int prefix = (zip.charAt(0) - '0') * 100 + (zip.charAt(1) - '0') * 10 + (zip.charAt(2) - '0');
+        int offset = prefix * RECORD_LENGTH;
+        byte first = records.get(offset);
+        byte second = records.get(offset + 1);
+        if (first < 'A' || first > 'Z') {
+            return null;
+        }
+        return new String(new byte[] { first, second }, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param zip ZIP code of at least 5 digits.
+     * @return true if the first 5 digits of the ZIP code are listed after the prefix records.
+     */
+    private boolean isListed(String zip) {
+        int low = 0;
+        int high = zipRecords - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = PREFIXES * RECORD_LENGTH + mid * ZIP_RECORD_LENGTH;
+            int comparison = 0;
+            for (int i = 0; i < 5 && comparison == 0; i++) {
+                comparison = records.get(offset + i) - zip.charAt(i);
+            }
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,6 +2,7 @@ package com.sproutloud.starter.stream.properties;
 
 import lombok.Data;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
 /**
@@ -29,4 +30,124 @@ public class AddressCertificationProperties {
      */
     public final String satoriLicence = "1KI69JU-DDK25W-EHA1U";
 
+    /**
+     * Satori instances used as comma separated host:port values, the satoriIp and satoriPort instance if empty
+     */
+    @Value("${satori.endpoints:}")
+    private String satoriEndpoints;
+
+    /**
+     * Number of pre-handshaked connections kept per satori instance
+     */
+    @Value("${satori.pool.connections-per-endpoint:4}")
+    private int connectionsPerEndpoint;
+
+    /**
+     * Maximum time in milliseconds to wait for a free satori connection
+     */
+    @Value("${satori.pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMillis;
+
+    /**
+     * Time in milliseconds after which an idle satori connection is health checked
+     */
+    @Value("${satori.pool.health-check-interval-ms:30000}")
+    private long healthCheckIntervalMillis;
+
+    /**
+     * Maximum number of requests in flight per satori connection, 1 to wait for each response before the next request
+     */
+    @Value("${satori.pipeline.window:1}")
+    private int pipelineWindow;
+
+    /**
+     * Timeout in milliseconds of establishing a satori socket
+     */
+    @Value("${satori.connect-timeout-ms:5000}")
+    private int connectTimeoutMillis;
+
+    /**
+     * Maximum time in milliseconds to wait for the response of a satori request
+     */
+    @Value("${satori.request.timeout-ms:5000}")
+    private int requestTimeoutMillis;
+
+    /**
+     * Maximum number of attempts of a satori request, including the first one
+     */
+    @Value("${satori.request.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Time in milliseconds before the first retry of a satori request, doubled for every further retry
+     */
+    @Value("${satori.request.retry-backoff-ms:100}")
+    private long retryBackoffMillis;
+
+    /**
+     * Sends a duplicate request on a second connection when no response arrives within the p95 latency
+     */
+    @Value("${satori.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    /**
+     * Minimum time in milliseconds before a duplicate request is sent
+     */
+    @Value("${satori.hedge.min-delay-ms:20}")
+    private long hedgeMinDelayMillis;
+
+    /**
+     * Number of consecutive failed satori requests after which requests are skipped
+     */
+    @Value("${satori.circuit.failure-threshold:10}")
+    private int circuitFailureThreshold;
+
+    /**
+     * Time in milliseconds for which requests are skipped before a trial request is sent
+     */
+    @Value("${satori.circuit.open-ms:30000}")
+    private long circuitOpenMillis;
+
+    /**
+     * Limits the satori requests of all the replicas to the aggregate rate, through a token bucket in redis
+     */
+    @Value("${satori.rate-limit.enabled:false}")
+    private boolean rateLimitEnabled;
+
+    /**
+     * Aggregate number of satori requests per second admitted across all the replicas
+     */
+    @Value("${satori.rate-limit.permits-per-second:200}")
+    private double rateLimitPermitsPerSecond;
+
+    /**
+     * Maximum number of satori requests admitted at once after an idle period, the permits of one second if 0
+     */
+    @Value("${satori.rate-limit.burst:0}")
+    private int rateLimitBurst;
+
+    /**
+     * Redis key of the shared token bucket
+     */
+    @Value("${satori.rate-limit.key:satori:rate-limit}")
+    private String rateLimitKey;
+
+    /**
+     * Number of replicas sharing the rate, each admitting its share locally while redis is unavailable
+     */
+    @Value("${satori.rate-limit.replicas:1}")
+    private int rateLimitReplicas;
+
+    /**
+     * Maximum time in milliseconds a record waits for a permit before its batch fails to be redelivered, below max.poll.interval.ms
+     */
+    @Value("${satori.rate-limit.max-wait-ms:60000}")
+    private long rateLimitMaxWaitMillis;
+
+    /**
+     * Time in milliseconds for which the local token bucket is used after redis failed
+     */
+    @Value("${satori.rate-limit.fallback-ms:5000}")
+    private long rateLimitFallbackMillis;
+
 }
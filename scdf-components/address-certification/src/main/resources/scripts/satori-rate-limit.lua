@@ -0,0 +1,29 @@
+-- Token bucket shared by the address-certification replicas, refilled at ARGV[1] tokens per second up to ARGV[2] tokens.
+-- KEYS[1] bucket hash with the tokens and the time of the last refill
+-- ARGV[3] current time in milliseconds of the caller; the refill time never moves backwards, so clock skew only delays refills
+-- Returns 0 if a token was taken, otherwise the time in milliseconds until a token is available.
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'timestamp')
+local tokens = tonumber(bucket[1])
+local timestamp = tonumber(bucket[2])
+if tokens == nil or timestamp == nil then
+    tokens = capacity
+    timestamp = now
+end
+if now > timestamp then
+    tokens = math.min(capacity, tokens + (now - timestamp) * rate / 1000)
+    timestamp = now
+end
+
+local wait = 0
+if tokens >= 1 then
+    tokens = tokens - 1
+else
+    wait = math.ceil((1 - tokens) * 1000 / rate)
+end
+redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'timestamp', tostring(timestamp))
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+return wait
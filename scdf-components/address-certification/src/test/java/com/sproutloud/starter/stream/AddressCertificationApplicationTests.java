@@ -8,13 +8,22 @@ import static com.sproutloud.starter.stream.properties.ApplicationConstants.MAIL
 import static com.sproutloud.starter.stream.properties.ApplicationConstants.STATE;
 import static com.sproutloud.starter.stream.properties.ApplicationConstants.ZIP;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.sproutloud.starter.stream.pool.SatoriConnection;
+import com.sproutloud.starter.stream.cache.AddressCache;
+import com.sproutloud.starter.stream.cache.CertifiedAddress;
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.pool.SatoriClient;
+import com.sproutloud.starter.stream.prescreen.AddressPreScreen;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,8 +32,11 @@ import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -40,7 +52,13 @@ class AddressCertificationApplicationTests {
     private AddressCertificationApplication app;
 
     @Mock
-    private SatoriConnection satoriConnection;
+    private SatoriClient satoriClient;
+
+    @Mock
+    private AddressCache addressCache;
+
+    @Mock
+    private AddressPreScreen addressPreScreen;
 
     @Spy
     private ObjectMapper mapper;
@@ -63,37 +81,37 @@ class AddressCertificationApplicationTests {
         Map<String, Object> input = new HashMap<>();
         input.put("fields_data", fieldsData);
         String satoriOutput = "BTO\taddressUpdated1\taddressUpdated2\tcity\tstate\tzip\t10\tcassMessage";
-        when(satoriConnection.sendMessage(any(), eq(false))).thenReturn(satoriOutput);
+        when(satoriClient.sendMessage(any())).thenReturn(satoriOutput);
         Map<String, Object> res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
         assertEquals("done", res.get("address_certification"));
 
         // Valid scenario without BTO in output.
         satoriOutput = "addressUpdated1\taddressUpdated2\tcity\tstate\tzip\t10\tcassMessage";
-        when(satoriConnection.sendMessage(any(), eq(false))).thenReturn(satoriOutput);
+        when(satoriClient.sendMessage(any())).thenReturn(satoriOutput);
         res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
         assertEquals("done", res.get("address_certification"));
 
         // Valid scenario without cass message in output.
         satoriOutput = "BTO\taddressUpdated1\taddressUpdated2\tcity\tstate\tzip\t10\t";
-        when(satoriConnection.sendMessage(any(), eq(false))).thenReturn(satoriOutput);
+        when(satoriClient.sendMessage(any())).thenReturn(satoriOutput);
         res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
         assertEquals("done", res.get("address_certification"));
 
         // Valid scenario without address1 in output.
         satoriOutput = "\taddressUpdated2\tcity\tstate\tzip\t10\tcassMessage";
-        when(satoriConnection.sendMessage(any(), eq(false))).thenReturn(satoriOutput);
+        when(satoriClient.sendMessage(any())).thenReturn(satoriOutput);
         res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
         assertEquals("done", res.get("address_certification"));
 
         // InValid scenario without BTO in output.
         satoriOutput = "addressUpdated1\taddressUpdated2\tcity\tstate\tzip\t104\tcassMessage";
-        when(satoriConnection.sendMessage(any(), eq(false))).thenReturn(satoriOutput);
+        when(satoriClient.sendMessage(any())).thenReturn(satoriOutput);
         res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
         assertEquals("done", res.get("address_certification"));
 
         // InValid scenario without BTO, address1, address2 and cass message in output.
         satoriOutput = "\t\tcity\tstate\tzip\t501\t";
-        when(satoriConnection.sendMessage(any(), eq(false))).thenReturn(satoriOutput);
+        when(satoriClient.sendMessage(any())).thenReturn(satoriOutput);
         res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
         assertEquals("done", res.get("address_certification"));
     }
@@ -114,9 +132,216 @@ class AddressCertificationApplicationTests {
         Map<String, Object> fieldsData = new HashMap<>();
         fieldsData.put(ADDRESS1, "address1");
         input.put("fields_data", fieldsData);
-        when(satoriConnection.sendMessage(any(), eq(false))).thenReturn(null);
+        when(satoriClient.sendMessage(any())).thenReturn(null);
         assertEquals("skipped", 
                 app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build()).get("address_certification"));
     }
 
+    /**
+     * Tests that a cached address is applied without calling Satori, and that a Satori result is cached.
+     * 
+     * @throws JsonProcessingException when unable to convert input to {@link Map}
+     * 
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testVerifyAddressCached() throws JsonProcessingException {
+        Map<String, Object> fieldsData = new HashMap<>();
+        fieldsData.put(ADDRESS1, "1 main st.");
+        fieldsData.put(ADDRESS2, "");
+        fieldsData.put(CITY, "city");
+        fieldsData.put(STATE, "st");
+        fieldsData.put(ZIP, "12345");
+        Map<String, Object> input = new HashMap<>();
+        input.put("fields_data", fieldsData);
+        CertifiedAddress cached = new CertifiedAddress();
+        cached.setAddress1("1 MAIN ST");
+        cached.setAddress2("");
+        cached.setCity("CITY");
+        cached.setState("ST");
+        cached.setZip("12345-6789");
+        cached.setCassCode("10");
+        cached.setCassMessage("");
+        when(addressCache.get("1 MAIN ST\t\tCITY\tST\t12345")).thenReturn(cached);
+
+        Map<String, Object> res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
+
+        verify(satoriClient, never()).sendMessage(any());
+        assertEquals("done", res.get("address_certification"));
+        assertEquals("12345-6789", ((Map<String, Object>) res.get("fields_data")).get(ZIP));
+        assertEquals("VALID", ((Map<String, Object>) res.get("fields_data")).get(MAIL_STATUS));
+
+        fieldsData.put(ADDRESS1, "2 main st");
+        when(satoriClient.sendMessage(any())).thenReturn("BTO\t2 MAIN ST\t\tCITY\tST\t12345\t10\t");
+        app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
+        verify(addressCache).put(anyString(), any(CertifiedAddress.class));
+    }
+
+    /**
+     * Tests that an address rejected by the pre-screen is marked invalid without being sent to Satori.
+     * 
+     * @throws JsonProcessingException when unable to convert input to {@link Map}
+     * 
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testVerifyAddressPreScreened() throws JsonProcessingException {
+        Map<String, Object> fieldsData = new HashMap<>();
+        fieldsData.put(ADDRESS1, "1 main st");
+        fieldsData.put(ADDRESS2, "");
+        fieldsData.put(CITY, "city");
+        fieldsData.put(STATE, "NY");
+        fieldsData.put(ZIP, "90210");
+        Map<String, Object> input = new HashMap<>();
+        input.put("fields_data", fieldsData);
+        when(addressPreScreen.screen("1 main st", "", "city", "NY", "90210")).thenReturn("Postal code does not match state");
+
+        Map<String, Object> res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
+
+        verify(satoriClient, never()).sendMessage(any());
+        assertEquals("done", res.get("address_certification"));
+        assertEquals("INVALID", ((Map<String, Object>) res.get("fields_data")).get(MAIL_STATUS));
+        assertEquals("Postal code does not match state", ((Map<String, Object>) res.get("fields_data")).get(MAIL_MESSAGE));
+        assertEquals("90210", ((Map<String, Object>) res.get("fields_data")).get(ZIP));
+    }
+
+    /**
+     * Tests that the records of a batch are certified concurrently and emitted in input order, even when the earlier records take
+     * longer.
+     * 
+     * @throws JsonProcessingException when unable to convert input to {@link Map}
+     * 
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCertifyAddressesBatch() throws JsonProcessingException {
+        ReflectionTestUtils.setField(app, "concurrency", 4);
+        when(satoriClient.sendMessage(any())).thenAnswer(invocation -> {
+            String address1 = ((String) invocation.getArgument(0)).split("\t")[1];
+            Thread.sleep(address1.equals("0") ? 200 : 50);
+            return "BTO\t" + address1 + "\t\tcity\tstate\tzip\t10\t";
+        });
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Map<String, Object> fieldsData = new HashMap<>();
+            fieldsData.put(ADDRESS1, String.valueOf(i));
+            Map<String, Object> input = new HashMap<>();
+            input.put("fields_data", fieldsData);
+            payloads.add(mapper.writeValueAsString(input));
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            List<Map<String, Object>> res = app.certifyAddresses(MessageBuilder.withPayload(payloads).build());
+
+            assertEquals(8, res.size());
+            for (int i = 0; i < 8; i++) {
+                assertEquals(String.valueOf(i), ((Map<String, Object>) res.get(i).get("fields_data")).get(ADDRESS1));
+                assertEquals("done", res.get(i).get("address_certification"));
+            }
+            // sequentially, the batch would take 200 + 7 * 50 ms
+            assertTrue(System.currentTimeMillis() - startTime < 450);
+        } finally {
+            app.close();
+        }
+    }
+
+    /**
+     * Tests that a batch with a record not sent within the satori rate limit fails, to be redelivered, instead of the record being
+     * emitted as skipped.
+     * 
+     * @throws JsonProcessingException when unable to convert input to {@link Map}
+     * 
+     */
+    @Test
+    void testCertifyAddressesBatchRateLimited() throws JsonProcessingException {
+        ReflectionTestUtils.setField(app, "concurrency", 4);
+        when(satoriClient.sendMessage(any())).thenAnswer(invocation -> {
+            String address1 = ((String) invocation.getArgument(0)).split("\t")[1];
+            if (address1.equals("2")) {
+                throw new SatoriRateLimitException("No satori permit available within 100 ms");
+            }
+            return "BTO\t" + address1 + "\t\tcity\tstate\tzip\t10\t";
+        });
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<String, Object> fieldsData = new HashMap<>();
+            fieldsData.put(ADDRESS1, String.valueOf(i));
+            Map<String, Object> input = new HashMap<>();
+            input.put("fields_data", fieldsData);
+            payloads.add(mapper.writeValueAsString(input));
+        }
+
+        try {
+            assertThrows(SatoriRateLimitException.class, () -> app.certifyAddresses(MessageBuilder.withPayload(payloads).build()));
+        } finally {
+            app.close();
+        }
+    }
+
+    /**
+     * Tests that the addresses certified for a failed batch are not sent to Satori again when the batch is redelivered, even with the
+     * address cache disabled.
+     * 
+     * @throws JsonProcessingException when unable to convert input to {@link Map}
+     * 
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCertifyAddressesBatchRedelivered() throws JsonProcessingException {
+        ReflectionTestUtils.setField(app, "concurrency", 1);
+        ReflectionTestUtils.setField(app, "maxRetained", 100);
+        when(satoriClient.sendMessage(any())).thenAnswer(invocation -> {
+            String address1 = ((String) invocation.getArgument(0)).split("\t")[1];
+            return "BTO\t" + address1 + "\t\tcity\tstate\tzip\t10\t";
+        }).thenAnswer(invocation -> {
+            String address1 = ((String) invocation.getArgument(0)).split("\t")[1];
+            return "BTO\t" + address1 + "\t\tcity\tstate\tzip\t10\t";
+        }).thenThrow(new SatoriRateLimitException("No satori permit available within 100 ms")).thenAnswer(invocation -> {
+            String address1 = ((String) invocation.getArgument(0)).split("\t")[1];
+            return "BTO\t" + address1 + "\t\tcity\tstate\tzip\t10\t";
+        });
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<String, Object> fieldsData = new HashMap<>();
+            fieldsData.put(ADDRESS1, String.valueOf(i));
+            Map<String, Object> input = new HashMap<>();
+            input.put("fields_data", fieldsData);
+            payloads.add(mapper.writeValueAsString(input));
+        }
+
+        assertThrows(SatoriRateLimitException.class, () -> app.certifyAddresses(MessageBuilder.withPayload(payloads).build()));
+        List<Map<String, Object>> res = app.certifyAddresses(MessageBuilder.withPayload(payloads).build());
+
+        // records 0 and 1 are certified once, record 2 is rate limited and sent again with record 3
+        verify(satoriClient, times(5)).sendMessage(any());
+        assertEquals(4, res.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(String.valueOf(i), ((Map<String, Object>) res.get(i).get("fields_data")).get(ADDRESS1));
+            assertEquals("done", res.get(i).get("address_certification"));
+        }
+    }
+
+    /**
+     * Tests that a record consumed on its own waits for another satori permit instead of failing, as the binder would only retry it a
+     * few times and then drop it.
+     * 
+     * @throws JsonProcessingException when unable to convert input to {@link Map}
+     * 
+     */
+    @Test
+    void testVerifyAddressRateLimited() throws JsonProcessingException {
+        Map<String, Object> fieldsData = new HashMap<>();
+        fieldsData.put(ADDRESS1, "1 main st");
+        Map<String, Object> input = new HashMap<>();
+        input.put("fields_data", fieldsData);
+        when(satoriClient.sendMessage(any())).thenThrow(new SatoriRateLimitException("No satori permit available within 100 ms"))
+                .thenReturn("BTO\t1 MAIN ST\t\tcity\tstate\tzip\t10\t");
+
+        Map<String, Object> res = app.verifyAddress(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
+
+        verify(satoriClient, times(2)).sendMessage(any());
+        assertEquals("done", res.get("address_certification"));
+    }
+
 }
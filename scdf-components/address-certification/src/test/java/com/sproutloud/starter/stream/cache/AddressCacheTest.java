@@ -0,0 +1,125 @@
+package com.sproutloud.starter.stream.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+
+/**
+ * Unit tests for {@link AddressCache} class.
+ *
+ * @author mgande
+ *
+ */
+class AddressCacheTest {
+
+    @TempDir
+    File snapshotDir;
+
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Tests that equivalent addresses have the same key.
+     */
+    @Test
+    void testKey() {
+        assertEquals("1 MAIN ST\tAPT 2\tNEW YORK\tNY\t10001", AddressCache.key(" 1  Main St. ", "Apt, 2", "new york", "ny", "10001"));
+        assertEquals(AddressCache.key("1 main st", null, "city", "st", "1"), AddressCache.key("1 MAIN ST.", "", "City", "ST", "1"));
+    }
+
+    /**
+     * Tests the hits and misses, and that the least recently used address is evicted.
+     */
+    @Test
+    void testGetAndEvict() {
+        AddressCache cache = createCache(2, 60000, "");
+        cache.put("a", address("A"));
+        cache.put("b", address("B"));
+        assertEquals("A", cache.get("a").getAddress1());
+        cache.put("c", address("C"));
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(3.0, meterRegistry.counter("address.cache.lookups", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("address.cache.lookups", "result", "miss").count());
+    }
+
+    /**
+     * Tests that an expired address is not served.
+     */
+    @Test
+    void testGetExpired() {
+        AddressCache cache = createCache(2, -1, "");
+        cache.put("a", address("A"));
+        assertNull(cache.get("a"));
+    }
+
+    /**
+     * Tests that a disabled cache holds nothing.
+     */
+    @Test
+    void testDisabled() {
+        AddressCache cache = createCache(2, 60000, "");
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        cache.put("a", address("A"));
+        assertNull(cache.get("a"));
+    }
+
+    /**
+     * Tests that a new cache is loaded from the snapshot of a closed one.
+     */
+    @Test
+    void testSnapshot() {
+        String snapshotPath = new File(snapshotDir, "address-cache.json").getPath();
+        AddressCache cache = createCache(10, 60000, snapshotPath);
+        cache.put("a", address("A"));
+        cache.close();
+
+        AddressCache restarted = createCache(10, 60000, snapshotPath);
+        assertEquals("A", restarted.get("a").getAddress1());
+        assertEquals("10", restarted.get("a").getCassCode());
+        restarted.close();
+    }
+
+    /**
+     * @param maxEntries   maximum number of addresses.
+     * @param ttlMillis    time to live of an address.
+     * @param snapshotPath snapshot file.
+     * @return initialized {@link AddressCache}
+     */
+    private AddressCache createCache(int maxEntries, long ttlMillis, String snapshotPath) {
+        AddressCache cache = new AddressCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "ttlMillis", ttlMillis);
+        ReflectionTestUtils.setField(cache, "snapshotPath", snapshotPath);
+        ReflectionTestUtils.setField(cache, "snapshotIntervalMillis", 60000L);
+        ReflectionTestUtils.setField(cache, "mapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        cache.initialize();
+        return cache;
+    }
+
+    /**
+     * @param address1 standardized address1
+     * @return {@link CertifiedAddress} with a valid CASS code.
+     */
+    private CertifiedAddress address(String address1) {
+        CertifiedAddress address = new CertifiedAddress();
+        address.setAddress1(address1);
+        address.setCassCode("10");
+        address.setCassMessage("");
+        return address;
+    }
+}
@@ -0,0 +1,125 @@
+package com.sproutloud.starter.stream.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.pool.SatoriConnectionPool;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Unit tests for {@link SatoriGateway} class.
+ *
+ * @author mgande
+ *
+ */
+class SatoriGatewayTest {
+
+    private SatoriConnectionPool satoriConnectionPool;
+
+    private QueueChannel replyChannel;
+
+    private SatoriGateway gateway;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        satoriConnectionPool = mock(SatoriConnectionPool.class);
+        replyChannel = new QueueChannel();
+        SatoriGatewayChannels satoriGatewayChannels = mock(SatoriGatewayChannels.class);
+        when(satoriGatewayChannels.satoriReplyOutput()).thenReturn(replyChannel);
+        meterRegistry = new SimpleMeterRegistry();
+        gateway = new SatoriGateway();
+        ReflectionTestUtils.setField(gateway, "satoriConnectionPool", satoriConnectionPool);
+        ReflectionTestUtils.setField(gateway, "satoriGatewayChannels", satoriGatewayChannels);
+        ReflectionTestUtils.setField(gateway, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(gateway, "workers", 2);
+        gateway.initialize();
+    }
+
+    @AfterEach
+    void close() throws InterruptedException {
+        gateway.close();
+    }
+
+    /**
+     * Tests that a request is answered with its correlation id, on the partition of the requester.
+     */
+    @Test
+    void testReceiveRequest() {
+        when(satoriConnectionPool.sendMessage("BTIB=9\taddress")).thenReturn("BTOB=9\tCERTIFIED");
+
+        gateway.receiveRequest(request(System.currentTimeMillis() + 60000));
+        Message<?> reply = replyChannel.receive(5000);
+        assertNotNull(reply);
+        assertEquals("BTOB=9\tCERTIFIED", reply.getPayload());
+        assertEquals("id-1", reply.getHeaders().get(SatoriCorrelationStore.CORRELATION_ID));
+        assertEquals(7, reply.getHeaders().get(SatoriCorrelationStore.REPLY_PARTITION));
+    }
+
+    /**
+     * Tests that a request satori did not answer gets an empty response, so the requester does not wait for its timeout.
+     */
+    @Test
+    void testReceiveRequestNoResponse() {
+        when(satoriConnectionPool.sendMessage(any())).thenReturn(null);
+
+        gateway.receiveRequest(request(System.currentTimeMillis() + 60000));
+        Message<?> reply = replyChannel.receive(5000);
+        assertNotNull(reply);
+        assertEquals("", reply.getPayload());
+    }
+
+    /**
+     * Tests that a request without a rate limit permit is answered as rate limited, not as a request satori did not answer.
+     */
+    @Test
+    void testReceiveRequestRateLimited() {
+        doThrow(new SatoriRateLimitException("No satori permit available within 100 ms")).when(satoriConnectionPool).sendMessage(any());
+
+        gateway.answer(request(System.currentTimeMillis() + 60000));
+        Message<?> reply = replyChannel.receive(0);
+        assertNotNull(reply);
+        assertEquals("true", reply.getHeaders().get(SatoriCorrelationStore.RATE_LIMITED));
+        assertEquals("id-1", reply.getHeaders().get(SatoriCorrelationStore.CORRELATION_ID));
+    }
+
+    /**
+     * Tests that a request past its deadline is dropped without being sent to satori.
+     */
+    @Test
+    void testReceiveRequestExpired() {
+        gateway.answer(request(System.currentTimeMillis() - 1));
+
+        assertNull(replyChannel.receive(0));
+        verify(satoriConnectionPool, never()).sendMessage(any());
+        assertEquals(1.0, meterRegistry.counter("satori.gateway.expired").count());
+    }
+
+    /**
+     * @param deadline time in milliseconds after which the requester no longer waits.
+     * @return address request message of a processor, with its headers as received from kafka.
+     */
+    private Message<String> request(long deadline) {
+        return MessageBuilder.withPayload("BTIB=9\taddress").setHeader(SatoriCorrelationStore.CORRELATION_ID, "id-1")
+                .setHeader(SatoriCorrelationStore.REPLY_PARTITION, "7").setHeader(SatoriCorrelationStore.DEADLINE, deadline).build();
+    }
+}
@@ -0,0 +1,121 @@
+package com.sproutloud.starter.stream.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link SatoriKafkaClient} class, with the request channel answered in place of the satori gateway.
+ *
+ * @author mgande
+ *
+ */
+class SatoriKafkaClientTest {
+
+    private final List<Message<?>> requests = new ArrayList<>();
+
+    private PublishSubscribeChannel requestChannel;
+
+    private SatoriKafkaClient client;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        requestChannel = new PublishSubscribeChannel();
+        requestChannel.subscribe(requests::add);
+        SatoriChannels satoriChannels = mock(SatoriChannels.class);
+        when(satoriChannels.satoriRequestOutput()).thenReturn(requestChannel);
+        meterRegistry = new SimpleMeterRegistry();
+        client = new SatoriKafkaClient();
+        ReflectionTestUtils.setField(client, "satoriChannels", satoriChannels);
+        ReflectionTestUtils.setField(client, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(client, "replyTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(client, "instanceIndex", 3);
+        client.initialize();
+    }
+
+    /**
+     * Tests that a request is published with its correlation headers, and joined with the response carrying its correlation id.
+     */
+    @Test
+    void testSendMessage() {
+        requestChannel.subscribe(request -> {
+            client.receiveReply(reply("another-request", "BTOB=9\tOTHER"));
+            client.receiveReply(reply((String) request.getHeaders().get(SatoriCorrelationStore.CORRELATION_ID), "BTOB=9\tCERTIFIED"));
+        });
+
+        assertEquals("BTOB=9\tCERTIFIED", client.sendMessage("BTIB=9\taddress"));
+        assertEquals(1, requests.size());
+        assertEquals("BTIB=9\taddress", requests.get(0).getPayload());
+        assertEquals(3, requests.get(0).getHeaders().get(SatoriCorrelationStore.REPLY_PARTITION));
+        assertTrue((Long) requests.get(0).getHeaders().get(SatoriCorrelationStore.DEADLINE) > System.currentTimeMillis());
+        assertEquals(1.0, meterRegistry.counter("satori.gateway.reply.unmatched").count());
+        assertEquals(0.0, meterRegistry.get("satori.gateway.pending").gauge().value());
+    }
+
+    /**
+     * Tests that an empty response of the gateway is returned as no response.
+     */
+    @Test
+    void testSendMessageEmptyReply() {
+        requestChannel.subscribe(request -> client.receiveReply(
+                reply((String) request.getHeaders().get(SatoriCorrelationStore.CORRELATION_ID), "")));
+
+        assertNull(client.sendMessage("BTIB=9\taddress"));
+    }
+
+    /**
+     * Tests that a request the gateway rate limited fails, so that the batch of its record is redelivered.
+     */
+    @Test
+    void testSendMessageRateLimited() {
+        requestChannel.subscribe(request -> client.receiveReply(MessageBuilder.withPayload("")
+                .setHeader(SatoriCorrelationStore.CORRELATION_ID, request.getHeaders().get(SatoriCorrelationStore.CORRELATION_ID))
+                .setHeader(SatoriCorrelationStore.RATE_LIMITED, "true").build()));
+
+        assertThrows(SatoriRateLimitException.class, () -> client.sendMessage("BTIB=9\taddress"));
+        assertEquals(0.0, meterRegistry.get("satori.gateway.pending").gauge().value());
+    }
+
+    /**
+     * Tests that no response is returned when the gateway does not answer within the reply timeout, and a late response is ignored.
+     */
+    @Test
+    void testSendMessageTimeout() {
+        ReflectionTestUtils.setField(client, "replyTimeoutMillis", 50L);
+
+        assertNull(client.sendMessage("BTIB=9\taddress"));
+        client.receiveReply(reply((String) requests.get(0).getHeaders().get(SatoriCorrelationStore.CORRELATION_ID), "BTOB=9\tLATE"));
+        assertEquals(1.0, meterRegistry.counter("satori.gateway.reply.timeouts").count());
+        assertEquals(1.0, meterRegistry.counter("satori.gateway.reply.unmatched").count());
+        assertEquals(0.0, meterRegistry.get("satori.gateway.pending").gauge().value());
+    }
+
+    /**
+     * @param correlationId correlation id of the request.
+     * @param response      satori response.
+     * @return response message of the gateway.
+     */
+    private Message<String> reply(String correlationId, String response) {
+        return MessageBuilder.withPayload(response).setHeader(SatoriCorrelationStore.CORRELATION_ID, correlationId).build();
+    }
+}
@@ -0,0 +1,147 @@
+package com.sproutloud.starter.stream.limiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.properties.AddressCertificationProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Unit tests for {@link SatoriRateLimiter} and {@link TokenBucket} classes.
+ *
+ * @author mgande
+ *
+ */
+class SatoriRateLimiterTest {
+
+    private StringRedisTemplate redisTemplate;
+
+    private AddressCertificationProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        properties = new AddressCertificationProperties();
+        properties.setRateLimitEnabled(true);
+        properties.setRateLimitPermitsPerSecond(10);
+        properties.setRateLimitKey("satori:rate-limit");
+        properties.setRateLimitReplicas(2);
+        properties.setRateLimitMaxWaitMillis(1000);
+        properties.setRateLimitFallbackMillis(60000);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /**
+     * Tests that the bucket admits its capacity at once, then one token per refill interval.
+     */
+    @Test
+    void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+        assertEquals(0, bucket.tryTake(0));
+        assertEquals(0, bucket.tryTake(0));
+        assertEquals(100, bucket.tryTake(0));
+        assertEquals(50, bucket.tryTake(50));
+        assertEquals(0, bucket.tryTake(100));
+        assertEquals(0, bucket.tryTake(10000));
+        assertEquals(0, bucket.tryTake(10000));
+        assertEquals(100, bucket.tryTake(10000));
+    }
+
+    /**
+     * Tests that a permit is taken from the redis bucket, waiting for the time returned by the script.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAcquireShared() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString())).thenReturn(50L, 0L);
+        SatoriRateLimiter limiter = createLimiter();
+
+        long startTime = System.nanoTime();
+        limiter.acquire();
+        assertTrue(System.nanoTime() - startTime >= 50_000_000L);
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString());
+        assertEquals(0.0, meterRegistry.counter("satori.rate-limit.fallbacks").count());
+    }
+
+    /**
+     * Tests that a request fails once no permit is available within the maximum wait, after waiting for it.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAcquireRejected() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString())).thenReturn(500L);
+        properties.setRateLimitMaxWaitMillis(100);
+        SatoriRateLimiter limiter = createLimiter();
+
+        long startTime = System.nanoTime();
+        assertThrows(SatoriRateLimitException.class, limiter::acquire);
+        assertTrue(System.nanoTime() - startTime >= 100_000_000L);
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1.0, meterRegistry.counter("satori.rate-limit.rejected").count());
+    }
+
+    /**
+     * Tests that while redis is unavailable, the replica's share of the rate is admitted locally, without calling redis again.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAcquireFallback() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenThrow(new RedisConnectionFailureException("unavailable"));
+        SatoriRateLimiter limiter = createLimiter();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString());
+        assertEquals(1.0, meterRegistry.counter("satori.rate-limit.fallbacks").count());
+    }
+
+    /**
+     * Tests that a disabled limiter admits every request without calling redis.
+     */
+    @Test
+    void testDisabled() {
+        properties.setRateLimitEnabled(false);
+        SatoriRateLimiter limiter = createLimiter();
+
+        limiter.acquire();
+        assertTrue(limiter.tryAcquire());
+        verifyNoInteractions(redisTemplate);
+    }
+
+    /**
+     * @return initialized {@link SatoriRateLimiter}
+     */
+    private SatoriRateLimiter createLimiter() {
+        SatoriRateLimiter limiter = new SatoriRateLimiter();
+        ReflectionTestUtils.setField(limiter, "properties", properties);
+        ReflectionTestUtils.setField(limiter, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(limiter, "meterRegistry", meterRegistry);
+        limiter.initialize();
+        return limiter;
+    }
+}
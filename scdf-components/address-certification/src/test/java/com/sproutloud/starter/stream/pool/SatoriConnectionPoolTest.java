@@ -0,0 +1,376 @@
+package com.sproutloud.starter.stream.pool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.sproutloud.starter.stream.exception.SatoriRateLimitException;
+import com.sproutloud.starter.stream.limiter.SatoriRateLimiter;
+import com.sproutloud.starter.stream.properties.AddressCertificationProperties;
+import com.sproutloud.starter.stream.properties.ApplicationConstants;
+import com.sproutloud.starter.stream.simulator.SatoriSimulator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link SatoriConnectionPool} class, against {@link SatoriSimulator}s.
+ *
+ * @author mgande
+ *
+ */
+class SatoriConnectionPoolTest {
+
+    private SatoriSimulator first;
+
+    private SatoriSimulator second;
+
+    private SatoriConnectionPool pool;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void init() throws IOException {
+        first = new SatoriSimulator();
+        second = new SatoriSimulator();
+        pool = createPool("127.0.0.1:" + first.getPort() + ",127.0.0.1:" + second.getPort(), 2, 1);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        pool.close();
+        first.close();
+        second.close();
+    }
+
+    /**
+     * Tests that the connections are handshaked once, and reused for the requests.
+     */
+    @Test
+    void testSendMessage() {
+        assertEquals(4, first.getHandshakes() + second.getHandshakes());
+        assertEquals("ONE", address1(pool.sendMessage(request("one"))));
+        assertEquals("TWO", address1(pool.sendMessage(request("two"))));
+        assertEquals(2, first.getRequests() + second.getRequests());
+        assertEquals(4, first.getConnections().size() + second.getConnections().size());
+        assertEquals(2, meterRegistry.find("satori.call.latency").timers().stream().mapToLong(timer -> timer.count()).sum());
+    }
+
+    /**
+     * Tests that connections are borrowed from the endpoint with the least outstanding requests, and that borrowing waits for a
+     * connection to be released.
+     */
+    @Test
+    void testBorrowLeastOutstanding() {
+        SatoriConnection connection1 = pool.borrow();
+        SatoriConnection connection2 = pool.borrow();
+        assertNotEquals(connection1.getEndpoint(), connection2.getEndpoint());
+        SatoriConnection connection3 = pool.borrow();
+        SatoriConnection connection4 = pool.borrow();
+        assertNotEquals(connection3.getEndpoint(), connection4.getEndpoint());
+        assertNull(pool.borrow());
+
+        pool.release(connection2);
+        assertNotNull(pool.borrow());
+        assertEquals(6, meterRegistry.timer("satori.pool.wait").count());
+    }
+
+    /**
+     * Tests that an idle connection closed by the server is reconnected by the health check.
+     *
+     * @throws IOException if unable to close the server side socket.
+     * @throws InterruptedException if interrupted while waiting for the close.
+     */
+    @Test
+    void testCheckIdleConnections() throws IOException, InterruptedException {
+        ReflectionTestUtils.setField(ReflectionTestUtils.getField(pool, "properties"), "healthCheckIntervalMillis", 0L);
+        first.getConnections().get(0).close();
+        Thread.sleep(50);
+
+        pool.checkIdleConnections();
+
+        assertEquals(1.0, meterRegistry.counter("satori.reconnects", "endpoint", "127.0.0.1:" + first.getPort()).count());
+        assertEquals(0.0, meterRegistry.counter("satori.reconnects", "endpoint", "127.0.0.1:" + second.getPort()).count());
+        assertEquals(3, first.getConnections().size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("OK", address1(pool.sendMessage(request("ok"))));
+        }
+    }
+
+    /**
+     * Tests that the requests of concurrent callers are pipelined on a single connection, and each gets its own response.
+     *
+     * @throws Exception if a caller fails.
+     */
+    @Test
+    void testSendMessagePipelined() throws Exception {
+        pool.close();
+        pool = createPool("127.0.0.1:" + first.getPort(), 1, 4);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String address = "address" + i;
+                responses.add(callers.submit(() -> pool.sendMessage(request(address))));
+            }
+            for (int i = 0; i < 40; i++) {
+                assertEquals("ADDRESS" + i, address1(responses.get(i).get(5, TimeUnit.SECONDS)));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(3, first.getConnections().size());
+    }
+
+    /**
+     * Tests that the responses of pipelined requests are matched in request order.
+     *
+     * @throws Exception if a request fails.
+     */
+    @Test
+    void testSubmit() throws Exception {
+        SatoriConnection connection = new SatoriConnection(new SatoriEndpoint("127.0.0.1", second.getPort()), "licence", 1000, 4,
+                meterRegistry.counter("test.reconnects"));
+        connection.startConnection();
+        try {
+            CompletableFuture<String> response1 = connection.submit(request("a"));
+            CompletableFuture<String> response2 = connection.submit(request("b"));
+            CompletableFuture<String> response3 = connection.submit(request("c"));
+            assertEquals("A", address1(response1.get(5, TimeUnit.SECONDS)));
+            assertEquals("B", address1(response2.get(5, TimeUnit.SECONDS)));
+            assertEquals("C", address1(response3.get(5, TimeUnit.SECONDS)));
+        } finally {
+            connection.stopConnection();
+        }
+    }
+
+    /**
+     * Tests that a pipelined request whose connection is lost is retried on a re-established connection.
+     */
+    @Test
+    void testSendMessagePipelinedFailover() {
+        pool.close();
+        pool = createPool("127.0.0.1:" + first.getPort(), 1, 4);
+        first.dropNext();
+
+        assertEquals("LOST", address1(pool.sendMessage(request("lost"))));
+        assertEquals(1.0, meterRegistry.counter("satori.reconnects", "endpoint", "127.0.0.1:" + first.getPort()).count());
+    }
+
+    /**
+     * Tests that a request without a response within the deadline is retried, and skipped after the last attempt.
+     */
+    @Test
+    void testSendMessageTimeout() {
+        pool.close();
+        AddressCertificationProperties properties = properties("127.0.0.1:" + first.getPort(), 1, 1);
+        properties.setRequestTimeoutMillis(100);
+        properties.setMaxAttempts(2);
+        pool = createPool(properties);
+        first.latency(500, 0);
+
+        long startTime = System.nanoTime();
+        assertNull(pool.sendMessage(request("slow")));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 450);
+        assertEquals(2.0, meterRegistry.counter("satori.timeouts").count());
+        assertEquals(1.0, meterRegistry.counter("satori.retries").count());
+    }
+
+    /**
+     * Tests that a request slower than the p95 latency is sent once more on another connection, and the first response is returned.
+     */
+    @Test
+    void testSendMessageHedged() {
+        pool.close();
+        AddressCertificationProperties properties = properties("127.0.0.1:" + first.getPort(), 2, 1);
+        properties.setHedgeEnabled(true);
+        properties.setHedgeMinDelayMillis(20);
+        pool = createPool(properties);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("WARMUP" + i, address1(pool.sendMessage(request("warmup" + i))));
+        }
+        assertEquals(0.0, meterRegistry.counter("satori.hedges").count());
+        first.delayNext(2000);
+
+        long startTime = System.nanoTime();
+        assertEquals("HEDGED", address1(pool.sendMessage(request("hedged"))));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 500);
+        assertEquals(1.0, meterRegistry.counter("satori.hedges").count());
+        assertEquals(0.0, meterRegistry.counter("satori.retries").count());
+    }
+
+    /**
+     * Tests that a slow request is not duplicated while no other connection is idle, instead of waiting for one to be released.
+     */
+    @Test
+    void testSendMessageHedgeSkipped() {
+        pool.close();
+        AddressCertificationProperties properties = properties("127.0.0.1:" + first.getPort(), 1, 1);
+        properties.setHedgeEnabled(true);
+        properties.setHedgeMinDelayMillis(20);
+        properties.setBorrowTimeoutMillis(5000);
+        pool = createPool(properties);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("WARMUP" + i, address1(pool.sendMessage(request("warmup" + i))));
+        }
+        first.delayNext(300);
+
+        assertEquals("SLOW", address1(pool.sendMessage(request("slow"))));
+        assertEquals(0.0, meterRegistry.counter("satori.hedges").count());
+        assertEquals(21, first.getRequests());
+    }
+
+    /**
+     * Tests that a request without a rate limit permit fails without being sent, instead of being skipped with no response.
+     */
+    @Test
+    void testSendMessageRateLimited() {
+        SatoriRateLimiter rateLimiter = mock(SatoriRateLimiter.class);
+        doThrow(new SatoriRateLimitException("No satori permit available within 100 ms")).when(rateLimiter).acquire();
+        ReflectionTestUtils.setField(pool, "rateLimiter", rateLimiter);
+
+        assertThrows(SatoriRateLimitException.class, () -> pool.sendMessage(request("limited")));
+        assertEquals(0, first.getRequests() + second.getRequests());
+    }
+
+    /**
+     * Tests that the circuit opens after consecutive failures, and the requests are then skipped without being sent.
+     */
+    @Test
+    void testSendMessageCircuitOpen() {
+        pool.close();
+        AddressCertificationProperties properties = properties("127.0.0.1:" + first.getPort(), 1, 1);
+        properties.setMaxAttempts(1);
+        properties.setCircuitFailureThreshold(2);
+        properties.setCircuitOpenMillis(60000);
+        pool = createPool(properties);
+        first.errorRate(1.0);
+
+        assertNull(pool.sendMessage(request("first")));
+        assertNull(pool.sendMessage(request("second")));
+        assertEquals(2, first.getRequests());
+        assertEquals(1.0, meterRegistry.get("satori.circuit.open").gauge().value());
+
+        assertNull(pool.sendMessage(request("rejected")));
+        assertEquals(2, first.getRequests());
+        assertEquals(1.0, meterRegistry.counter("satori.circuit.rejected").count());
+    }
+
+    /**
+     * Tests that a request skipped by the open circuit takes no rate limit permit, and that a trial request without a permit lets the
+     * next request through as the trial.
+     */
+    @Test
+    void testSendMessageCircuitBeforePermit() {
+        pool.close();
+        AddressCertificationProperties properties = properties("127.0.0.1:" + first.getPort(), 1, 1);
+        properties.setMaxAttempts(1);
+        properties.setCircuitFailureThreshold(1);
+        properties.setCircuitOpenMillis(0);
+        pool = createPool(properties);
+        first.errorRate(1.0);
+        assertNull(pool.sendMessage(request("first")));
+        SatoriRateLimiter rateLimiter = mock(SatoriRateLimiter.class);
+        doThrow(new SatoriRateLimitException("No satori permit available within 100 ms")).doNothing().when(rateLimiter).acquire();
+        ReflectionTestUtils.setField(pool, "rateLimiter", rateLimiter);
+        first.errorRate(0.0);
+
+        assertThrows(SatoriRateLimitException.class, () -> pool.sendMessage(request("limited")));
+        assertEquals("TRIAL", address1(pool.sendMessage(request("trial"))));
+        assertEquals(SatoriCircuitBreaker.State.CLOSED,
+                ((SatoriCircuitBreaker) ReflectionTestUtils.getField(pool, "circuitBreaker")).getState());
+
+        ReflectionTestUtils.setField(pool, "circuitBreaker", new SatoriCircuitBreaker(1, 60000));
+        ((SatoriCircuitBreaker) ReflectionTestUtils.getField(pool, "circuitBreaker")).recordFailure();
+        assertNull(pool.sendMessage(request("rejected")));
+        verify(rateLimiter, times(2)).acquire();
+    }
+
+    /**
+     * @param endpoints              comma separated host:port values.
+     * @param connectionsPerEndpoint number of connections per endpoint.
+     * @param pipelineWindow         maximum number of requests in flight per connection.
+     * @return initialized {@link SatoriConnectionPool}
+     */
+    private SatoriConnectionPool createPool(String endpoints, int connectionsPerEndpoint, int pipelineWindow) {
+        return createPool(properties(endpoints, connectionsPerEndpoint, pipelineWindow));
+    }
+
+    /**
+     * @param endpoints              comma separated host:port values.
+     * @param connectionsPerEndpoint number of connections per endpoint.
+     * @param pipelineWindow         maximum number of requests in flight per connection.
+     * @return {@link AddressCertificationProperties} of a pool, with short timeouts and hedging disabled.
+     */
+    private AddressCertificationProperties properties(String endpoints, int connectionsPerEndpoint, int pipelineWindow) {
+        AddressCertificationProperties properties = new AddressCertificationProperties();
+        properties.setSatoriEndpoints(endpoints);
+        properties.setConnectionsPerEndpoint(connectionsPerEndpoint);
+        properties.setPipelineWindow(pipelineWindow);
+        properties.setBorrowTimeoutMillis(100);
+        properties.setHealthCheckIntervalMillis(60000);
+        properties.setConnectTimeoutMillis(1000);
+        properties.setRequestTimeoutMillis(1000);
+        properties.setMaxAttempts(3);
+        properties.setRetryBackoffMillis(10);
+        properties.setCircuitFailureThreshold(10);
+        properties.setCircuitOpenMillis(1000);
+        return properties;
+    }
+
+    /**
+     * @param properties properties of the pool.
+     * @return initialized {@link SatoriConnectionPool}
+     */
+    private SatoriConnectionPool createPool(AddressCertificationProperties properties) {
+        meterRegistry = new SimpleMeterRegistry();
+        SatoriConnectionPool satoriConnectionPool = new SatoriConnectionPool();
+        ReflectionTestUtils.setField(satoriConnectionPool, "properties", properties);
+        ReflectionTestUtils.setField(satoriConnectionPool, "meterRegistry", meterRegistry);
+        SatoriRateLimiter rateLimiter = new SatoriRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "properties", properties);
+        ReflectionTestUtils.setField(rateLimiter, "meterRegistry", meterRegistry);
+        rateLimiter.initialize();
+        ReflectionTestUtils.setField(satoriConnectionPool, "rateLimiter", rateLimiter);
+        satoriConnectionPool.initialize();
+        return satoriConnectionPool;
+    }
+
+    /**
+     * @param address1 address1 of the request.
+     * @return address request of the address1.
+     */
+    private String request(String address1) {
+        String data = "\t" + address1 + "\t\tcity\tst\t12345\n";
+        return ApplicationConstants.INPUTMSGCODE + data.length() + data;
+    }
+
+    /**
+     * @param response address response.
+     * @return address1 of the response.
+     */
+    private String address1(String response) {
+        return response.split("\t", -1)[1];
+    }
+}
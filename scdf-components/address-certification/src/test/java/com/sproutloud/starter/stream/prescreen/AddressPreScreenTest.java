@@ -0,0 +1,149 @@
+package com.sproutloud.starter.stream.prescreen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Unit tests for {@link AddressPreScreen} and {@link ZipStateTable} classes.
+ *
+ * @author mgande
+ *
+ */
+class AddressPreScreenTest {
+
+    @TempDir
+    File tableDir;
+
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Tests the state of ZIP prefixes of the bundled table.
+     *
+     * @throws IOException if unable to read the table.
+     */
+    @Test
+    void testBundledTable() throws IOException {
+        ZipStateTable table = ZipStateTable.bundled();
+        assertEquals("NY", table.state("10001"));
+        assertEquals("MA", table.state("02134"));
+        assertEquals("PR", table.state("00901"));
+        assertEquals("CA", table.state("90210-1234"));
+        assertEquals("TX", table.state("88510"));
+        assertEquals("AK", table.state("99501"));
+        assertNull(table.state("00012"));
+        assertNull(table.state("96910"));
+        assertEquals("ID", table.state("83401"));
+        assertNull(table.state("83414"));
+        assertNull(table.state("06390-1234"));
+        assertNull(table.state("73960"));
+    }
+
+    /**
+     * Tests that the ZIP codes delivered in another state than their prefix are let through with the state they are delivered in.
+     *
+     * @throws IOException if unable to read the table.
+     */
+    @Test
+    void testScreenCrossStateZip() throws IOException {
+        AddressPreScreen preScreen = createPreScreen(true, "");
+        assertNull(preScreen.screen("1 Main St", "", "Alta", "WY", "83414"));
+        assertNull(preScreen.screen("1 Main St", "", "Fishers Island", "NY", "06390"));
+        assertNull(preScreen.screen("1 Main St", "", "Texhoma", "TX", "73960"));
+        assertEquals(AddressPreScreen.POSTAL_CODE_STATE_MISMATCH, preScreen.screen("1 Main St", "", "Idaho Falls", "WY", "83401"));
+        assertEquals(1.0,
+                meterRegistry.counter("address.prescreen.rejected", "reason", AddressPreScreen.POSTAL_CODE_STATE_MISMATCH).count());
+    }
+
+    /**
+     * Tests that the plausible addresses are let through, including the ones Satori can correct.
+     *
+     * @throws IOException if unable to read the table.
+     */
+    @Test
+    void testScreenPlausible() throws IOException {
+        AddressPreScreen preScreen = createPreScreen(true, "");
+        assertNull(preScreen.screen("1 Main St", "", "New York", "NY", "10001"));
+        assertNull(preScreen.screen("", "1 Main St", "New York", "new york", "10001-1234"));
+        assertNull(preScreen.screen("1 Main St", null, "Boston", "MA", ""));
+        assertNull(preScreen.screen("1 Main St", null, "Boston", "Mass", "02134"));
+        assertNull(preScreen.screen("1 Main St", null, "Boston", "MA", "2134"));
+        assertNull(preScreen.screen("1 Main St", null, null, null, "02134"));
+        assertNull(preScreen.screen("1 Main St", null, "Holtsville", "N.Y.", "00501"));
+        assertEquals(0, meterRegistry.find("address.prescreen.rejected").counters().size());
+    }
+
+    /**
+     * Tests the reason of each address rejected locally.
+     *
+     * @throws IOException if unable to read the table.
+     */
+    @Test
+    void testScreenRejected() throws IOException {
+        AddressPreScreen preScreen = createPreScreen(true, "");
+        assertEquals(AddressPreScreen.MISSING_STREET, preScreen.screen(" ", null, "New York", "NY", "10001"));
+        assertEquals(AddressPreScreen.MISSING_POSTAL_CODE, preScreen.screen("1 Main St", "", "New York", "", ""));
+        assertEquals(AddressPreScreen.INVALID_POSTAL_CODE, preScreen.screen("1 Main St", "", "", "NY", "1000A"));
+        assertEquals(AddressPreScreen.UNKNOWN_STATE, preScreen.screen("1 Main St", "", "Springfield", "Nowhere", ""));
+        assertEquals(AddressPreScreen.POSTAL_CODE_STATE_MISMATCH, preScreen.screen("1 Main St", "", "New York", "NY", "90210"));
+        assertEquals(1.0, meterRegistry.counter("address.prescreen.rejected", "reason", AddressPreScreen.MISSING_STREET).count());
+    }
+
+    /**
+     * Tests that a table file is memory-mapped in place of the bundled table.
+     *
+     * @throws IOException if unable to write or map the table.
+     */
+    @Test
+    void testMappedTable() throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            records.append("TX\n");
+        }
+        records.append("10002\n");
+        File table = new File(tableDir, "zip3-states.txt");
+        Files.write(table.toPath(), records.toString().getBytes(StandardCharsets.US_ASCII));
+
+        AddressPreScreen preScreen = createPreScreen(true, table.getPath());
+        assertNull(preScreen.screen("1 Main St", "", "Dallas", "TX", "10001"));
+        assertEquals(AddressPreScreen.POSTAL_CODE_STATE_MISMATCH, preScreen.screen("1 Main St", "", "New York", "NY", "10001"));
+        assertNull(preScreen.screen("1 Main St", "", "New York", "NY", "10002"));
+    }
+
+    /**
+     * Tests that a disabled pre-screen lets every address through.
+     *
+     * @throws IOException if unable to read the table.
+     */
+    @Test
+    void testDisabled() throws IOException {
+        AddressPreScreen preScreen = createPreScreen(false, "");
+        assertNull(preScreen.screen("", "", "", "", ""));
+    }
+
+    /**
+     * @param enabled   enables the pre-screen.
+     * @param tablePath table file, the bundled table if empty.
+     * @return initialized {@link AddressPreScreen}
+     * @throws IOException if unable to read the table.
+     */
+    private AddressPreScreen createPreScreen(boolean enabled, String tablePath) throws IOException {
+        AddressPreScreen preScreen = new AddressPreScreen();
+        ReflectionTestUtils.setField(preScreen, "enabled", enabled);
+        ReflectionTestUtils.setField(preScreen, "tablePath", tablePath);
+        ReflectionTestUtils.setField(preScreen, "meterRegistry", meterRegistry);
+        preScreen.initialize();
+        return preScreen;
+    }
+}
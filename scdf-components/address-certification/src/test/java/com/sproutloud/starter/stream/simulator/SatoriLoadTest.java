@@ -0,0 +1,199 @@
+package com.sproutloud.starter.stream.simulator;
+
+import static com.sproutloud.starter.stream.properties.ApplicationConstants.ADDRESS1;
+import static com.sproutloud.starter.stream.properties.ApplicationConstants.ADDRESS2;
+import static com.sproutloud.starter.stream.properties.ApplicationConstants.CITY;
+import static com.sproutloud.starter.stream.properties.ApplicationConstants.STATE;
+import static com.sproutloud.starter.stream.properties.ApplicationConstants.ZIP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sproutloud.starter.stream.AddressCertificationApplication;
+import com.sproutloud.starter.stream.cache.AddressCache;
+import com.sproutloud.starter.stream.limiter.SatoriRateLimiter;
+import com.sproutloud.starter.stream.pool.SatoriConnectionPool;
+import com.sproutloud.starter.stream.prescreen.AddressPreScreen;
+import com.sproutloud.starter.stream.properties.AddressCertificationProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of {@link AddressCertificationApplication} against a {@link SatoriSimulator}, reporting the certification throughput and
+ * latency percentiles. The defaults keep the run short enough for every build; a benchmark is run with larger values, e.g.
+ *
+ * mvn test -Dtest=SatoriLoadTest -Dsatori.load.records=200000 -Dsatori.load.callers=64 -Dsatori.load.pipeline-window=8
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+class SatoriLoadTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Certifies satori.load.records records from satori.load.callers threads, over satori.load.connections connections with
+     * satori.load.pipeline-window requests in flight each, against a simulator with satori.load.latency-ms latency plus up to
+     * satori.load.latency-jitter-ms, satori.load.error-rate empty responses and satori.load.drop-rate dropped connections.
+     *
+     * @throws Exception if a record fails.
+     */
+    @Test
+    void testCertificationThroughput() throws Exception {
+        int records = Integer.getInteger("satori.load.records", 2000);
+        int callers = Integer.getInteger("satori.load.callers", 8);
+        int connections = Integer.getInteger("satori.load.connections", 4);
+        int pipelineWindow = Integer.getInteger("satori.load.pipeline-window", 1);
+        double errorRate = Double.parseDouble(System.getProperty("satori.load.error-rate", "0"));
+        double dropRate = Double.parseDouble(System.getProperty("satori.load.drop-rate", "0"));
+        SatoriSimulator simulator = new SatoriSimulator()
+                .latency(Long.getLong("satori.load.latency-ms", 1), Long.getLong("satori.load.latency-jitter-ms", 1))
+                .errorRate(errorRate)
+                .dropRate(dropRate);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SatoriConnectionPool pool = createPool(simulator, connections, pipelineWindow, meterRegistry);
+        AddressCertificationApplication app = createApplication(pool, meterRegistry);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            long[] latencies = new long[records];
+            AtomicInteger certified = new AtomicInteger();
+            List<Future<?>> results = new ArrayList<>(records);
+            long startTime = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                Message<String> message = message(i);
+                int index = i;
+                results.add(executor.submit(() -> {
+                    long callStart = System.nanoTime();
+                    Map<String, Object> output = app.verifyAddress(message);
+                    latencies[index] = System.nanoTime() - callStart;
+                    if ("done".equals(output.get("address_certification"))) {
+                        certified.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.MINUTES);
+            }
+            long elapsedNanos = System.nanoTime() - startTime;
+            Arrays.sort(latencies);
+            log.info(String.format("Certified %d of %d records in %d ms with %d callers, %d connections, pipeline window %d: "
+                    + "%.0f records/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d reconnects", certified.get(), records,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), callers, connections, pipelineWindow,
+                    records * 1e9 / elapsedNanos, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    latencies[records - 1] / 1e6, (long) meterRegistry.counter("satori.reconnects", "endpoint",
+                            "127.0.0.1:" + simulator.getPort()).count()));
+            if (errorRate == 0 && dropRate == 0) {
+                assertEquals(records, certified.get());
+                assertEquals(records, simulator.getRequests());
+            }
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+            simulator.close();
+        }
+    }
+
+    /**
+     * @param simulator      simulator to connect to.
+     * @param connections    number of connections.
+     * @param pipelineWindow maximum number of requests in flight per connection.
+     * @param meterRegistry  registry of the pool metrics.
+     * @return initialized {@link SatoriConnectionPool}
+     */
+    private SatoriConnectionPool createPool(SatoriSimulator simulator, int connections, int pipelineWindow, MeterRegistry meterRegistry) {
+        AddressCertificationProperties properties = new AddressCertificationProperties();
+        properties.setSatoriEndpoints("127.0.0.1:" + simulator.getPort());
+        properties.setConnectionsPerEndpoint(connections);
+        properties.setPipelineWindow(pipelineWindow);
+        properties.setBorrowTimeoutMillis(60000);
+        properties.setHealthCheckIntervalMillis(60000);
+        properties.setConnectTimeoutMillis(1000);
+        properties.setRequestTimeoutMillis(5000);
+        properties.setMaxAttempts(3);
+        properties.setRetryBackoffMillis(10);
+        properties.setCircuitFailureThreshold(Integer.MAX_VALUE);
+        properties.setCircuitOpenMillis(1000);
+        SatoriConnectionPool pool = new SatoriConnectionPool();
+        ReflectionTestUtils.setField(pool, "properties", properties);
+        ReflectionTestUtils.setField(pool, "meterRegistry", meterRegistry);
+        SatoriRateLimiter rateLimiter = new SatoriRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "properties", properties);
+        ReflectionTestUtils.setField(rateLimiter, "meterRegistry", meterRegistry);
+        rateLimiter.initialize();
+        ReflectionTestUtils.setField(pool, "rateLimiter", rateLimiter);
+        pool.initialize();
+        return pool;
+    }
+
+    /**
+     * @param pool          pool of satori connections.
+     * @param meterRegistry registry of the cache metrics.
+     * @return {@link AddressCertificationApplication} using the pool, with the address cache disabled.
+     * @throws IOException if unable to read the ZIP state table.
+     */
+    private AddressCertificationApplication createApplication(SatoriConnectionPool pool, MeterRegistry meterRegistry) throws IOException {
+        AddressCache addressCache = new AddressCache();
+        ReflectionTestUtils.setField(addressCache, "mapper", mapper);
+        ReflectionTestUtils.setField(addressCache, "meterRegistry", meterRegistry);
+        addressCache.initialize();
+        AddressPreScreen addressPreScreen = new AddressPreScreen();
+        ReflectionTestUtils.setField(addressPreScreen, "enabled", true);
+        ReflectionTestUtils.setField(addressPreScreen, "tablePath", "");
+        ReflectionTestUtils.setField(addressPreScreen, "meterRegistry", meterRegistry);
+        addressPreScreen.initialize();
+        AddressCertificationApplication app = new AddressCertificationApplication();
+        ReflectionTestUtils.setField(app, "satoriClient", pool);
+        ReflectionTestUtils.setField(app, "addressCache", addressCache);
+        ReflectionTestUtils.setField(app, "addressPreScreen", addressPreScreen);
+        ReflectionTestUtils.setField(app, "mapper", mapper);
+        return app;
+    }
+
+    /**
+     * @param index index of the record.
+     * @return incoming message of a record with a distinct address.
+     * @throws JsonProcessingException if unable to write the payload.
+     */
+    private Message<String> message(int index) throws JsonProcessingException {
+        Map<String, Object> fieldsData = new HashMap<>();
+        fieldsData.put(ADDRESS1, index + " main st");
+        fieldsData.put(ADDRESS2, "");
+        fieldsData.put(CITY, "springfield");
+        fieldsData.put(STATE, "il");
+        fieldsData.put(ZIP, "62701");
+        Map<String, Object> input = new HashMap<>();
+        input.put("fields_data", fieldsData);
+        return MessageBuilder.withPayload(mapper.writeValueAsString(input)).build();
+    }
+
+    /**
+     * @param sortedNanos sorted latencies in nanoseconds.
+     * @param percentile  percentile between 0 and 1.
+     * @return latency of the percentile in milliseconds.
+     */
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+}
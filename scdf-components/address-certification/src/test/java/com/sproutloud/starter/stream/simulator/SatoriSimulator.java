@@ -0,0 +1,279 @@
+package com.sproutloud.starter.stream.simulator;
+
+import static com.sproutloud.starter.stream.properties.ApplicationConstants.INPUTMSGCODE;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable Satori server speaking the handshake and the INPUTMSGCODE/OUTPUTMSGCODE framing, for tests and benchmarks of address
+ * certification without a Satori instance.
+ *
+ * Every line of the handshake is acknowledged. An address request is answered with the upper cased address and CASS code 10, or CASS
+ * code 412 when address1 is empty or the zip is not 5 or 9 digits. Each connection answers in request order, after the configured
+ * latency from the arrival of the request, so pipelined requests overlap like on a real server. A configurable fraction of the requests
+ * get an empty response line, and a fraction are dropped by closing the connection without an answer.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+public class SatoriSimulator {
+
+    private final ServerSocket serverSocket;
+
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong handshakes = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicBoolean dropNext = new AtomicBoolean();
+
+    private final AtomicLong delayNextMillis = new AtomicLong();
+
+    private volatile long latencyMillis;
+
+    private volatile long latencyJitterMillis;
+
+    private volatile double errorRate;
+
+    private volatile double dropRate;
+
+    /**
+     * Starts a simulator on a free port.
+     *
+     * @throws IOException if unable to open the server socket.
+     */
+    public SatoriSimulator() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Starts a simulator.
+     *
+     * @param port port to listen on, 0 for a free port.
+     * @throws IOException if unable to open the server socket.
+     */
+    public SatoriSimulator(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(this::accept, "satori-simulator-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @param latencyMillis       time in milliseconds from the arrival of a request to its response.
+     * @param latencyJitterMillis maximum random time in milliseconds added to the latency.
+     * @return this simulator.
+     */
+    public SatoriSimulator latency(long latencyMillis, long latencyJitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+        return this;
+    }
+
+    /**
+     * @param errorRate fraction of the address requests answered with an empty line.
+     * @return this simulator.
+     */
+    public SatoriSimulator errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param dropRate fraction of the address requests on which the connection is closed without an answer.
+     * @return this simulator.
+     */
+    public SatoriSimulator dropRate(double dropRate) {
+        this.dropRate = dropRate;
+        return this;
+    }
+
+    /**
+     * Closes the connection receiving the next address request without an answer.
+     */
+    public void dropNext() {
+        dropNext.set(true);
+    }
+
+    /**
+     * Adds a delay to the response of the next address request, delaying the later responses of its connection too.
+     *
+     * @param delayMillis time in milliseconds added to the latency of the next request.
+     */
+    public void delayNext(long delayMillis) {
+        delayNextMillis.set(delayMillis);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return accepted connections, including the closed ones.
+     */
+    public List<Socket> getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return number of completed handshakes.
+     */
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    /**
+     * @return number of address requests received.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Stops listening and closes all the connections.
+     *
+     * @throws IOException if unable to close a socket.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread reader = new Thread(() -> serve(socket), "satori-simulator-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the requests of a connection and queues their responses for the writer of the connection.
+     *
+     * @param socket accepted socket.
+     */
+    private void serve(Socket socket) {
+        BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+            Thread writer = new Thread(() -> write(socket, out, responses), "satori-simulator-writer");
+            writer.setDaemon(true);
+            writer.start();
+            String line;
+            long lastDue = 0;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith(INPUTMSGCODE)) {
+                    if (line.startsWith("BTI2")) {
+                        handshakes.incrementAndGet();
+                    }
+                    responses.put(new Response(0, "BTO" + line.charAt(3) + "=2\t0"));
+                    continue;
+                }
+                requests.incrementAndGet();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                if (dropNext.compareAndSet(true, false) || random.nextDouble() < dropRate) {
+                    responses.put(Response.DROP);
+                    break;
+                }
+                long jitter = latencyJitterMillis > 0 ? random.nextLong(latencyJitterMillis + 1) : 0;
+                long delay = delayNextMillis.getAndSet(0);
+                lastDue = Math.max(lastDue, System.currentTimeMillis() + latencyMillis + jitter + delay);
+                responses.put(new Response(lastDue, random.nextDouble() < errorRate ? "" : certify(line)));
+            }
+        } catch (IOException e) {
+            log.debug("simulator connection closed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        responses.offer(Response.DROP);
+    }
+
+    /**
+     * Writes the queued responses of a connection when due, in order.
+     *
+     * @param socket    accepted socket.
+     * @param out       output of the socket.
+     * @param responses queued responses.
+     */
+    private void write(Socket socket, PrintWriter out, BlockingQueue<Response> responses) {
+        try {
+            while (true) {
+                Response response = responses.take();
+                if (response == Response.DROP) {
+                    socket.close();
+                    return;
+                }
+                long wait = response.due - System.currentTimeMillis();
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+                out.print(response.line + "\n");
+                if (responses.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.debug("simulator connection closed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param request address request line.
+     * @return certified address response line.
+     */
+    static String certify(String request) {
+        String[] fields = request.substring(request.indexOf('\t') + 1).split("\t", -1);
+        String[] address = new String[5];
+        for (int i = 0; i < address.length; i++) {
+            address[i] = i < fields.length ? fields[i].trim().toUpperCase(Locale.ROOT) : "";
+        }
+        boolean valid = !address[0].isEmpty() && address[4].replace("-", "").matches("\\d{5}|\\d{9}");
+        String data = "\t" + String.join("\t", address) + "\t" + (valid ? "10\t" : "412\tInvalid Address or Postal code");
+        return "BTOB=" + data.length() + data;
+    }
+
+    /**
+     * Response line of a connection, written at the due time.
+     */
+    private static class Response {
+
+        private static final Response DROP = new Response(0, null);
+
+        private final long due;
+
+        private final String line;
+
+        Response(long due, String line) {
+            this.due = due;
+            this.line = line;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.sproutloud.starter.stream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sproutloud.starter.stream.model.PipelineRecord;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -13,7 +13,6 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.support.MessageBuilder;
 
-import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -51,10 +50,8 @@ public class CertificationRouterApplication {
      */
     @StreamListener(MultiOutputProcessor.INPUT)
     public void route(Message<?> message) throws JsonProcessingException {
-        JsonNode jsonNode = mapper.readTree((String) Objects.requireNonNull(message).getPayload());
-        Map<String, Object> payload = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
-        payload.put(StringUtils.IN_TIME, System.currentTimeMillis());
+        PipelineRecord payload = PayloadDecoder.decode(mapper, message, PipelineRecord.class);
+        payload.setInTime(System.currentTimeMillis());
         routeToChannel(payload);
     }
 
@@ -71,23 +68,23 @@ public class CertificationRouterApplication {
      *
      * @param payload incoming json message with certification data
      */
-    private void routeToChannel(Map<String, Object> payload) {
+    private void routeToChannel(PipelineRecord payload) {
         MessageChannel messageChannel = processor.transformationOutput();
         String jobType = "certification_router";
-        if (Objects.equals(payload.get(StringUtils.EMAIL_CERTIFICATION), StringUtils.IS_CERTIFICATION_REQUIRED)) {
+        if (Objects.equals(payload.getEmailCertification(), StringUtils.IS_CERTIFICATION_REQUIRED)) {
             messageChannel = processor.emailOutput();
             jobType = "to_email_certification";
-        } else if (Objects.equals(payload.get(StringUtils.PHONE_CERTIFICATION),
+        } else if (Objects.equals(payload.getPhoneCertification(),
                 StringUtils.IS_CERTIFICATION_REQUIRED)) {
             messageChannel = processor.phoneOutput();
             jobType = "to_phone_certification";
-        } else if (Objects.equals(payload.get(StringUtils.ADDRESS_CERTIFICATION),
+        } else if (Objects.equals(payload.getAddressCertification(),
                 StringUtils.IS_CERTIFICATION_REQUIRED)) {
             messageChannel = processor.addressOutput();
             jobType = "to_address_certification";
         }
-        payload.put(StringUtils.JOB_TYPE, jobType);
-        payload.put(StringUtils.OUT_TIME, System.currentTimeMillis());
+        payload.setJobType(jobType);
+        payload.setOutTime(System.currentTimeMillis());
         messageChannel.send(MessageBuilder.withPayload(payload).build());
     }
 }
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -157,4 +159,32 @@ class CertificationRouterApplicationTests {
         assertNotNull(fields);
         assertEquals(StringUtils.IS_CERTIFICATION_REQUIRED, fields.get(StringUtils.EMAIL_CERTIFICATION));
     }
+
+    @Test
+    void testRecordKeptOnRoute() throws InterruptedException, JsonProcessingException {
+        String content = "{\"target_table\": \"list_data_ac20060000000002\", \"router_flag\": \"INSERT\", "
+                + "\"fields_data\": {\"first_name\": \"Naveen\", \"zip\": 12345, \"address2\": null, \"contact_source\": \"USER\", "
+                + "\"opt_in\": true, \"middle_name\": null}, "
+                + "\"lease_data\": {\"tp_accounts\": [\"tp1\"]}, \"is_cass_required\": true, "
+                + "\"phone_certification\": \"required\"}";
+        collector.forChannel(processor.phoneOutput()).clear();
+        processor.routerInput().send(MessageBuilder.withPayload(content).build());
+        Message<?> response = collector.forChannel(processor.phoneOutput()).poll(60, TimeUnit.SECONDS);
+        JsonNode responseNode = mapper.readTree((String) Objects.requireNonNull(response).getPayload());
+        assertEquals("list_data_ac20060000000002", responseNode.get("target_table").asText());
+        assertEquals("INSERT", responseNode.get("router_flag").asText());
+        JsonNode fieldsData = responseNode.get("fields_data");
+        assertTrue(fieldsData.get("first_name").isTextual());
+        assertEquals("Naveen", fieldsData.get("first_name").textValue());
+        assertTrue(fieldsData.get("zip").isInt());
+        assertEquals(12345, fieldsData.get("zip").intValue());
+        assertTrue(fieldsData.get("address2").isNull());
+        assertTrue(fieldsData.get("contact_source").isTextual());
+        assertTrue(fieldsData.get("opt_in").isBoolean());
+        assertTrue(fieldsData.get("middle_name").isNull());
+        assertFalse(fieldsData.has("email"));
+        assertEquals("tp1", responseNode.get("lease_data").get("tp_accounts").get(0).asText());
+        assertTrue(responseNode.get("is_cass_required").asBoolean());
+        assertEquals("to_phone_certification", responseNode.get(StringUtils.JOB_TYPE).asText());
+    }
 }
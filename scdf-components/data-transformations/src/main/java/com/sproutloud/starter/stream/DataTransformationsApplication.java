@@ -1,8 +1,6 @@
 package com.sproutloud.starter.stream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.log4j.Log4j2;
@@ -11,12 +9,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.integration.annotation.Transformer;
 import org.springframework.messaging.Message;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * 
@@ -26,7 +26,7 @@ import java.util.Objects;
  *
  */
 @Log4j2
-@EnableBinding(Processor.class)
+@EnableBinding({ Processor.class, JobMetadataSink.class })
 @SpringBootApplication
 public class DataTransformationsApplication {
 
@@ -42,6 +42,12 @@ public class DataTransformationsApplication {
     @Autowired
     private DataTransformer dataTransformer;
 
+    /**
+     * {@link JobMetadataCache} of the job level details of records carrying a job reference.
+     */
+    @Autowired
+    private JobMetadataCache jobMetadataCache;
+
     /**
      * Triggers the Spring boot application
      *
@@ -61,23 +67,35 @@ public class DataTransformationsApplication {
     @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
     public Map<String, Object> performDataTransformation(Message<?> message) throws JsonProcessingException {
         log.debug("Start of Data Transformation: \n");
-        JsonNode inputJsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(inputJsonNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         log.debug("Input details for Data Transformation are: \n " + input);
         input.put(StringUtils.IN_TIME, System.currentTimeMillis());
+        Set<String> attached = jobMetadataCache.attach(input);
         if (isInputValid(input)) {
             dataTransformer.transformData(input);
         } else {
             log.error("Input is not valid.");
         }
 
+        jobMetadataCache.detach(input, attached);
         prepareOutput(input);
         input.put(StringUtils.JOB_TYPE, "data_transformation");
         input.put(StringUtils.OUT_TIME, System.currentTimeMillis());
         return input;
     }
 
+    /**
+     * Caches the job metadata published once per job, for the records carrying a job reference, and evicts it on the
+     * tombstone of the complete job.
+     *
+     * @param message job metadata or tombstone published to kafka topic
+     * @throws JsonProcessingException when conversion to json is not possible
+     */
+    @StreamListener(JobMetadataSink.INPUT)
+    public void cacheJobMetadata(Message<?> message) throws JsonProcessingException {
+        jobMetadataCache.receive(mapper, message);
+    }
+
     /**
      * @param input json from which output is prepared.
      */
@@ -1,6 +1,5 @@
 package com.sproutloud.starter.stream;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.log4j.Log4j2;
@@ -55,12 +54,9 @@ public class DataTransformer {
      */
     public void transformData(Map<String, Object> input) {
         log.debug("Formatting the details to given data type");
-        Map<String, Object> fieldsData = mapper.convertValue(input.get("fields_data"), new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> fieldsData = PayloadDecoder.getMap(input, "fields_data");
         if (Objects.nonNull(input.get("field_details"))) {
-            Map<String, Map<String, String>> fieldsDetails = mapper.convertValue(input.get("field_details"),
-                    new TypeReference<Map<String, Map<String, String>>>() {
-                    });
+            Map<String, Map<String, String>> fieldsDetails = PayloadDecoder.getStringMaps(input, "field_details");
             if (!CollectionUtils.isEmpty(fieldsDetails)) {
                 // Looping through each entry of fieldsData map and updating the value according to the fieldDetails
                 // available for that particular field.
@@ -75,7 +71,7 @@ public class DataTransformer {
                     }
                     return map.getValue();
                 })));
-                String dedupeHash = getDedupeHash(input.get("dedupe_fields"), fieldsData);
+                String dedupeHash = getDedupeHash(PayloadDecoder.getStringList(input, "dedupe_fields"), fieldsData);
                 if (Objects.nonNull(dedupeHash)) {
                     fieldsData.put("dedupe_hash", dedupeHash);
                 }
@@ -85,10 +81,8 @@ public class DataTransformer {
 
     }
 
-    private String getDedupeHash(Object dedupeFields, Map<String, Object> fieldsData) {
-        List<Object> dedupeFieldsList = mapper.convertValue(dedupeFields, new TypeReference<List<Object>>() {
-        });
-        String dedupeString = dedupeFieldsList.stream().map(field -> String.valueOf(fieldsData.get(field))).collect(Collectors.joining());
+    private String getDedupeHash(List<String> dedupeFields, Map<String, Object> fieldsData) {
+        String dedupeString = dedupeFields.stream().map(field -> String.valueOf(fieldsData.get(field))).collect(Collectors.joining());
         MessageDigest md = null;
         try {
             md = MessageDigest.getInstance("MD5");
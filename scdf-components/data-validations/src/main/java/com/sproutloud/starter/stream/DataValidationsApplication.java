@@ -8,8 +8,6 @@ import static com.sproutloud.starter.stream.StringUtils.IS_CERTIFICATION_REQUIRE
 import static com.sproutloud.starter.stream.StringUtils.PHONE_CERTIFICATION;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sproutloud.starter.stream.exception.FieldValidationException;
 import com.sproutloud.starter.stream.exception.InsufficientDataException;
@@ -17,17 +15,28 @@ import com.sproutloud.starter.stream.exception.InsufficientDataException;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Processor;
-import org.springframework.integration.annotation.Transformer;
+import org.springframework.integration.annotation.Splitter;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Spring cloud data flow processor using spring boot.
@@ -36,13 +45,26 @@ import java.util.Objects;
  * @author sgoyal
  */
 @Slf4j
-@EnableBinding(Processor.class)
+@EnableBinding({ Processor.class, JobMetadataSink.class })
 @SpringBootApplication
 public class DataValidationsApplication {
 
     @Autowired
     ObjectMapper mapper;
 
+    /**
+     * Global error channel, records of a batch failing validation are reported to.
+     */
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    MessageChannel errorChannel;
+
+    /**
+     * {@link JobMetadataCache} of the job level details of records carrying a job reference.
+     */
+    @Autowired
+    JobMetadataCache jobMetadataCache;
+
     /**
      * Triggers the Spring boot application
      *
@@ -53,42 +75,92 @@ public class DataValidationsApplication {
     }
 
     /**
-     * Converts the incoming json to readable format and runs the validations on the input data.
+     * Converts the incoming json to readable format and runs the validations on the input data. A batched message is
+     * validated record by record with the field details of its header read once, and each valid record is sent as a
+     * message of its own.
      *
      * @param message Incoming message published to kafka topic
-     * @return the validated json details
+     * @return the validated json details of each record
      */
-    @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
-    public Map<String, Object> validate(Message<?> message) throws JsonProcessingException {
+    @Splitter(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
+    public List<Map<String, Object>> validate(Message<?> message) throws JsonProcessingException {
         log.info("Processing event: \n"+message.getPayload());
-        JsonNode jsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
+        if (RecordBatch.isBatch(input)) {
+            return validateBatch(message, input);
+        }
         input.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
-        return validate(input);
+        Set<String> attached = jobMetadataCache.attach(input);
+        Map<String, Object> output = validate(input, getFieldDetails(input));
+        jobMetadataCache.detach(output, attached);
+        return Collections.singletonList(output);
+    }
+
+    /**
+     * Caches the job metadata published once per job, for the records carrying a job reference, and evicts it on the
+     * tombstone of the complete job.
+     *
+     * @param message job metadata or tombstone published to kafka topic
+     * @throws JsonProcessingException when conversion to json is not possible
+     */
+    @StreamListener(JobMetadataSink.INPUT)
+    public void cacheJobMetadata(Message<?> message) throws JsonProcessingException {
+        jobMetadataCache.receive(mapper, message);
+    }
+
+    /**
+     * Validates each record of a batched message. Records failing validation are reported to the error channel and
+     * skipped, so that they do not fail the rest of the batch.
+     *
+     * @param message Incoming message published to kafka topic
+     * @param batch   the incoming batched json
+     * @return the validated json details of the valid records
+     */
+    private List<Map<String, Object>> validateBatch(Message<?> message, Map<String, Object> batch) {
+        Set<String> attached = jobMetadataCache.attach(RecordBatch.getHeader(batch));
+        Map<String, Map<String, String>> fieldDetails = getFieldDetails(RecordBatch.getHeader(batch));
+        List<Map<String, Object>> records = RecordBatch.getRecords(batch);
+        List<Map<String, Object>> output = new ArrayList<>();
+        for (Map<String, Object> input : records) {
+            input.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
+            try {
+                Map<String, Object> validated = validate(input, fieldDetails);
+                jobMetadataCache.detach(validated, attached);
+                output.add(validated);
+            } catch (InsufficientDataException | FieldValidationException e) {
+                log.error("Validation failed for record of batch: " + e.getMessage());
+                Message<Map<String, Object>> failedMessage = MessageBuilder.withPayload(input).copyHeaders(message.getHeaders()).build();
+                errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, e)));
+            }
+        }
+        log.info("Validated " + output.size() + " of " + records.size() + " records of batch");
+        return output;
+    }
+
+    /**
+     * @param input the incoming json
+     * @return field details of the incoming json, null if absent
+     */
+    private Map<String, Map<String, String>> getFieldDetails(Map<String, Object> input) {
+        return PayloadDecoder.getStringMaps(input, "field_details");
     }
 
     /**
      * Validates the incoming json for mandatory fields using field details and corresponding data. Sets the
      * certifications is required any.
      *
-     * @param input the incoming json
+     * @param input        the incoming json
+     * @param fieldDetails field details of the incoming json
      * @return Map<String, Object> validated output
      */
-    private Map<String, Object> validate(Map<String, Object> input) {
+    private Map<String, Object> validate(Map<String, Object> input, Map<String, Map<String, String>> fieldDetails) {
         log.info("Validating: \n"+input);
-        if (Objects.isNull(input.get("field_details")) || Objects.isNull(input.get("fields_data"))) {
+        if (Objects.isNull(fieldDetails) || Objects.isNull(input.get("fields_data"))) {
             input.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "validation_failed");
             input.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
             throw new InsufficientDataException("Fields data or field details are missing in incoming message");
         }
-        Object fieldDetailsJson = input.get("field_details");
-        Object fieldDataJson = input.get("fields_data");
-        Map<String, Map<String, String>> fieldDetails = mapper.convertValue(fieldDetailsJson,
-                new TypeReference<Map<String, Map<String, String>>>() {
-                });
-        Map<String, Object> fieldData = mapper.convertValue(fieldDataJson, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> fieldData = PayloadDecoder.getMap(input, "fields_data");
         if (CollectionUtils.isEmpty(fieldData) || CollectionUtils.isEmpty(fieldDetails)) {
             input.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "validation_failed");
             input.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
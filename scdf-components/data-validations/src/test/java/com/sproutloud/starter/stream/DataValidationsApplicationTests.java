@@ -13,9 +13,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.KafkaNull;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
@@ -26,7 +32,7 @@ import java.util.concurrent.TimeUnit;
  *
  * @author sgoyal
  */
-@SpringBootTest
+@SpringBootTest(properties = "job-metadata.cache.wait-ms=100")
 class DataValidationsApplicationTests {
 
     @Autowired
@@ -38,6 +44,12 @@ class DataValidationsApplicationTests {
     @Autowired
     protected ObjectMapper mapper;
 
+    @Autowired
+    protected JobMetadataSink jobMetadataSink;
+
+    @Autowired
+    protected JobMetadataCache jobMetadataCache;
+
     /**
      * Tests if context is loaded
      */
@@ -115,6 +127,26 @@ class DataValidationsApplicationTests {
         assertEquals(IS_CERTIFICATION_NOT_REQUIRED, fields.get(ADDRESS_CERTIFICATION));
     }
 
+    /**
+     * Tests that a smile payload is read the same as json
+     *
+     * @throws InterruptedException    if interrupted while polling the response
+     * @throws JsonProcessingException if unable to parse response
+     */
+    @Test
+    void testSmilePayload() throws InterruptedException, JsonProcessingException {
+        String input = "{\"fields_data\":{\"first_name\":\"Test\",\"email\":\"t@t.com\"},"
+                + "\"field_details\":{\"first_name\":{\"is_required\":\"true\"}},\"is_cass_required\":false}";
+        byte[] smile = SmileMessageConverter.getSmileMapper().writeValueAsBytes(mapper.readTree(input));
+        collector.forChannel(channels.output()).clear();
+        channels.input().send(MessageBuilder.withPayload(smile)
+                .setHeader(MessageHeaders.CONTENT_TYPE, SmileMessageConverter.SMILE.toString()).build());
+        Message<?> response = collector.forChannel(channels.output()).poll(60, TimeUnit.SECONDS);
+        Map<String, Object> output = PayloadDecoder.decode(mapper, Objects.requireNonNull(response));
+        assertEquals("Test", PayloadDecoder.getMap(output, "fields_data").get("first_name"));
+        assertEquals("validation_success", output.get(StringUtils.JOB_TYPE));
+    }
+
     /**
      * Integration tests for the data validation of the incoming Message
      *
@@ -198,6 +230,69 @@ class DataValidationsApplicationTests {
         assertEquals(StringUtils.IS_CERTIFICATION_NOT_REQUIRED, fields.get(StringUtils.PHONE_CERTIFICATION));
     }
 
+    /**
+     * Tests if each valid record of a batched message is sent as a message of its own, and invalid records are skipped
+     *
+     * @throws InterruptedException    if interrupted while polling the response
+     * @throws JsonProcessingException if unable to parse response
+     */
+    @Test
+    void testBatchedMessage() throws InterruptedException, JsonProcessingException {
+        String input = "{\n" +
+                "   \"batch_header\":{\n" +
+                "      \"field_details\":{\n" +
+                "         \"first_name\":{\n" +
+                "            \"is_required\":\"true\"\n" +
+                "         }\n" +
+                "      },\n" +
+                "      \"is_cass_required\":false\n" +
+                "   },\n" +
+                "   \"batch_records\":[\n" +
+                "      {\"fields_data\":{\"first_name\":\"Test\",\"email\":\"t@t.com\",\"mobile\":\"123\"}},\n" +
+                "      {\"fields_data\":{\"email\":\"t@t.com\"}},\n" +
+                "      {\"fields_data\":{\"first_name\":\"Test2\",\"email\":\"t2@t.com\"}}\n" +
+                "   ]\n" +
+                "}";
+        channels.input().send(MessageBuilder.withPayload(input).build());
+        Map<String, Object> first = pollOutput();
+        Map<String, Object> second = pollOutput();
+        assertEquals("required", first.get(StringUtils.PHONE_CERTIFICATION));
+        assertEquals(false, first.get("is_cass_required"));
+        assertEquals(IS_CERTIFICATION_NOT_REQUIRED, second.get(StringUtils.PHONE_CERTIFICATION));
+        assertNull(collector.forChannel(channels.output()).poll(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tests that the job metadata is kept until the tombstone of the job is received, and evicted after
+     */
+    @Test
+    void testJobMetadataTombstone() {
+        jobMetadataSink.jobMetadataInput().send(MessageBuilder.withPayload("{\"job_id\":\"job-1\",\"is_cass_required\":false}").build());
+        Map<String, Object> record = new HashMap<>();
+        record.put(JobMetadata.JOB_REF, "job-1");
+        assertEquals(Collections.singleton("is_cass_required"), jobMetadataCache.attach(record));
+
+        jobMetadataSink.jobMetadataInput().send(MessageBuilder.withPayload(KafkaNull.INSTANCE)
+                .setHeader(KafkaHeaders.RECEIVED_MESSAGE_KEY, "job-1".getBytes(StandardCharsets.UTF_8)).build());
+        Map<String, Object> next = new HashMap<>();
+        next.put(JobMetadata.JOB_REF, "job-1");
+        assertThrows(IllegalStateException.class, () -> jobMetadataCache.attach(next));
+    }
+
+    /**
+     * Polls the next output message
+     *
+     * @return json details of the output message
+     * @throws InterruptedException    if interrupted while polling the response
+     * @throws JsonProcessingException if unable to parse response
+     */
+    private Map<String, Object> pollOutput() throws InterruptedException, JsonProcessingException {
+        Message<?> response = collector.forChannel(channels.output()).poll(60, TimeUnit.SECONDS);
+        JsonNode jsonNode = mapper.readTree((String) Objects.requireNonNull(response).getPayload());
+        return mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
+        });
+    }
+
     /**
      * Triggers the Spring boot application
      */
@@ -1,21 +1,24 @@
 package com.sproutloud.starter.stream;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sproutloud.starter.stream.model.PipelineRecord;
 
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
 
 import java.io.IOException;
-import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -36,6 +39,10 @@ public class DedupeInsUpdRouterApplication {
     @Autowired
     private DedupeSplitProcessor processor;
 
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    private MessageChannel errorChannel;
+
     /**
      * main method of the application
      * 
@@ -46,23 +53,27 @@ public class DedupeInsUpdRouterApplication {
     }
 
     /**
-     * Processes the input record and redirects to appropriate kafka topic
+     * Processes the input record and redirects to appropriate kafka topic. A record without a router_flag of insert or update is rejected to
+     * the errorChannel.
      * 
      * @param message
      * @throws IOException
      */
     @StreamListener(target = DedupeSplitProcessor.INPUT)
     public void dedupeInsertUpdateRouter(Message<?> message) throws IOException {
-        JsonNode jsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
-        log.debug("********* Processing Dedupe Split : ******************* \n" + input);
-        if (Objects.equals(input.get("router_flag").toString().toUpperCase(), "INSERT")) {
+        PipelineRecord input = PayloadDecoder.decode(mapper, message, PipelineRecord.class);
+        log.debug("********* Processing Dedupe Split : ******************* \n" + input.getJobId());
+        String routerFlag = input.getRouterFlag() instanceof String ? ((String) input.getRouterFlag()).toUpperCase() : null;
+        if (Objects.equals(routerFlag, "INSERT")) {
             log.info("Sending Message to insert the row");
             processor.insert().send(MessageBuilder.withPayload(input).build());
-        } else if (Objects.equals(input.get("router_flag").toString().toUpperCase(), "UPDATE")) {
+        } else if (Objects.equals(routerFlag, "UPDATE")) {
             log.info("Sending Message to update the row");
             processor.update().send(MessageBuilder.withPayload(input).build());
+        } else {
+            log.error("Rejecting record with router_flag " + input.getRouterFlag() + " for job " + input.getJobId());
+            errorChannel.send(new ErrorMessage(new MessageHandlingException(message,
+                    "Expected router_flag INSERT or UPDATE, found " + input.getRouterFlag())));
         }
 
     }
@@ -144,4 +144,23 @@ class DedupeInsUpdRouterApplicationTests {
         channels.input().send(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
         assertThat(out.toString()).contains("Sending Message to update the row");
     }
+
+    /**
+     * Checks if a record without router_flag is rejected instead of dropped
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testMissingRouterFlag() throws IOException {
+        Map<String, Object> input = new HashMap<>();
+        input.put("target_db", "lm2_dev");
+        input.put("account_id", "AC20060000000002");
+        input.put("list_id", "LI20070000000014");
+        input.put("recipient_id", "RC20070000001206");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        channels.input().send(MessageBuilder.withPayload(mapper.writeValueAsString(input)).build());
+        assertThat(out.toString()).contains("Rejecting record with router_flag null");
+    }
 }
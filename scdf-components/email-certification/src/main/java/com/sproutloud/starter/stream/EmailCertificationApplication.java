@@ -5,8 +5,6 @@ import static com.sproutloud.starter.stream.constants.ApplicationConstants.FIELD
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.VALID_STATUS;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.log4j.Log4j2;
@@ -66,14 +64,11 @@ public class EmailCertificationApplication {
     @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
     public Map<String, Object> performEmailCertification(Message<?> message) throws JsonProcessingException {
         log.debug("Start of Email certification: \n");
-        JsonNode inputJsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(inputJsonNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         input.put(StringUtils.IN_TIME, System.currentTimeMillis());
         log.debug("Input details for Email certification are: \n " + input);
         if (isInputValid(input)) {
-            Map<String, Object> fieldsData = mapper.convertValue(input.get(FIELDS_DATA), new TypeReference<Map<String, Object>>() {
-            });
+            Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
             String res = emailCertification.certifyEmail(fieldsData);
             if (VALID_STATUS.equals(res)) {
                 input.put("email_certification", "done");
@@ -1,29 +1,37 @@
 package com.sproutloud.starter.stream;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sproutloud.starter.stream.dao.LeaseDao;
 
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.messaging.Processor;
-import org.springframework.integration.annotation.Transformer;
+import org.springframework.dao.DataAccessException;
+import org.springframework.integration.annotation.Splitter;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 /**
  * Application that processes input data to be ingested to lease table and
@@ -49,6 +57,13 @@ public class LeaseDataIngestionApplication {
     @Autowired
     private LeaseDao dao;
 
+    /**
+     * Channel to which the messages rejected on their data are sent
+     */
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    private MessageChannel errorChannel;
+
     /**
      * Timestamp object to be used for current timestamp
      */
@@ -64,35 +79,72 @@ public class LeaseDataIngestionApplication {
     }
 
     /**
-     * formats the incoming data to be ingested to lease data
+     * formats the incoming data to be ingested to lease data. When the input binding consumes in batch mode, the payload is
+     * a list of messages, whose rows are written together, see {@link #formatInputLeaseDataBatch(Message, List)}.
      * 
      * @param message
+     * @return output of each message to the data aggregator
+     * @throws IOException
+     */
+    @Splitter(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
+    public List<Map<String, Object>> formatInputLeaseData(Message<?> message) throws IOException {
+        if (message.getPayload() instanceof List) {
+            return formatInputLeaseDataBatch(message, (List<?>) message.getPayload());
+        }
+        return formatInputLeaseDataBatch(message, Collections.singletonList(message.getPayload()));
+    }
+
+    /**
+     * Formats the messages of a micro-batch and writes the rows of all of them together, coalesced per lease table. The
+     * output of each message is returned once the rows are written, and each message with a row rejected on its data is
+     * sent to the errorChannel instead. See the batch-mode consumers section of the README for the binding properties.
+     * 
+     * @param message  message of the batch, whose headers are copied to the rejected messages
+     * @param payloads payload of each message of the batch
+     * @return output of each message to the data aggregator
      * @throws IOException
      */
-    @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
-    public Map<String, Object> formatInputLeaseData(Message<?> message) throws IOException {
-        JsonNode jsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> leaseInput = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
-        Map<String, Object> aggOutput = new HashMap<>();
-        aggOutput.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
-        String validityStatus = validityCheck(leaseInput);
-        if (validityStatus == "valid") {
-            log.debug("********* Processing data to be ingested to lease table: ******************* \n" + leaseInput);
-            List<Map<String, Object>> formattedInput = formatData(leaseInput);
-
-            prepareLeaseInsert(formattedInput);
-        } else {
-            log.error("Input data is invalid: " + validityStatus);
+    private List<Map<String, Object>> formatInputLeaseDataBatch(Message<?> message, List<?> payloads) throws IOException {
+        List<Map<String, Object>> formattedInput = new ArrayList<>();
+        Map<Map<String, Object>, Integer> messageIndexByRow = new IdentityHashMap<>();
+        List<Map<String, Object>> aggOutputs = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            Map<String, Object> leaseInput = PayloadDecoder.decode(mapper, payload);
+            Map<String, Object> aggOutput = new HashMap<>();
+            aggOutput.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
+            String validityStatus = validityCheck(leaseInput);
+            if (validityStatus == "valid") {
+                log.debug("********* Processing data to be ingested to lease table: ******************* \n" + leaseInput);
+                for (Map<String, Object> row : formatData(leaseInput)) {
+                    formattedInput.add(row);
+                    messageIndexByRow.put(row, aggOutputs.size());
+                }
+            } else {
+                log.error("Input data is invalid: " + validityStatus);
+            }
+            aggOutput.put("job_id", leaseInput.get("job_id"));
+            aggOutput.put("list_id", leaseInput.get("list_id"));
+            aggOutput.put("recipient_id", leaseInput.get("recipient_id"));
+            aggOutputs.add(aggOutput);
+        }
+        if (!formattedInput.isEmpty()) {
+            for (Map.Entry<Map<String, Object>, DataAccessException> rejected : prepareLeaseInsert(formattedInput).entrySet()) {
+                int messageIndex = messageIndexByRow.get(rejected.getKey());
+                if (aggOutputs.set(messageIndex, null) != null) {
+                    Message<Object> failedMessage = MessageBuilder.withPayload(payloads.get(messageIndex))
+                            .copyHeaders(message.getHeaders()).build();
+                    errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, rejected.getValue())));
+                }
+            }
+            aggOutputs.removeIf(Objects::isNull);
         }
 
         log.debug("Sending details to data aggregator channel.");
-        aggOutput.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "lease_data_ingestion");
-        aggOutput.put("job_id", leaseInput.get("job_id"));
-        aggOutput.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
-        aggOutput.put("list_id", leaseInput.get("list_id"));
-        aggOutput.put("recipient_id", leaseInput.get("recipient_id"));
-        return aggOutput;
+        for (Map<String, Object> aggOutput : aggOutputs) {
+            aggOutput.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "lease_data_ingestion");
+            aggOutput.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
+        }
+        return aggOutputs;
     }
 
     /**
@@ -119,8 +171,7 @@ public class LeaseDataIngestionApplication {
      * @return List<Map<String,Object>>
      */
     public List<Map<String, Object>> formatData(Map<String, Object> leaseInput) {
-        List<String> toAccounts = mapper.convertValue(leaseInput.get("tp_ids"), new TypeReference<List<String>>() {
-        });
+        List<String> toAccounts = PayloadDecoder.getStringList(leaseInput, "tp_ids");
         List<Map<String, Object>> formattedOutput = new ArrayList<>();
 
         for (String tpAccount : toAccounts) {
@@ -147,26 +198,39 @@ public class LeaseDataIngestionApplication {
     }
 
     /**
-     * Method to prepare the segment insert statement
+     * Method to prepare the lease insert statements. The rows are coalesced per target database and account, i.e. per lease
+     * table, and the values of each row are listed in the column order of the first row.
      * 
      * @param formattedInput
+     * @return Map with key as each formatted input rejected on its data, by identity, and value as the failure of its insert
      */
-    public void prepareLeaseInsert(List<Map<String, Object>> formattedInput) {
+    public Map<Map<String, Object>, DataAccessException> prepareLeaseInsert(List<Map<String, Object>> formattedInput) {
         currentTs = new Timestamp(System.currentTimeMillis());
-        String targetDatabase = (String) formattedInput.get(0).get("target_db");
-        String accountId = (String) formattedInput.get(0).get("account_id");
-        List<String> columnValues = new ArrayList<>();
+        List<String> columnKeys = new ArrayList<>(((Map<String, Object>) formattedInput.get(0).get("db_fields")).keySet());
+        Map<List<String>, List<List<Object>>> rowsByTable = new LinkedHashMap<>();
+        Map<List<Object>, Map<String, Object>> inputsByRow = new IdentityHashMap<>();
         for (Map<String, Object> dbRow : formattedInput) {
-            Map<String, String> fieldsMap = new HashMap<>();
-            fieldsMap = (Map<String, String>) dbRow.get("db_fields");
-            String columnVal = fieldsMap.values().stream().map(val -> "'" + val + "'").collect(Collectors.joining(","));
-            columnVal += ",'" + currentTs + "','" + currentTs + "'";
-            columnValues.add(columnVal);
+            Map<String, Object> fieldsMap = (Map<String, Object>) dbRow.get("db_fields");
+            List<Object> columnValues = new ArrayList<>(columnKeys.size() + 2);
+            for (String columnKey : columnKeys) {
+                columnValues.add(fieldsMap.get(columnKey));
+            }
+            columnValues.add(currentTs);
+            columnValues.add(currentTs);
+            inputsByRow.put(columnValues, dbRow);
+            rowsByTable.computeIfAbsent(Arrays.asList((String) dbRow.get("target_db"), (String) dbRow.get("account_id")), table -> new ArrayList<>())
+                    .add(columnValues);
         }
-        String columnKeys = String.join(",", ((Map<String, String>) formattedInput.get(0).get("db_fields")).keySet());
-        columnKeys += ", modified_ts, created_ts";
-
-        dao.runLeaseInsert(targetDatabase, accountId, columnKeys, columnValues);
+        List<String> columnNames = new ArrayList<>(columnKeys);
+        columnNames.add("modified_ts");
+        columnNames.add("created_ts");
+
+        Map<Map<String, Object>, DataAccessException> rejectedInputs = new IdentityHashMap<>();
+        for (Map.Entry<List<String>, List<List<Object>>> table : rowsByTable.entrySet()) {
+            dao.runLeaseInsert(table.getKey().get(0), table.getKey().get(1), columnNames, table.getValue())
+                    .forEach((row, failure) -> rejectedInputs.put(inputsByRow.get(row), failure));
+        }
+        return rejectedInputs;
     }
 
 }
@@ -1,12 +1,23 @@
 package com.sproutloud.starter.stream.dao.impl;
 
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.stereotype.Repository;
 
@@ -30,6 +41,12 @@ public class LeaseDaoImpl extends JdbcDaoSupport implements LeaseDao {
     @Autowired
     private DataSource dataSource;
 
+    /**
+     * Maximum number of rows inserted by a single statement
+     */
+    @Value("${lease.batch.max-rows:2000}")
+    private int maxBatchRows;
+
     /**
      * Initialises the dao implementation and sets the data source to DataSource
      * object created
@@ -40,31 +57,97 @@ public class LeaseDaoImpl extends JdbcDaoSupport implements LeaseDao {
     }
 
     /**
-     * Runs insert statement for lease data
+     * Runs prepared multi-row insert statements for lease data, with at most lease.batch.max-rows rows per statement. The
+     * values are bound as parameters instead of being concatenated into the query. A statement failing on its data or on
+     * the schema is run again one row at a time, and the rows failing on their own are rejected. A transient failure is
+     * thrown, for the batch to be redelivered; the rows of the statements already run are then skipped by ON CONFLICT DO
+     * NOTHING.
      * 
      * @param database
      * @param accountId
-     * @param columnKeys
-     * @param columnValues
+     * @param columnNames
+     * @param rows        values of each row, in the order of columnNames
+     * @return Map with key as each rejected row, by identity, and value as the failure of its insert
+     * @throws DataAccessException if a statement fails on a transient failure
      */
     @Override
-    public void runLeaseInsert(String database, String accountId, String columnKeys, List<String> columnValues) {
+    public Map<List<Object>, DataAccessException> runLeaseInsert(String database, String accountId, List<String> columnNames,
+            List<List<Object>> rows) {
         String tableName = database + "." + "lease_data_" + accountId.toLowerCase();
-        String insertQuery = "INSERT INTO " + tableName + " (" + columnKeys + ") VALUES ";
-
-        for (String columnVal : columnValues) {
-            insertQuery += "(" + columnVal + "),";
+        Map<List<Object>, DataAccessException> rejectedRows = new IdentityHashMap<>();
+        // the bind parameters of a statement are limited to 65535
+        int rowsPerStatement = Math.max(1, Math.min(maxBatchRows, 65535 / columnNames.size()));
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            List<List<Object>> chunk = rows.subList(from, Math.min(from + rowsPerStatement, rows.size()));
+            try {
+                insert(tableName, columnNames, chunk);
+            } catch (DataAccessException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                log.warn("Insert of " + chunk.size() + " rows to " + tableName + " failed, inserting them one by one: "
+                        + e.getMostSpecificCause().getMessage());
+                for (List<Object> row : chunk) {
+                    try {
+                        insert(tableName, columnNames, Collections.singletonList(row));
+                    } catch (DataAccessException rowFailure) {
+                        if (isTransient(rowFailure)) {
+                            throw rowFailure;
+                        }
+                        log.error("Rejected insert of row " + row + " to " + tableName + ": "
+                                + rowFailure.getMostSpecificCause().getMessage());
+                        rejectedRows.put(row, rowFailure);
+                    }
+                }
+            }
         }
+        return rejectedRows;
+    }
 
-        insertQuery = insertQuery.substring(0, insertQuery.length() - 1);
+    /**
+     * Runs a prepared insert statement of the given rows.
+     * 
+     * @param tableName   qualified name of the lease table
+     * @param columnNames
+     * @param rows        values of each row, in the order of columnNames
+     */
+    private void insert(String tableName, List<String> columnNames, List<List<Object>> rows) {
+        String valuesRow = "(" + String.join(",", Collections.nCopies(columnNames.size(), "?")) + ")";
+        String insertQuery = "INSERT INTO " + tableName + " (" + String.join(",", columnNames) + ") VALUES "
+                + String.join(",", Collections.nCopies(rows.size(), valuesRow)) + " ON CONFLICT DO NOTHING";
+        Objects.requireNonNull(getJdbcTemplate()).update(insertQuery, ps -> {
+            int index = 1;
+            for (List<Object> row : rows) {
+                for (Object value : row) {
+                    if (value instanceof Timestamp) {
+                        ps.setTimestamp(index++, (Timestamp) value);
+                    } else {
+                        ps.setObject(index++, value == null ? null : String.valueOf(value), Types.OTHER);
+                    }
+                }
+            }
+        });
+        log.info("Inserted " + rows.size() + " rows of lease data to DB successfully.");
+    }
 
-        insertQuery += " ON CONFLICT DO NOTHING";
-        try {
-            Objects.requireNonNull(getJdbcTemplate()).update(insertQuery);
-            log.info("Inserted lease data to DB successfully.");
-        } catch (Exception e) {
-            log.error("Error while inserting lease data to DB" + e.getMessage());
+    /**
+     * Tells whether a failure may succeed on retry: a serialization failure (SQLState 40001), a connection failure (SQLState
+     * class 08) or any other failure Spring classifies as transient or recoverable, as opposed to a failure on the data or
+     * the schema, which fails on every retry.
+     * 
+     * @param e failure of a statement
+     * @return true if the failure is transient
+     */
+    private static boolean isTransient(DataAccessException e) {
+        if (e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException) {
+            return true;
         }
-
+        Throwable cause = e.getMostSpecificCause();
+        if (cause instanceof SQLException) {
+            String sqlState = ((SQLException) cause).getSQLState();
+            return sqlState != null && (sqlState.equals("40001") || sqlState.startsWith("08"));
+        }
+        return false;
     }
 }
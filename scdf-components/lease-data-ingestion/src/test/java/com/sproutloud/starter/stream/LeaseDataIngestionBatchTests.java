@@ -0,0 +1,127 @@
+package com.sproutloud.starter.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sproutloud.starter.stream.dao.LeaseDao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the batched lease data ingestion
+ * 
+ * @author rgupta
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+class LeaseDataIngestionBatchTests {
+
+    @InjectMocks
+    private LeaseDataIngestionApplication application;
+
+    @Mock
+    private LeaseDao dao;
+
+    @Mock
+    private MessageChannel errorChannel;
+
+    @Spy
+    private ObjectMapper mapper;
+
+    /**
+     * Tests that the rows of all the messages of a batch are written to their lease table together, and that each
+     * message gets its output.
+     * 
+     * @throws IOException
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatch() throws IOException {
+        List<String> payloads = Arrays.asList(input("RC1"), input("RC2"));
+
+        List<Map<String, Object>> output = application.formatInputLeaseData(MessageBuilder.withPayload(payloads).build());
+
+        ArgumentCaptor<List<String>> columns = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<List<Object>>> rows = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(1)).runLeaseInsert(eq("lm"), eq("AC20060000000002"), columns.capture(), rows.capture());
+        assertEquals(10, columns.getValue().size());
+        assertEquals("created_ts", columns.getValue().get(9));
+        assertEquals(4, rows.getValue().size());
+        assertEquals(10, rows.getValue().get(0).size());
+        assertEquals(2, output.size());
+        assertEquals("RC2", output.get(1).get("recipient_id"));
+        assertEquals("lease_data_ingestion", output.get(1).get("job_type"));
+    }
+
+    /**
+     * Tests that a message with a row rejected on its data is sent to the errorChannel instead of the data aggregator, while
+     * the other messages of the batch get their output.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testBatchRejectsMessage() throws IOException {
+        DataIntegrityViolationException failure = new DataIntegrityViolationException("value too long for type character varying(20)");
+        when(dao.runLeaseInsert(eq("lm"), eq("AC20060000000002"), anyList(), anyList())).thenAnswer(invocation -> {
+            List<List<Object>> rows = invocation.getArgument(3);
+            return Collections.<List<Object>, DataAccessException>singletonMap(rows.get(3), failure);
+        });
+        List<String> payloads = Arrays.asList(input("RC1"), input("RC2"));
+
+        List<Map<String, Object>> output = application.formatInputLeaseData(MessageBuilder.withPayload(payloads).build());
+
+        ArgumentCaptor<ErrorMessage> errorMessage = ArgumentCaptor.forClass(ErrorMessage.class);
+        verify(errorChannel, times(1)).send(errorMessage.capture());
+        MessageHandlingException rejection = (MessageHandlingException) errorMessage.getValue().getPayload();
+        assertEquals(payloads.get(1), rejection.getFailedMessage().getPayload());
+        assertSame(failure, rejection.getCause());
+        assertEquals(1, output.size());
+        assertEquals("RC1", output.get(0).get("recipient_id"));
+    }
+
+    /**
+     * @param recipientId recipient_id of the message
+     * @return incoming json of a recipient with two tp_ids
+     * @throws JsonProcessingException
+     */
+    private String input(String recipientId) throws JsonProcessingException {
+        Map<String, Object> input = new HashMap<>();
+        input.put("target_db", "lm");
+        input.put("account_id", "AC20060000000002");
+        input.put("modified_by", "rgupta");
+        input.put("created_by", "rgupta");
+        input.put("modified_op", "I");
+        input.put("locality_code", "SL_US");
+        input.put("list_id", "LI20090000000004");
+        input.put("recipient_id", recipientId);
+        input.put("job_id", "JO20090000000267");
+        input.put("tp_ids", Arrays.asList("AC2000000004", "Tp1"));
+        return mapper.writeValueAsString(input);
+    }
+}
@@ -0,0 +1,99 @@
+package com.sproutloud.starter.stream.dao.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the inserts of {@link LeaseDaoImpl}
+ * 
+ * @author rgupta
+ *
+ */
+class LeaseDaoImplTest {
+
+    /**
+     * Tests that a statement failing on a transient failure is thrown instead of being skipped, so that the batch is redelivered.
+     */
+    @Test
+    void testRunLeaseInsertFailure() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LeaseDaoImpl dao = new LeaseDaoImpl();
+        dao.setJdbcTemplate(jdbcTemplate);
+        ReflectionTestUtils.setField(dao, "maxBatchRows", 1);
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenReturn(1)
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+        List<String> columnNames = Arrays.asList("recipient_id", "tp_id");
+        List<List<Object>> rows = Arrays.asList(Arrays.asList("RC1", "Tp1"), Arrays.asList("RC2", "Tp1"),
+                Arrays.asList("RC3", "Tp1"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> dao.runLeaseInsert("lm", "AC20060000000002", columnNames, rows));
+        verify(jdbcTemplate, times(2)).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    /**
+     * Tests that a serialization failure, categorized by its SQLState only, is thrown as transient.
+     */
+    @Test
+    void testRunLeaseInsertSerializationFailure() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LeaseDaoImpl dao = new LeaseDaoImpl();
+        dao.setJdbcTemplate(jdbcTemplate);
+        ReflectionTestUtils.setField(dao, "maxBatchRows", 2000);
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+                .thenThrow(new UncategorizedSQLException("insert", "INSERT", new SQLException("restart transaction", "40001")));
+        List<List<Object>> rows = Arrays.asList(Arrays.asList("RC1", "Tp1"), Arrays.asList("RC2", "Tp1"));
+
+        assertThrows(UncategorizedSQLException.class,
+                () -> dao.runLeaseInsert("lm", "AC20060000000002", Arrays.asList("recipient_id", "tp_id"), rows));
+        verify(jdbcTemplate, times(1)).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    /**
+     * Tests that a statement failing on the data of a row is run again one row at a time, and that only the failing row is
+     * rejected.
+     */
+    @Test
+    void testRunLeaseInsertRejectsBadRow() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LeaseDaoImpl dao = new LeaseDaoImpl();
+        dao.setJdbcTemplate(jdbcTemplate);
+        ReflectionTestUtils.setField(dao, "maxBatchRows", 2000);
+        DataIntegrityViolationException failure = new DataIntegrityViolationException("value too long for type character varying(20)");
+        doReturn(1).doThrow(failure).doReturn(1).when(jdbcTemplate).update(argThat((String query) -> !query.contains("),(")),
+                any(PreparedStatementSetter.class));
+        doThrow(failure).when(jdbcTemplate).update(argThat((String query) -> query.contains("),(")), any(PreparedStatementSetter.class));
+        List<Object> badRow = Arrays.asList("RC2", "Tp1");
+        List<List<Object>> rows = Arrays.asList(Arrays.asList("RC1", "Tp1"), badRow, Arrays.asList("RC3", "Tp1"));
+
+        Map<List<Object>, DataAccessException> rejectedRows =
+                dao.runLeaseInsert("lm", "AC20060000000002", Arrays.asList("recipient_id", "tp_id"), rows);
+
+        verify(jdbcTemplate, times(4)).update(anyString(), any(PreparedStatementSetter.class));
+        assertEquals(1, rejectedRows.size());
+        assertSame(failure, rejectedRows.get(badRow));
+    }
+}
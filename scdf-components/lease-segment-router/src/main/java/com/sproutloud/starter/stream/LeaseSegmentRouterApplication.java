@@ -10,8 +10,6 @@ import static com.sproutloud.starter.stream.constants.ApplicationConstants.TARGE
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.TP_IDS;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.log4j.Log4j2;
@@ -74,17 +72,13 @@ public class LeaseSegmentRouterApplication {
     @StreamListener(MultiOutputProcessor.INPUT)
     public void performLeaseSegmentRouting(Message<?> message) throws JsonProcessingException {
         log.debug("Start of Lease and Segment routing: \n");
-        JsonNode inputJsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(inputJsonNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         boolean lease = false;
         boolean segment = false;
         log.debug("Input details for Lease Segment Router are: \n " + input);
         if (Objects.nonNull(input)) {
-            Map<String, Object> leaseData = mapper.convertValue(input.get(LEASE_DATA), new TypeReference<Map<String, Object>>() {
-            });
-            Map<String, Object> segmentData = mapper.convertValue(input.get(SEGMENT_DATA), new TypeReference<Map<String, Object>>() {
-            });
+            Map<String, Object> leaseData = PayloadDecoder.getMap(input, LEASE_DATA);
+            Map<String, Object> segmentData = PayloadDecoder.getMap(input, SEGMENT_DATA);
             input.remove(LEASE_DATA);
             input.remove(SEGMENT_DATA);
             lease = sendLeaseData(input, leaseData);
@@ -1,12 +1,22 @@
 package com.sproutloud.starter.stream;
 
 import com.sproutloud.starter.stream.dao.DedupeDao;
+import com.sproutloud.starter.stream.filter.ListExistenceFilter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Performs the deduplication of incoming data
@@ -20,6 +30,15 @@ public class DedupeHandler {
     @Autowired
     private DedupeDao dao;
 
+    @Autowired
+    private ListExistenceFilter existenceFilter;
+
+    /**
+     * Maximum number of dedupe_hash values looked up by a single query of a batch
+     */
+    @Value("${dedupe.batch.max-hashes-per-query:1000}")
+    private int maxHashesPerQuery;
+
     /**
      * Takes the input data and return the output data after setting router_flag and
      * existing db fields
@@ -30,9 +49,130 @@ public class DedupeHandler {
      * @return Map<String, String>
      */
     public Map<String, String> execute(Map<String, Object> fieldData, String db, String table) {
+        String dedupeHash = String.valueOf(fieldData.get("dedupe_hash"));
+        String localityCode = String.valueOf(fieldData.get("locality_code"));
+        String listId = String.valueOf(fieldData.get("list_id"));
+        if (existenceFilter.isEnabled()) {
+            existenceFilter.recordJobs(db, table, listId, localityCode, Collections.singleton(String.valueOf(fieldData.get("job_id"))));
+        }
+        if (existenceFilter.isEnabled() && !existenceFilter.mightExist(db, table, listId, localityCode, dedupeHash)) {
+            log.debug("No existing entry as per existence filter");
+            existenceFilter.recordInsert(db, table, listId, localityCode, dedupeHash);
+            return null;
+        }
         log.debug("Checking for existing entry in database");
-        return dao.getRecordFromListData(db, table, String.valueOf(fieldData.get("dedupe_hash")), String.valueOf(fieldData.get("locality_code")),
-                String.valueOf(fieldData.get("list_id")), fieldData.keySet());
+        Map<String, String> existingEntry = dao.getRecordFromListData(db, table, dedupeHash, localityCode, listId, fieldData.keySet());
+        if (existenceFilter.isEnabled() && existingEntry == null) {
+            existenceFilter.recordFalsePositive();
+            existenceFilter.recordInsert(db, table, listId, localityCode, dedupeHash);
+        }
+        return existingEntry;
+    }
+
+    /**
+     * Looks up the existing entries of a batch of records. Records are grouped by database, table, list_id and
+     * locality_code, and the dedupe_hash values of each group are resolved with a single query per chunk of
+     * max-hashes-per-query values.
+     *
+     * @param inputs valid records of the batch, with target_db, target_table and fields_data
+     * @return existing db fields of each record in batch order, null for the records without an existing entry
+     */
+    public List<Map<String, String>> executeBatch(List<Map<String, Object>> inputs) {
+        List<Map<String, Object>> fieldsDataList = new ArrayList<>(inputs.size());
+        Map<List<String>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            Map<String, Object> fieldData = PayloadDecoder.getMap(inputs.get(i), "fields_data");
+            fieldsDataList.add(fieldData);
+            List<String> groupKey = Arrays.asList((String) inputs.get(i).get("target_db"), (String) inputs.get(i).get("target_table"),
+                    String.valueOf(fieldData.get("list_id")), String.valueOf(fieldData.get("locality_code")));
+            groups.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(i);
+        }
+        log.debug("Checking for existing entries of " + fieldsDataList.size() + " records in " + groups.size() + " groups");
+        List<Map<String, String>> existingEntries = new ArrayList<>(Collections.nCopies(fieldsDataList.size(), null));
+        for (Map.Entry<List<String>, List<Integer>> group : groups.entrySet()) {
+            Set<String> columnNames = new LinkedHashSet<>();
+            columnNames.add("dedupe_hash");
+            Set<String> dedupeHashes = new LinkedHashSet<>();
+            Set<String> jobIds = new LinkedHashSet<>();
+            for (Integer index : group.getValue()) {
+                columnNames.addAll(fieldsDataList.get(index).keySet());
+                dedupeHashes.add(String.valueOf(fieldsDataList.get(index).get("dedupe_hash")));
+                jobIds.add(String.valueOf(fieldsDataList.get(index).get("job_id")));
+            }
+            Map<String, Map<String, String>> existingRecords = filterAndLookUp(group.getKey(), jobIds, dedupeHashes, columnNames);
+            for (Integer index : group.getValue()) {
+                Map<String, Object> fieldData = fieldsDataList.get(index);
+                Map<String, String> existingRecord = existingRecords.get(String.valueOf(fieldData.get("dedupe_hash")));
+                if (existingRecord != null) {
+                    Map<String, String> existingEntry = new HashMap<>();
+                    for (String column : fieldData.keySet()) {
+                        existingEntry.put(column, existingRecord.get(column));
+                    }
+                    existingEntries.set(index, existingEntry);
+                }
+            }
+        }
+        return existingEntries;
+    }
+
+    /**
+     * Looks up the dedupe_hash values of a group which might exist as per the existence filter, if enabled. The values
+     * which definitely do not exist, and the values not found in the database, are added to the filter as they are
+     * routed as INSERT. The job_id values of the group are registered first, so that the filter of a changed list is rebuilt on a new job.
+     *
+     * @param groupKey     database, table, list_id and locality_code of the group
+     * @param jobIds       distinct job_id values of the group
+     * @param dedupeHashes distinct dedupe_hash values of the group
+     * @param columnNames  columns to fetch
+     * @return Map with key as dedupe_hash and value as the fields of the existing record
+     */
+    private Map<String, Map<String, String>> filterAndLookUp(List<String> groupKey, Set<String> jobIds, Set<String> dedupeHashes,
+            Set<String> columnNames) {
+        if (!existenceFilter.isEnabled()) {
+            return lookUp(groupKey, dedupeHashes, columnNames);
+        }
+        String db = groupKey.get(0);
+        String table = groupKey.get(1);
+        String listId = groupKey.get(2);
+        String localityCode = groupKey.get(3);
+        existenceFilter.recordJobs(db, table, listId, localityCode, jobIds);
+        Set<String> possibleHashes = new LinkedHashSet<>();
+        for (String dedupeHash : dedupeHashes) {
+            if (existenceFilter.mightExist(db, table, listId, localityCode, dedupeHash)) {
+                possibleHashes.add(dedupeHash);
+            } else {
+                existenceFilter.recordInsert(db, table, listId, localityCode, dedupeHash);
+            }
+        }
+        log.debug(possibleHashes.size() + " of " + dedupeHashes.size() + " dedupe hashes might exist as per existence filter");
+        Map<String, Map<String, String>> existingRecords = lookUp(groupKey, possibleHashes, columnNames);
+        for (String dedupeHash : possibleHashes) {
+            if (!existingRecords.containsKey(dedupeHash)) {
+                existenceFilter.recordFalsePositive();
+                existenceFilter.recordInsert(db, table, listId, localityCode, dedupeHash);
+            }
+        }
+        return existingRecords;
+    }
+
+    /**
+     * Looks up the dedupe_hash values of a group in chunks of max-hashes-per-query values.
+     *
+     * @param groupKey     database, table, list_id and locality_code of the group
+     * @param dedupeHashes distinct dedupe_hash values of the group
+     * @param columnNames  columns to fetch
+     * @return Map with key as dedupe_hash and value as the fields of the existing record
+     */
+    private Map<String, Map<String, String>> lookUp(List<String> groupKey, Set<String> dedupeHashes, Set<String> columnNames) {
+        Map<String, Map<String, String>> existingRecords = new HashMap<>();
+        List<String> hashes = new ArrayList<>(dedupeHashes);
+        int chunkSize = Math.max(1, maxHashesPerQuery);
+        for (int from = 0; from < hashes.size(); from += chunkSize) {
+            List<String> chunk = hashes.subList(from, Math.min(hashes.size(), from + chunkSize));
+            existingRecords.putAll(dao.getRecordsFromListData(groupKey.get(0), groupKey.get(1), chunk, groupKey.get(3),
+                    groupKey.get(2), columnNames));
+        }
+        return existingRecords;
     }
 
     /**
@@ -1,23 +1,30 @@
 package com.sproutloud.starter.stream;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.data.jdbc.repository.config.EnableJdbcRepositories;
-import org.springframework.integration.annotation.Transformer;
+import org.springframework.integration.annotation.Splitter;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -37,6 +44,10 @@ public class DeduplicationApplication {
     @Autowired
     private DedupeHandler dedupeHandler;
 
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    MessageChannel errorChannel;
+
     /**
      * Triggers spring boot application
      *
@@ -47,44 +58,98 @@ public class DeduplicationApplication {
     }
 
     /**
-     * Accepts the input from the input channel and processes it for
-     * dedupe
+     * Accepts the input from the input channel and processes it for dedupe. When the input binding consumes in batch
+     * mode, the payload is a list of records and the existing entries of all of them are looked up together, see
+     * {@link #dedupeBatch(Message, List)}.
      *
      * @param message
-     * @return the output JSON with router_flag and existing db values
+     * @return the output JSON of each record with router_flag and existing db values
      * @throws IOException
      */
-    @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
-    public Map<String, Object> dedupeProcessor(Message<?> message) throws IOException {
-        JsonNode jsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> dedupeInput = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
+    @Splitter(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
+    public List<Map<String, Object>> dedupeProcessor(Message<?> message) throws IOException {
+        if (message.getPayload() instanceof List) {
+            return dedupeBatch(message, (List<?>) message.getPayload());
+        }
+        Map<String, Object> dedupeInput = PayloadDecoder.decode(mapper, message);
         dedupeInput.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
-        String validityFailureMsg = "Invalid input passed";
-        if (!StringUtils.isEmpty(dedupeInput)) {
-            Map<String, Object> fieldData = mapper.convertValue(dedupeInput.get("fields_data"),
-                    new TypeReference<Map<String, Object>>() {
-                    });
+        String validityFailureMsg = validate(dedupeInput);
+        if (Objects.equals(validityFailureMsg, "valid")) {
+            log.debug("Processing Dedupe:" + dedupeInput);
+            Map<String, Object> fieldData = PayloadDecoder.getMap(dedupeInput, "fields_data");
+            Map<String, String> existingEntry = dedupeHandler.execute(fieldData, (String) dedupeInput.get("target_db"),
+                    (String) dedupeInput.get("target_table"));
+            return Collections.singletonList(prepareOutput(dedupeInput, existingEntry));
+        }
+        log.error(validityFailureMsg);
+        throw new RuntimeException(validityFailureMsg);
+    }
 
-            String db = (String) dedupeInput.get("target_db");
-            String table = (String) dedupeInput.get("target_table");
-            validityFailureMsg = dedupeHandler.isValid(fieldData, db, table);
+    /**
+     * Processes a micro-batch of records for dedupe. Invalid records are reported to the error channel and skipped, so
+     * that they do not fail the rest of the batch. See the batch-mode consumers section of the README for the binding
+     * properties.
+     *
+     * @param message  Incoming batch of messages published to kafka topic
+     * @param payloads payload of each record of the batch
+     * @return the output JSON of each valid record with router_flag and existing db values
+     * @throws IOException
+     */
+    private List<Map<String, Object>> dedupeBatch(Message<?> message, List<?> payloads) throws IOException {
+        List<Map<String, Object>> dedupeInputs = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            Map<String, Object> dedupeInput = PayloadDecoder.decode(mapper, payload);
+            dedupeInput.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
+            String validityFailureMsg = validate(dedupeInput);
             if (Objects.equals(validityFailureMsg, "valid")) {
-                log.debug("Processing Dedupe:" + dedupeInput);
-                Map<String, String> existingEntry = dedupeHandler.execute(fieldData, db, table);
-                log.debug("Setting the router_flag to INSERT or UPDATE");
-                if (CollectionUtils.isEmpty(existingEntry)) {
-                    dedupeInput.put("router_flag", "INSERT");
-                } else {
-                    dedupeInput.put("router_flag", "UPDATE");
-                    dedupeInput.put("db_fields", existingEntry);
-                }
-                dedupeInput.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "dedupe");
-                dedupeInput.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
-                return dedupeInput;
+                dedupeInputs.add(dedupeInput);
+            } else {
+                log.error(validityFailureMsg);
+                Message<Map<String, Object>> failedMessage = MessageBuilder.withPayload(dedupeInput).copyHeaders(message.getHeaders()).build();
+                errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, validityFailureMsg)));
             }
         }
-        log.error(validityFailureMsg);
-        throw new RuntimeException(validityFailureMsg);
+        List<Map<String, String>> existingEntries = dedupeHandler.executeBatch(dedupeInputs);
+        List<Map<String, Object>> output = new ArrayList<>(dedupeInputs.size());
+        for (int i = 0; i < dedupeInputs.size(); i++) {
+            output.add(prepareOutput(dedupeInputs.get(i), existingEntries.get(i)));
+        }
+        log.info("Deduped " + output.size() + " of " + payloads.size() + " records of batch");
+        return output;
+    }
+
+    /**
+     * @param dedupeInput the incoming json
+     * @return "valid" if the record can be deduped, otherwise the reason it can not
+     */
+    private String validate(Map<String, Object> dedupeInput) {
+        if (StringUtils.isEmpty(dedupeInput)) {
+            return "Invalid input passed";
+        }
+        Map<String, Object> fieldData = PayloadDecoder.getMap(dedupeInput, "fields_data");
+        if (Objects.isNull(fieldData)) {
+            return "Invalid input passed";
+        }
+        return dedupeHandler.isValid(fieldData, (String) dedupeInput.get("target_db"), (String) dedupeInput.get("target_table"));
+    }
+
+    /**
+     * Sets the router_flag to INSERT or UPDATE from the existing entry of the record.
+     *
+     * @param dedupeInput   the incoming json
+     * @param existingEntry existing db fields of the record, null if absent
+     * @return the output JSON with router_flag and existing db values
+     */
+    private Map<String, Object> prepareOutput(Map<String, Object> dedupeInput, Map<String, String> existingEntry) {
+        log.debug("Setting the router_flag to INSERT or UPDATE");
+        if (CollectionUtils.isEmpty(existingEntry)) {
+            dedupeInput.put("router_flag", "INSERT");
+        } else {
+            dedupeInput.put("router_flag", "UPDATE");
+            dedupeInput.put("db_fields", existingEntry);
+        }
+        dedupeInput.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "dedupe");
+        dedupeInput.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
+        return dedupeInput;
     }
 }
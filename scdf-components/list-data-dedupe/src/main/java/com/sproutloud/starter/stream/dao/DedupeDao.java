@@ -1,7 +1,9 @@
 package com.sproutloud.starter.stream.dao;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Queries database
@@ -24,4 +26,40 @@ public interface DedupeDao {
     Map<String, String> getRecordFromListData(String db, String table, String dedupeHash, String localityCode,
                                               String listId, Set<String> columnNames);
 
+    /**
+     * Queries database for existing records of several dedupe_hash values of a list and locality in a single query
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param dedupeHashes dedupe_hash values to look up
+     * @param localityCode
+     * @param listId
+     * @param columnNames  columns to fetch, including dedupe_hash
+     * @return Map with key as dedupe_hash and value as the fields of the existing record, only for the hashes found
+     */
+    Map<String, Map<String, String>> getRecordsFromListData(String db, String table, Collection<String> dedupeHashes,
+                                                            String localityCode, String listId, Set<String> columnNames);
+
+    /**
+     * Counts the existing records of a list and locality
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param localityCode
+     * @param listId
+     * @return number of existing records
+     */
+    long countRecords(String db, String table, String localityCode, String listId);
+
+    /**
+     * Streams the dedupe_hash of each existing record of a list and locality to the consumer
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param localityCode
+     * @param listId
+     * @param consumer     of each dedupe_hash
+     */
+    void forEachDedupeHash(String db, String table, String localityCode, String listId, Consumer<String> consumer);
+
 }
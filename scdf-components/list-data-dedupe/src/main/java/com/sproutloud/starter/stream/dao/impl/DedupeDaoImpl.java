@@ -3,6 +3,7 @@ package com.sproutloud.starter.stream.dao.impl;
 import com.sproutloud.starter.stream.dao.DedupeDao;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.stereotype.Repository;
@@ -11,6 +12,7 @@ import org.springframework.util.CollectionUtils;
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * DedupeDao Interface
@@ -74,4 +76,81 @@ public class DedupeDaoImpl extends JdbcDaoSupport implements DedupeDao {
         }
         return null;
     }
+
+    /**
+     * method which queries database for existing records of several dedupe_hash values with a single ANY(array) query
+     *
+     * @param databaseName
+     * @param tableName
+     * @param dedupeHashes
+     * @param localityCode
+     * @param listId
+     * @param columnNames
+     * @return Map<String, Map<String, String>>
+     */
+    @Override
+    public Map<String, Map<String, String>> getRecordsFromListData(String databaseName, String tableName,
+                                                                   Collection<String> dedupeHashes, String localityCode,
+                                                                   String listId, Set<String> columnNames) {
+        log.debug("Checking the existing entries for passed list_id: " + listId + ", locality_code: " + localityCode
+                + ", dedupe_hashes: " + dedupeHashes.size());
+
+        String columnKeyString = String.join(",", columnNames);
+        StringBuffer query = new StringBuffer("SELECT ").append(columnKeyString).append(" FROM ").append(databaseName)
+                .append(".").append(tableName).append(" WHERE list_id=? AND locality_code=? AND dedupe_hash = ANY(?)");
+        List<Map<String, String>> resultSet = Objects.requireNonNull(getJdbcTemplate()).query(query.toString(), ps -> {
+            ps.setString(1, listId);
+            ps.setString(2, localityCode);
+            ps.setArray(3, ps.getConnection().createArrayOf("varchar", dedupeHashes.toArray()));
+        }, getExtractor(columnNames));
+        Map<String, Map<String, String>> existingRecords = new HashMap<>();
+        for (Map<String, String> result : resultSet) {
+            existingRecords.putIfAbsent(result.get("dedupe_hash"), result);
+        }
+        log.debug("Found " + existingRecords.size() + " existing entries in database");
+        return existingRecords;
+    }
+
+    /**
+     * method which counts the existing records of a list and locality
+     *
+     * @param databaseName
+     * @param tableName
+     * @param localityCode
+     * @param listId
+     * @return long
+     */
+    @Override
+    public long countRecords(String databaseName, String tableName, String localityCode, String listId) {
+        StringBuffer query = new StringBuffer("SELECT count(*) FROM ").append(databaseName).append(".").append(tableName)
+                .append(" WHERE list_id=? AND locality_code=?");
+        Long count = Objects.requireNonNull(getJdbcTemplate()).queryForObject(query.toString(), Long.class, listId, localityCode);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * method which streams the dedupe_hash of each existing record of a list and locality
+     *
+     * @param databaseName
+     * @param tableName
+     * @param localityCode
+     * @param listId
+     * @param consumer
+     */
+    @Override
+    public void forEachDedupeHash(String databaseName, String tableName, String localityCode, String listId,
+                                  Consumer<String> consumer) {
+        StringBuffer query = new StringBuffer("SELECT dedupe_hash FROM ").append(databaseName).append(".").append(tableName)
+                .append(" WHERE list_id=? AND locality_code=?");
+        Objects.requireNonNull(getJdbcTemplate()).query(query.toString(), ps -> {
+            ps.setString(1, listId);
+            ps.setString(2, localityCode);
+            ps.setFetchSize(10000);
+        }, (RowCallbackHandler) rs -> {
+            String dedupeHash = rs.getString(1);
+            if (dedupeHash != null) {
+                consumer.accept(dedupeHash);
+            }
+        });
+    }
 }
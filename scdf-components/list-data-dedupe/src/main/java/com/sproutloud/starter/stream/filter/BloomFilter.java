@@ -0,0 +1,140 @@
+package com.sproutloud.starter.stream.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of dedupe_hash values. Answers whether a value might have been added, with no false negatives and a false positive
+ * probability bounded by the sizing. The bits are held in an {@link AtomicLongArray}, so values can be added and checked concurrently
+ * without locking.
+ *
+ * @author mgande
+ *
+ */
+public class BloomFilter {
+
+    /**
+     * Maximum number of hash functions.
+     */
+    private static final int MAX_HASH_FUNCTIONS = 16;
+
+    /**
+     * Bits of the filter.
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Number of bits of the filter.
+     */
+    private final long bitCount;
+
+    /**
+     * Number of hash functions, i.e. bits set per value.
+     */
+    private final int hashFunctions;
+
+    /**
+     * @param bitCount      number of bits of the filter.
+     * @param hashFunctions number of bits set per value.
+     */
+    BloomFilter(long bitCount, int hashFunctions) {
+        int words = (int) Math.max(1, (bitCount + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Creates a filter sized for the expected number of values and false positive probability, with at most maxBits bits. A filter capped
+     * by maxBits has a higher false positive probability than requested.
+     *
+     * @param expectedValues            expected number of values.
+     * @param falsePositiveProbability  requested false positive probability.
+     * @param maxBits                   maximum number of bits of the filter.
+     * @return {@link BloomFilter} of the given size.
+     */
+    public static BloomFilter create(long expectedValues, double falsePositiveProbability, long maxBits) {
+        long values = Math.max(1, expectedValues);
+        long optimalBits = (long) Math.ceil(-values * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        long bitCount = Math.max(64, Math.min(optimalBits, maxBits));
+        int hashFunctions = (int) Math.round((double) bitCount / values * Math.log(2));
+        return new BloomFilter(bitCount, Math.max(1, Math.min(MAX_HASH_FUNCTIONS, hashFunctions)));
+    }
+
+    /**
+     * Adds a value to the filter.
+     *
+     * @param value dedupe_hash value.
+     */
+    public void put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            setBit(bit);
+        }
+    }
+
+    /**
+     * @param value dedupe_hash value.
+     * @return false if the value was definitely never added, true if it might have been.
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of bits of the filter.
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Sets a bit without losing concurrent updates of the same word.
+     *
+     * @param bit index of the bit.
+     */
+    private void setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * @param value dedupe_hash value.
+     * @return 64-bit FNV-1a hash of the value.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @param hash first hash of a value.
+     * @return second, independent looking hash of the value, by the splitmix64 finalizer.
+     */
+    private static long mix(long hash) {
+        long mixed = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return (mixed ^ (mixed >>> 31)) | 1L;
+    }
+}
@@ -0,0 +1,304 @@
+package com.sproutloud.starter.stream.filter;
+
+import com.sproutloud.starter.stream.dao.DedupeDao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per list existence filter in front of the dedupe lookups. A {@link BloomFilter} of the existing dedupe_hash values of a list_id and
+ * locality_code is built from the database on first use, and kept current by adding the hash of every record routed as INSERT. A record
+ * whose hash is definitely not in the filter is routed as INSERT without querying the database.
+ *
+ * The filter of a list only learns the inserts routed by this instance, so this instance must be the only one routing the records of its
+ * lists: the filter is only enabled when the app runs as a single instance, or with its input partitioned by list_id
+ * (spring.cloud.stream.bindings.input.consumer.partitioned=true, with the producer partitioning on the list_id). Otherwise two instances
+ * could both find a record definitely missing and route it as INSERT, so the filter is disabled with a warning.
+ *
+ * When a job_id not seen before is received for a list, the records of the list are counted, and the filter is rebuilt only if the list
+ * holds more records than it was built from plus the inserts routed since, as written by another app. It is also rebuilt after the
+ * configured time to live. Memory is bounded by the number of lists held and the maximum bits per list; the least recently used list is
+ * evicted first.
+ *
+ * @author mgande
+ *
+ */
+@Slf4j
+@Component
+public class ListExistenceFilter {
+
+    /**
+     * Enables the existence filter.
+     */
+    @Value("${dedupe.filter.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * Target false positive probability of a filter.
+     */
+    @Value("${dedupe.filter.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    /**
+     * Minimum number of values a filter is sized for, leaving room for the records inserted after it is built.
+     */
+    @Value("${dedupe.filter.min-expected-records:100000}")
+    private long minExpectedRecords;
+
+    /**
+     * Maximum number of bits of a single filter.
+     */
+    @Value("${dedupe.filter.max-bits-per-list:16777216}")
+    private long maxBitsPerList;
+
+    /**
+     * Maximum number of lists with a filter held in memory.
+     */
+    @Value("${dedupe.filter.max-lists:32}")
+    private int maxLists;
+
+    /**
+     * Time in milliseconds after which the filter of a list is rebuilt from the database.
+     */
+    @Value("${dedupe.filter.ttl-ms:3600000}")
+    private long ttlMillis;
+
+    /**
+     * Number of instances of the app.
+     */
+    @Value("${spring.cloud.stream.instance-count:1}")
+    private int instanceCount;
+
+    /**
+     * True if the input is partitioned, so that the records of a list are all routed by the same instance.
+     */
+    @Value("${spring.cloud.stream.bindings.input.consumer.partitioned:false}")
+    private boolean partitioned;
+
+    @Autowired
+    private DedupeDao dao;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Filters with key as db, table, list_id and locality_code, in access order.
+     */
+    private Map<List<String>, ListFilter> filters;
+
+    private Counter definiteMisses;
+
+    private Counter possibleHits;
+
+    private Counter falsePositives;
+
+    @PostConstruct
+    private void initialize() {
+        if (enabled && instanceCount > 1 && !partitioned) {
+            log.warn("Existence filter disabled, as the records of a list are not all routed by this instance: instance count "
+                    + instanceCount + " with unpartitioned input");
+            enabled = false;
+        }
+        filters = new LinkedHashMap<List<String>, ListFilter>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, ListFilter> eldest) {
+                return size() > maxLists;
+            }
+        };
+        definiteMisses = meterRegistry.counter("dedupe.filter.lookups", "result", "definite_miss");
+        possibleHits = meterRegistry.counter("dedupe.filter.lookups", "result", "possible_hit");
+        falsePositives = meterRegistry.counter("dedupe.filter.false.positives");
+        Gauge.builder("dedupe.filter.lists", this, filter -> filter.size()).register(meterRegistry);
+        Gauge.builder("dedupe.filter.bits", this, filter -> filter.bitCount()).register(meterRegistry);
+    }
+
+    /**
+     * @return true if the existence filter is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers the job_id values of the records of a list about to be checked. If any of them was not seen before for the list, the filter
+     * of the list is rebuilt from the database when the list has changed since it was built.
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param listId       list_id of the records
+     * @param localityCode locality_code of the records
+     * @param jobIds       job_id values of the records
+     */
+    public void recordJobs(String db, String table, String listId, String localityCode, Collection<String> jobIds) {
+        List<String> key = Arrays.asList(db, table, listId, localityCode);
+        ListFilter listFilter;
+        synchronized (filters) {
+            listFilter = filters.computeIfAbsent(key, newKey -> new ListFilter());
+            if (listFilter.jobIds.containsAll(jobIds)) {
+                return;
+            }
+        }
+        boolean changed = listFilter.filter != null && dao.countRecords(db, table, localityCode, listId) > listFilter.expectedRecords();
+        synchronized (filters) {
+            ListFilter current = filters.computeIfAbsent(key, newKey -> new ListFilter());
+            if (changed && current == listFilter) {
+                log.debug("Rebuilding existence filter of changed list_id: " + listId + ", locality_code: " + localityCode);
+                current = new ListFilter();
+                current.jobIds.addAll(listFilter.jobIds);
+                filters.put(key, current);
+            }
+            current.jobIds.addAll(jobIds);
+        }
+    }
+
+    /**
+     * Checks the filter of the list for a dedupe_hash, building the filter if required.
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param listId       list_id of the record
+     * @param localityCode locality_code of the record
+     * @param dedupeHash   dedupe_hash of the record
+     * @return false if no record of the dedupe_hash exists in the list, true if one might exist
+     */
+    public boolean mightExist(String db, String table, String listId, String localityCode, String dedupeHash) {
+        boolean mightExist = getFilter(db, table, listId, localityCode).filter.mightContain(dedupeHash);
+        (mightExist ? possibleHits : definiteMisses).increment();
+        return mightExist;
+    }
+
+    /**
+     * Adds the dedupe_hash of a record routed as INSERT to the filter of its list.
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param listId       list_id of the record
+     * @param localityCode locality_code of the record
+     * @param dedupeHash   dedupe_hash of the record
+     */
+    public void recordInsert(String db, String table, String listId, String localityCode, String dedupeHash) {
+        ListFilter listFilter = getFilter(db, table, listId, localityCode);
+        listFilter.filter.put(dedupeHash);
+        listFilter.inserts.incrementAndGet();
+    }
+
+    /**
+     * Counts a lookup that the filter passed to the database and that found no existing record.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Fetches the filter of a list, building it from the database when absent or expired.
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param listId       list_id
+     * @param localityCode locality_code
+     * @return {@link ListFilter} of the list, built
+     */
+    private ListFilter getFilter(String db, String table, String listId, String localityCode) {
+        List<String> key = Arrays.asList(db, table, listId, localityCode);
+        ListFilter listFilter;
+        synchronized (filters) {
+            listFilter = filters.get(key);
+            if (listFilter == null || System.currentTimeMillis() - listFilter.builtAt > ttlMillis) {
+                ListFilter rebuilt = new ListFilter();
+                if (listFilter != null) {
+                    rebuilt.jobIds.addAll(listFilter.jobIds);
+                }
+                listFilter = rebuilt;
+                filters.put(key, listFilter);
+            }
+        }
+        synchronized (listFilter) {
+            if (listFilter.filter == null) {
+                build(db, table, listId, localityCode, listFilter);
+                listFilter.builtAt = System.currentTimeMillis();
+            }
+            return listFilter;
+        }
+    }
+
+    /**
+     * Builds the filter of a list from its existing dedupe_hash values.
+     *
+     * @param db           database name
+     * @param table        table name
+     * @param listId       list_id
+     * @param localityCode locality_code
+     * @param listFilter   {@link ListFilter} of the list, to set the filter and the number of records it is built from
+     */
+    private void build(String db, String table, String listId, String localityCode, ListFilter listFilter) {
+        long startTime = System.currentTimeMillis();
+        long existingRecords = dao.countRecords(db, table, localityCode, listId);
+        BloomFilter filter = BloomFilter.create(Math.max(minExpectedRecords, existingRecords * 2), falsePositiveProbability, maxBitsPerList);
+        dao.forEachDedupeHash(db, table, localityCode, listId, filter::put);
+        log.info("Built existence filter of " + filter.getBitCount() + " bits for list_id: " + listId + ", locality_code: " + localityCode
+                + " from " + existingRecords + " records in " + (System.currentTimeMillis() - startTime) + " ms");
+        listFilter.builtRecords = existingRecords;
+        listFilter.filter = filter;
+    }
+
+    /**
+     * @return number of lists with a filter held in memory.
+     */
+    private int size() {
+        synchronized (filters) {
+            return filters.size();
+        }
+    }
+
+    /**
+     * @return total number of bits of the filters held in memory.
+     */
+    private long bitCount() {
+        synchronized (filters) {
+            return filters.values().stream().filter(listFilter -> listFilter.filter != null)
+                    .mapToLong(listFilter -> listFilter.filter.getBitCount()).sum();
+        }
+    }
+
+    /**
+     * Filter of a list, built lazily by the first lookup of the list, with the job_id values seen for the list, the number of records it was
+     * built from and the number of inserts routed since.
+     */
+    private static class ListFilter {
+
+        private final Set<String> jobIds = new HashSet<>();
+
+        private final AtomicLong inserts = new AtomicLong();
+
+        private volatile BloomFilter filter;
+
+        private volatile long builtRecords;
+
+        private volatile long builtAt = System.currentTimeMillis();
+
+        /**
+         * @return number of records of the list expected in the database if only this instance routed inserts to it.
+         */
+        private long expectedRecords() {
+            return builtRecords + inserts.get();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.sproutloud.starter.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sproutloud.starter.stream.dao.DedupeDao;
+import com.sproutloud.starter.stream.filter.ListExistenceFilter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the batched lookups of {@link DedupeHandler}
+ *
+ * @author mgande
+ */
+@ExtendWith(MockitoExtension.class)
+class DedupeHandlerTest {
+
+    @InjectMocks
+    private DedupeHandler handler;
+
+    @Mock
+    private DedupeDao dao;
+
+    @Mock
+    private ListExistenceFilter existenceFilter;
+
+    /**
+     * Tests that the records of a list are looked up with a single query, and the existing entry, with the fields of
+     * the record, is assigned to the record of its dedupe_hash only.
+     */
+    @Test
+    void testExecuteBatch() {
+        ReflectionTestUtils.setField(handler, "maxHashesPerQuery", 1000);
+        Map<String, String> existingRecord = new HashMap<>();
+        existingRecord.put("dedupe_hash", "H2");
+        existingRecord.put("list_id", "LI1");
+        existingRecord.put("locality_code", "SL_US");
+        existingRecord.put("recipient_id", "RC2");
+        when(dao.getRecordsFromListData(eq("lm"), eq("list_data"), anyCollection(), eq("SL_US"), eq("LI1"), any()))
+                .thenReturn(Collections.singletonMap("H2", existingRecord));
+
+        List<Map<String, String>> existingEntries = handler.executeBatch(Arrays.asList(record("H1"), record("H2"), record("H3")));
+
+        verify(dao, times(1)).getRecordsFromListData(eq("lm"), eq("list_data"), eq(Arrays.asList("H1", "H2", "H3")), eq("SL_US"),
+                eq("LI1"), any());
+        assertEquals(3, existingEntries.size());
+        assertNull(existingEntries.get(0));
+        assertEquals("RC2", existingEntries.get(1).get("recipient_id"));
+        assertEquals(5, existingEntries.get(1).size());
+        assertNull(existingEntries.get(2));
+    }
+
+    /**
+     * Tests that the dedupe_hash values of a list are split into chunks of max-hashes-per-query values.
+     */
+    @Test
+    void testExecuteBatchInChunks() {
+        ReflectionTestUtils.setField(handler, "maxHashesPerQuery", 2);
+        when(dao.getRecordsFromListData(any(), any(), anyCollection(), any(), any(), any())).thenReturn(Collections.emptyMap());
+
+        handler.executeBatch(Arrays.asList(record("H1"), record("H2"), record("H3")));
+
+        verify(dao).getRecordsFromListData(eq("lm"), eq("list_data"), eq(Arrays.asList("H1", "H2")), eq("SL_US"), eq("LI1"), any());
+        verify(dao).getRecordsFromListData(eq("lm"), eq("list_data"), eq(Collections.singletonList("H3")), eq("SL_US"), eq("LI1"), any());
+    }
+
+    /**
+     * Tests that the job_id values of a list are registered with the existence filter, that the dedupe_hash values
+     * definitely absent as per the filter are not looked up, and that the values not found are added to the filter.
+     */
+    @Test
+    void testExecuteBatchWithExistenceFilter() {
+        ReflectionTestUtils.setField(handler, "maxHashesPerQuery", 1000);
+        when(existenceFilter.isEnabled()).thenReturn(true);
+        when(existenceFilter.mightExist("lm", "list_data", "LI1", "SL_US", "H1")).thenReturn(false);
+        when(existenceFilter.mightExist("lm", "list_data", "LI1", "SL_US", "H2")).thenReturn(true);
+        when(dao.getRecordsFromListData(any(), any(), anyCollection(), any(), any(), any())).thenReturn(Collections.emptyMap());
+
+        List<Map<String, String>> existingEntries = handler.executeBatch(Arrays.asList(record("H1"), record("H2")));
+
+        verify(existenceFilter).recordJobs("lm", "list_data", "LI1", "SL_US", Collections.singleton("JB1"));
+        verify(dao).getRecordsFromListData(eq("lm"), eq("list_data"), eq(Collections.singletonList("H2")), eq("SL_US"), eq("LI1"), any());
+        verify(existenceFilter).recordInsert("lm", "list_data", "LI1", "SL_US", "H1");
+        verify(existenceFilter).recordInsert("lm", "list_data", "LI1", "SL_US", "H2");
+        verify(existenceFilter, times(1)).recordFalsePositive();
+        assertNull(existingEntries.get(0));
+        assertNull(existingEntries.get(1));
+    }
+
+    /**
+     * @param dedupeHash dedupe_hash of the record
+     * @return incoming json of a record
+     */
+    private Map<String, Object> record(String dedupeHash) {
+        Map<String, Object> fieldsData = new HashMap<>();
+        fieldsData.put("dedupe_hash", dedupeHash);
+        fieldsData.put("list_id", "LI1");
+        fieldsData.put("locality_code", "SL_US");
+        fieldsData.put("job_id", "JB1");
+        fieldsData.put("recipient_id", "");
+        Map<String, Object> input = new HashMap<>();
+        input.put("target_db", "lm");
+        input.put("target_table", "list_data");
+        input.put("fields_data", fieldsData);
+        return input;
+    }
+}
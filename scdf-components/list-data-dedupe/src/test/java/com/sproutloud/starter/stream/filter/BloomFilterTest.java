@@ -0,0 +1,43 @@
+package com.sproutloud.starter.stream.filter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link BloomFilter}
+ *
+ * @author mgande
+ */
+class BloomFilterTest {
+
+    /**
+     * Tests that every added value is found, and that the false positives stay near the requested probability.
+     */
+    @Test
+    void testMightContain() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01, 1L << 24);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("HASH" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("HASH" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (filter.mightContain("HASH" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+    }
+
+    /**
+     * Tests that an empty filter contains nothing.
+     */
+    @Test
+    void testEmptyFilter() {
+        assertFalse(BloomFilter.create(100, 0.01, 1024).mightContain("HASH"));
+    }
+}
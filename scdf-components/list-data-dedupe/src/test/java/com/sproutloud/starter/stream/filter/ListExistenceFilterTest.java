@@ -0,0 +1,107 @@
+package com.sproutloud.starter.stream.filter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sproutloud.starter.stream.dao.DedupeDao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Tests {@link ListExistenceFilter}
+ *
+ * @author mgande
+ */
+class ListExistenceFilterTest {
+
+    /**
+     * dedupe_hash values of the list in the database
+     */
+    private final Set<String> rows = new LinkedHashSet<>();
+
+    private DedupeDao dao;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init() {
+        dao = mock(DedupeDao.class);
+        doAnswer(invocation -> {
+            rows.forEach(invocation.<Consumer<String>>getArgument(4));
+            return null;
+        }).when(dao).forEachDedupeHash(eq("lm"), eq("list_data"), eq("SL_US"), eq("LI1"), any(Consumer.class));
+        when(dao.countRecords("lm", "list_data", "SL_US", "LI1")).then(invocation -> (long) rows.size());
+    }
+
+    /**
+     * Tests that a new job of a list rebuilds the filter only when the list holds more records than the filter was built from plus the
+     * inserts it routed, so that a record written by another app is not a definite miss.
+     */
+    @Test
+    void testRebuildOnlyWhenListChanged() {
+        ListExistenceFilter filter = filter(1, false);
+
+        filter.recordJobs("lm", "list_data", "LI1", "SL_US", Collections.singleton("JB1"));
+        assertFalse(filter.mightExist("lm", "list_data", "LI1", "SL_US", "H1"));
+        filter.recordInsert("lm", "list_data", "LI1", "SL_US", "H1");
+        rows.add("H1");
+
+        filter.recordJobs("lm", "list_data", "LI1", "SL_US", Collections.singleton("JB2"));
+        assertTrue(filter.mightExist("lm", "list_data", "LI1", "SL_US", "H1"));
+        verify(dao, times(1)).forEachDedupeHash(eq("lm"), eq("list_data"), eq("SL_US"), eq("LI1"), any());
+
+        rows.add("H2");
+        filter.recordJobs("lm", "list_data", "LI1", "SL_US", Collections.singleton("JB2"));
+        filter.recordJobs("lm", "list_data", "LI1", "SL_US", Collections.singleton("JB3"));
+        assertTrue(filter.mightExist("lm", "list_data", "LI1", "SL_US", "H2"));
+        assertTrue(filter.mightExist("lm", "list_data", "LI1", "SL_US", "H1"));
+        verify(dao, times(2)).forEachDedupeHash(eq("lm"), eq("list_data"), eq("SL_US"), eq("LI1"), any());
+        verify(dao, times(4)).countRecords("lm", "list_data", "SL_US", "LI1");
+    }
+
+    /**
+     * Tests that the filter is disabled when several instances could route the records of a list, unless the input is partitioned.
+     */
+    @Test
+    void testSingleWriterGuard() {
+        assertFalse(filter(2, false).isEnabled());
+        assertTrue(filter(2, true).isEnabled());
+        assertTrue(filter(1, false).isEnabled());
+    }
+
+    /**
+     * @param instanceCount number of instances of the app
+     * @param partitioned   true if the input is partitioned
+     * @return filter enabled by configuration, reading from the dao
+     */
+    private ListExistenceFilter filter(int instanceCount, boolean partitioned) {
+        ListExistenceFilter filter = new ListExistenceFilter();
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "falsePositiveProbability", 0.01);
+        ReflectionTestUtils.setField(filter, "minExpectedRecords", 1000L);
+        ReflectionTestUtils.setField(filter, "maxBitsPerList", 1L << 20);
+        ReflectionTestUtils.setField(filter, "maxLists", 4);
+        ReflectionTestUtils.setField(filter, "ttlMillis", 3600000L);
+        ReflectionTestUtils.setField(filter, "instanceCount", instanceCount);
+        ReflectionTestUtils.setField(filter, "partitioned", partitioned);
+        ReflectionTestUtils.setField(filter, "dao", dao);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(filter, "initialize");
+        return filter;
+    }
+}
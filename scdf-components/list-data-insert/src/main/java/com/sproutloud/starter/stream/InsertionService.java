@@ -3,13 +3,25 @@ package com.sproutloud.starter.stream;
 import com.sproutloud.starter.stream.dao.InsertionDao;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.sql.SQLException;
+import javax.annotation.PostConstruct;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +35,62 @@ public class InsertionService {
     @Autowired
     InsertionDao dao;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Runs an insert in a nested transaction, so that its failure only rolls back to the savepoint taken before it
+     */
+    private TransactionTemplate savepoint;
+
+    /**
+     * Maximum number of rows sent to the database in a single JDBC batch
+     */
+    @Value("${insert.batch.max-rows:1000}")
+    private int maxBatchRows;
+
+    /**
+     * Enables the COPY bulk-load mode for jobs with a large insert volume
+     */
+    @Value("${insert.copy.enabled:true}")
+    private boolean copyEnabled;
+
+    /**
+     * Number of rows inserted for a job, after which its rows are bulk loaded with COPY
+     */
+    @Value("${insert.copy.threshold-rows:100000}")
+    private long copyThresholdRows;
+
+    /**
+     * Minimum number of rows of a table in a micro-batch to bulk load them with COPY, below which a JDBC batch is cheaper
+     */
+    @Value("${insert.copy.min-batch-rows:100}")
+    private int copyMinBatchRows;
+
+    /**
+     * Maximum number of jobs whose insert volume is tracked
+     */
+    @Value("${insert.copy.max-tracked-jobs:1000}")
+    private int maxTrackedJobs;
+
+    /**
+     * Number of rows inserted with key as job_id, in access order
+     */
+    private final Map<String, Long> jobInsertVolumes = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxTrackedJobs;
+        }
+    };
+
+    @PostConstruct
+    private void initialize() {
+        savepoint = new TransactionTemplate(transactionManager);
+        savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    }
+
     /**
      * Supports the persistence the input data to database table. Extracts the column name and values from the input
      * columnMap, and triggers and insert to the database table.
@@ -31,32 +99,142 @@ public class InsertionService {
      * @param tableName Database table to which data in columnMap is saved
      * @param columnMap Map with keys as column names and values as respective values to save to database table
      */
-    public void persistToDb(String dbName, String tableName, Map<String, Object> columnMap) throws SQLException {
-        prepareDbData(columnMap);
-        String columnKeyString = String.join(",", columnMap.keySet());
-        String columnValueString = columnMap.values().stream().map(val -> "'" + val + "'")
-                .collect(Collectors.joining(","));
+    public void persistToDb(String dbName, String tableName, Map<String, Object> columnMap) {
         log.debug(String.format("Inserting row %s to table %s %n", columnMap.keySet().stream()
                         .map(key -> key + "=" + columnMap.get(key)).collect(Collectors.joining(",", "{", "}")),
                 dbName + "." + tableName));
-        dao.insertRowData(dbName, tableName, columnKeyString, columnValueString);
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedRows =
+                persistBatchToDb(Collections.singletonMap(Arrays.asList(dbName, tableName), Collections.singletonList(columnMap)));
+        if (!rejectedRows.isEmpty()) {
+            throw rejectedRows.get(columnMap);
+        }
+    }
+
+    /**
+     * Persists the rows of a micro-batch in a single transaction. The rows of a table with the same columns are inserted
+     * with one prepared statement, in JDBC batches of insert.batch.max-rows rows, so the values are bound as parameters
+     * instead of being written into the query. Once a job has passed insert.copy.threshold-rows rows, the rows of its
+     * tables are bulk loaded with COPY instead.
+     *
+     * A JDBC batch or COPY failing on its data, as the BatchUpdateException of the driver is translated to a
+     * {@link DataIntegrityViolationException}, is rolled back to its savepoint and its rows are inserted one by one, so that a
+     * single bad row does not fail the whole micro-batch on every redelivery. The rows failing on their own are rejected; any
+     * other failure is thrown, for the micro-batch to be redelivered.
+     *
+     * @param rowsByTable Map with key as database and table name, and value as the column maps of the rows to insert
+     * @return Map with key as the column map of each rejected row, by identity, and value as the failure of its insert
+     */
+    @Transactional
+    public Map<Map<String, Object>, DataIntegrityViolationException> persistBatchToDb(
+            Map<List<String>, List<Map<String, Object>>> rowsByTable) {
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedRows = new IdentityHashMap<>();
+        for (Map.Entry<List<String>, List<Map<String, Object>>> table : rowsByTable.entrySet()) {
+            String dbName = table.getKey().get(0);
+            String tableName = table.getKey().get(1);
+            Map<String, Long> rowsByJob = new HashMap<>();
+            Map<List<String>, List<Map<String, Object>>> rowsByColumns = new LinkedHashMap<>();
+            for (Map<String, Object> columnMap : table.getValue()) {
+                rowsByJob.merge(String.valueOf(columnMap.get("job_id")), 1L, Long::sum);
+                prepareDbData(columnMap);
+                rowsByColumns.computeIfAbsent(new ArrayList<>(new TreeSet<>(columnMap.keySet())), columns -> new ArrayList<>())
+                        .add(columnMap);
+            }
+            boolean bulkLoad = trackInsertVolume(rowsByJob);
+            for (Map.Entry<List<String>, List<Map<String, Object>>> rows : rowsByColumns.entrySet()) {
+                List<Map<String, Object>> columnMaps = rows.getValue();
+                if (bulkLoad && columnMaps.size() >= copyMinBatchRows) {
+                    insertChunk(dbName, tableName, rows.getKey(), columnMaps, true, rejectedRows);
+                    continue;
+                }
+                for (int from = 0; from < columnMaps.size(); from += maxBatchRows) {
+                    List<Map<String, Object>> chunk = columnMaps.subList(from, Math.min(from + maxBatchRows, columnMaps.size()));
+                    insertChunk(dbName, tableName, rows.getKey(), chunk, false, rejectedRows);
+                }
+            }
+            log.debug("Inserted " + table.getValue().size() + " rows to table " + dbName + "." + tableName);
+        }
+        return rejectedRows;
+    }
+
+    /**
+     * Inserts the rows of a table with the same columns as one JDBC batch or COPY, falling back to inserting them one by one if it
+     * fails on their data.
+     *
+     * @param dbName       Database name
+     * @param tableName    Database table name
+     * @param columnNames  column names of the rows
+     * @param columnMaps   column maps of the rows to insert
+     * @param copy         true to bulk load the rows with COPY
+     * @param rejectedRows rejected rows, to which the rows failing on their own are added
+     */
+    private void insertChunk(String dbName, String tableName, List<String> columnNames, List<Map<String, Object>> columnMaps,
+            boolean copy, Map<Map<String, Object>, DataIntegrityViolationException> rejectedRows) {
+        try {
+            savepoint.execute(status -> {
+                if (copy) {
+                    long copied = dao.copyRows(dbName, tableName, columnNames, columnMaps);
+                    log.debug("Copied " + copied + " rows to table " + dbName + "." + tableName);
+                } else {
+                    dao.insertRows(dbName, tableName, columnNames, columnMaps);
+                }
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Insert of " + columnMaps.size() + " rows to table " + dbName + "." + tableName
+                    + " failed, inserting them one by one: " + e.getMostSpecificCause().getMessage());
+            for (Map<String, Object> columnMap : columnMaps) {
+                try {
+                    savepoint.execute(status -> {
+                        dao.insertRows(dbName, tableName, columnNames, Collections.singletonList(columnMap));
+                        return null;
+                    });
+                } catch (DataIntegrityViolationException rowFailure) {
+                    log.error("Rejected row of recipient_id: " + columnMap.get("recipient_id") + " of table " + dbName + "." + tableName
+                            + ": " + rowFailure.getMostSpecificCause().getMessage());
+                    rejectedRows.put(columnMap, rowFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the rows of a micro-batch to the insert volume of their jobs.
+     *
+     * @param rowsByJob Map with key as job_id and value as the number of rows of the job in the micro-batch
+     * @return true if any of the jobs has passed the COPY threshold
+     */
+    private boolean trackInsertVolume(Map<String, Long> rowsByJob) {
+        boolean bulkLoad = false;
+        synchronized (jobInsertVolumes) {
+            for (Map.Entry<String, Long> job : rowsByJob.entrySet()) {
+                long volume = jobInsertVolumes.merge(job.getKey(), job.getValue(), Long::sum);
+                if (copyEnabled && volume >= copyThresholdRows) {
+                    if (volume - job.getValue() < copyThresholdRows) {
+                        log.info("Switching job_id: " + job.getKey() + " to COPY bulk load after " + volume + " rows");
+                    }
+                    bulkLoad = true;
+                }
+            }
+        }
+        return bulkLoad;
     }
 
     /**
-     * Formats or adds the necessary column data for database table
+     * Formats or adds the necessary column data for database table. The job_id and recipient_source values are split
+     * into String arrays, which are bound as text arrays by {@link InsertionDao#insertRows}.
      *
      * @param columnMap Map with keys as column names and values as respective values to save to database table
      */
-    private void prepareDbData(Map<String, Object> columnMap) throws SQLException {
+    private void prepareDbData(Map<String, Object> columnMap) {
         Timestamp ts = new Timestamp(System.currentTimeMillis());
         columnMap.put("modified_ts", ts);
         columnMap.put("created_ts", ts);
         columnMap.put("user_created_ts", ts);
 
         String input = (String) columnMap.get("job_id");
-        columnMap.put("job_id", dao.createArray(input.split(",")));
+        columnMap.put("job_id", input.split(","));
 
         input = (String) columnMap.get("recipient_source");
-        columnMap.put("recipient_source", dao.createArray(input.split(",")));
+        columnMap.put("recipient_source", input.split(","));
     }
 }
@@ -1,23 +1,34 @@
 package com.sproutloud.starter.stream;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import static com.sproutloud.starter.stream.util.ApplicationConstants.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.data.jdbc.repository.config.EnableJdbcRepositories;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.integration.annotation.Splitter;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.util.CollectionUtils;
 
 import java.io.IOException;
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -42,6 +53,10 @@ public class ListDataInsertApplication {
     @Autowired
     private InsertionService dbService;
 
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    private MessageChannel errorChannel;
+
     /**
      * Triggers the simple spring boot application
      *
@@ -53,21 +68,67 @@ public class ListDataInsertApplication {
 
     /**
      * Triggers the required queries to save the incoming data to the database with given connection details in the
-     * application
+     * application. When the input binding consumes in batch mode, the payload is a list of records, which are saved
+     * together, see {@link #saveBatchToDb(List)}.
      *
-     * @param payload incoming {@link org.springframework.messaging.Message} payload containing the data to be saved
-     *                to given database
-     * @return
+     * @param message incoming {@link Message} containing the data to be saved to given database
+     * @return the response json of each saved record
      */
-    @StreamListener(Processor.INPUT)
-    @SendTo(Processor.OUTPUT)
-    public Map<String, Object> saveToDb(String payload) throws IOException, SQLException {
-        JsonNode jsonNode = mapper.readTree(payload);
-        Map<String, Object> input = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
+    @Splitter(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
+    public List<Map<String, Object>> saveToDb(Message<?> message) throws IOException {
+        if (message.getPayload() instanceof List) {
+            return saveBatchToDb(message, (List<?>) message.getPayload());
+        }
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         input.put(StringUtils.IN_TIME, System.currentTimeMillis());
         parseAndSave(input);
-        return createResponse(input);
+        return Collections.singletonList(createResponse(input));
+    }
+
+    /**
+     * Saves a micro-batch of records in one transaction, with the rows of each table inserted as JDBC batches. The
+     * responses are only returned, and so emitted, once the batch is committed. A record whose row the database rejects
+     * is sent to the error channel instead of a response. See the batch-mode consumers section of the README for the
+     * binding properties.
+     *
+     * @param message  incoming {@link Message} of the batch
+     * @param payloads payload of each record of the batch
+     * @return the response json of each inserted record
+     * @throws IOException exception occurred while trying to parse a payload
+     */
+    private List<Map<String, Object>> saveBatchToDb(Message<?> message, List<?> payloads) throws IOException {
+        List<Map<String, Object>> inputs = new ArrayList<>(payloads.size());
+        Map<List<String>, List<Map<String, Object>>> rowsByTable = new LinkedHashMap<>();
+        Map<Map<String, Object>, Map<String, Object>> inputsByRow = new IdentityHashMap<>();
+        for (Object payload : payloads) {
+            Map<String, Object> input = PayloadDecoder.decode(mapper, payload);
+            input.put(StringUtils.IN_TIME, System.currentTimeMillis());
+            inputs.add(input);
+            Map<String, Object> columnMap = PayloadDecoder.getMap(input, FIELDS_DATA);
+            if (Objects.isNull(input.get(TABLE))) {
+                log.error("Database and table name are missing in the input json");
+            } else if (!CollectionUtils.isEmpty(columnMap)) {
+                // copied, as the db values prepared for the insert must not leak into the response
+                Map<String, Object> row = new HashMap<>(columnMap);
+                inputsByRow.put(row, input);
+                rowsByTable.computeIfAbsent(Arrays.asList((String) input.get(DATABASE), (String) input.get(TABLE)), table -> new ArrayList<>())
+                        .add(row);
+            }
+        }
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedRows = dbService.persistBatchToDb(rowsByTable);
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs = new IdentityHashMap<>();
+        rejectedRows.forEach((row, failure) -> rejectedInputs.put(inputsByRow.get(row), failure));
+        List<Map<String, Object>> output = new ArrayList<>(inputs.size());
+        for (Map<String, Object> input : inputs) {
+            if (rejectedInputs.containsKey(input)) {
+                Message<Map<String, Object>> failedMessage = MessageBuilder.withPayload(input).copyHeaders(message.getHeaders()).build();
+                errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, rejectedInputs.get(input))));
+            } else {
+                output.add(createResponse(input));
+            }
+        }
+        log.info("Inserted " + output.size() + " of " + inputs.size() + " records of batch");
+        return output;
     }
 
     /**
@@ -77,8 +138,7 @@ public class ListDataInsertApplication {
      * @return output response created by formatting the input
      */
     private Map<String, Object> createResponse(Map<String, Object> input) {
-        Map<String, Object> fieldsData = mapper.convertValue(input.get(FIELDS_DATA), new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
         input.put(LIST_ID, fieldsData.get(LIST_ID));
         input.put(RECIPIENT_ID, fieldsData.get(RECIPIENT_ID));
         input.put(LOCALITY_CODE, fieldsData.get(LOCALITY_CODE));
@@ -101,16 +161,16 @@ public class ListDataInsertApplication {
      * @param input incoming Map<String><String> with fields data
      * @throws IOException exception occurred while trying to parsing input json for required data
      */
-    private void parseAndSave(Map<String, Object> input) throws SQLException {
+    private void parseAndSave(Map<String, Object> input) {
         if (Objects.nonNull(input.get(TABLE))) {
             String db = null;
             if (Objects.nonNull(input.get(DATABASE)))
                 db = (String) input.get(DATABASE);
             String table = (String) input.get(TABLE);
-            Map<String, Object> columnMap = mapper.convertValue(input.get(FIELDS_DATA), new TypeReference<Map<String, Object>>() {
-            });
+            Map<String, Object> columnMap = PayloadDecoder.getMap(input, FIELDS_DATA);
             if (!CollectionUtils.isEmpty(columnMap)) {
-                dbService.persistToDb(db, table, columnMap);
+                // copied, as the db values prepared for the insert must not leak into the response
+                dbService.persistToDb(db, table, new HashMap<>(columnMap));
             }
         } else {
             log.error("Database and table name are missing in the input json");
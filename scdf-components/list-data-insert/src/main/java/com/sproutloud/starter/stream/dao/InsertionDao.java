@@ -1,6 +1,11 @@
 package com.sproutloud.starter.stream.dao;
 
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.stereotype.Repository;
@@ -9,10 +14,17 @@ import org.springframework.util.StringUtils;
 
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
-import java.sql.Array;
-import java.sql.Connection;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.StringJoiner;
 
 /**
  * Provides JDBC support to connect to database. Check {@link DataSource} for details. Provide db properties for
@@ -32,36 +44,131 @@ public class InsertionDao extends JdbcDaoSupport {
     }
 
     /**
-     * Inserts row data to given table
+     * Inserts rows with the same columns to given table, with one prepared statement executed as a JDBC batch. The
+     * values are bound as parameters; String[] values are bound as text arrays created on the statement's own
+     * connection. With reWriteBatchedInserts=true in the datasource url, the driver sends the batch as multi-row inserts.
+     * Rows conflicting with a row already in the table are skipped with ON CONFLICT DO NOTHING, so that a redelivered
+     * micro-batch does not fail on the rows it wrote before.
      *
-     * @param dbName       Database name to run the insert query
-     * @param tableName    Database table name to insert data
-     * @param columnNames  comma separated column names for insert query
-     * @param columnValues respective comma separated column values for insert query
+     * @param dbName      Database name to run the insert query
+     * @param tableName   Database table name to insert data
+     * @param columnNames column names for insert query
+     * @param rows        column maps of the rows to insert
      */
     @Transactional
-    public void insertRowData(String dbName, String tableName, String columnNames, String columnValues) {
-        StringBuffer insertListData = new StringBuffer().append("INSERT INTO ");
+    public void insertRows(String dbName, String tableName, List<String> columnNames, List<Map<String, Object>> rows) {
+        StringBuilder insertListData = new StringBuilder().append("INSERT INTO ");
         if (!StringUtils.isEmpty(dbName)) {
             insertListData.append(dbName + ".");
         }
-        insertListData.append(tableName).append(" (").append(columnNames).append(") values(").append(columnValues).append(")");
-        Objects.requireNonNull(getJdbcTemplate()).update(insertListData.toString());
+        insertListData.append(tableName).append(" (").append(String.join(",", columnNames)).append(") values(")
+                .append(String.join(",", Collections.nCopies(columnNames.size(), "?"))).append(") ON CONFLICT DO NOTHING");
+        Objects.requireNonNull(getJdbcTemplate()).batchUpdate(insertListData.toString(), new BatchPreparedStatementSetter() {
+
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map<String, Object> row = rows.get(i);
+                for (int column = 0; column < columnNames.size(); column++) {
+                    setValue(ps, column + 1, row.get(columnNames.get(column)));
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    /**
+     * Bulk loads rows with the same columns to given table, streaming them through the COPY FROM STDIN protocol in text
+     * format. The copy runs on the connection of the current transaction, so it commits or rolls back with it. COPY can
+     * not skip conflicting rows, so rows already in the table fail the copy on their unique key.
+     *
+     * @param dbName      Database name to run the copy
+     * @param tableName   Database table name to load data
+     * @param columnNames column names for the copy
+     * @param rows        column maps of the rows to load
+     * @return number of rows loaded
+     */
+    @Transactional
+    public long copyRows(String dbName, String tableName, List<String> columnNames, List<Map<String, Object>> rows) {
+        StringBuilder copyListData = new StringBuilder().append("COPY ");
+        if (!StringUtils.isEmpty(dbName)) {
+            copyListData.append(dbName + ".");
+        }
+        copyListData.append(tableName).append(" (").append(String.join(",", columnNames)).append(") FROM STDIN");
+        return Objects.requireNonNull(getJdbcTemplate()).execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = new CopyManager(connection.unwrap(BaseConnection.class)).copyIn(copyListData.toString());
+            try {
+                StringBuilder line = new StringBuilder();
+                for (Map<String, Object> row : rows) {
+                    line.setLength(0);
+                    for (int column = 0; column < columnNames.size(); column++) {
+                        if (column > 0) {
+                            line.append('\t');
+                        }
+                        line.append(toCopyText(row.get(columnNames.get(column))));
+                    }
+                    byte[] bytes = line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+                    copyIn.writeToCopy(bytes, 0, bytes.length);
+                }
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
     }
 
     /**
-     * Creates an array value in database, using the Array java object
+     * Formats a column value for the text format of COPY. Timestamps are written with the offset of the JVM, as bound by
+     * {@link PreparedStatement#setTimestamp}, and String[] values as text array literals.
      *
-     * @param inputArr used to create sql array
-     * @return the sql array created
-     * @throws SQLException if fails to get Connection
+     * @param value column value
+     * @return escaped text of the value, \N for null
      */
-    public Array createArray(Object[] inputArr) throws SQLException {
-        try (final Connection connection = dataSource.getConnection();) {
-            return connection.createArrayOf("text", inputArr);
+    static String toCopyText(Object value) {
+        if (value == null) {
+            return "\\N";
+        }
+        String text;
+        if (value instanceof Timestamp) {
+            text = ((Timestamp) value).toLocalDateTime().atZone(ZoneId.systemDefault()).toOffsetDateTime().toString();
+        } else if (value instanceof String[]) {
+            StringJoiner array = new StringJoiner(",", "{", "}");
+            for (String element : (String[]) value) {
+                array.add("\"" + element.replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+            }
+            text = array.toString();
+        } else {
+            text = String.valueOf(value);
         }
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
     }
-    
+
+    /**
+     * Binds a column value. Values other than timestamps and arrays are bound untyped, leaving the database to convert
+     * them to the column type, as it did for the quoted literals.
+     *
+     * @param ps    statement to bind the value to
+     * @param index parameter index
+     * @param value column value
+     * @throws SQLException if the value can not be bound
+     */
+    private void setValue(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.OTHER);
+        } else if (value instanceof Timestamp) {
+            ps.setTimestamp(index, (Timestamp) value);
+        } else if (value instanceof String[]) {
+            ps.setArray(index, ps.getConnection().createArrayOf("text", (String[]) value));
+        } else {
+            ps.setObject(index, String.valueOf(value), Types.OTHER);
+        }
+    }
+
     public JdbcTemplate getJdbcTemplateForTest() {
         return Objects.requireNonNull(getJdbcTemplate());
     }
@@ -0,0 +1,143 @@
+package com.sproutloud.starter.stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.sproutloud.starter.stream.dao.InsertionDao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the batched inserts of {@link InsertionService}
+ *
+ * @author sgoyal
+ */
+@ExtendWith(MockitoExtension.class)
+class InsertionServiceTest {
+
+    @InjectMocks
+    private InsertionService service;
+
+    @Mock
+    private InsertionDao dao;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void init() {
+        ReflectionTestUtils.invokeMethod(service, "initialize");
+    }
+
+    /**
+     * Tests that the rows of a table are inserted in chunks of max-rows rows, with the job_id and recipient_source
+     * values as arrays.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPersistBatchToDb() {
+        ReflectionTestUtils.setField(service, "maxBatchRows", 2);
+        List<Map<String, Object>> rows = new ArrayList<>(Arrays.asList(row("RC1"), row("RC2"), row("RC3")));
+
+        service.persistBatchToDb(Collections.singletonMap(Arrays.asList("lm", "list_data"), rows));
+
+        ArgumentCaptor<List<String>> columns = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<Map<String, Object>>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(2)).insertRows(eq("lm"), eq("list_data"), columns.capture(), chunks.capture());
+        assertEquals(Arrays.asList("created_ts", "job_id", "modified_ts", "recipient_id", "recipient_source", "user_created_ts"),
+                columns.getValue());
+        assertEquals(2, chunks.getAllValues().get(0).size());
+        assertEquals(1, chunks.getAllValues().get(1).size());
+        assertArrayEquals(new String[] { "SJ1", "SJ2" }, (String[]) chunks.getAllValues().get(1).get(0).get("job_id"));
+    }
+
+    /**
+     * Tests that rows of a table with different columns are inserted with separate statements.
+     */
+    @Test
+    void testPersistBatchToDbByColumns() {
+        ReflectionTestUtils.setField(service, "maxBatchRows", 1000);
+        Map<String, Object> otherRow = row("RC2");
+        otherRow.put("email", "a@b.cd");
+
+        service.persistBatchToDb(Collections.singletonMap(Arrays.asList("lm", "list_data"), Arrays.asList(row("RC1"), otherRow)));
+
+        verify(dao, times(2)).insertRows(eq("lm"), eq("list_data"), anyList(), anyList());
+    }
+
+    /**
+     * Tests that the rows of a job are bulk loaded with COPY once the job passes the threshold.
+     */
+    @Test
+    void testPersistBatchToDbWithCopy() {
+        ReflectionTestUtils.setField(service, "maxBatchRows", 1000);
+        ReflectionTestUtils.setField(service, "copyEnabled", true);
+        ReflectionTestUtils.setField(service, "copyThresholdRows", 3L);
+        ReflectionTestUtils.setField(service, "copyMinBatchRows", 2);
+        ReflectionTestUtils.setField(service, "maxTrackedJobs", 10);
+
+        service.persistBatchToDb(Collections.singletonMap(Arrays.asList("lm", "list_data"), Arrays.asList(row("RC1"), row("RC2"))));
+        service.persistBatchToDb(Collections.singletonMap(Arrays.asList("lm", "list_data"), Arrays.asList(row("RC3"), row("RC4"))));
+
+        verify(dao, times(1)).insertRows(eq("lm"), eq("list_data"), anyList(), anyList());
+        verify(dao, times(1)).copyRows(eq("lm"), eq("list_data"), anyList(), anyList());
+    }
+
+    /**
+     * Tests that a JDBC batch failing on the data of a row is inserted one row at a time, and that only the failing row is rejected.
+     */
+    @Test
+    void testPersistBatchToDbRejectsBadRow() {
+        ReflectionTestUtils.setField(service, "maxBatchRows", 1000);
+        Map<String, Object> badRow = row("RC2");
+        DataIntegrityViolationException failure = new DataIntegrityViolationException("duplicate key value");
+        doThrow(failure).when(dao).insertRows(eq("lm"), eq("list_data"), anyList(), argThat(chunk -> chunk.contains(badRow)));
+
+        List<Map<String, Object>> rows = Arrays.asList(row("RC1"), badRow, row("RC3"));
+
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedRows =
+                service.persistBatchToDb(Collections.singletonMap(Arrays.asList("lm", "list_data"), rows));
+
+        verify(dao, times(4)).insertRows(eq("lm"), eq("list_data"), anyList(), anyList());
+        verify(dao, times(2)).insertRows(eq("lm"), eq("list_data"), anyList(), argThat(chunk -> chunk.size() == 1 && !chunk.contains(badRow)));
+        assertEquals(1, rejectedRows.size());
+        assertTrue(rejectedRows.containsKey(badRow));
+        assertSame(failure, rejectedRows.get(badRow));
+    }
+
+    /**
+     * @param recipientId recipient_id of the row
+     * @return column map of a row
+     */
+    private Map<String, Object> row(String recipientId) {
+        Map<String, Object> columnMap = new HashMap<>();
+        columnMap.put("recipient_id", recipientId);
+        columnMap.put("job_id", "SJ1,SJ2");
+        columnMap.put("recipient_source", "USER");
+        return columnMap;
+    }
+}
@@ -1,6 +1,7 @@
 package com.sproutloud.starter.stream;
 
 import com.sproutloud.starter.stream.dao.InsertionDao;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -39,6 +40,9 @@ class ListDataInsertApplicationTests {
     @Autowired
     private InsertionDao dao;
 
+    @Autowired
+    private InsertionService dbService;
+
     @Autowired
     private MessageCollector collector;
 
@@ -49,25 +53,30 @@ class ListDataInsertApplicationTests {
     }
 
     /**
-     * Tests sql array creation of recipient source and job_id values
-     *
-     * @throws SQLException
+     * Tests that the job_id and recipient_source values are inserted as text arrays.
+     * Deletes the data inserted once test is completed.
      */
     @Test
-    void testRecipientSourceAndJobId() throws SQLException {
+    @Tag("integrationTest")
+    void testRecipientSourceAndJobId() {
         Map<String, Object> columnMap = new HashMap<>();
-        columnMap.put("job_id", "SJ20200000000056");
+        columnMap.put("recipient_id", "testArrayRC");
+        columnMap.put("list_id", "LI20090000000004");
+        columnMap.put("locality_code", "SL_US");
+        columnMap.put("job_id", "SJ20200000000056,SJ20200000000057");
         columnMap.put("recipient_source", "USER");
+        columnMap.put("dedupe_hash", "we32dsf4");
+        columnMap.put("created_by", "sluser");
+        columnMap.put("modified_by", "sluser");
+        columnMap.put("modified_op", "I");
 
-        String input = (String) columnMap.get("job_id");
-        dao.createArray(input.split(","));
-
-        columnMap.put("job_id", "SJ20200000000056, SJ20200000000057");
-        input = (String) columnMap.get("job_id");
-        dao.createArray(input.split(","));
+        dbService.persistToDb("lm", "list_data_ac20060000000002", columnMap);
 
-        input = (String) columnMap.get("recipient_source");
-        dao.createArray(input.split(","));
+        String where = " FROM lm.list_data_ac20060000000002"
+                + " where list_id='LI20090000000004' and locality_code='SL_US' and recipient_id='testArrayRC'";
+        assertEquals(2, dao.getJdbcTemplateForTest().queryForObject("SELECT array_length(job_id, 1)" + where, Integer.class));
+        assertEquals(1, dao.getJdbcTemplateForTest().queryForObject("SELECT array_length(recipient_source, 1)" + where, Integer.class));
+        dao.getJdbcTemplateForTest().execute("DELETE" + where);
     }
 
     /**
@@ -0,0 +1,48 @@
+package com.sproutloud.starter.stream.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests the inserts and the COPY text format of {@link InsertionDao}
+ *
+ * @author sgoyal
+ */
+class InsertionDaoTest {
+
+    /**
+     * Tests that nulls, special characters and arrays are escaped for the COPY text format.
+     */
+    @Test
+    void testToCopyText() {
+        assertEquals("\\N", InsertionDao.toCopyText(null));
+        assertEquals("a\\tb\\nc\\\\d", InsertionDao.toCopyText("a\tb\nc\\d"));
+        assertEquals("{\"SJ1\",\" SJ2\"}", InsertionDao.toCopyText(new String[] { "SJ1", " SJ2" }));
+        assertEquals("{\"a\\\\\"b\"}", InsertionDao.toCopyText(new String[] { "a\"b" }));
+    }
+
+    /**
+     * Tests that the insert skips the rows already in the table, so that a redelivered micro-batch succeeds.
+     */
+    @Test
+    void testInsertRowsSkipsConflicts() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        InsertionDao dao = new InsertionDao();
+        dao.setJdbcTemplate(jdbcTemplate);
+
+        dao.insertRows("lm", "list_data", Arrays.asList("list_id", "recipient_id"),
+                Collections.singletonList(Collections.singletonMap("list_id", "LI1")));
+        verify(jdbcTemplate).batchUpdate(eq("INSERT INTO lm.list_data (list_id,recipient_id) values(?,?) ON CONFLICT DO NOTHING"),
+                any(BatchPreparedStatementSetter.class));
+    }
+}
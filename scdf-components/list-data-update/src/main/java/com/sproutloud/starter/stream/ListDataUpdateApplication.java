@@ -2,23 +2,29 @@ package com.sproutloud.starter.stream;
 
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.*;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
 import org.springframework.messaging.support.MessageBuilder;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -41,6 +47,10 @@ public class ListDataUpdateApplication {
     @Autowired
     private Processor processor;
 
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    private MessageChannel errorChannel;
+
     /**
      * Triggers the simple spring boot application
      *
@@ -52,21 +62,53 @@ public class ListDataUpdateApplication {
 
     /**
      * Triggers the required queries to update the incoming data to the database with given connection details in the application.
+     * When the input binding consumes in batch mode, the payload is a list of records, which are updated together, see
+     * {@link #updateListDataBatch(Message, List)}.
      *
      * @param message incoming {@link Message} payload containing the data to be updated. to given database
      * @return output after updating the data.
      */
     @StreamListener(Processor.INPUT)
     public void updateListData(Message<?> message) throws IOException, SQLException {
-        JsonNode inputNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(inputNode, new TypeReference<Map<String, Object>>() {
-        });
+        if (message.getPayload() instanceof List) {
+            updateListDataBatch(message, (List<?>) message.getPayload());
+            return;
+        }
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         input.put(StringUtils.IN_TIME, System.currentTimeMillis());
         log.debug("Incoming message for List Data update is: \n" + input);
         updateService.updateList(input);
         sendOutput(input);
     }
 
+    /**
+     * Updates a micro-batch of records in one transaction. The output of each record is sent once the batch is
+     * committed, and each record rejected on its data is sent to the errorChannel. See the batch-mode consumers section
+     * of the README for the binding properties.
+     *
+     * @param message  incoming {@link Message}, whose headers are copied to the rejected records
+     * @param payloads payload of each record of the batch
+     * @throws IOException if a payload can not be parsed
+     */
+    private void updateListDataBatch(Message<?> message, List<?> payloads) throws IOException {
+        List<Map<String, Object>> inputs = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            Map<String, Object> input = PayloadDecoder.decode(mapper, payload);
+            input.put(StringUtils.IN_TIME, System.currentTimeMillis());
+            inputs.add(input);
+        }
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs = updateService.updateBatch(inputs);
+        for (Map<String, Object> input : inputs) {
+            if (rejectedInputs.containsKey(input)) {
+                Message<Map<String, Object>> failedMessage = MessageBuilder.withPayload(input).copyHeaders(message.getHeaders()).build();
+                errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, rejectedInputs.get(input))));
+            } else {
+                sendOutput(input);
+            }
+        }
+        log.info("Updated " + (inputs.size() - rejectedInputs.size()) + " of " + inputs.size() + " records of batch");
+    }
+
     /**
      * Creates a response json for the application
      *
@@ -74,10 +116,8 @@ public class ListDataUpdateApplication {
      * @return output response created by formatting the input
      */
     private void sendOutput(Map<String, Object> input) {
-        Map<String, Object> fieldsData = mapper.convertValue(input.get(FIELDS_DATA), new TypeReference<Map<String, Object>>() {
-        });
-        Map<String, Object> dbData = mapper.convertValue(input.get(DB_FIELDS), new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
+        Map<String, Object> dbData = PayloadDecoder.getMap(input, DB_FIELDS);
         input.put(LIST_ID, fieldsData.get(LIST_ID));
         input.put(RECIPIENT_ID, dbData.get(RECIPIENT_ID));
         input.put(LOCALITY_CODE, fieldsData.get(LOCALITY_CODE));
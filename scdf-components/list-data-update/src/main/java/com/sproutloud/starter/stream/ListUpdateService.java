@@ -9,14 +9,19 @@ import static com.sproutloud.starter.stream.constants.ApplicationConstants.MODIF
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.RECIPIENT_ID;
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.TABLE;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sproutloud.starter.stream.dao.impl.UpdateDaoImpl;
 
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
@@ -24,12 +29,19 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.PostConstruct;
 
 /**
  * Provides connection to database with given connection details and dbName and tableName. 
@@ -45,6 +57,26 @@ public class ListUpdateService {
     @Autowired
     private UpdateDaoImpl dao;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Runs an update in a nested transaction, so that its failure only rolls back to the savepoint taken before it
+     */
+    private TransactionTemplate savepoint;
+
+    /**
+     * Maximum number of records updated with a single statement
+     */
+    @Value("${update.batch.max-rows:500}")
+    private int maxBatchRows;
+
+    @PostConstruct
+    private void initialize() {
+        savepoint = new TransactionTemplate(transactionManager);
+        savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    }
+
     /**
      * Prepares the key value pair using the fields data and db fields.
      * If for a field, value is present in fields data it is taken else value from db fields is taken. 
@@ -57,28 +89,16 @@ public class ListUpdateService {
         if (Objects.nonNull(input.get(TABLE))) {
             String tableName = (String) input.get(TABLE);
             String db = (String) input.get(DATABASE);
-            Map<String, Object> fieldsData = mapper.convertValue(input.get(FIELDS_DATA), new TypeReference<Map<String, Object>>() {
-            });
-            Map<String, Object> dbData = mapper.convertValue(input.get(DB_FIELDS), new TypeReference<Map<String, Object>>() {
-            });
+            Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
+            Map<String, Object> dbData = PayloadDecoder.getMap(input, DB_FIELDS);
 
-            fieldsData.put(MODIFIED_OP, "U");
             List<String> setValues = new ArrayList<>();
-            for (Entry<String, Object> entry : fieldsData.entrySet()) {
-                String field = entry.getKey();
-                if (RECIPIENT_ID.equals(field) || LIST_ID.equals(field) || LOCALITY_CODE.equals(field)) {
-                    continue;
-                }
-                Object value = null;
-                if ("job_id".equals(field) || "recipient_source".equals(field)) {
-                    value = getUniqueList((String) fieldsData.get(field), dbData.get(field));
-                } else {
-                    value = (String) fieldsData.get(field);
-                    if (StringUtils.isEmpty(value)) {
-                        value = (String) dbData.get(field);
-                    }
+            for (Entry<String, Object> entry : mergeFields(fieldsData, dbData).entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof Set) {
+                    value = dao.createArray(((Set<?>) value).toArray());
                 }
-                setValues.add(field + " = '" + value + "'");
+                setValues.add(entry.getKey() + " = '" + value + "'");
             }
             Timestamp ts = new Timestamp(System.currentTimeMillis());
             setValues.add("modified_ts = '" + ts + "'");
@@ -88,16 +108,160 @@ public class ListUpdateService {
         }
     }
 
+    /**
+     * Updates the records of a micro-batch in a single transaction. The records of a list and locality with the same
+     * fields are updated with one statement per update.batch.max-rows records, keyed by recipient_id. A recipient
+     * repeated within a statement starts a new one, and a recipient already pending in a statement of other fields first
+     * flushes the pending statements in input order, so that the updates of a recipient are applied in order.
+     *
+     * A statement failing on its data is rolled back to its savepoint and its records are updated one by one, so that a
+     * single bad record does not fail the whole micro-batch on every redelivery. The records failing on their own are
+     * rejected; any other failure is thrown, for the micro-batch to be redelivered.
+     *
+     * @param inputs incoming json messages
+     * @return Map with key as each rejected input, by identity, and value as the failure of its update
+     */
+    @Transactional
+    public Map<Map<String, Object>, DataIntegrityViolationException> updateBatch(List<Map<String, Object>> inputs) {
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs = new IdentityHashMap<>();
+        Map<Map<String, Object>, Map<String, Object>> inputsByRow = new IdentityHashMap<>();
+        Map<List<Object>, List<Map<String, Object>>> rowsByStatement = new LinkedHashMap<>();
+        Map<List<Object>, List<Object>> statementByRecipient = new HashMap<>();
+        for (Map<String, Object> input : inputs) {
+            if (Objects.isNull(input.get(TABLE))) {
+                log.error("Database and table name are missing in the input json");
+                continue;
+            }
+            Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
+            Map<String, Object> dbData = PayloadDecoder.getMap(input, DB_FIELDS);
+            Map<String, Object> row = new HashMap<>();
+            for (Entry<String, Object> entry : mergeFields(fieldsData, dbData).entrySet()) {
+                Object value = entry.getValue();
+                row.put(entry.getKey(), value instanceof Set ? ((Set<?>) value).toArray(new String[0]) : value);
+            }
+            row.put("modified_ts", new Timestamp(System.currentTimeMillis()));
+            row.put(RECIPIENT_ID, dbData.get(RECIPIENT_ID));
+            List<String> columns = new ArrayList<>(new TreeSet<>(row.keySet()));
+            columns.remove(RECIPIENT_ID);
+            List<Object> statement = Arrays.asList(input.get(DATABASE), input.get(TABLE), fieldsData.get(LIST_ID),
+                    fieldsData.get(LOCALITY_CODE), columns);
+            List<Object> recipient = Arrays.asList(input.get(DATABASE), input.get(TABLE), fieldsData.get(LIST_ID),
+                    fieldsData.get(LOCALITY_CODE), dbData.get(RECIPIENT_ID));
+            List<Object> pendingStatement = statementByRecipient.put(recipient, statement);
+            if (pendingStatement != null && !pendingStatement.equals(statement)) {
+                updateStatements(rowsByStatement, inputsByRow, rejectedInputs);
+                rowsByStatement.clear();
+                statementByRecipient.clear();
+                statementByRecipient.put(recipient, statement);
+            }
+            inputsByRow.put(row, input);
+            rowsByStatement.computeIfAbsent(statement, key -> new ArrayList<>()).add(row);
+        }
+        updateStatements(rowsByStatement, inputsByRow, rejectedInputs);
+        return rejectedInputs;
+    }
+
+    /**
+     * Updates the pending rows of each statement, in chunks of update.batch.max-rows rows. A recipient repeated within
+     * a chunk starts a new chunk.
+     *
+     * @param rowsByStatement Map with key as database, table, list_id, locality_code and columns, and value as the rows to update
+     * @param inputsByRow     Map with key as each row, by identity, and value as its input
+     * @param rejectedInputs  rejected inputs, to which the inputs of the rows failing on their own are added
+     */
+    private void updateStatements(Map<List<Object>, List<Map<String, Object>>> rowsByStatement,
+            Map<Map<String, Object>, Map<String, Object>> inputsByRow,
+            Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs) {
+        for (Entry<List<Object>, List<Map<String, Object>>> statement : rowsByStatement.entrySet()) {
+            List<Object> key = statement.getKey();
+            List<Map<String, Object>> chunk = new ArrayList<>();
+            Set<Object> recipientIds = new HashSet<>();
+            for (Map<String, Object> row : statement.getValue()) {
+                if (chunk.size() >= maxBatchRows || !recipientIds.add(row.get(RECIPIENT_ID))) {
+                    updateChunk(key, chunk, inputsByRow, rejectedInputs);
+                    chunk = new ArrayList<>();
+                    recipientIds.clear();
+                    recipientIds.add(row.get(RECIPIENT_ID));
+                }
+                chunk.add(row);
+            }
+            updateChunk(key, chunk, inputsByRow, rejectedInputs);
+        }
+    }
+
+    /**
+     * Updates the rows of a chunk with one statement, falling back to updating them one by one if it fails on their data.
+     *
+     * @param key            database, table, list_id, locality_code and columns of the statement
+     * @param chunk          rows to update
+     * @param inputsByRow    Map with key as each row, by identity, and value as its input
+     * @param rejectedInputs rejected inputs, to which the inputs of the rows failing on their own are added
+     */
+    private void updateChunk(List<Object> key, List<Map<String, Object>> chunk, Map<Map<String, Object>, Map<String, Object>> inputsByRow,
+            Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs) {
+        @SuppressWarnings("unchecked")
+        List<String> columns = (List<String>) key.get(4);
+        try {
+            savepoint.execute(status -> {
+                dao.updateListDataBatch((String) key.get(1), (String) key.get(0), columns, (String) key.get(2), (String) key.get(3), chunk);
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Update of " + chunk.size() + " entries of list " + key.get(2) + " failed, updating them one by one: "
+                    + e.getMostSpecificCause().getMessage());
+            for (Map<String, Object> row : chunk) {
+                try {
+                    savepoint.execute(status -> {
+                        dao.updateListDataBatch((String) key.get(1), (String) key.get(0), columns, (String) key.get(2), (String) key.get(3),
+                                Collections.singletonList(row));
+                        return null;
+                    });
+                } catch (DataIntegrityViolationException rowFailure) {
+                    log.error("Rejected update of recipient_id: " + row.get(RECIPIENT_ID) + " of list " + key.get(2) + ": "
+                            + rowFailure.getMostSpecificCause().getMessage());
+                    rejectedInputs.put(inputsByRow.get(row), rowFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the fields data of a record with its db fields, leaving out the key fields. The modified_op is set to U.
+     *
+     * @param fieldsData incoming fields data of the record
+     * @param dbData     fields of the existing record in db
+     * @return Map with key as field name and value as the value to update; a {@link Set} for job_id and recipient_source.
+     */
+    private Map<String, Object> mergeFields(Map<String, Object> fieldsData, Map<String, Object> dbData) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Entry<String, Object> entry : fieldsData.entrySet()) {
+            String field = entry.getKey();
+            if (RECIPIENT_ID.equals(field) || LIST_ID.equals(field) || LOCALITY_CODE.equals(field)) {
+                continue;
+            }
+            Object value = null;
+            if ("job_id".equals(field) || "recipient_source".equals(field)) {
+                value = getUniqueSet((String) fieldsData.get(field), dbData.get(field));
+            } else {
+                value = (String) fieldsData.get(field);
+                if (StringUtils.isEmpty(value)) {
+                    value = (String) dbData.get(field);
+                }
+            }
+            values.put(field, value);
+        }
+        values.put(MODIFIED_OP, "U");
+        return values;
+    }
+
     /**
      * unique list is prepared combining both the lists from db fields and fields data.
-     * Convert unique list to array which can be inserted to DB.
      * 
      * @param fieldData String of value.
      * @param dbData    {@link Map} with key value pair of field name and field value present in db.
-     * @return Array with unique set.
-     * @throws SQLException when given set is not able to convert to Array.
+     * @return unique set of the values.
      */
-    private Object getUniqueList(String fieldData, Object dbData) throws SQLException {
+    private Set<String> getUniqueSet(String fieldData, Object dbData) {
         String dbDataString = String.valueOf(dbData);
         dbDataString = dbDataString.substring(1, dbDataString.length() - 1);
         dbDataString = dbDataString.replaceAll(" ", "");
@@ -109,6 +273,6 @@ public class ListUpdateService {
         if (!CollectionUtils.isEmpty(dbDataList)) {
             uniqueSet.addAll(dbDataList);
         }
-        return dao.createArray(uniqueSet.toArray());
+        return uniqueSet;
     }
 }
@@ -3,6 +3,7 @@ package com.sproutloud.starter.stream.dao;
 import java.sql.Array;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Performs the DB operations.
@@ -31,4 +32,17 @@ public interface UpdateDao {
      * @param recipientId recipient id of the entry to be updated
      */
     public void updateListData(String tableName, String dbName, List<String> setValues, String listId, String recipientId);
+
+    /**
+     * Updates the entries of a list in a single statement, joining the table to the values of each entry by recipient id.
+     *
+     * @param tableName    table name into which data has to be updated
+     * @param dbName       database name into which data has to be updated
+     * @param columnNames  columns to be updated, the same for every entry
+     * @param listId       list id of the entries to be updated
+     * @param localityCode locality code of the entries to be updated
+     * @param rows         values to be updated of each entry, with its recipient id
+     */
+    public void updateListDataBatch(String tableName, String dbName, List<String> columnNames, String listId, String localityCode,
+            List<Map<String, Object>> rows);
 }
@@ -5,15 +5,22 @@ import com.sproutloud.starter.stream.dao.UpdateDao;
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import java.sql.Array;
 import java.sql.Connection;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
@@ -34,6 +41,11 @@ public class UpdateDaoImpl extends JdbcDaoSupport implements UpdateDao {
     @Autowired
     DataSource dataSource;
 
+    /**
+     * Column types with key as table name, see {@link #getColumnTypes(String)}
+     */
+    private final Map<String, Map<String, String>> columnTypes = new ConcurrentHashMap<>();
+
     @PostConstruct
     private void initialize() {
         setDataSource(dataSource);
@@ -79,4 +91,71 @@ public class UpdateDaoImpl extends JdbcDaoSupport implements UpdateDao {
         }
 
     }
+
+    /**
+     * Updates the entries of a list in a single UPDATE ... FROM (VALUES ...) statement, joining the table to the values
+     * of each entry by recipient id. The values are bound as parameters, cast to the type of their column, as the
+     * parameters of a VALUES list are otherwise typed as text. String[] values are bound as text arrays created on the
+     * statement's own connection.
+     *
+     * @param tableName    table name into which data has to be updated
+     * @param dbName       database name into which data has to be updated
+     * @param columnNames  columns to be updated, the same for every entry
+     * @param listId       list id of the entries to be updated
+     * @param localityCode locality code of the entries to be updated
+     * @param rows         values to be updated of each entry, with its recipient id
+     */
+    @Override
+    public void updateListDataBatch(String tableName, String dbName, List<String> columnNames, String listId, String localityCode,
+            List<Map<String, Object>> rows) {
+        String qualifiedTable = StringUtils.isEmpty(dbName) ? tableName : dbName + "." + tableName;
+        Map<String, String> columnTypes = getColumnTypes(qualifiedTable);
+        StringJoiner valuesRow = new StringJoiner(", ", "(", ")").add("?");
+        StringJoiner setValues = new StringJoiner(", ");
+        for (String column : columnNames) {
+            valuesRow.add("CAST(? AS " + columnTypes.getOrDefault(column, "text") + ")");
+            setValues.add(column + " = v." + column);
+        }
+        StringBuilder updateListData = new StringBuilder().append("UPDATE ").append(qualifiedTable).append(" AS t SET ").append(setValues)
+                .append(" FROM (VALUES ").append(String.join(", ", Collections.nCopies(rows.size(), valuesRow.toString())))
+                .append(") AS v (recipient_id, ").append(String.join(", ", columnNames))
+                .append(") WHERE t.locality_code = ? AND t.list_id = ? AND t.recipient_id = v.recipient_id");
+        int updated = Objects.requireNonNull(getJdbcTemplate()).update(updateListData.toString(), ps -> {
+            int index = 1;
+            for (Map<String, Object> row : rows) {
+                ps.setString(index++, (String) row.get("recipient_id"));
+                for (String column : columnNames) {
+                    Object value = row.get(column);
+                    if (value instanceof String[]) {
+                        ps.setArray(index++, ps.getConnection().createArrayOf("text", (String[]) value));
+                    } else {
+                        ps.setObject(index++, value);
+                    }
+                }
+            }
+            ps.setString(index++, localityCode);
+            ps.setString(index, listId);
+        });
+        log.debug("Updated " + updated + " of " + rows.size() + " entries of list " + listId);
+    }
+
+    /**
+     * Reads the column types of a table from the metadata of an empty query, cached per table.
+     *
+     * @param qualifiedTable table name, qualified with the database name if given
+     * @return Map with key as column name and value as the sql type name
+     */
+    private Map<String, String> getColumnTypes(String qualifiedTable) {
+        return columnTypes.computeIfAbsent(qualifiedTable, table -> Objects.requireNonNull(getJdbcTemplate())
+                .query("SELECT * FROM " + table + " LIMIT 0", (ResultSetExtractor<Map<String, String>>) resultSet -> {
+                    ResultSetMetaData metaData = resultSet.getMetaData();
+                    Map<String, String> types = new HashMap<>();
+                    for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                        String typeName = metaData.getColumnTypeName(column);
+                        // array types are named after their element type with a leading underscore
+                        types.put(metaData.getColumnName(column), typeName.startsWith("_") ? typeName.substring(1) + "[]" : typeName);
+                    }
+                    return types;
+                }));
+    }
 }
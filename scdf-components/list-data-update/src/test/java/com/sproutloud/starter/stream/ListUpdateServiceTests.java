@@ -1,7 +1,15 @@
 package com.sproutloud.starter.stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -17,12 +25,18 @@ import com.sproutloud.starter.stream.dao.impl.UpdateDaoImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +48,9 @@ public class ListUpdateServiceTests {
     @Mock
     private UpdateDaoImpl dao;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @Spy
     private ObjectMapper mapper;
 
@@ -120,7 +137,7 @@ public class ListUpdateServiceTests {
         JsonNode inputNode = mapper.readTree(input);
         inputMap = mapper.convertValue(inputNode, new TypeReference<Map<String, Object>>() {
         });
-        
+        ReflectionTestUtils.invokeMethod(service, "initialize");
     }
 
     /**
@@ -149,4 +166,92 @@ public class ListUpdateServiceTests {
         verify(dao, never()).createArray(any());
         verify(dao, never()).updateListData(any(), any(), any(), any(), any());
     }
+
+    /**
+     * Tests that the records of a list are updated with one statement, and that a repeated recipient starts a new one.
+     * 
+     * @throws JsonProcessingException if unable to copy the input.
+     * @throws SQLException
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpdateBatch() throws JsonProcessingException, SQLException {
+        ReflectionTestUtils.setField(service, "maxBatchRows", 500);
+        Map<String, Object> otherRecipient = mapper.readValue(mapper.writeValueAsString(inputMap), new TypeReference<Map<String, Object>>() {
+        });
+        ((Map<String, Object>) otherRecipient.get(ApplicationConstants.DB_FIELDS)).put(ApplicationConstants.RECIPIENT_ID, "RC20070000000999");
+        Map<String, Object> repeatedRecipient = mapper.readValue(mapper.writeValueAsString(inputMap), new TypeReference<Map<String, Object>>() {
+        });
+
+        service.updateBatch(Arrays.asList(inputMap, otherRecipient, repeatedRecipient));
+
+        ArgumentCaptor<List<Map<String, Object>>> rows = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(2)).updateListDataBatch(eq("list_data_ac20060000000012"), eq("lm2_dev"), any(), eq("LI20080000000401"), eq("SL_US"),
+                rows.capture());
+        verify(dao, never()).createArray(any());
+        assertEquals(2, rows.getAllValues().get(0).size());
+        assertEquals(1, rows.getAllValues().get(1).size());
+        Map<String, Object> row = rows.getAllValues().get(0).get(0);
+        assertEquals("U", row.get(ApplicationConstants.MODIFIED_OP));
+        assertEquals("AFF", row.get("address1"));
+        assertEquals(3, ((String[]) row.get("job_id")).length);
+    }
+
+    /**
+     * Tests that a recipient pending in a statement of other fields flushes the pending statements in input order, so that its second
+     * update is applied after its first one.
+     *
+     * @throws JsonProcessingException if unable to copy the input.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpdateBatchInInputOrder() throws JsonProcessingException {
+        ReflectionTestUtils.setField(service, "maxBatchRows", 500);
+        Map<String, Object> otherRecipient = mapper.readValue(mapper.writeValueAsString(inputMap), new TypeReference<Map<String, Object>>() {
+        });
+        ((Map<String, Object>) otherRecipient.get(ApplicationConstants.DB_FIELDS)).put(ApplicationConstants.RECIPIENT_ID, "RC20070000000999");
+        Map<String, Object> otherFields = mapper.readValue(mapper.writeValueAsString(inputMap), new TypeReference<Map<String, Object>>() {
+        });
+        ((Map<String, Object>) otherFields.get(ApplicationConstants.FIELDS_DATA)).remove("email");
+        Map<String, Object> repeatedRecipient = mapper.readValue(mapper.writeValueAsString(inputMap), new TypeReference<Map<String, Object>>() {
+        });
+        ((Map<String, Object>) repeatedRecipient.get(ApplicationConstants.FIELDS_DATA)).put("address1", "BFF");
+
+        service.updateBatch(Arrays.asList(otherRecipient, otherFields, repeatedRecipient));
+
+        ArgumentCaptor<List<String>> columns = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<Map<String, Object>>> rows = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(3)).updateListDataBatch(eq("list_data_ac20060000000012"), eq("lm2_dev"), columns.capture(), eq("LI20080000000401"),
+                eq("SL_US"), rows.capture());
+        assertEquals(1, rows.getAllValues().get(0).size());
+        assertEquals("RC20070000000999", rows.getAllValues().get(0).get(0).get(ApplicationConstants.RECIPIENT_ID));
+        assertFalse(columns.getAllValues().get(1).contains("email"));
+        assertEquals("AFF", rows.getAllValues().get(1).get(0).get("address1"));
+        assertTrue(columns.getAllValues().get(2).contains("email"));
+        assertEquals("BFF", rows.getAllValues().get(2).get(0).get("address1"));
+    }
+
+    /**
+     * Tests that a statement failing on the data of a record is updated one record at a time, and that only the failing record is
+     * rejected.
+     *
+     * @throws JsonProcessingException if unable to copy the input.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpdateBatchRejectsBadRow() throws JsonProcessingException {
+        ReflectionTestUtils.setField(service, "maxBatchRows", 500);
+        Map<String, Object> badRecipient = mapper.readValue(mapper.writeValueAsString(inputMap), new TypeReference<Map<String, Object>>() {
+        });
+        ((Map<String, Object>) badRecipient.get(ApplicationConstants.DB_FIELDS)).put(ApplicationConstants.RECIPIENT_ID, "RC20070000000999");
+        DataIntegrityViolationException failure = new DataIntegrityViolationException("value too long for type character varying(10)");
+        doThrow(failure).when(dao).updateListDataBatch(any(), any(), anyList(), any(), any(),
+                argThat(chunk -> chunk.stream().anyMatch(row -> "RC20070000000999".equals(row.get(ApplicationConstants.RECIPIENT_ID)))));
+
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs = service.updateBatch(Arrays.asList(inputMap, badRecipient));
+
+        verify(dao, times(3)).updateListDataBatch(any(), any(), anyList(), any(), any(), anyList());
+        assertEquals(1, rejectedInputs.size());
+        assertSame(failure, rejectedInputs.get(badRecipient));
+    }
 }
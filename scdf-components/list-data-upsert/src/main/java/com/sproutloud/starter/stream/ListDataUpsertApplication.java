@@ -0,0 +1,167 @@
+package com.sproutloud.starter.stream;
+
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Dedupes the incoming records against the list data and inserts or updates them in a single stage, replacing list-data-dedupe,
+ * dedupe-ins-upd-router, list-data-insert and list-data-update. Sends the same dedupe and data_ingestion events as those components.
+ *
+ * @author mgande
+ */
+@Log4j2
+@EnableBinding(UpsertProcessor.class)
+@SpringBootApplication
+public class ListDataUpsertApplication {
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private UpsertService upsertService;
+
+    @Autowired
+    private UpsertProcessor processor;
+
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    private MessageChannel errorChannel;
+
+    /**
+     * Triggers the simple spring boot application
+     *
+     * @param args command line args
+     */
+    public static void main(String[] args) {
+        SpringApplication.run(ListDataUpsertApplication.class, args);
+    }
+
+    /**
+     * Dedupes and upserts the incoming records. When the input binding consumes in batch mode, the payload is a list of
+     * records, which are upserted in one transaction. The events of each record are sent once the transaction is
+     * committed, and each record rejected on its data is sent to the errorChannel. See the batch-mode consumers section of
+     * the README for the binding properties.
+     *
+     * @param message incoming {@link Message} with a record, or a list of records in batch mode
+     * @throws IOException if a payload can not be parsed
+     */
+    @StreamListener(Processor.INPUT)
+    public void upsertListData(Message<?> message) throws IOException {
+        List<?> payloads = message.getPayload() instanceof List ? (List<?>) message.getPayload()
+                : Collections.singletonList(message.getPayload());
+        List<Map<String, Object>> inputs = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            Map<String, Object> input = PayloadDecoder.decode(mapper, payload);
+            input.put(StringUtils.IN_TIME, System.currentTimeMillis());
+            String validityFailureMsg = validate(input);
+            if (Objects.equals(validityFailureMsg, "valid")) {
+                inputs.add(input);
+            } else {
+                log.error(validityFailureMsg);
+                Message<Map<String, Object>> failedMessage = MessageBuilder.withPayload(input).copyHeaders(message.getHeaders()).build();
+                errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, validityFailureMsg)));
+            }
+        }
+        if (inputs.isEmpty()) {
+            return;
+        }
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs = upsertService.upsertBatch(inputs);
+        for (Map<String, Object> input : inputs) {
+            if (rejectedInputs.containsKey(input)) {
+                Message<Map<String, Object>> failedMessage = MessageBuilder.withPayload(input).copyHeaders(message.getHeaders()).build();
+                errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, rejectedInputs.get(input))));
+                continue;
+            }
+            processor.dedupeOutput().send(MessageBuilder.withPayload(createDedupeEvent(input)).build());
+            processor.output().send(MessageBuilder.withPayload(createIngestionEvent(input)).build());
+        }
+        log.info("Upserted " + (inputs.size() - rejectedInputs.size()) + " of " + payloads.size() + " records");
+    }
+
+    /**
+     * @param input the incoming json
+     * @return "valid" if the record can be upserted, otherwise the reason it can not
+     */
+    private String validate(Map<String, Object> input) {
+        if (Objects.isNull(input.get(TABLE))) {
+            return "Database and table name are missing in the input json";
+        }
+        Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
+        if (CollectionUtils.isEmpty(fieldsData)) {
+            return "Invalid input passed";
+        }
+        if (org.springframework.util.StringUtils.isEmpty(fieldsData.get(DEDUPE_HASH))
+                || org.springframework.util.StringUtils.isEmpty(fieldsData.get(LIST_ID))
+                || org.springframework.util.StringUtils.isEmpty(fieldsData.get(LOCALITY_CODE))) {
+            return "Either of dedupe_hash, list_id or locality_code is missing";
+        }
+        return "valid";
+    }
+
+    /**
+     * Creates the dedupe event of a record, as sent by list-data-dedupe.
+     *
+     * @param input the upserted json, with router_flag and db_fields
+     * @return dedupe event
+     */
+    private Map<String, Object> createDedupeEvent(Map<String, Object> input) {
+        Map<String, Object> event = new HashMap<>(input);
+        event.put(StringUtils.JOB_TYPE, "dedupe");
+        event.put(StringUtils.OUT_TIME, System.currentTimeMillis());
+        return event;
+    }
+
+    /**
+     * Creates the data_ingestion event of a record, as sent by list-data-insert and list-data-update.
+     *
+     * @param input the upserted json, with router_flag and db_fields
+     * @return data_ingestion event
+     */
+    private Map<String, Object> createIngestionEvent(Map<String, Object> input) {
+        Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
+        Map<String, Object> dbData = PayloadDecoder.getMap(input, DB_FIELDS);
+        Map<String, Object> event = new HashMap<>(input);
+        event.put(LIST_ID, fieldsData.get(LIST_ID));
+        event.put(RECIPIENT_ID, CollectionUtils.isEmpty(dbData) ? fieldsData.get(RECIPIENT_ID) : dbData.get(RECIPIENT_ID));
+        event.put(LOCALITY_CODE, fieldsData.get(LOCALITY_CODE));
+        event.put(CREATED_BY, fieldsData.get(CREATED_BY));
+        event.put(MODIFIED_BY, fieldsData.get(MODIFIED_BY));
+        event.put(MODIFIED_OP, fieldsData.get(MODIFIED_OP));
+        event.put(JOB_ID, fieldsData.get(JOB_ID));
+
+        event.remove(TABLE);
+        event.remove(FIELDS_DATA);
+        event.remove(ROUTER_FLAG);
+        event.remove(DB_FIELDS);
+        event.put(StringUtils.JOB_TYPE, "data_ingestion");
+        event.put(StringUtils.OUT_TIME, System.currentTimeMillis());
+        return event;
+    }
+}
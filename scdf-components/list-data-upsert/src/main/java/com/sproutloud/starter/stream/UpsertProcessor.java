@@ -0,0 +1,41 @@
+package com.sproutloud.starter.stream;
+
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+
+/**
+ * Defines the channels of the fused dedupe and upsert stage. The output carries the data_ingestion event of each record, as sent by
+ * list-data-insert and list-data-update, and dedupeOutput the dedupe event, as sent by list-data-dedupe. Bind dedupeOutput to the topic
+ * the task-aggregator counts the dedupe events from.
+ *
+ * @author mgande
+ *
+ */
+public interface UpsertProcessor {
+
+    /**
+     * Output channel name of the dedupe events.
+     */
+    String DEDUPE_OUTPUT = "dedupeOutput";
+
+    /**
+     * @return input channel.
+     */
+    @Input(Processor.INPUT)
+    SubscribableChannel input();
+
+    /**
+     * @return output channel of the data_ingestion events.
+     */
+    @Output(Processor.OUTPUT)
+    MessageChannel output();
+
+    /**
+     * @return output channel of the dedupe events.
+     */
+    @Output(DEDUPE_OUTPUT)
+    MessageChannel dedupeOutput();
+}
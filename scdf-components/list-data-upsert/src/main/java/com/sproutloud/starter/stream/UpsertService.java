@@ -0,0 +1,267 @@
+package com.sproutloud.starter.stream;
+
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.DATABASE;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.DB_FIELDS;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.DEDUPE_HASH;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.FIELDS_DATA;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.JOB_ID;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.LIST_ID;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.LOCALITY_CODE;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.MODIFIED_OP;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.RECIPIENT_ID;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.ROUTER_FLAG;
+import static com.sproutloud.starter.stream.constants.ApplicationConstants.TABLE;
+
+import com.sproutloud.starter.stream.dao.UpsertDao;
+
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Dedupes a batch of records against the list data and upserts them. The existing entries of the records are resolved with one query per
+ * list, and the records are then inserted, or merged into the existing entries, with one INSERT ... ON CONFLICT DO UPDATE statement per
+ * table and set of fields.
+ *
+ * @author mgande
+ */
+@Log4j2
+@Component
+public class UpsertService {
+
+    @Autowired
+    private UpsertDao dao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Runs an upsert in a nested transaction, so that its failure only rolls back to the savepoint taken before it
+     */
+    private TransactionTemplate savepoint;
+
+    /**
+     * Maximum number of dedupe_hash values looked up by a single query
+     */
+    @Value("${upsert.batch.max-hashes-per-query:1000}")
+    private int maxHashesPerQuery;
+
+    /**
+     * Maximum number of records upserted with a single statement
+     */
+    @Value("${upsert.batch.max-rows:500}")
+    private int maxBatchRows;
+
+    @PostConstruct
+    private void initialize() {
+        savepoint = new TransactionTemplate(transactionManager);
+        savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    }
+
+    /**
+     * Dedupes and upserts the records of a batch in a single transaction. Sets the router_flag of each record to INSERT or
+     * UPDATE, and the db_fields of an updated record to the recipient_id of its existing entry, as list-data-dedupe does. A
+     * dedupe_hash repeated within the batch updates the entry inserted by its first record. An entry already pending in a
+     * statement of other fields first flushes the pending statements in input order, so that the upserts of an entry are
+     * applied in order.
+     *
+     * A statement failing on its data is rolled back to its savepoint and its records are upserted one by one, so that a
+     * single bad record does not fail the whole batch on every redelivery. The records failing on their own are rejected;
+     * any other failure is thrown, for the batch to be redelivered.
+     *
+     * @param inputs valid records of the batch, with target_db, target_table and fields_data
+     * @return Map with key as each rejected input, by identity, and value as the failure of its upsert
+     */
+    @Transactional
+    public Map<Map<String, Object>, DataIntegrityViolationException> upsertBatch(List<Map<String, Object>> inputs) {
+        Map<List<String>, Map<String, String>> recipientIds = lookUpRecipientIds(inputs);
+        Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs = new IdentityHashMap<>();
+        Map<Map<String, Object>, Map<String, Object>> inputsByRow = new IdentityHashMap<>();
+        Timestamp ts = new Timestamp(System.currentTimeMillis());
+        Map<List<Object>, List<Map<String, Object>>> rowsByStatement = new LinkedHashMap<>();
+        Map<List<Object>, List<Object>> statementByEntry = new HashMap<>();
+        for (Map<String, Object> input : inputs) {
+            Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
+            Map<String, String> listRecipientIds = recipientIds.get(listKey(input, fieldsData));
+            String dedupeHash = String.valueOf(fieldsData.get(DEDUPE_HASH));
+            String existingRecipientId = listRecipientIds.get(dedupeHash);
+
+            Map<String, Object> row = new HashMap<>(fieldsData);
+            if (existingRecipientId == null) {
+                input.put(ROUTER_FLAG, "INSERT");
+                listRecipientIds.put(dedupeHash, String.valueOf(fieldsData.get(RECIPIENT_ID)));
+            } else {
+                input.put(ROUTER_FLAG, "UPDATE");
+                Map<String, Object> dbFields = new HashMap<>();
+                dbFields.put(RECIPIENT_ID, existingRecipientId);
+                input.put(DB_FIELDS, dbFields);
+                row.put(RECIPIENT_ID, existingRecipientId);
+                row.put(MODIFIED_OP, "U");
+            }
+            row.put("modified_ts", ts);
+            row.put("created_ts", ts);
+            row.put("user_created_ts", ts);
+            row.put(JOB_ID, String.valueOf(row.get(JOB_ID)).split(","));
+            row.put("recipient_source", String.valueOf(row.get("recipient_source")).split(","));
+            List<Object> statement = Arrays.asList(input.get(DATABASE), input.get(TABLE), new ArrayList<>(new TreeSet<>(row.keySet())));
+            List<Object> entry = Arrays.asList(input.get(DATABASE), input.get(TABLE), row.get(LOCALITY_CODE), row.get(LIST_ID),
+                    row.get(RECIPIENT_ID));
+            List<Object> pendingStatement = statementByEntry.put(entry, statement);
+            if (pendingStatement != null && !pendingStatement.equals(statement)) {
+                upsertStatements(rowsByStatement, inputsByRow, rejectedInputs);
+                rowsByStatement.clear();
+                statementByEntry.clear();
+                statementByEntry.put(entry, statement);
+            }
+            inputsByRow.put(row, input);
+            rowsByStatement.computeIfAbsent(statement, key -> new ArrayList<>()).add(row);
+        }
+        upsertStatements(rowsByStatement, inputsByRow, rejectedInputs);
+        return rejectedInputs;
+    }
+
+    /**
+     * Upserts the pending rows of each statement.
+     *
+     * @param rowsByStatement Map with key as database name, table name and column names, and value as the rows to upsert
+     * @param inputsByRow     Map with key as each row, by identity, and value as its input
+     * @param rejectedInputs  rejected inputs, to which the inputs of the rows failing on their own are added
+     */
+    private void upsertStatements(Map<List<Object>, List<Map<String, Object>>> rowsByStatement,
+            Map<Map<String, Object>, Map<String, Object>> inputsByRow,
+            Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs) {
+        for (Entry<List<Object>, List<Map<String, Object>>> statement : rowsByStatement.entrySet()) {
+            upsert(statement.getKey(), statement.getValue(), inputsByRow, rejectedInputs);
+        }
+    }
+
+    /**
+     * Upserts the rows of a table with the same columns, in statements of max-rows rows. An entry repeated within the rows
+     * starts a new statement, as a statement can not update the same entry twice.
+     *
+     * @param key            database name, table name and column names of the rows
+     * @param rows           column values of each row
+     * @param inputsByRow    Map with key as each row, by identity, and value as its input
+     * @param rejectedInputs rejected inputs, to which the inputs of the rows failing on their own are added
+     */
+    @SuppressWarnings("unchecked")
+    private void upsert(List<Object> key, List<Map<String, Object>> rows, Map<Map<String, Object>, Map<String, Object>> inputsByRow,
+            Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs) {
+        String db = (String) key.get(0);
+        String table = (String) key.get(1);
+        List<String> columns = (List<String>) key.get(2);
+        List<Map<String, Object>> chunk = new ArrayList<>();
+        Set<List<Object>> entries = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            List<Object> entry = Arrays.asList(row.get(LOCALITY_CODE), row.get(LIST_ID), row.get(RECIPIENT_ID));
+            if (chunk.size() >= maxBatchRows || !entries.add(entry)) {
+                upsertChunk(db, table, columns, chunk, inputsByRow, rejectedInputs);
+                chunk = new ArrayList<>();
+                entries.clear();
+                entries.add(entry);
+            }
+            chunk.add(row);
+        }
+        upsertChunk(db, table, columns, chunk, inputsByRow, rejectedInputs);
+    }
+
+    /**
+     * Upserts the rows of a chunk with one statement, falling back to upserting them one by one if it fails on their data.
+     *
+     * @param db             database name
+     * @param table          table name
+     * @param columns        column names of the rows
+     * @param chunk          rows to upsert
+     * @param inputsByRow    Map with key as each row, by identity, and value as its input
+     * @param rejectedInputs rejected inputs, to which the inputs of the rows failing on their own are added
+     */
+    private void upsertChunk(String db, String table, List<String> columns, List<Map<String, Object>> chunk,
+            Map<Map<String, Object>, Map<String, Object>> inputsByRow,
+            Map<Map<String, Object>, DataIntegrityViolationException> rejectedInputs) {
+        try {
+            savepoint.execute(status -> {
+                dao.upsertListData(db, table, columns, chunk);
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Upsert of " + chunk.size() + " entries to table " + db + "." + table + " failed, upserting them one by one: "
+                    + e.getMostSpecificCause().getMessage());
+            for (Map<String, Object> row : chunk) {
+                try {
+                    savepoint.execute(status -> {
+                        dao.upsertListData(db, table, columns, Collections.singletonList(row));
+                        return null;
+                    });
+                } catch (DataIntegrityViolationException rowFailure) {
+                    log.error("Rejected upsert of recipient_id: " + row.get(RECIPIENT_ID) + " of table " + db + "." + table + ": "
+                            + rowFailure.getMostSpecificCause().getMessage());
+                    rejectedInputs.put(inputsByRow.get(row), rowFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the recipient_id of the existing entries of the records, with one query per list and chunk of
+     * max-hashes-per-query dedupe_hash values.
+     *
+     * @param inputs records of the batch
+     * @return Map with key as database, table, list_id and locality_code, and value as the recipient_id of each existing
+     *         dedupe_hash of the list
+     */
+    private Map<List<String>, Map<String, String>> lookUpRecipientIds(List<Map<String, Object>> inputs) {
+        Map<List<String>, Set<String>> dedupeHashes = new LinkedHashMap<>();
+        for (Map<String, Object> input : inputs) {
+            Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
+            dedupeHashes.computeIfAbsent(listKey(input, fieldsData), key -> new LinkedHashSet<>())
+                    .add(String.valueOf(fieldsData.get(DEDUPE_HASH)));
+        }
+        Map<List<String>, Map<String, String>> recipientIds = new HashMap<>();
+        for (Entry<List<String>, Set<String>> list : dedupeHashes.entrySet()) {
+            List<String> key = list.getKey();
+            List<String> hashes = new ArrayList<>(list.getValue());
+            Map<String, String> listRecipientIds = new HashMap<>();
+            for (int from = 0; from < hashes.size(); from += maxHashesPerQuery) {
+                listRecipientIds.putAll(dao.getRecipientIds(key.get(0), key.get(1),
+                        hashes.subList(from, Math.min(from + maxHashesPerQuery, hashes.size())), key.get(3), key.get(2)));
+            }
+            log.debug(listRecipientIds.size() + " of " + hashes.size() + " records of list " + key.get(2) + " exist");
+            recipientIds.put(key, listRecipientIds);
+        }
+        return recipientIds;
+    }
+
+    /**
+     * @param input      incoming record
+     * @param fieldsData fields data of the record
+     * @return database, table, list_id and locality_code of the record
+     */
+    private List<String> listKey(Map<String, Object> input, Map<String, Object> fieldsData) {
+        return Arrays.asList((String) input.get(DATABASE), (String) input.get(TABLE), String.valueOf(fieldsData.get(LIST_ID)),
+                String.valueOf(fieldsData.get(LOCALITY_CODE)));
+    }
+}
@@ -0,0 +1,38 @@
+package com.sproutloud.starter.stream.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs the DB operations of the fused dedupe and upsert stage.
+ *
+ * @author mgande
+ *
+ */
+public interface UpsertDao {
+
+    /**
+     * Fetches the recipient_id of the existing entries of several dedupe_hash values with a single query.
+     *
+     * @param dbName       database name
+     * @param tableName    table name
+     * @param dedupeHashes dedupe_hash values to look up
+     * @param localityCode locality code of the entries
+     * @param listId       list id of the entries
+     * @return Map with key as dedupe_hash and value as the recipient_id of its existing entry
+     */
+    public Map<String, String> getRecipientIds(String dbName, String tableName, Collection<String> dedupeHashes, String localityCode,
+            String listId);
+
+    /**
+     * Inserts the entries, or merges them into the existing entries with the same locality code, list id and recipient id,
+     * with a single statement.
+     *
+     * @param dbName      database name
+     * @param tableName   table name
+     * @param columnNames columns of the entries, the same for every entry
+     * @param rows        column values of each entry
+     */
+    public void upsertListData(String dbName, String tableName, List<String> columnNames, List<Map<String, Object>> rows);
+}
@@ -0,0 +1,178 @@
+package com.sproutloud.starter.stream.dao.impl;
+
+import com.sproutloud.starter.stream.dao.UpsertDao;
+
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.support.JdbcDaoSupport;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+/**
+ * Performs the Db operations of the fused dedupe and upsert stage.
+ * 
+ * @author mgande
+ *
+ */
+@Log4j2
+@Repository
+public class UpsertDaoImpl extends JdbcDaoSupport implements UpsertDao {
+
+    /**
+     * Columns identifying an entry, the conflict target of the upsert.
+     */
+    private static final List<String> KEY_COLUMNS = Arrays.asList("locality_code", "list_id", "recipient_id");
+
+    /**
+     * Columns only written when an entry is inserted.
+     */
+    private static final List<String> INSERT_ONLY_COLUMNS = Arrays.asList("created_ts", "user_created_ts");
+
+    /**
+     * Columns overwritten by every update.
+     */
+    private static final List<String> OVERWRITTEN_COLUMNS = Arrays.asList("modified_ts", "modified_op");
+
+    /**
+     * Array columns whose values are merged with the existing values of an entry.
+     */
+    private static final List<String> UNION_COLUMNS = Arrays.asList("job_id", "recipient_source");
+
+    /**
+     * {@link DataSource} bean.
+     */
+    @Autowired
+    DataSource dataSource;
+
+    @PostConstruct
+    private void initialize() {
+        setDataSource(dataSource);
+    }
+
+    /**
+     * Fetches the recipient_id of the existing entries of several dedupe_hash values with a single ANY(array) query.
+     *
+     * @param dbName       database name
+     * @param tableName    table name
+     * @param dedupeHashes dedupe_hash values to look up
+     * @param localityCode locality code of the entries
+     * @param listId       list id of the entries
+     * @return Map with key as dedupe_hash and value as the recipient_id of its existing entry
+     */
+    @Override
+    public Map<String, String> getRecipientIds(String dbName, String tableName, Collection<String> dedupeHashes, String localityCode,
+            String listId) {
+        StringBuilder query = new StringBuilder("SELECT dedupe_hash, recipient_id FROM ").append(qualify(dbName, tableName))
+                .append(" WHERE list_id = ? AND locality_code = ? AND dedupe_hash = ANY(?)");
+        Map<String, String> recipientIds = new HashMap<>();
+        Objects.requireNonNull(getJdbcTemplate()).query(query.toString(), ps -> {
+            ps.setString(1, listId);
+            ps.setString(2, localityCode);
+            ps.setArray(3, ps.getConnection().createArrayOf("varchar", dedupeHashes.toArray()));
+        }, (RowCallbackHandler) rs -> recipientIds.putIfAbsent(rs.getString(1), rs.getString(2)));
+        log.debug("Found " + recipientIds.size() + " of " + dedupeHashes.size() + " entries of list " + listId);
+        return recipientIds;
+    }
+
+    /**
+     * Inserts the entries with a single INSERT ... ON CONFLICT DO UPDATE statement. An entry conflicting with an existing
+     * entry on locality code, list id and recipient id is merged into it as list-data-update does: null values keep the
+     * existing value, as do empty strings of the columns read as strings, job_id and recipient_source become the union of
+     * both arrays, and the insert-only timestamps are left as they are. The values are bound as parameters, untyped, so
+     * the database converts them to the column type.
+     *
+     * @param dbName      database name
+     * @param tableName   table name
+     * @param columnNames columns of the entries, the same for every entry
+     * @param rows        column values of each entry
+     */
+    @Override
+    public void upsertListData(String dbName, String tableName, List<String> columnNames, List<Map<String, Object>> rows) {
+        Set<String> stringColumns = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            for (String column : columnNames) {
+                if (row.get(column) instanceof String) {
+                    stringColumns.add(column);
+                }
+            }
+        }
+        StringJoiner setValues = new StringJoiner(", ");
+        for (String column : columnNames) {
+            if (KEY_COLUMNS.contains(column) || INSERT_ONLY_COLUMNS.contains(column)) {
+                continue;
+            }
+            if (OVERWRITTEN_COLUMNS.contains(column)) {
+                setValues.add(column + " = excluded." + column);
+            } else if (UNION_COLUMNS.contains(column)) {
+                setValues.add(column + " = ARRAY(SELECT DISTINCT unnest(array_cat(t." + column + ", excluded." + column + ")))");
+            } else if (stringColumns.contains(column)) {
+                setValues.add(column + " = CASE WHEN excluded." + column + " IS NULL OR excluded." + column + "::text = '' THEN t." + column
+                        + " ELSE excluded." + column + " END");
+            } else {
+                setValues.add(column + " = COALESCE(excluded." + column + ", t." + column + ")");
+            }
+        }
+        String valuesRow = "(" + String.join(", ", Collections.nCopies(columnNames.size(), "?")) + ")";
+        StringBuilder upsertListData = new StringBuilder().append("INSERT INTO ").append(qualify(dbName, tableName)).append(" AS t (")
+                .append(String.join(", ", columnNames)).append(") VALUES ").append(String.join(", ", Collections.nCopies(rows.size(), valuesRow)))
+                .append(" ON CONFLICT (").append(String.join(", ", KEY_COLUMNS)).append(") DO UPDATE SET ").append(setValues);
+        int upserted = Objects.requireNonNull(getJdbcTemplate()).update(upsertListData.toString(), ps -> {
+            int index = 1;
+            for (Map<String, Object> row : rows) {
+                for (String column : columnNames) {
+                    setValue(ps, index++, row.get(column));
+                }
+            }
+        });
+        log.debug("Upserted " + upserted + " entries to table " + qualify(dbName, tableName));
+    }
+
+    /**
+     * Binds a column value. Values other than timestamps and arrays are bound untyped.
+     *
+     * @param ps    statement to bind the value to
+     * @param index parameter index
+     * @param value column value
+     * @throws SQLException if the value can not be bound
+     */
+    private void setValue(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.OTHER);
+        } else if (value instanceof Timestamp) {
+            ps.setTimestamp(index, (Timestamp) value);
+        } else if (value instanceof String[]) {
+            ps.setArray(index, ps.getConnection().createArrayOf("text", (String[]) value));
+        } else {
+            ps.setObject(index, String.valueOf(value), Types.OTHER);
+        }
+    }
+
+    /**
+     * @param dbName    database name, may be empty
+     * @param tableName table name
+     * @return table name qualified with the database name
+     */
+    private String qualify(String dbName, String tableName) {
+        return StringUtils.isEmpty(dbName) ? tableName : dbName + "." + tableName;
+    }
+}
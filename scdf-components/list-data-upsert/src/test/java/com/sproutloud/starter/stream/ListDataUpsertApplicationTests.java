@@ -0,0 +1,35 @@
+package com.sproutloud.starter.stream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Integration tests for ListDataUpsertApplication.
+ *
+ * @author mgande
+ */
+@SpringBootTest(
+        properties = {
+                "spring.main.banner-mode=off",
+                "spring.datasource.url=jdbc:postgresql://localhost:26257/lm?prepareThreshold=0",
+                "spring.datasource.username=sluser",
+                "spring.datasource.password=sproutloud",
+                "spring.datasource.platform=postgresql"
+        },
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class ListDataUpsertApplicationTests {
+
+    @Autowired
+    private UpsertProcessor processor;
+
+    @Test
+    @Tag("contextTest")
+    void contextLoads() {
+        assertNotNull(processor);
+        assertNotNull(processor.dedupeOutput());
+    }
+}
@@ -0,0 +1,171 @@
+package com.sproutloud.starter.stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sproutloud.starter.stream.dao.UpsertDao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the dedupe and upsert of a batch by {@link UpsertService}
+ *
+ * @author mgande
+ */
+@ExtendWith(MockitoExtension.class)
+class UpsertServiceTest {
+
+    @InjectMocks
+    private UpsertService service;
+
+    @Mock
+    private UpsertDao dao;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void init() {
+        ReflectionTestUtils.invokeMethod(service, "initialize");
+    }
+
+    /**
+     * Tests that the existing entries of a list are looked up with one query, that existing records update their entry,
+     * and that a dedupe_hash repeated within the batch updates the entry of its first record with a separate statement.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpsertBatch() {
+        ReflectionTestUtils.setField(service, "maxHashesPerQuery", 1000);
+        ReflectionTestUtils.setField(service, "maxBatchRows", 500);
+        when(dao.getRecipientIds(eq("lm"), eq("list_data"), anyCollection(), eq("SL_US"), eq("LI1")))
+                .thenReturn(Collections.singletonMap("H1", "RC9"));
+        Map<String, Object> existing = record("H1", "RC1");
+        Map<String, Object> inserted = record("H2", "RC2");
+        Map<String, Object> repeated = record("H2", "RC3");
+
+        service.upsertBatch(Arrays.asList(existing, inserted, repeated));
+
+        verify(dao, times(1)).getRecipientIds(eq("lm"), eq("list_data"), eq(Arrays.asList("H1", "H2")), eq("SL_US"), eq("LI1"));
+        assertEquals("UPDATE", existing.get("router_flag"));
+        assertEquals("RC9", ((Map<String, Object>) existing.get("db_fields")).get("recipient_id"));
+        assertEquals("INSERT", inserted.get("router_flag"));
+        assertEquals("UPDATE", repeated.get("router_flag"));
+        assertEquals("RC2", ((Map<String, Object>) repeated.get("db_fields")).get("recipient_id"));
+
+        ArgumentCaptor<List<Map<String, Object>>> rows = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(2)).upsertListData(eq("lm"), eq("list_data"), any(), rows.capture());
+        List<Map<String, Object>> firstStatement = rows.getAllValues().get(0);
+        assertEquals(2, firstStatement.size());
+        assertEquals("RC9", firstStatement.get(0).get("recipient_id"));
+        assertEquals("U", firstStatement.get(0).get("modified_op"));
+        assertArrayEquals(new String[] { "SJ1" }, (String[]) firstStatement.get(0).get("job_id"));
+        assertEquals("RC2", rows.getAllValues().get(1).get(0).get("recipient_id"));
+    }
+
+    /**
+     * Tests that an entry pending in a statement of other fields flushes the pending statements in input order, so that the update of a
+     * repeated dedupe_hash is applied after the insert of its first record.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpsertBatchInInputOrder() {
+        ReflectionTestUtils.setField(service, "maxHashesPerQuery", 1000);
+        ReflectionTestUtils.setField(service, "maxBatchRows", 500);
+        when(dao.getRecipientIds(any(), any(), anyCollection(), any(), any())).thenReturn(Collections.emptyMap());
+        Map<String, Object> withEmail = record("H1", "RC1");
+        ((Map<String, Object>) withEmail.get("fields_data")).put("email", "a@b.cd");
+        Map<String, Object> inserted = record("H2", "RC2");
+        Map<String, Object> repeated = record("H2", "RC3");
+        ((Map<String, Object>) repeated.get("fields_data")).put("email", "c@d.ef");
+
+        service.upsertBatch(Arrays.asList(withEmail, inserted, repeated));
+
+        ArgumentCaptor<List<Map<String, Object>>> rows = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(3)).upsertListData(eq("lm"), eq("list_data"), any(), rows.capture());
+        assertEquals(Collections.singletonList("RC1"), recipientIds(rows.getAllValues().get(0)));
+        assertEquals(Collections.singletonList("RC2"), recipientIds(rows.getAllValues().get(1)));
+        assertEquals("I", rows.getAllValues().get(1).get(0).get("modified_op"));
+        assertEquals(Collections.singletonList("RC2"), recipientIds(rows.getAllValues().get(2)));
+        assertEquals("U", rows.getAllValues().get(2).get(0).get("modified_op"));
+        assertEquals("c@d.ef", rows.getAllValues().get(2).get(0).get("email"));
+    }
+
+    /**
+     * Tests that a statement failing on the data of a record is upserted one record at a time, and that only the failing record is
+     * rejected.
+     */
+    @Test
+    void testUpsertBatchRejectsBadRow() {
+        ReflectionTestUtils.setField(service, "maxHashesPerQuery", 1000);
+        ReflectionTestUtils.setField(service, "maxBatchRows", 500);
+        when(dao.getRecipientIds(any(), any(), anyCollection(), any(), any())).thenReturn(Collections.emptyMap());
+        DataIntegrityViolationException failure = new DataIntegrityViolationException("value too long for type character varying(10)");
+        doThrow(failure).when(dao).upsertListData(eq("lm"), eq("list_data"), any(),
+                argThat(chunk -> recipientIds(chunk).contains("RC2")));
+        Map<String, Object> bad = record("H2", "RC2");
+
+        Map<Map<String, Object>, DataIntegrityViolationException> rejected =
+                service.upsertBatch(Arrays.asList(record("H1", "RC1"), bad, record("H3", "RC3")));
+
+        verify(dao, times(4)).upsertListData(eq("lm"), eq("list_data"), any(), any());
+        verify(dao, times(2)).upsertListData(eq("lm"), eq("list_data"), any(),
+                argThat(chunk -> chunk.size() == 1 && !recipientIds(chunk).contains("RC2")));
+        assertEquals(1, rejected.size());
+        assertSame(failure, rejected.get(bad));
+    }
+
+    /**
+     * @param rows rows of a statement
+     * @return recipient_id of each row
+     */
+    private List<Object> recipientIds(List<Map<String, Object>> rows) {
+        return rows.stream().map(row -> row.get("recipient_id")).collect(Collectors.toList());
+    }
+
+    /**
+     * @param dedupeHash  dedupe_hash of the record
+     * @param recipientId recipient_id of the record
+     * @return incoming json of a record
+     */
+    private Map<String, Object> record(String dedupeHash, String recipientId) {
+        Map<String, Object> fieldsData = new HashMap<>();
+        fieldsData.put("dedupe_hash", dedupeHash);
+        fieldsData.put("list_id", "LI1");
+        fieldsData.put("locality_code", "SL_US");
+        fieldsData.put("recipient_id", recipientId);
+        fieldsData.put("job_id", "SJ1");
+        fieldsData.put("recipient_source", "USER");
+        fieldsData.put("modified_op", "I");
+        Map<String, Object> input = new HashMap<>();
+        input.put("target_db", "lm");
+        input.put("target_table", "list_data");
+        input.put("fields_data", fieldsData);
+        return input;
+    }
+}
@@ -0,0 +1,124 @@
+package com.sproutloud.starter.stream.dao.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the upsert statement of {@link UpsertDaoImpl}
+ *
+ * @author mgande
+ */
+class UpsertDaoImplTest {
+
+    /**
+     * Tests that the entries are upserted with a single statement merging them into the conflicting entries, and that the values are
+     * bound in row and column order, with the arrays and timestamps typed.
+     *
+     * @throws SQLException
+     */
+    @Test
+    void testUpsertListData() throws SQLException {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UpsertDaoImpl dao = new UpsertDaoImpl();
+        dao.setJdbcTemplate(jdbcTemplate);
+        List<String> columns = Arrays.asList("created_ts", "email", "job_id", "list_id", "locality_code", "modified_op", "recipient_id");
+        Timestamp ts = new Timestamp(System.currentTimeMillis());
+
+        dao.upsertListData("lm", "list_data", columns, Arrays.asList(row("RC1", "a@b.cd", ts), row("RC2", null, ts)));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<PreparedStatementSetter> setter = ArgumentCaptor.forClass(PreparedStatementSetter.class);
+        verify(jdbcTemplate).update(sql.capture(), setter.capture());
+        assertEquals("INSERT INTO lm.list_data AS t (created_ts, email, job_id, list_id, locality_code, modified_op, recipient_id)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?), (?, ?, ?, ?, ?, ?, ?)"
+                + " ON CONFLICT (locality_code, list_id, recipient_id) DO UPDATE SET"
+                + " email = CASE WHEN excluded.email IS NULL OR excluded.email::text = '' THEN t.email ELSE excluded.email END,"
+                + " job_id = ARRAY(SELECT DISTINCT unnest(array_cat(t.job_id, excluded.job_id))),"
+                + " modified_op = excluded.modified_op", sql.getValue());
+
+        PreparedStatement ps = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        Array jobIds = mock(Array.class);
+        when(ps.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf(eq("text"), any())).thenReturn(jobIds);
+        setter.getValue().setValues(ps);
+
+        verify(ps).setTimestamp(1, ts);
+        verify(ps).setObject(2, "a@b.cd", Types.OTHER);
+        verify(ps).setArray(3, jobIds);
+        verify(ps).setObject(4, "LI1", Types.OTHER);
+        verify(ps).setObject(5, "SL_US", Types.OTHER);
+        verify(ps).setObject(6, "U", Types.OTHER);
+        verify(ps).setObject(7, "RC1", Types.OTHER);
+        verify(ps).setTimestamp(8, ts);
+        verify(ps).setNull(9, Types.OTHER);
+        verify(ps).setArray(10, jobIds);
+        verify(ps).setObject(14, "RC2", Types.OTHER);
+        verify(ps, never()).setObject(anyInt(), eq(ts), anyInt());
+        verify(connection, times(2)).createArrayOf("text", new String[] { "SJ1", "SJ2" });
+    }
+
+    /**
+     * Tests that a null value of a column not read as a string keeps the existing value without the empty string check.
+     */
+    @Test
+    void testUpsertListDataNonStringColumn() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UpsertDaoImpl dao = new UpsertDaoImpl();
+        dao.setJdbcTemplate(jdbcTemplate);
+        Map<String, Object> row = row("RC1", "a@b.cd", new Timestamp(System.currentTimeMillis()));
+        row.put("score", 7);
+
+        dao.upsertListData("lm", "list_data", Arrays.asList("email", "list_id", "locality_code", "recipient_id", "score"),
+                Collections.singletonList(row));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(sql.capture(), any(PreparedStatementSetter.class));
+        assertEquals("INSERT INTO lm.list_data AS t (email, list_id, locality_code, recipient_id, score) VALUES (?, ?, ?, ?, ?)"
+                + " ON CONFLICT (locality_code, list_id, recipient_id) DO UPDATE SET"
+                + " email = CASE WHEN excluded.email IS NULL OR excluded.email::text = '' THEN t.email ELSE excluded.email END,"
+                + " score = COALESCE(excluded.score, t.score)", sql.getValue());
+    }
+
+    /**
+     * @param recipientId recipient_id of the entry
+     * @param email       email of the entry
+     * @param ts          created_ts of the entry
+     * @return column values of an entry
+     */
+    private Map<String, Object> row(String recipientId, String email, Timestamp ts) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("created_ts", ts);
+        row.put("email", email);
+        row.put("job_id", new String[] { "SJ1", "SJ2" });
+        row.put("list_id", "LI1");
+        row.put("locality_code", "SL_US");
+        row.put("modified_op", "U");
+        row.put("recipient_id", recipientId);
+        return row;
+    }
+}
@@ -13,7 +13,6 @@ import static com.sproutloud.starter.stream.constants.ApplicationConstants.SOURC
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.TARGET_FIELD;
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.TP_ID;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.storage.Storage;
 import com.opencsv.CSVReader;
@@ -89,8 +88,7 @@ public class MappingCheck {
             String[] headers = getHeadersFromCsv((String) input.get(FILE));
             log.debug("Preparing mappings from the database details and csv header details.");
             Map<String, Integer> fieldIndexMap = prepareFieldIndexMap(sourceAndTargetFieldAndTypeMap, headers);
-            List<String> dedupeFields = mapper.convertValue(input.get(DEDUPE_FIELDS), new TypeReference<List<String>>() {
-            });
+            List<String> dedupeFields = PayloadDecoder.getStringList(input, DEDUPE_FIELDS);
 
             log.debug("Checking if the dedupe_fields are present in the mappings.");
             if (!fieldIndexMap.keySet().containsAll(dedupeFields)) {
@@ -177,8 +175,7 @@ public class MappingCheck {
                 return false;
             }
         }
-        List<String> dedupeFields = mapper.convertValue(input.get(DEDUPE_FIELDS), new TypeReference<List<String>>() {
-        });
+        List<String> dedupeFields = PayloadDecoder.getStringList(input, DEDUPE_FIELDS);
         if (CollectionUtils.isEmpty(dedupeFields)) {
             return false;
         }
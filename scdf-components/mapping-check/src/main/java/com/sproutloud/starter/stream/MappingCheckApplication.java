@@ -1,8 +1,6 @@
 package com.sproutloud.starter.stream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sproutloud.starter.stream.dao.impl.MappingCheckDaoImpl;
 
@@ -67,9 +65,7 @@ public class MappingCheckApplication {
     @StreamListener(Processor.INPUT)
     @SendTo(Processor.OUTPUT)
     public Map<String, Object> performAlfMappingCheck(Message<?> message) throws JsonProcessingException {
-        JsonNode inputNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(inputNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         input.put(StringUtils.IN_TIME, System.currentTimeMillis());
         mappingCheck.checkInputAndPrepareMappings(input);
         input.put(StringUtils.JOB_TYPE, "mapping_check");
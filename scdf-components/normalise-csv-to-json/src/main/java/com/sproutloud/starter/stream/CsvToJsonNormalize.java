@@ -7,7 +7,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.storage.Storage;
 import com.opencsv.CSVReader;
 import com.sproutloud.starter.stream.dao.impl.FieldsDaoImpl;
+import com.sproutloud.starter.stream.dedupe.DedupeDigest;
+import com.sproutloud.starter.stream.dedupe.SpillableDedupeStore;
 import com.sproutloud.starter.stream.gcp.FileReader;
+import com.sproutloud.starter.stream.properties.NormalizeConfigProperties;
+import com.sproutloud.starter.stream.util.CsvChunker;
 import com.sproutloud.starter.stream.util.FileHelper;
 
 import lombok.extern.log4j.Log4j2;
@@ -19,11 +23,14 @@ import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,8 +38,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
+
 /**
  * Reads CSV file from Google storage. Normalizes the CSV data to required json.
  * 
@@ -67,8 +78,19 @@ public class CsvToJsonNormalize {
     @Autowired
     private ObjectMapper mapper;
 
+    /**
+     * {@link NormalizeConfigProperties} for the parsing configuration.
+     */
+    @Autowired
+    private NormalizeConfigProperties properties;
+
     private final SimpleDateFormat formatter = new SimpleDateFormat("YYMM");
 
+    /**
+     * {@link ForkJoinPool} to parse CSV chunks on, created on first use.
+     */
+    private ForkJoinPool parsingPool;
+
     /**
      * Reads CSV file from Google storage. Normalizes the CSV data to required json. Updates the segment and lease data in db.
      * 
@@ -76,52 +98,224 @@ public class CsvToJsonNormalize {
      * @param dedupeFields            {@link List} of dedupe fields.
      * @param fieldIndexMap           {@link Map} of key a field name and value as index in csv.
      * @param segmentSegmentIdMap     {@link Map} with key as segmentValue and value as segmentId.
-     * @param dedupeHashFieldsDataMap {@link Map} with key as dedupe hash and value as fields data.
+     * @param dedupeHashFieldsDataMap {@link Map} with key as ordinal of the unique record and value as fields data.
      * @return total number of rows in csv
      * @throws IOException when unable to read CSV file.
      */
     public Integer normalizeInput(Map<String, Object> input, List<String> dedupeFields, Map<String, Integer> fieldIndexMap,
             Map<String, String> segmentSegmentIdMap, Map<Integer, Map<String, Object>> dedupeHashFieldsDataMap) throws IOException {
+        return normalizeInput(input, dedupeFields, fieldIndexMap, segmentSegmentIdMap, new SpillableDedupeStore(dedupeHashFieldsDataMap));
+    }
+
+    /**
+     * Reads CSV file from Google storage. Normalizes the CSV data to required json into the given {@link SpillableDedupeStore}, which may spill
+     * the deduped records to disk. Updates the segment and lease data in db.
+     * 
+     * @param input               json format of incoming message.
+     * @param dedupeFields        {@link List} of dedupe fields.
+     * @param fieldIndexMap       {@link Map} of key a field name and value as index in csv.
+     * @param segmentSegmentIdMap {@link Map} with key as segmentValue and value as segmentId.
+     * @param dedupeStore         {@link SpillableDedupeStore} with key as dedupe digest and value as fields data.
+     * @return total number of rows in csv
+     * @throws IOException when unable to read CSV file or to spill the dedupe state.
+     */
+    public Integer normalizeInput(Map<String, Object> input, List<String> dedupeFields, Map<String, Integer> fieldIndexMap,
+            Map<String, String> segmentSegmentIdMap, SpillableDedupeStore dedupeStore) throws IOException {
         String file = (String) input.get("file");
         log.debug("Fetching file from Google cloud storage bucket: " + file);
         InputStream in = fileReader.readCsv(file);
         int skipHeader = Objects.equals(input.get(CONTAINS_HEADERS), "true") ? 1 : 0;
 
-        log.debug("Reading the CSV file. \n");
-        CSVReader csvReader = fielHelper.getCsvReader(in, skipHeader);
         Set<String> uniqueTpAccounts = new HashSet<>();
         Set<String> uniqueSegments = new HashSet<>();
+        Integer totalNumberOfRecords;
+        if (properties.isParallelParsingEnabled()) {
+            totalNumberOfRecords = normalizeInChunks(in, skipHeader, dedupeFields, fieldIndexMap, dedupeStore, uniqueTpAccounts, uniqueSegments);
+        } else {
+            totalNumberOfRecords = normalizeSequentially(in, skipHeader, dedupeFields, fieldIndexMap, dedupeStore, uniqueTpAccounts, uniqueSegments);
+        }
+
+        log.debug("Getting segment details by list_id from DB \n");
+        segmentSegmentIdMap.putAll(dao.getSegmentDetails((String) input.get(LIST_ID)));
+        log.debug("Removing segments from uniqueSegments which are in DB \n");
+        uniqueSegments.removeAll(segmentSegmentIdMap.keySet());
+        Timestamp currentTs = new Timestamp(System.currentTimeMillis());
+        insertLeaseSegmentDetailsToDB(input, segmentSegmentIdMap, uniqueTpAccounts, uniqueSegments, currentTs);
+        return totalNumberOfRecords;
+    }
+
+    /**
+     * Reads the CSV rows one by one on the calling thread and adds them to the dedupe store.
+     * 
+     * @param in               {@link InputStream} of the CSV file.
+     * @param skipHeader       number of lines to be skipped.
+     * @param dedupeFields     {@link List} of dedupe fields.
+     * @param fieldIndexMap    {@link Map} of key a field name and value as index in csv.
+     * @param dedupeStore      {@link SpillableDedupeStore} with key as dedupe digest and value as fields data.
+     * @param uniqueTpAccounts {@link Set} of unique tp accounts.
+     * @param uniqueSegments   {@link Set} of unique segments.
+     * @return total number of rows in csv
+     * @throws IOException when unable to read CSV file or to spill the dedupe state.
+     */
+    private Integer normalizeSequentially(InputStream in, int skipHeader, List<String> dedupeFields, Map<String, Integer> fieldIndexMap,
+            SpillableDedupeStore dedupeStore, Set<String> uniqueTpAccounts, Set<String> uniqueSegments) throws IOException {
+        log.debug("Reading the CSV file. \n");
+        CSVReader csvReader = fielHelper.getCsvReader(in, skipHeader);
         log.debug("Iterating through each entry of CSV file \n ");
         Integer totalNumberOfRecords = 0;
         String[] rowValues;
         while ((rowValues = csvReader.readNext()) != null) {
-            log.debug("Preparing edupe hash \n");
+            log.debug("Preparing dedupe digest \n");
             totalNumberOfRecords++;
-            List<String> dedupeFieldValues = new ArrayList<>();
-            for (String field : dedupeFields) {
-                dedupeFieldValues.add(rowValues[fieldIndexMap.get(field) - 1]);
-            }
-            Integer dedupeHash = Arrays.hashCode(dedupeFieldValues.toArray());
-            // if the dedupeHashFieldsDataMap map already has entry with the dedupeHash then
-            // value of the entry in dedupeHashFieldsDataMap will be updated
-            if (dedupeHashFieldsDataMap.containsKey(dedupeHash)) {
-                dedupeHashFieldsDataMap.put(dedupeHash, updateDedupeHashFieldsDataMap(fieldIndexMap, rowValues,
-                        dedupeHashFieldsDataMap.get(dedupeHash), uniqueTpAccounts, uniqueSegments));
+            DedupeDigest dedupeDigest = getDedupeDigest(dedupeFields, fieldIndexMap, rowValues);
+            // if the dedupeStore already holds an entry with the dedupeDigest in memory then
+            // value of the entry will be updated. Entries spilled to disk are merged on read.
+            Map<String, Object> fieldsData = dedupeStore.get(dedupeDigest);
+            if (Objects.nonNull(fieldsData)) {
+                updateDedupeHashFieldsDataMap(fieldIndexMap, rowValues, fieldsData, uniqueTpAccounts, uniqueSegments);
             } else {
-                dedupeHashFieldsDataMap.put(dedupeHash, insertDedupeHashFieldsDataMap(fieldIndexMap, rowValues, uniqueTpAccounts, uniqueSegments));
+                dedupeStore.put(dedupeDigest, insertDedupeHashFieldsDataMap(fieldIndexMap, rowValues, uniqueTpAccounts, uniqueSegments));
             }
         }
         csvReader.close();
+        return totalNumberOfRecords;
+    }
 
-        log.debug("Getting segment details by list_id from DB \n");
-        segmentSegmentIdMap.putAll(dao.getSegmentDetails((String) input.get(LIST_ID)));
-        log.debug("Removing segments from uniqueSegments which are in DB \n");
-        uniqueSegments.removeAll(segmentSegmentIdMap.keySet());
-        Timestamp currentTs = new Timestamp(System.currentTimeMillis());
-        insertLeaseSegmentDetailsToDB(input, segmentSegmentIdMap, uniqueTpAccounts, uniqueSegments, currentTs);
+    /**
+     * Splits the CSV into chunks at record boundaries, parses and maps the rows of each chunk on the parsing pool and adds them to the dedupe
+     * store in the original order, so the values seen first are retained as in {@link #normalizeSequentially}. At most two chunks per worker
+     * are in flight at a time.
+     * 
+     * @param in               {@link InputStream} of the CSV file.
+     * @param skipHeader       number of lines to be skipped.
+     * @param dedupeFields     {@link List} of dedupe fields.
+     * @param fieldIndexMap    {@link Map} of key a field name and value as index in csv.
+     * @param dedupeStore      {@link SpillableDedupeStore} with key as dedupe digest and value as fields data.
+     * @param uniqueTpAccounts {@link Set} of unique tp accounts.
+     * @param uniqueSegments   {@link Set} of unique segments.
+     * @return total number of rows in csv
+     * @throws IOException when unable to read CSV file or to spill the dedupe state.
+     */
+    private Integer normalizeInChunks(InputStream in, int skipHeader, List<String> dedupeFields, Map<String, Integer> fieldIndexMap,
+            SpillableDedupeStore dedupeStore, Set<String> uniqueTpAccounts, Set<String> uniqueSegments) throws IOException {
+        ForkJoinPool pool = getParsingPool();
+        CsvChunker chunker = fielHelper.getCsvChunker(in, properties.getParsingChunkSize());
+        Deque<ForkJoinTask<MappedChunk>> inFlight = new ArrayDeque<>();
+        Integer totalNumberOfRecords = 0;
+        int chunkNumber = 0;
+        String chunk;
+        try {
+            while ((chunk = chunker.nextChunk()) != null) {
+                String chunkData = chunk;
+                int skipLines = chunkNumber++ == 0 ? skipHeader : 0;
+                inFlight.add(pool.submit(() -> mapChunk(chunkData, skipLines, dedupeFields, fieldIndexMap)));
+                if (inFlight.size() >= 2 * pool.getParallelism()) {
+                    totalNumberOfRecords += mergeChunk(inFlight.poll().join(), dedupeStore, uniqueTpAccounts, uniqueSegments);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                totalNumberOfRecords += mergeChunk(inFlight.poll().join(), dedupeStore, uniqueTpAccounts, uniqueSegments);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            inFlight.forEach(task -> task.cancel(true));
+            in.close();
+        }
+        log.debug("Normalized " + chunkNumber + " chunks of CSV file \n");
         return totalNumberOfRecords;
     }
 
+    /**
+     * Parses the rows of a chunk and maps them to dedupe digest and fields data. Runs on the parsing pool.
+     * 
+     * @param chunk         CSV content ending at a record boundary.
+     * @param skipLines     number of lines to be skipped.
+     * @param dedupeFields  {@link List} of dedupe fields.
+     * @param fieldIndexMap {@link Map} of key a field name and value as index in csv.
+     * @return {@link MappedChunk} of the rows.
+     */
+    private MappedChunk mapChunk(String chunk, int skipLines, List<String> dedupeFields, Map<String, Integer> fieldIndexMap) {
+        MappedChunk mappedChunk = new MappedChunk();
+        try (CSVReader csvReader = fielHelper.getCsvReader(new StringReader(chunk), skipLines)) {
+            String[] rowValues;
+            while ((rowValues = csvReader.readNext()) != null) {
+                mappedChunk.dedupeDigests.add(getDedupeDigest(dedupeFields, fieldIndexMap, rowValues));
+                mappedChunk.fieldsData.add(
+                        insertDedupeHashFieldsDataMap(fieldIndexMap, rowValues, mappedChunk.uniqueTpAccounts, mappedChunk.uniqueSegments));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return mappedChunk;
+    }
+
+    /**
+     * Adds the mapped rows of a chunk to the dedupe store. Rows already held in memory are merged into the held entry.
+     * 
+     * @param mappedChunk      {@link MappedChunk} of the rows.
+     * @param dedupeStore      {@link SpillableDedupeStore} with key as dedupe digest and value as fields data.
+     * @param uniqueTpAccounts {@link Set} of unique tp accounts.
+     * @param uniqueSegments   {@link Set} of unique segments.
+     * @return number of rows in the chunk.
+     * @throws IOException when unable to spill the dedupe state.
+     */
+    private int mergeChunk(MappedChunk mappedChunk, SpillableDedupeStore dedupeStore, Set<String> uniqueTpAccounts, Set<String> uniqueSegments)
+            throws IOException {
+        for (int row = 0; row < mappedChunk.dedupeDigests.size(); row++) {
+            DedupeDigest dedupeDigest = mappedChunk.dedupeDigests.get(row);
+            Map<String, Object> fieldsData = dedupeStore.get(dedupeDigest);
+            if (Objects.nonNull(fieldsData)) {
+                mergeFieldsData(fieldsData, mappedChunk.fieldsData.get(row));
+            } else {
+                dedupeStore.put(dedupeDigest, mappedChunk.fieldsData.get(row));
+            }
+        }
+        uniqueTpAccounts.addAll(mappedChunk.uniqueTpAccounts);
+        uniqueSegments.addAll(mappedChunk.uniqueSegments);
+        return mappedChunk.dedupeDigests.size();
+    }
+
+    /**
+     * Prepares the dedupe digest of a row from the values of the dedupe fields.
+     * 
+     * @param dedupeFields  {@link List} of dedupe fields.
+     * @param fieldIndexMap {@link Map} of key a field name and value as index in csv.
+     * @param rowValues     string array of field values.
+     * @return {@link DedupeDigest} of the row.
+     */
+    private DedupeDigest getDedupeDigest(List<String> dedupeFields, Map<String, Integer> fieldIndexMap, String[] rowValues) {
+        List<String> dedupeFieldValues = new ArrayList<>();
+        for (String field : dedupeFields) {
+            dedupeFieldValues.add(rowValues[fieldIndexMap.get(field) - 1]);
+        }
+        return DedupeDigest.of(dedupeFieldValues);
+    }
+
+    /**
+     * Provides the pool to parse CSV chunks on, created on first use.
+     * 
+     * @return {@link ForkJoinPool} of parsing workers.
+     */
+    private synchronized ForkJoinPool getParsingPool() {
+        if (Objects.isNull(parsingPool)) {
+            int parallelism = properties.getParsingParallelism() > 0 ? properties.getParsingParallelism()
+                    : Runtime.getRuntime().availableProcessors();
+            parsingPool = new ForkJoinPool(parallelism);
+        }
+        return parsingPool;
+    }
+
+    /**
+     * Shuts down the parsing pool, if created.
+     */
+    @PreDestroy
+    public synchronized void shutdownParsingPool() {
+        if (Objects.nonNull(parsingPool)) {
+            parsingPool.shutdownNow();
+        }
+    }
+
     /**
      * Inserts the data to list_meta and acct_members table.
      * 
@@ -275,6 +469,33 @@ public class CsvToJsonNormalize {
         return fieldsData;
     }
 
+    /**
+     * Merges the fields data of a later occurrence of a dedupe hash into the earlier one. Empty values are filled from the later occurrence and
+     * the tp accounts and segments of both are combined.
+     * 
+     * @param fieldsData      {@link Map} of key as field name and value as field value, of the earlier occurrence.
+     * @param laterFieldsData {@link Map} of key as field name and value as field value, of the later occurrence.
+     * @return Merged {@link Map} with key as field name and value as field value
+     */
+    public Map<String, Object> mergeFieldsData(Map<String, Object> fieldsData, Map<String, Object> laterFieldsData) {
+        for (Entry<String, Object> field : laterFieldsData.entrySet()) {
+            String fieldName = field.getKey();
+            if (TP_IDS.equals(fieldName) || SEGMENTS.equals(fieldName)) {
+                Set<String> values = new HashSet<>();
+                if (fieldsData.containsKey(fieldName)) {
+                    values.addAll(mapper.convertValue(fieldsData.get(fieldName), new TypeReference<Set<String>>() {
+                    }));
+                }
+                values.addAll(mapper.convertValue(field.getValue(), new TypeReference<Set<String>>() {
+                }));
+                fieldsData.put(fieldName, values);
+            } else if (StringUtils.isEmpty(fieldsData.get(fieldName))) {
+                fieldsData.put(fieldName, field.getValue());
+            }
+        }
+        return fieldsData;
+    }
+
     /**
      * Updates the list of tpAccounts/Segments.
      * 
@@ -333,4 +554,18 @@ public class CsvToJsonNormalize {
     public String getId(Integer sequenceNumber, String tag) {
         return tag + formatter.format(new Date()) + String.format("%010d", sequenceNumber);
     }
+
+    /**
+     * Rows of a CSV chunk mapped to dedupe digest and fields data, with the tp accounts and segments seen in the chunk.
+     */
+    private static class MappedChunk {
+
+        private final List<DedupeDigest> dedupeDigests = new ArrayList<>();
+
+        private final List<Map<String, Object>> fieldsData = new ArrayList<>();
+
+        private final Set<String> uniqueTpAccounts = new HashSet<>();
+
+        private final Set<String> uniqueSegments = new HashSet<>();
+    }
 }
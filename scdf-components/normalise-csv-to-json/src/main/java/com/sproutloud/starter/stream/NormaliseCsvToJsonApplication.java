@@ -3,9 +3,10 @@ package com.sproutloud.starter.stream;
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.*;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sproutloud.starter.stream.dao.impl.FieldsDaoImpl;
+import com.sproutloud.starter.stream.dedupe.SpillableDedupeStore;
+import com.sproutloud.starter.stream.properties.NormalizeConfigProperties;
 
 import lombok.extern.log4j.Log4j2;
 
@@ -16,17 +17,21 @@ import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.CollectionUtils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -37,7 +42,7 @@ import java.util.stream.Collectors;
  *
  */
 @Log4j2
-@EnableBinding(Processor.class)
+@EnableBinding({ Processor.class, JobMetadataSource.class })
 @SpringBootApplication
 @EnableCaching
 public class NormaliseCsvToJsonApplication {
@@ -48,6 +53,12 @@ public class NormaliseCsvToJsonApplication {
     @Autowired
     private Processor processor;
 
+    /**
+     * {@link JobMetadataSource} to publish job metadata.
+     */
+    @Autowired
+    private JobMetadataSource jobMetadataSource;
+
     /**
      * {@link ObjectMapper} to convert Object to required type.
      */
@@ -66,6 +77,12 @@ public class NormaliseCsvToJsonApplication {
     @Autowired
     private FieldsDaoImpl dao;
 
+    /**
+     * {@link NormalizeConfigProperties} for the streaming mode configuration.
+     */
+    @Autowired
+    private NormalizeConfigProperties properties;
+
     /**
      * Triggers the Spring boot application
      *
@@ -85,17 +102,14 @@ public class NormaliseCsvToJsonApplication {
     @StreamListener(Processor.INPUT)
     public void normalizeCsvToJson(Message<?> message) throws IOException {
         log.debug("Starting Normalization of csv to json: \n");
-        JsonNode inputNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(inputNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         input.put(StringUtils.IN_TIME, System.currentTimeMillis());
         log.debug("Input for the Component is : \n " + input);
         if (Objects.nonNull(input) && Objects.nonNull(input.get(FILE)) && Objects.nonNull(input.get(MAPPINGS))) {
             log.debug("Getting mappings and dedupe_fields from input \n ");
             Map<String, Integer> fieldIndexMap = mapper.convertValue(input.get(MAPPINGS), new TypeReference<Map<String, Integer>>() {
             });
-            List<String> dedupeFields = mapper.convertValue(input.get(DEDUPE_FIELDS), new TypeReference<List<String>>() {
-            });
+            List<String> dedupeFields = PayloadDecoder.getStringList(input, DEDUPE_FIELDS);
 
             log.debug("Checking if all the dedupe fields are in mappings. \n");
             if (!fieldIndexMap.keySet().containsAll(dedupeFields)) {
@@ -104,31 +118,75 @@ public class NormaliseCsvToJsonApplication {
             log.debug("Getting field details of given list_id from DB. \n");
             Map<String, Map<String, String>> fieldDetails = normalize.getFieldDetails(input, fieldIndexMap);
             Map<String, String> segmentSegmentIdMap = new HashMap<>();
-            Map<Integer, Map<String, Object>> dedupeHashFieldsDataMap = new HashMap<>();
-            Integer totalNumberOfRecords = normalize.normalizeInput(input, dedupeFields, fieldIndexMap, segmentSegmentIdMap, dedupeHashFieldsDataMap);
+            try (SpillableDedupeStore dedupeStore = createDedupeStore()) {
+                Integer totalNumberOfRecords = normalize.normalizeInput(input, dedupeFields, fieldIndexMap, segmentSegmentIdMap, dedupeStore);
 
-            Integer numberOfRecords = dedupeHashFieldsDataMap.size();
-            Integer sequenceNumber = dao.getSequenceNumber(numberOfRecords, "recipient_seq");
-            for (Entry<Integer, Map<String, Object>> field : dedupeHashFieldsDataMap.entrySet()) {
-                sendDetailsToOutputChannel(input, field.getValue(), sequenceNumber++, fieldDetails, segmentSegmentIdMap, numberOfRecords, totalNumberOfRecords);
+                Integer numberOfRecords = dedupeStore.size();
+                AtomicInteger sequenceNumber = new AtomicInteger(dao.getSequenceNumber(numberOfRecords, "recipient_seq"));
+                Map<String, Object> outputHeader = prepareOutputHeader(input, fieldDetails, numberOfRecords, totalNumberOfRecords);
+                List<Map<String, Object>> outputRecords = new ArrayList<>();
+                dedupeStore.forEachRecord(normalize::mergeFieldsData, fieldsData -> {
+                    outputRecords.add(prepareOutputRecord(input, fieldsData, sequenceNumber.getAndIncrement(), segmentSegmentIdMap));
+                    if (outputRecords.size() >= properties.getOutputBatchSize()) {
+                        sendDetailsToOutputChannel(outputHeader, outputRecords);
+                    }
+                });
+                sendDetailsToOutputChannel(outputHeader, outputRecords);
             }
         }
         dao.updateJobStatus(input.get("job_id"), System.currentTimeMillis());
     }
 
     /**
-     * Prepares the output json in the required format with the details given and sends to output channel.
+     * Creates the store for the deduped records of a csv. In streaming mode the records are spilled to disk once the configured memory budget is
+     * hit, otherwise all the records are held in memory.
      * 
-     * @param input                json format of incoming message
-     * @param fieldsData           {@link Map} with key as field-name and values as field-value.
-     * @param sequenceNumber       {@link Integer} to generate unique recepient_id.
-     * @param fieldDetails         {@link Map} with key as field-name and value as field-details.
-     * @param segmentSegmentIdMap  {@link Map} with key as segmentValue and value as segmentId.
-     * @param numberOfRecords      number of unique records in csv
-     * @param totalNumberOfRecords number of records in csv
+     * @return {@link SpillableDedupeStore} for the deduped records.
+     * @throws IOException when unable to create the dedupe index.
      */
-    private void sendDetailsToOutputChannel(Map<String, Object> input, Map<String, Object> fieldsData, Integer sequenceNumber,
-            Map<String, Map<String, String>> fieldDetails, Map<String, String> segmentSegmentIdMap, Integer numberOfRecords, Integer totalNumberOfRecords) {
+    private SpillableDedupeStore createDedupeStore() throws IOException {
+        if (properties.isStreamingEnabled()) {
+            return new SpillableDedupeStore(mapper, properties.getMaxInMemoryRecords(), properties.getSpillPartitions(),
+                    Paths.get(properties.getSpillDirectory()));
+        }
+        return new SpillableDedupeStore(new HashMap<>());
+    }
+
+    /**
+     * Sends the pending output records to output channel and clears them. With a batch size of 1 each record is sent as a message of its own
+     * holding the header, otherwise the records are sent as a single {@link RecordBatch} message with the header shared.
+     * 
+     * @param outputHeader  {@link Map} of the output details shared by all the records.
+     * @param outputRecords {@link List} of the output details of each record.
+     */
+    private void sendDetailsToOutputChannel(Map<String, Object> outputHeader, List<Map<String, Object>> outputRecords) {
+        if (outputRecords.isEmpty()) {
+            return;
+        }
+        if (properties.getOutputBatchSize() > 1) {
+            log.debug("Sending batch of " + outputRecords.size() + " records to the channel \n ");
+            processor.output().send(MessageBuilder.withPayload(RecordBatch.of(outputHeader, new ArrayList<>(outputRecords))).build());
+        } else {
+            for (Map<String, Object> outputRecord : outputRecords) {
+                Map<String, Object> outputData = new HashMap<>(outputHeader);
+                outputData.putAll(outputRecord);
+                processor.output().send(MessageBuilder.withPayload(outputData).build());
+            }
+        }
+        outputRecords.clear();
+    }
+
+    /**
+     * Prepares the output details of a record with the details given.
+     * 
+     * @param input               json format of incoming message
+     * @param fieldsData          {@link Map} with key as field-name and values as field-value.
+     * @param sequenceNumber      {@link Integer} to generate unique recepient_id.
+     * @param segmentSegmentIdMap {@link Map} with key as segmentValue and value as segmentId.
+     * @return {@link Map} of the output details of the record.
+     */
+    private Map<String, Object> prepareOutputRecord(Map<String, Object> input, Map<String, Object> fieldsData, Integer sequenceNumber,
+            Map<String, String> segmentSegmentIdMap) {
         Map<String, Object> leaseData = prepareLeaseDataForOutput(input, fieldsData);
 
         Map<String, Object> segmentData = prepareSegmentDataForOutput(input, fieldsData, segmentSegmentIdMap);
@@ -141,6 +199,29 @@ public class NormaliseCsvToJsonApplication {
 
         log.debug("Preparing output for the channel \n ");
         Map<String, Object> outputData = new HashMap<>();
+        outputData.put(FIELDS_DATA, fieldsData);
+        if (!leaseData.isEmpty()) {
+            outputData.put(LEASE_DATA, leaseData);
+        }
+        if (!segmentData.isEmpty()) {
+            outputData.put(SEGMENT_DATA, segmentData);
+        }
+        outputData.put(StringUtils.OUT_TIME, System.currentTimeMillis());
+        return outputData;
+    }
+
+    /**
+     * Prepares the output details shared by all the records of the csv.
+     * 
+     * @param input                json format of incoming message
+     * @param fieldDetails         {@link Map} with key as field-name and value as field-details.
+     * @param numberOfRecords      number of unique records in csv
+     * @param totalNumberOfRecords number of records in csv
+     * @return {@link Map} of the shared output details.
+     */
+    private Map<String, Object> prepareOutputHeader(Map<String, Object> input, Map<String, Map<String, String>> fieldDetails,
+            Integer numberOfRecords, Integer totalNumberOfRecords) {
+        Map<String, Object> outputData = new HashMap<>();
         outputData.put(TARGET_TABLE, input.get(TARGET_TABLE));
         outputData.put(TARGET_DB, input.get(TARGET_DB));
         outputData.put(ACCOUNT_ID, input.get(ACCOUNT_ID));
@@ -150,20 +231,34 @@ public class NormaliseCsvToJsonApplication {
         outputData.put("email_certification", REQUIRED);
         outputData.put("phone_certification", REQUIRED);
         outputData.put("address_certification", REQUIRED);
-        outputData.put(FIELDS_DATA, fieldsData);
         outputData.put("number_of_records", numberOfRecords);
         outputData.put("duplicate_records", (totalNumberOfRecords - numberOfRecords));
-        if (!leaseData.isEmpty()) {
-            outputData.put(LEASE_DATA, leaseData);
-        }
-        if (!segmentData.isEmpty()) {
-            outputData.put(SEGMENT_DATA, segmentData);
-        }
         outputData.put(FIELD_DETAILS, fieldDetails);
         outputData.put(StringUtils.IN_TIME, input.get(StringUtils.IN_TIME));
         outputData.put(StringUtils.JOB_TYPE, "csv_normalization");
-        outputData.put(StringUtils.OUT_TIME, System.currentTimeMillis());
-        processor.output().send(MessageBuilder.withPayload(outputData).build());
+        if (properties.isJobMetadataEnabled()) {
+            publishJobMetadata(input, outputData);
+        }
+        return outputData;
+    }
+
+    /**
+     * Publishes the job level details of the output header once, keyed by job_id, and replaces them in the header with a job reference.
+     * 
+     * @param input        json format of incoming message
+     * @param outputHeader {@link Map} of the output details shared by all the records.
+     */
+    private void publishJobMetadata(Map<String, Object> input, Map<String, Object> outputHeader) {
+        String jobId = (String) input.get(JOB_ID);
+        Map<String, Object> jobMetadata = new HashMap<>();
+        jobMetadata.put(JobMetadata.JOB_ID, jobId);
+        for (String key : JobMetadata.METADATA_KEYS) {
+            jobMetadata.put(key, outputHeader.remove(key));
+        }
+        log.debug("Publishing job metadata of job: " + jobId);
+        jobMetadataSource.jobMetadataOutput().send(
+                MessageBuilder.withPayload(jobMetadata).setHeader(KafkaHeaders.MESSAGE_KEY, jobId.getBytes(StandardCharsets.UTF_8)).build());
+        outputHeader.put(JobMetadata.JOB_REF, jobId);
     }
 
     /**
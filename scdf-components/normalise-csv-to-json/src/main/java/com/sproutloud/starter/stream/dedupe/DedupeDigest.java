@@ -0,0 +1,103 @@
+package com.sproutloud.starter.stream.dedupe;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 128 bit digest of the dedupe field values of a csv row. Rows with equal dedupe field values have equal digests, while distinct rows collide
+ * only with negligible probability, unlike a 32 bit hash code.
+ *
+ * @author mgande
+ *
+ */
+@Getter
+@EqualsAndHashCode
+public final class DedupeDigest {
+
+    /**
+     * MD5 {@link MessageDigest} of each thread, reused across rows.
+     */
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 digest is not available", e);
+        }
+    });
+
+    /**
+     * Upper 64 bits of the digest.
+     */
+    private final long high;
+
+    /**
+     * Lower 64 bits of the digest.
+     */
+    private final long low;
+
+    /**
+     * @param high upper 64 bits of the digest.
+     * @param low  lower 64 bits of the digest.
+     */
+    public DedupeDigest(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Computes the digest of the given dedupe field values. Each value is length prefixed, so that values containing separators can not be
+     * confused with adjacent values, and null is kept distinct from empty.
+     *
+     * @param dedupeFieldValues {@link List} of dedupe field values in dedupe field order.
+     * @return {@link DedupeDigest} of the values.
+     */
+    public static DedupeDigest of(List<String> dedupeFieldValues) {
+        MessageDigest md5 = MD5.get();
+        md5.reset();
+        for (String value : dedupeFieldValues) {
+            if (Objects.isNull(value)) {
+                updateInt(md5, -1);
+                continue;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            updateInt(md5, bytes.length);
+            md5.update(bytes);
+        }
+        byte[] digest = md5.digest();
+        return new DedupeDigest(toLong(digest, 0), toLong(digest, 8));
+    }
+
+    /**
+     * Adds the big endian bytes of the given int to the digest.
+     *
+     * @param md5   {@link MessageDigest} to be updated.
+     * @param value int to be added.
+     */
+    private static void updateInt(MessageDigest md5, int value) {
+        md5.update((byte) (value >>> 24));
+        md5.update((byte) (value >>> 16));
+        md5.update((byte) (value >>> 8));
+        md5.update((byte) value);
+    }
+
+    /**
+     * Reads 8 big endian bytes as long.
+     *
+     * @param bytes  digest bytes.
+     * @param offset of the first byte.
+     * @return long value.
+     */
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
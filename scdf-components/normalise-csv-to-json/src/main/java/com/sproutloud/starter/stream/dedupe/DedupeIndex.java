@@ -0,0 +1,214 @@
+package com.sproutloud.starter.stream.dedupe;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Open addressing hash index from {@link DedupeDigest} to the ordinal of the first row having it. The table lives outside the java heap, either
+ * in a direct buffer or in a memory mapped file when a directory is given, and holds only the 16 byte digest and a 4 byte ordinal per slot, so
+ * large csv files can be deduped without a boxed entry per row.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+public class DedupeIndex implements Closeable {
+
+    /**
+     * Bytes of a slot: digest high, digest low and ordinal + 1, where 0 marks an empty slot.
+     */
+    private static final int SLOT_SIZE = 20;
+
+    /**
+     * Maximum number of slots a single buffer can address.
+     */
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * Load factor after which the table is doubled.
+     */
+    private static final double LOAD_FACTOR = 0.7;
+
+    /**
+     * Directory holding the mapped table file, null for a direct buffer.
+     */
+    private final Path directory;
+
+    /**
+     * Slots of the table.
+     */
+    private ByteBuffer table;
+
+    /**
+     * Mapped file of the table, null for a direct buffer.
+     */
+    private Path tableFile;
+
+    /**
+     * Number of slots, always a power of two.
+     */
+    private int capacity;
+
+    /**
+     * Number of digests in the index.
+     */
+    private int size;
+
+    /**
+     * Creates an index in a direct buffer.
+     *
+     * @param expectedSize expected number of unique digests.
+     * @throws IOException never for a direct buffer.
+     */
+    public DedupeIndex(int expectedSize) throws IOException {
+        this(expectedSize, null);
+    }
+
+    /**
+     * Creates an index in a memory mapped file under the given directory, or in a direct buffer if directory is null.
+     *
+     * @param expectedSize expected number of unique digests.
+     * @param directory    under which the table file is created.
+     * @throws IOException when unable to create the table file.
+     */
+    public DedupeIndex(int expectedSize, Path directory) throws IOException {
+        this.directory = directory;
+        int initialCapacity = 16;
+        while (initialCapacity < MAX_CAPACITY && initialCapacity * LOAD_FACTOR < expectedSize) {
+            initialCapacity <<= 1;
+        }
+        allocate(initialCapacity);
+    }
+
+    /**
+     * @return number of unique digests in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Fetches the ordinal of the given digest.
+     *
+     * @param digest {@link DedupeDigest} of the row.
+     * @return ordinal of the digest, -1 if absent.
+     */
+    public int get(DedupeDigest digest) {
+        int slot = findSlot(table, capacity, digest.getHigh(), digest.getLow());
+        return table.getInt(slot * SLOT_SIZE + 16) - 1;
+    }
+
+    /**
+     * Adds the given digest with the next ordinal, which is the size of the index before the call, if it is not present.
+     *
+     * @param digest {@link DedupeDigest} of the row.
+     * @return existing ordinal of the digest, -1 if the digest is added.
+     * @throws IOException when unable to grow the table file.
+     */
+    public int putIfAbsent(DedupeDigest digest) throws IOException {
+        int slot = findSlot(table, capacity, digest.getHigh(), digest.getLow());
+        int offset = slot * SLOT_SIZE;
+        int existing = table.getInt(offset + 16);
+        if (existing != 0) {
+            return existing - 1;
+        }
+        table.putLong(offset, digest.getHigh());
+        table.putLong(offset + 8, digest.getLow());
+        table.putInt(offset + 16, ++size);
+        if (size > capacity * LOAD_FACTOR) {
+            grow();
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the slot holding the given digest, or the empty slot where it belongs, by linear probing.
+     *
+     * @param slots    table to be probed.
+     * @param slotSize number of slots in the table.
+     * @param high     upper 64 bits of the digest.
+     * @param low      lower 64 bits of the digest.
+     * @return slot number.
+     */
+    private static int findSlot(ByteBuffer slots, int slotSize, long high, long low) {
+        int mask = slotSize - 1;
+        int slot = (int) (low ^ (low >>> 32)) & mask;
+        while (true) {
+            int offset = slot * SLOT_SIZE;
+            if (slots.getInt(offset + 16) == 0 || (slots.getLong(offset) == high && slots.getLong(offset + 8) == low)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Doubles the table and rehashes the digests into it.
+     *
+     * @throws IOException when unable to create the new table file.
+     */
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Dedupe index is full with " + size + " unique records");
+        }
+        ByteBuffer oldTable = table;
+        int oldCapacity = capacity;
+        Path oldTableFile = tableFile;
+        allocate(oldCapacity << 1);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int offset = slot * SLOT_SIZE;
+            int ordinal = oldTable.getInt(offset + 16);
+            if (ordinal != 0) {
+                long high = oldTable.getLong(offset);
+                long low = oldTable.getLong(offset + 8);
+                int newOffset = findSlot(table, capacity, high, low) * SLOT_SIZE;
+                table.putLong(newOffset, high);
+                table.putLong(newOffset + 8, low);
+                table.putInt(newOffset + 16, ordinal);
+            }
+        }
+        if (Objects.nonNull(oldTableFile)) {
+            Files.deleteIfExists(oldTableFile);
+        }
+        log.debug("Dedupe index grown to " + capacity + " slots");
+    }
+
+    /**
+     * Allocates a zeroed table of the given number of slots.
+     *
+     * @param slotCount number of slots.
+     * @throws IOException when unable to create the table file.
+     */
+    private void allocate(int slotCount) throws IOException {
+        int bytes = slotCount * SLOT_SIZE;
+        if (Objects.isNull(directory)) {
+            table = ByteBuffer.allocateDirect(bytes);
+        } else {
+            tableFile = Files.createTempFile(directory, "dedupe-index-", ".bin");
+            try (FileChannel channel = FileChannel.open(tableFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                table = channel.map(MapMode.READ_WRITE, 0, bytes);
+            }
+        }
+        capacity = slotCount;
+    }
+
+    /**
+     * Releases the table and deletes the table file, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        table = null;
+        if (Objects.nonNull(tableFile)) {
+            Files.deleteIfExists(tableFile);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.sproutloud.starter.stream.dedupe;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Holds the deduped fields data of a csv with key as {@link DedupeDigest}. Uniqueness is decided by an off-heap {@link DedupeIndex}, which maps
+ * each digest to the ordinal the fields data is kept under. Records are kept in memory until the configured budget is hit, after which the
+ * in-memory records are spilled to partitioned files on disk and the memory is freed. Each partition is merged back on its own in the order the
+ * records were spilled, so the values seen first are retained and the heap used stays bounded by the budget and the size of a single partition.
+ *
+ * @author mgande
+ *
+ */
+@Log4j2
+public class SpillableDedupeStore implements Closeable {
+
+    /**
+     * {@link TypeReference} of the spilled fields data.
+     */
+    private static final TypeReference<Map<String, Object>> FIELDS_DATA_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    /**
+     * {@link ObjectMapper} to write and read the spilled fields data.
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * {@link DedupeIndex} with the ordinal of each unique record.
+     */
+    private final DedupeIndex index;
+
+    /**
+     * {@link Map} with key as ordinal and value as fields data, of the records held in memory.
+     */
+    private final Map<Integer, Map<String, Object>> records;
+
+    /**
+     * Number of records held in memory before spilling them to disk.
+     */
+    private final int maxInMemoryRecords;
+
+    /**
+     * Number of partitions the spilled records are split into.
+     */
+    private final int partitionCount;
+
+    /**
+     * Directory under which the spill directory of this store is created.
+     */
+    private final Path spillBaseDirectory;
+
+    /**
+     * Directory holding the partition files, created on first spill.
+     */
+    private Path spillDirectory;
+
+    /**
+     * Writers of the partition files, open until all the records are spilled.
+     */
+    private BufferedWriter[] partitionWriters;
+
+    /**
+     * Set once the remaining in-memory records are spilled and the partition files are closed.
+     */
+    private boolean spillFinished;
+
+    /**
+     * Creates an in-memory only store backed by the given {@link Map}, with the index in a direct buffer.
+     *
+     * @param records {@link Map} with key as ordinal and value as fields data.
+     * @throws IOException never for a direct buffer index.
+     */
+    public SpillableDedupeStore(Map<Integer, Map<String, Object>> records) throws IOException {
+        this(null, new DedupeIndex(0), records, Integer.MAX_VALUE, 1, null);
+    }
+
+    /**
+     * Creates a store which spills to disk once maxInMemoryRecords are held in memory, with the index in a memory mapped file.
+     *
+     * @param mapper             {@link ObjectMapper} to write and read the spilled fields data.
+     * @param maxInMemoryRecords number of records held in memory before spilling them to disk.
+     * @param partitionCount     number of partitions the spilled records are split into.
+     * @param spillBaseDirectory directory under which the index and spill files are created.
+     * @throws IOException when unable to create the index file.
+     */
+    public SpillableDedupeStore(ObjectMapper mapper, int maxInMemoryRecords, int partitionCount, Path spillBaseDirectory) throws IOException {
+        this(mapper, new DedupeIndex(maxInMemoryRecords, spillBaseDirectory), new HashMap<>(), maxInMemoryRecords, partitionCount,
+                spillBaseDirectory);
+    }
+
+    private SpillableDedupeStore(ObjectMapper mapper, DedupeIndex index, Map<Integer, Map<String, Object>> records, int maxInMemoryRecords,
+            int partitionCount, Path spillBaseDirectory) {
+        this.mapper = mapper;
+        this.index = index;
+        this.records = records;
+        this.maxInMemoryRecords = Math.max(1, maxInMemoryRecords);
+        this.partitionCount = Math.max(1, partitionCount);
+        this.spillBaseDirectory = spillBaseDirectory;
+    }
+
+    /**
+     * Fetches the in-memory fields data of the given dedupe digest.
+     *
+     * @param digest {@link DedupeDigest} of the record.
+     * @return {@link Map} of fields data, null if the record is not held in memory.
+     */
+    public Map<String, Object> get(DedupeDigest digest) {
+        int ordinal = index.get(digest);
+        return ordinal < 0 ? null : records.get(ordinal);
+    }
+
+    /**
+     * Adds the fields data of a dedupe digest which is not held in memory. Spills the in-memory records to disk if the budget is hit.
+     *
+     * @param digest     {@link DedupeDigest} of the record.
+     * @param fieldsData {@link Map} with key as field name and value as field value.
+     * @throws IOException when unable to write the index or spill files.
+     */
+    public void put(DedupeDigest digest, Map<String, Object> fieldsData) throws IOException {
+        int ordinal = index.putIfAbsent(digest);
+        records.put(ordinal < 0 ? index.size() - 1 : ordinal, fieldsData);
+        if (records.size() >= maxInMemoryRecords) {
+            spill();
+        }
+    }
+
+    /**
+     * @return true if any of the records are spilled to disk.
+     */
+    public boolean hasSpilled() {
+        return Objects.nonNull(partitionWriters);
+    }
+
+    /**
+     * @return number of unique records in the store.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Passes the fields data of each unique record to the given consumer. Spilled records of a dedupe digest are merged with the merger in the
+     * order they were spilled, one partition at a time.
+     *
+     * @param merger   merges the fields data of a later occurrence into the earlier one.
+     * @param consumer of the merged fields data.
+     * @throws IOException when unable to read the spill files.
+     */
+    public void forEachRecord(BinaryOperator<Map<String, Object>> merger, Consumer<Map<String, Object>> consumer) throws IOException {
+        if (!hasSpilled()) {
+            records.values().forEach(consumer);
+            return;
+        }
+        finishSpilling();
+        for (int partition = 0; partition < partitionCount; partition++) {
+            Map<Integer, Map<String, Object>> partitionRecords = new LinkedHashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(getPartitionFile(partition), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf('\t');
+                    Integer ordinal = Integer.valueOf(line.substring(0, separator));
+                    Map<String, Object> fieldsData = mapper.readValue(line.substring(separator + 1), FIELDS_DATA_TYPE);
+                    partitionRecords.merge(ordinal, fieldsData, merger);
+                }
+            }
+            log.debug("Merged " + partitionRecords.size() + " records of spill partition " + partition);
+            partitionRecords.values().forEach(consumer);
+        }
+    }
+
+    /**
+     * Writes the in-memory records to the partition files and frees the memory.
+     *
+     * @throws IOException when unable to write the spill files.
+     */
+    private void spill() throws IOException {
+        if (!hasSpilled()) {
+            spillDirectory = Files.createTempDirectory(spillBaseDirectory, "dedupe-spill-");
+            partitionWriters = new BufferedWriter[partitionCount];
+            for (int partition = 0; partition < partitionCount; partition++) {
+                partitionWriters[partition] = Files.newBufferedWriter(getPartitionFile(partition), StandardCharsets.UTF_8);
+            }
+            log.info("Memory budget of " + maxInMemoryRecords + " records hit, spilling dedupe state to " + spillDirectory);
+        }
+        for (Entry<Integer, Map<String, Object>> record : records.entrySet()) {
+            BufferedWriter writer = partitionWriters[getPartition(record.getKey())];
+            writer.write(String.valueOf(record.getKey()));
+            writer.write('\t');
+            writer.write(mapper.writeValueAsString(record.getValue()));
+            writer.newLine();
+        }
+        records.clear();
+    }
+
+    /**
+     * Spills the remaining in-memory records and closes the partition files.
+     *
+     * @throws IOException when unable to write the spill files.
+     */
+    private void finishSpilling() throws IOException {
+        if (spillFinished) {
+            return;
+        }
+        spill();
+        closeWriters();
+        spillFinished = true;
+    }
+
+    /**
+     * Closes the partition writers.
+     *
+     * @throws IOException when unable to close the spill files.
+     */
+    private void closeWriters() throws IOException {
+        for (BufferedWriter writer : partitionWriters) {
+            writer.close();
+        }
+    }
+
+    /**
+     * @param ordinal of the record.
+     * @return partition of the given ordinal.
+     */
+    private int getPartition(Integer ordinal) {
+        return ordinal % partitionCount;
+    }
+
+    /**
+     * @param partition number of the partition.
+     * @return {@link Path} of the partition file.
+     */
+    private Path getPartitionFile(int partition) {
+        return spillDirectory.resolve("partition-" + partition + ".jsonl");
+    }
+
+    /**
+     * Releases the index and deletes the spill files, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        records.clear();
+        index.close();
+        if (!hasSpilled()) {
+            return;
+        }
+        if (!spillFinished) {
+            closeWriters();
+        }
+        for (int partition = 0; partition < partitionCount; partition++) {
+            Files.deleteIfExists(getPartitionFile(partition));
+        }
+        Files.deleteIfExists(spillDirectory);
+    }
+}
@@ -1,15 +1,22 @@
 package com.sproutloud.starter.stream.gcp;
 
 import com.google.cloud.storage.Storage;
+import com.sproutloud.starter.stream.properties.NormalizeConfigProperties;
 
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gcp.storage.GoogleStorageResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
 
 /**
  * Reads the csv file from the google storage.
@@ -28,7 +35,25 @@ public class FileReader {
     private Storage storage;
 
     /**
-     * Reads the CSV file from google storage and returns as {@link InputStream}.
+     * {@link StorageBackend} for ranged reads.
+     */
+    @Autowired
+    private StorageBackend storageBackend;
+
+    /**
+     * {@link NormalizeConfigProperties} for the ranged read configuration.
+     */
+    @Autowired
+    private NormalizeConfigProperties properties;
+
+    /**
+     * {@link ExecutorService} the range reads run on, created on first use.
+     */
+    private ExecutorService rangeReadExecutor;
+
+    /**
+     * Reads the CSV file from google storage and returns as {@link InputStream}. When ranged reads are enabled the file is fetched as concurrent
+     * byte ranges ahead of the reader.
      * 
      * @param file of the csv file in google storage.
      * @return {@link InputStream} of the file read.
@@ -36,6 +61,10 @@ public class FileReader {
     public InputStream readCsv(String file) {
         log.debug("Fetching file from Google cloud storage bucket: " + file);
         try {
+            if (properties.isRangedReadEnabled()) {
+                return new RangedPrefetchInputStream(storageBackend, file, properties.getRangeChunkSize(), properties.getRangeParallelism(),
+                        getRangeReadExecutor());
+            }
             GoogleStorageResource resource = new GoogleStorageResource(storage, file, true);
             return resource.getInputStream();
         } catch (IOException e) {
@@ -43,4 +72,27 @@ public class FileReader {
             throw new RuntimeException(e.getMessage());
         }
     }
+
+    /**
+     * Provides the executor the range reads run on.
+     * 
+     * @return {@link ExecutorService} with a thread per concurrent range read.
+     */
+    private synchronized ExecutorService getRangeReadExecutor() {
+        if (Objects.isNull(rangeReadExecutor)) {
+            rangeReadExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getRangeParallelism()),
+                    new CustomizableThreadFactory("range-reader-"));
+        }
+        return rangeReadExecutor;
+    }
+
+    /**
+     * Shuts down the range read executor, if created.
+     */
+    @PreDestroy
+    public synchronized void shutdownRangeReadExecutor() {
+        if (Objects.nonNull(rangeReadExecutor)) {
+            rangeReadExecutor.shutdownNow();
+        }
+    }
 }
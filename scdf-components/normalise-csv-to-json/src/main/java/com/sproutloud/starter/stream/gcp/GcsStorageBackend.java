@@ -0,0 +1,82 @@
+package com.sproutloud.starter.stream.gcp;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * {@link StorageBackend} reading from google storage.
+ * 
+ * @author mgande
+ *
+ */
+public class GcsStorageBackend implements StorageBackend {
+
+    /**
+     * Scheme prefix of google storage locations.
+     */
+    private static final String GCS_PREFIX = "gs://";
+
+    /**
+     * {@link Storage} bean for google storage access.
+     */
+    private final Storage storage;
+
+    /**
+     * @param storage {@link Storage} bean for google storage access.
+     */
+    public GcsStorageBackend(Storage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public ObjectVersion getVersion(String location) throws IOException {
+        Blob blob = storage.get(getBlobId(location));
+        if (Objects.isNull(blob)) {
+            throw new FileNotFoundException("File not found in Google Storage: " + location);
+        }
+        return new ObjectVersion(location, blob.getSize(), blob.getGeneration());
+    }
+
+    /**
+     * Reads the range from the generation of the version, which fails once the object is overwritten and the generation is gone.
+     */
+    @Override
+    public byte[] readRange(ObjectVersion version, long offset, int length) throws IOException {
+        String location = version.getLocation();
+        BlobId blobId = getBlobId(location);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (ReadChannel channel = storage.reader(BlobId.of(blobId.getBucket(), blobId.getName(), version.getGeneration()))) {
+            channel.seek(offset);
+            channel.setChunkSize(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of " + location + " at " + (offset + buffer.position()));
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Converts the location to {@link BlobId}.
+     * 
+     * @param location of the file, as gs://bucket/object.
+     * @return {@link BlobId} of the file.
+     */
+    private BlobId getBlobId(String location) {
+        String path = location.startsWith(GCS_PREFIX) ? location.substring(GCS_PREFIX.length()) : location;
+        int separator = path.indexOf('/');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid Google Storage location: " + location);
+        }
+        return BlobId.of(path.substring(0, separator), path.substring(separator + 1));
+    }
+}
@@ -0,0 +1,69 @@
+package com.sproutloud.starter.stream.gcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link StorageBackend} reading from the local filesystem, for running and testing without google storage. A location gs://bucket/object is
+ * read from root/bucket/object. The generation of a file is its last modified time.
+ * 
+ * @author mgande
+ *
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    /**
+     * Scheme prefix of google storage locations.
+     */
+    private static final String GCS_PREFIX = "gs://";
+
+    /**
+     * Root directory holding a directory per bucket.
+     */
+    private final Path root;
+
+    /**
+     * @param root directory holding a directory per bucket.
+     */
+    public LocalStorageBackend(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public ObjectVersion getVersion(String location) throws IOException {
+        Path path = getPath(location);
+        return new ObjectVersion(location, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+    }
+
+    @Override
+    public byte[] readRange(ObjectVersion version, long offset, int length) throws IOException {
+        String location = version.getLocation();
+        if (Files.getLastModifiedTime(getPath(location)).toMillis() != version.getGeneration()) {
+            throw new IOException("File modified while being read: " + location);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(getPath(location), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of " + location + " at " + (offset + buffer.position()));
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Resolves the location under the root directory.
+     * 
+     * @param location of the file, as gs://bucket/object.
+     * @return {@link Path} of the file.
+     */
+    private Path getPath(String location) {
+        return root.resolve(location.startsWith(GCS_PREFIX) ? location.substring(GCS_PREFIX.length()) : location);
+    }
+}
@@ -0,0 +1,58 @@
+package com.sproutloud.starter.stream.gcp;
+
+/**
+ * Version of a file in the storage, as found when it is opened. The ranges of the file are read from this version, so that a file overwritten
+ * while it is read fails the read instead of mixing the bytes of two versions.
+ * 
+ * @author mgande
+ *
+ */
+public class ObjectVersion {
+
+    /**
+     * Location of the file, as gs://bucket/object.
+     */
+    private final String location;
+
+    /**
+     * Size of the version in bytes.
+     */
+    private final long size;
+
+    /**
+     * Generation of the version, as assigned by the storage.
+     */
+    private final long generation;
+
+    /**
+     * @param location   of the file, as gs://bucket/object.
+     * @param size       of the version in bytes.
+     * @param generation of the version, as assigned by the storage.
+     */
+    public ObjectVersion(String location, long size, long generation) {
+        this.location = location;
+        this.size = size;
+        this.generation = generation;
+    }
+
+    /**
+     * @return location of the file, as gs://bucket/object.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return size of the version in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return generation of the version, as assigned by the storage.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+}
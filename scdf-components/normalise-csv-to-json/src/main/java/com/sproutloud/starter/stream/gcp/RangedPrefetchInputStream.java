@@ -0,0 +1,176 @@
+package com.sproutloud.starter.stream.gcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * {@link InputStream} of a file fetched as concurrent byte range reads. Up to readAhead ranges are fetched ahead of the reader, so throughput
+ * is not capped by the latency of a single sequential stream. Bytes are returned in file order.
+ * 
+ * @author mgande
+ *
+ */
+public class RangedPrefetchInputStream extends InputStream {
+
+    /**
+     * {@link StorageBackend} the ranges are read from.
+     */
+    private final StorageBackend backend;
+
+    /**
+     * Version of the file the ranges are read from.
+     */
+    private final ObjectVersion version;
+
+    /**
+     * Size of the file in bytes.
+     */
+    private final long size;
+
+    /**
+     * Number of bytes of a range.
+     */
+    private final int chunkSize;
+
+    /**
+     * Number of ranges fetched ahead of the reader.
+     */
+    private final int readAhead;
+
+    /**
+     * {@link ExecutorService} the range reads run on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Ranges being fetched, in file order.
+     */
+    private final Deque<Future<byte[]>> prefetched = new ArrayDeque<>();
+
+    /**
+     * Offset of the next range to be fetched.
+     */
+    private long nextOffset;
+
+    /**
+     * Range being read.
+     */
+    private byte[] current = new byte[0];
+
+    /**
+     * Position of the next byte in current range.
+     */
+    private int position;
+
+    /**
+     * Set once the stream is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Opens the current version of the file and starts fetching its first ranges.
+     * 
+     * @param backend   {@link StorageBackend} the ranges are read from.
+     * @param location  of the file.
+     * @param chunkSize number of bytes of a range.
+     * @param readAhead number of ranges fetched ahead of the reader.
+     * @param executor  {@link ExecutorService} the range reads run on.
+     * @throws IOException when the file does not exist.
+     */
+    public RangedPrefetchInputStream(StorageBackend backend, String location, int chunkSize, int readAhead, ExecutorService executor)
+            throws IOException {
+        this.backend = backend;
+        this.version = backend.getVersion(location);
+        this.size = version.getSize();
+        this.chunkSize = Math.max(1, chunkSize);
+        this.readAhead = Math.max(1, readAhead);
+        this.executor = executor;
+        prefetch();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current.length - position;
+    }
+
+    /**
+     * Cancels the ranges being fetched.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Future<byte[]> range : prefetched) {
+            range.cancel(true);
+        }
+        prefetched.clear();
+    }
+
+    /**
+     * Moves to the next fetched range once the current one is read, waiting for it if required.
+     * 
+     * @return false at the end of the file.
+     * @throws IOException when the stream is closed or a range read failed.
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (position == current.length) {
+            Future<byte[]> range = prefetched.poll();
+            if (range == null) {
+                return false;
+            }
+            try {
+                current = range.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + version.getLocation());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+            position = 0;
+            prefetch();
+        }
+        return true;
+    }
+
+    /**
+     * Submits range reads until readAhead ranges are being fetched or the whole file is scheduled.
+     */
+    private void prefetch() {
+        while (prefetched.size() < readAhead && nextOffset < size) {
+            long offset = nextOffset;
+            int length = (int) Math.min(chunkSize, size - offset);
+            prefetched.add(executor.submit(() -> backend.readRange(version, offset, length)));
+            nextOffset += length;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.sproutloud.starter.stream.gcp;
+
+import java.io.IOException;
+
+/**
+ * Storage the csv files are read from, by byte ranges.
+ * 
+ * @author mgande
+ *
+ */
+public interface StorageBackend {
+
+    /**
+     * Fetches the current version of the given file, with its size.
+     * 
+     * @param location of the file, as gs://bucket/object.
+     * @return {@link ObjectVersion} of the file.
+     * @throws IOException when the file does not exist or can not be read.
+     */
+    ObjectVersion getVersion(String location) throws IOException;
+
+    /**
+     * Reads the given byte range of a version of the file.
+     * 
+     * @param version {@link ObjectVersion} of the file to be read.
+     * @param offset  of the first byte to be read.
+     * @param length  number of bytes to be read.
+     * @return exactly length bytes starting at offset.
+     * @throws IOException when the range can not be read, or the version is no longer the current one.
+     */
+    byte[] readRange(ObjectVersion version, long offset, int length) throws IOException;
+}
@@ -4,15 +4,18 @@ import com.google.auth.Credentials;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
+import com.sproutloud.starter.stream.properties.NormalizeConfigProperties;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Google cloud storage connection client
@@ -41,6 +44,30 @@ public class StorageConfig {
         return StorageOptions.newBuilder().setCredentials(loadCredentials()).setProjectId(projectId).build().getService();
     }
 
+    /**
+     * Builds the backend reading csv ranges from google storage, used unless normalize.storage.backend is local.
+     * 
+     * @param storage {@link Storage} bean for google storage access.
+     * @return google storage backend; registers it as bean
+     */
+    @Bean
+    @ConditionalOnProperty(name = "normalize.storage.backend", havingValue = "gcs", matchIfMissing = true)
+    public StorageBackend gcsStorageBackend(Storage storage) {
+        return new GcsStorageBackend(storage);
+    }
+
+    /**
+     * Builds the backend reading csv ranges from the local filesystem, used when normalize.storage.backend is local.
+     * 
+     * @param properties {@link NormalizeConfigProperties} with the local root directory.
+     * @return local filesystem backend; registers it as bean
+     */
+    @Bean
+    @ConditionalOnProperty(name = "normalize.storage.backend", havingValue = "local")
+    public StorageBackend localStorageBackend(NormalizeConfigProperties properties) {
+        return new LocalStorageBackend(Paths.get(properties.getLocalStorageRoot()));
+    }
+
     private Credentials loadCredentials() throws IOException {
         Resource creadentialsFile = resourceLoader.getResource(credentialsLocation);
         return GoogleCredentials.fromStream(creadentialsFile.getInputStream());
@@ -0,0 +1,95 @@
+package com.sproutloud.starter.stream.properties;
+
+import lombok.Getter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configurable properties for csv normalization.
+ *
+ * @author mgande
+ *
+ */
+@Configuration
+@Getter
+public class NormalizeConfigProperties {
+
+    /**
+     * Enables the bounded-memory streaming mode, where dedupe state is spilled to disk once the memory budget is hit.
+     */
+    @Value("${normalize.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    /**
+     * Maximum number of deduped records held in memory before they are spilled to disk.
+     */
+    @Value("${normalize.streaming.max-in-memory-records:200000}")
+    private Integer maxInMemoryRecords;
+
+    /**
+     * Number of hash partitions the spilled records are split into. Each partition is merged in memory on its own.
+     */
+    @Value("${normalize.streaming.spill-partitions:64}")
+    private Integer spillPartitions;
+
+    /**
+     * Directory under which the dedupe index and spill files are created. Defaults to the system temp directory.
+     */
+    @Value("${normalize.streaming.spill-directory:${java.io.tmpdir}}")
+    private String spillDirectory;
+
+    /**
+     * Enables parsing the csv in chunks on a fork-join pool, instead of on the listener thread.
+     */
+    @Value("${normalize.parsing.parallel-enabled:false}")
+    private boolean parallelParsingEnabled;
+
+    /**
+     * Minimum number of characters of a chunk. Chunks are cut at the first record boundary after this size.
+     */
+    @Value("${normalize.parsing.chunk-size:4194304}")
+    private Integer parsingChunkSize;
+
+    /**
+     * Parallelism of the parsing pool. Defaults to the number of available processors when not positive.
+     */
+    @Value("${normalize.parsing.parallelism:0}")
+    private Integer parsingParallelism;
+
+    /**
+     * Enables reading the csv from storage as concurrent byte range reads with read-ahead, instead of a single sequential stream.
+     */
+    @Value("${normalize.storage.ranged-read-enabled:false}")
+    private boolean rangedReadEnabled;
+
+    /**
+     * Number of bytes fetched by a single range read.
+     */
+    @Value("${normalize.storage.range-chunk-size:8388608}")
+    private Integer rangeChunkSize;
+
+    /**
+     * Number of range reads fetched concurrently ahead of the reader.
+     */
+    @Value("${normalize.storage.range-parallelism:4}")
+    private Integer rangeParallelism;
+
+    /**
+     * Root directory of the local storage backend, used when normalize.storage.backend is local.
+     */
+    @Value("${normalize.storage.local-root:.}")
+    private String localStorageRoot;
+
+    /**
+     * Number of records sent in a single output message with a shared header. 1 sends a message per record.
+     */
+    @Value("${normalize.output.batch-size:1}")
+    private Integer outputBatchSize;
+
+    /**
+     * Publishes the job level details once per job to the job metadata channel, and sends records with a job reference only.
+     */
+    @Value("${normalize.output.job-metadata-enabled:false}")
+    private boolean jobMetadataEnabled;
+}
@@ -0,0 +1,152 @@
+package com.sproutloud.starter.stream.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits csv content into chunks which end at record boundaries, so that each chunk can be parsed on its own. A newline inside a quoted value
+ * is not treated as a boundary. The quote state is tracked as done by the opencsv {@link com.opencsv.CSVParser}: inside a quoted value or an
+ * unquoted field, the escape character escapes a following quote or escape character, and a doubled quote stands for a quote.
+ * 
+ * @author mgande
+ *
+ */
+public class CsvChunker {
+
+    /**
+     * {@link Reader} of the csv content.
+     */
+    private final Reader reader;
+
+    /**
+     * Minimum number of characters of a chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * Separator character of the csv.
+     */
+    private final char separator;
+
+    /**
+     * Quote character of the csv.
+     */
+    private final char quoteChar;
+
+    /**
+     * Escape character of the csv.
+     */
+    private final char escapeChar;
+
+    /**
+     * Read buffer.
+     */
+    private final char[] buffer = new char[8192];
+
+    /**
+     * Position of the next character in buffer.
+     */
+    private int position;
+
+    /**
+     * Number of characters in buffer.
+     */
+    private int limit;
+
+    /**
+     * Set while inside a quoted value.
+     */
+    private boolean inQuotes;
+
+    /**
+     * Set while inside a field, as the csv parser does: once a character of an unquoted field is read, and toggled by each quote.
+     */
+    private boolean inField;
+
+    /**
+     * Set when the previous character is an escape which escapes the next character if that is a quote or an escape.
+     */
+    private boolean escapePending;
+
+    /**
+     * Set when the previous character is a quote which is a doubled quote if the next character is a quote.
+     */
+    private boolean quotePending;
+
+    /**
+     * @param reader     {@link Reader} of the csv content.
+     * @param chunkSize  minimum number of characters of a chunk.
+     * @param separator  separator character of the csv.
+     * @param quoteChar  quote character of the csv.
+     * @param escapeChar escape character of the csv.
+     */
+    public CsvChunker(Reader reader, int chunkSize, char separator, char quoteChar, char escapeChar) {
+        this.reader = reader;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.separator = separator;
+        this.quoteChar = quoteChar;
+        this.escapeChar = escapeChar;
+    }
+
+    /**
+     * Reads the next chunk, which holds at least chunkSize characters unless it is the last one, and ends with the newline of a record.
+     * 
+     * @return next chunk, null when the content is exhausted.
+     * @throws IOException when unable to read the content.
+     */
+    public String nextChunk() throws IOException {
+        StringBuilder chunk = new StringBuilder();
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return chunk.length() == 0 ? null : chunk.toString();
+                }
+            }
+            int start = position;
+            while (position < limit) {
+                char character = buffer[position++];
+                if (escapePending) {
+                    escapePending = false;
+                    if (character == quoteChar || character == escapeChar) {
+                        continue;
+                    }
+                } else if (quotePending) {
+                    quotePending = false;
+                    inField = !inField;
+                    if (character == quoteChar) {
+                        continue;
+                    }
+                    inQuotes = !inQuotes;
+                }
+                if (character == escapeChar) {
+                    escapePending = inQuotes || inField;
+                } else if (character == quoteChar) {
+                    if (inQuotes || inField) {
+                        quotePending = true;
+                    } else {
+                        inQuotes = true;
+                        inField = true;
+                    }
+                } else if (character == '\r') {
+                    inField = inField && inQuotes;
+                } else if (character == '\n') {
+                    if (!inQuotes) {
+                        inField = false;
+                        if (chunk.length() + position - start >= chunkSize) {
+                            chunk.append(buffer, start, position - start);
+                            return chunk.toString();
+                        }
+                    }
+                } else if (character == separator && !inQuotes) {
+                    inField = false;
+                } else {
+                    inField = true;
+                }
+            }
+            chunk.append(buffer, start, position - start);
+        }
+    }
+}
@@ -31,10 +31,33 @@ public class FileHelper {
      * @return : CSVReader object
      */
     public CSVReader getCsvReader(InputStream in, int isSkip) {
-        Reader reader = new BufferedReader(new InputStreamReader(in));
+        return getCsvReader(new BufferedReader(new InputStreamReader(in)), isSkip);
+    }
+
+    /**
+     * Provides a Csv reader with given field separator and skips lines, if required, for the given reader.
+     *
+     * @param reader: {@link Reader} of the content to be read
+     * @param isSkip: if header exists in the content, and needs to be skipped
+     * @return : CSVReader object
+     */
+    public CSVReader getCsvReader(Reader reader, int isSkip) {
         CSVParser parser = new CSVParserBuilder().withEscapeChar(ICSVParser.DEFAULT_ESCAPE_CHARACTER).withIgnoreLeadingWhiteSpace(true)
                 .withSeparator(',').build();
         return new CSVReaderBuilder(reader).withSkipLines(isSkip).withCSVParser(parser).build();
     }
 
+    /**
+     * Provides a {@link CsvChunker} which splits the given file at record boundaries, using the separator, quote and escape characters of the
+     * Csv reader.
+     *
+     * @param in:        file to be read
+     * @param chunkSize: minimum number of characters of a chunk
+     * @return : CsvChunker object
+     */
+    public CsvChunker getCsvChunker(InputStream in, int chunkSize) {
+        return new CsvChunker(new BufferedReader(new InputStreamReader(in)), chunkSize, ',', ICSVParser.DEFAULT_QUOTE_CHARACTER,
+                ICSVParser.DEFAULT_ESCAPE_CHARACTER);
+    }
+
 }
@@ -8,6 +8,7 @@ import static com.sproutloud.starter.stream.constants.ApplicationConstants.IS_RE
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -17,6 +18,7 @@ import com.opencsv.CSVReader;
 import com.sproutloud.starter.stream.constants.ApplicationConstants;
 import com.sproutloud.starter.stream.dao.impl.FieldsDaoImpl;
 import com.sproutloud.starter.stream.gcp.FileReader;
+import com.sproutloud.starter.stream.properties.NormalizeConfigProperties;
 import com.sproutloud.starter.stream.util.FileHelper;
 
 import org.junit.jupiter.api.Test;
@@ -32,6 +34,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -40,6 +43,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Unit tests for {@link CsvToJsonNormalize}.
@@ -62,6 +66,9 @@ class CsvToJsonNormalizeTest {
     @Mock
     private FieldsDaoImpl dao;
 
+    @Mock
+    private NormalizeConfigProperties properties;
+
     @Spy
     private ObjectMapper mapper;
 
@@ -132,6 +139,55 @@ class CsvToJsonNormalizeTest {
         verify(dao).insertTpAccountDetails(any());
     }
 
+    /**
+     * Tests if parsing in chunks gives the same dedupe result as the sequential parsing, including quoted newlines across chunks.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testNormalizeInputInChunks() throws IOException {
+        Map<String, Object> input = new HashMap<>();
+        input.put(ApplicationConstants.LIST_ID, "listId");
+        input.put(ApplicationConstants.FILE, "fileLocation");
+        input.put(ApplicationConstants.CONTAINS_HEADERS, "true");
+        input.put(ApplicationConstants.USER, "user");
+        input.put(ApplicationConstants.ACCOUNT_ID, "accountId");
+
+        List<String> dedupeFields = new ArrayList<>();
+        dedupeFields.add("first_name");
+        dedupeFields.add("email");
+
+        String[] strings = { "first_name,address1,email,mobile,tp_id_2,tp_id_1,group_2,group_1",
+                "mani,\"add1\nline2\",m@gmail.com,,tp1|tp2,tp3,gp1,gp2", "mani,add2,m@gmail.com,1234567,tp4,tp5|tp6,gp3|gp4,",
+                "mani1,add1,m1@gmail.com,1234567,tp7,,gp5|gp6,gp7" };
+        InputStream inputStream = new ByteArrayInputStream(
+                String.join(System.lineSeparator(), Arrays.asList(strings)).getBytes(StandardCharsets.UTF_8));
+        FileHelper helper = new FileHelper();
+
+        Map<String, String> segmentSegmentIdMap = new HashMap<>();
+        Map<Integer, Map<String, Object>> dedupeHashFieldsDataMap = new HashMap<>();
+        when(properties.isParallelParsingEnabled()).thenReturn(true);
+        when(properties.getParsingChunkSize()).thenReturn(1);
+        when(properties.getParsingParallelism()).thenReturn(2);
+        when(fileReader.readCsv("fileLocation")).thenReturn(inputStream);
+        when(fielHelper.getCsvChunker(inputStream, 1)).thenReturn(helper.getCsvChunker(inputStream, 1));
+        when(fielHelper.getCsvReader(any(Reader.class), anyInt()))
+                .thenAnswer(invocation -> helper.getCsvReader((Reader) invocation.getArgument(0), (int) invocation.getArgument(1)));
+        when(dao.getSegmentDetails("listId")).thenReturn(new HashMap<>());
+        when(dao.getSequenceNumber(any(), any())).thenReturn(7);
+
+        assertEquals(Integer.valueOf(3),
+                normalize.normalizeInput(input, dedupeFields, getFieldIndexMap(), segmentSegmentIdMap, dedupeHashFieldsDataMap));
+        normalize.shutdownParsingPool();
+
+        assertEquals(2, dedupeHashFieldsDataMap.size());
+        Map<String, Object> fieldsData = dedupeHashFieldsDataMap.get(0);
+        assertEquals("add1\nline2", fieldsData.get("address1"));
+        assertEquals("1234567", fieldsData.get("mobile"));
+        assertEquals(6, ((Set<?>) fieldsData.get(ApplicationConstants.TP_IDS)).size());
+        assertTrue(segmentSegmentIdMap.keySet().containsAll(Arrays.asList(new String[] { "gp1", "gp2", "gp3", "gp4", "gp5", "gp6", "gp7" })));
+    }
+
     /**
      * Tests if getId gives proper id.
      */
@@ -0,0 +1,71 @@
+package com.sproutloud.starter.stream.dedupe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link DedupeIndex} and {@link DedupeDigest}.
+ * 
+ * @author mgande
+ *
+ */
+class DedupeIndexTest {
+
+    @TempDir
+    Path indexDirectory;
+
+    /**
+     * Tests if digests get ordinals in insertion order and the index grows past its initial capacity.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testPutIfAbsent() throws IOException {
+        try (DedupeIndex index = new DedupeIndex(0)) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(-1, index.putIfAbsent(DedupeDigest.of(Arrays.asList("mani" + i, "m@gmail.com"))));
+            }
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, index.putIfAbsent(DedupeDigest.of(Arrays.asList("mani" + i, "m@gmail.com"))));
+                assertEquals(i, index.get(DedupeDigest.of(Arrays.asList("mani" + i, "m@gmail.com"))));
+            }
+            assertEquals(1000, index.size());
+            assertEquals(-1, index.get(DedupeDigest.of(Arrays.asList("mani", "m@gmail.com"))));
+        }
+    }
+
+    /**
+     * Tests if the mapped table file is deleted on close.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testMappedIndex() throws IOException {
+        try (DedupeIndex index = new DedupeIndex(10, indexDirectory)) {
+            for (int i = 0; i < 100; i++) {
+                index.putIfAbsent(DedupeDigest.of(Arrays.asList("mani" + i)));
+            }
+            assertEquals(100, index.size());
+            assertEquals(1, Files.list(indexDirectory).count());
+        }
+        assertEquals(0, Files.list(indexDirectory).count());
+    }
+
+    /**
+     * Tests if values are not confused across field boundaries, and null is kept distinct from empty.
+     */
+    @Test
+    void testDigestIsUnambiguous() {
+        assertEquals(DedupeDigest.of(Arrays.asList("a", "bc")), DedupeDigest.of(Arrays.asList("a", "bc")));
+        assertNotEquals(DedupeDigest.of(Arrays.asList("a", "bc")), DedupeDigest.of(Arrays.asList("ab", "c")));
+        assertNotEquals(DedupeDigest.of(Arrays.asList("a", null)), DedupeDigest.of(Arrays.asList("a", "")));
+    }
+}
@@ -0,0 +1,121 @@
+package com.sproutloud.starter.stream.dedupe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link SpillableDedupeStore}.
+ * 
+ * @author mgande
+ *
+ */
+class SpillableDedupeStoreTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Tests if records are held in memory while the budget is not hit.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testInMemoryStore() throws IOException {
+        Map<Integer, Map<String, Object>> records = new HashMap<>();
+        try (SpillableDedupeStore store = new SpillableDedupeStore(records)) {
+            store.put(digest("1"), fieldsData("mani", "tp1"));
+            store.put(digest("2"), fieldsData("mani1", "tp2"));
+            assertFalse(store.hasSpilled());
+            assertEquals(2, store.size());
+            assertEquals("mani", store.get(digest("1")).get("first_name"));
+            assertEquals(2, records.size());
+        }
+    }
+
+    /**
+     * Tests if spilled records of a dedupe hash are merged and counted once.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testSpilledRecordsAreMerged() throws IOException {
+        List<Map<String, Object>> output = new ArrayList<>();
+        try (SpillableDedupeStore store = new SpillableDedupeStore(mapper, 2, 4, spillDirectory)) {
+            store.put(digest("1"), fieldsData("", "tp1"));
+            store.put(digest("2"), fieldsData("mani1", "tp2"));
+            assertTrue(store.hasSpilled());
+            store.put(digest("1"), fieldsData("mani", "tp3"));
+            store.put(digest("3"), fieldsData("mani2", "tp4"));
+
+            assertEquals(3, store.size());
+            store.forEachRecord((fieldsData, laterFieldsData) -> {
+                if ("".equals(fieldsData.get("first_name"))) {
+                    fieldsData.put("first_name", laterFieldsData.get("first_name"));
+                }
+                List<Object> tpIds = new ArrayList<>((List<?>) fieldsData.get("tp_ids"));
+                tpIds.addAll((List<?>) laterFieldsData.get("tp_ids"));
+                fieldsData.put("tp_ids", tpIds);
+                return fieldsData;
+            }, output::add);
+        }
+        assertEquals(3, output.size());
+        Map<String, Object> merged = output.stream().filter(fieldsData -> "mani".equals(fieldsData.get("first_name"))).findFirst().get();
+        assertEquals(new HashSet<>(Arrays.asList("tp1", "tp3")), new HashSet<>((List<?>) merged.get("tp_ids")));
+    }
+
+    /**
+     * Tests if the spill files are deleted on close.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testSpillFilesAreDeletedOnClose() throws IOException {
+        try (SpillableDedupeStore store = new SpillableDedupeStore(mapper, 1, 2, spillDirectory)) {
+            store.put(digest("1"), fieldsData("mani", "tp1"));
+            assertEquals(2, Files.list(spillDirectory).count());
+        }
+        assertEquals(0, Files.list(spillDirectory).count());
+    }
+
+    /**
+     * Prepares digest of a record.
+     * 
+     * @param dedupeValue value of the dedupe field.
+     * @return {@link DedupeDigest} of the value.
+     */
+    private DedupeDigest digest(String dedupeValue) {
+        return DedupeDigest.of(Arrays.asList(dedupeValue));
+    }
+
+    /**
+     * Prepares fields data of a record.
+     * 
+     * @param firstName value of first_name.
+     * @param tpId      value of tp_ids.
+     * @return {@link Map} with key as field name and value as field value.
+     */
+    private Map<String, Object> fieldsData(String firstName, String tpId) {
+        Map<String, Object> fieldsData = new HashMap<>();
+        fieldsData.put("first_name", firstName);
+        fieldsData.put("tp_ids", new ArrayList<>(Arrays.asList(tpId)));
+        return fieldsData;
+    }
+}
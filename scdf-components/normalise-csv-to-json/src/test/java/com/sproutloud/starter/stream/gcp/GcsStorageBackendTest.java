@@ -0,0 +1,64 @@
+package com.sproutloud.starter.stream.gcp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Unit tests for {@link GcsStorageBackend}.
+ * 
+ * @author mgande
+ *
+ */
+@ExtendWith(MockitoExtension.class)
+class GcsStorageBackendTest {
+
+    @Mock
+    private Storage storage;
+
+    @Mock
+    private Blob blob;
+
+    @Mock
+    private ReadChannel channel;
+
+    /**
+     * Tests if the ranges are read from the generation the size was taken from.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testReadRangeFromGeneration() throws IOException {
+        when(storage.get(BlobId.of("bucket", "dir/list.csv"))).thenReturn(blob);
+        when(blob.getSize()).thenReturn(4L);
+        when(blob.getGeneration()).thenReturn(42L);
+        when(storage.reader(BlobId.of("bucket", "dir/list.csv", 42L))).thenReturn(channel);
+        when(channel.read(any(ByteBuffer.class))).then(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            buffer.put("ab".getBytes());
+            return 2;
+        });
+
+        GcsStorageBackend backend = new GcsStorageBackend(storage);
+        ObjectVersion version = backend.getVersion("gs://bucket/dir/list.csv");
+        assertEquals(4L, version.getSize());
+        assertEquals(42L, version.getGeneration());
+        assertArrayEquals("ab".getBytes(), backend.readRange(version, 2, 2));
+        verify(channel).seek(2);
+    }
+}
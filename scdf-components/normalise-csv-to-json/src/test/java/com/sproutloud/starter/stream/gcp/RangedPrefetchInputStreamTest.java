@@ -0,0 +1,106 @@
+package com.sproutloud.starter.stream.gcp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for {@link RangedPrefetchInputStream} on {@link LocalStorageBackend}.
+ * 
+ * @author mgande
+ *
+ */
+class RangedPrefetchInputStreamTest {
+
+    @TempDir
+    Path root;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests if the ranges are returned in file order for sizes not a multiple of the chunk size.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testReadsWholeFileInOrder() throws IOException {
+        byte[] content = new byte[10007];
+        new Random(7).nextBytes(content);
+        Files.createDirectories(root.resolve("bucket"));
+        Files.write(root.resolve("bucket/list.csv"), content);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = new RangedPrefetchInputStream(new LocalStorageBackend(root), "gs://bucket/list.csv", 1000, 3, executor)) {
+            assertEquals(content[0] & 0xFF, in.read());
+            output.write(content[0]);
+            byte[] buffer = new byte[777];
+            int count;
+            while ((count = in.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            assertEquals(-1, in.read());
+        }
+        assertArrayEquals(content, output.toByteArray());
+    }
+
+    /**
+     * Tests if an empty file gives an empty stream.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testEmptyFile() throws IOException {
+        Files.createDirectories(root.resolve("bucket"));
+        Files.write(root.resolve("bucket/empty.csv"), new byte[0]);
+        try (InputStream in = new RangedPrefetchInputStream(new LocalStorageBackend(root), "gs://bucket/empty.csv", 1000, 3, executor)) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    /**
+     * Tests if a missing file fails on open.
+     */
+    @Test
+    void testMissingFile() {
+        assertThrows(NoSuchFileException.class,
+                () -> new RangedPrefetchInputStream(new LocalStorageBackend(root), "gs://bucket/missing.csv", 1000, 3, executor));
+    }
+
+    /**
+     * Tests if a file overwritten after it was opened fails the read instead of mixing the two versions.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testFileModifiedWhileRead() throws IOException {
+        Files.createDirectories(root.resolve("bucket"));
+        Path file = root.resolve("bucket/list.csv");
+        Files.write(file, new byte[10]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+        LocalStorageBackend backend = new LocalStorageBackend(root);
+        ObjectVersion version = backend.getVersion("gs://bucket/list.csv");
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000));
+        assertThrows(IOException.class, () -> backend.readRange(version, 0, 10));
+    }
+}
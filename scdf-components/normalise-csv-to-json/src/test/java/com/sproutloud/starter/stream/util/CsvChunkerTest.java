@@ -0,0 +1,95 @@
+package com.sproutloud.starter.stream.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.opencsv.ICSVParser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link CsvChunker}.
+ * 
+ * @author mgande
+ *
+ */
+class CsvChunkerTest {
+
+    /**
+     * Tests if chunks are cut at record boundaries and not inside quoted values.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testNextChunk() throws IOException {
+        String csv = "a,b\n\"c\nd\",e\n\"f\\\"\ng\",h\ni,j";
+        CsvChunker chunker = new CsvChunker(new StringReader(csv), 1, ',', ICSVParser.DEFAULT_QUOTE_CHARACTER, ICSVParser.DEFAULT_ESCAPE_CHARACTER);
+        assertEquals("a,b\n", chunker.nextChunk());
+        assertEquals("\"c\nd\",e\n", chunker.nextChunk());
+        assertEquals("\"f\\\"\ng\",h\n", chunker.nextChunk());
+        assertEquals("i,j", chunker.nextChunk());
+        assertNull(chunker.nextChunk());
+    }
+
+    /**
+     * Tests if records are grouped up to the chunk size.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testChunkSize() throws IOException {
+        CsvChunker chunker = new CsvChunker(new StringReader("a,b\nc,d\ne,f\n"), 6, ',', ICSVParser.DEFAULT_QUOTE_CHARACTER,
+                ICSVParser.DEFAULT_ESCAPE_CHARACTER);
+        assertEquals("a,b\nc,d\n", chunker.nextChunk());
+        assertEquals("e,f\n", chunker.nextChunk());
+        assertNull(chunker.nextChunk());
+    }
+
+    /**
+     * Tests if an escaped quote in an unquoted field does not start a quoted value, as the csv parser reads it.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testEscapedQuoteInUnquotedField() throws IOException {
+        String csv = "ab\\\"c,d\ne,f\n\"g\",h\n";
+        CsvChunker chunker = new CsvChunker(new StringReader(csv), 1, ',', ICSVParser.DEFAULT_QUOTE_CHARACTER,
+                ICSVParser.DEFAULT_ESCAPE_CHARACTER);
+        assertEquals("ab\\\"c,d\n", chunker.nextChunk());
+        assertEquals("e,f\n", chunker.nextChunk());
+        assertEquals("\"g\",h\n", chunker.nextChunk());
+        assertNull(chunker.nextChunk());
+        assertEquals(Arrays.asList("ab\"c", "d"), Arrays.asList(new FileHelper().getCsvReader(new StringReader(csv), 0).readNext()));
+    }
+
+    /**
+     * Tests if the records read from the chunks are the records read from the whole content, for quotes and escapes in quoted values and
+     * unquoted fields.
+     * 
+     * @throws IOException
+     */
+    @Test
+    void testChunksParseAsWhole() throws IOException {
+        String[] contents = { "a\\\\,\"b\nc\"\nd,e\n", "a\"b,c\nd\"\ne,f\n", "\"a\"\"b\nc\",d\ne,f\n", "ab\"\"c,d\ne\\\"f,\"g\nh\"\ni,j\n",
+                "\\\"a,b\nc\",d\ne,f\n", "a,\"b\\\"c\nd\",e\nf,g\r\nh,i\r\n" };
+        for (String csv : contents) {
+            List<String[]> whole = new FileHelper().getCsvReader(new StringReader(csv), 0).readAll();
+            List<String[]> chunked = new ArrayList<>();
+            CsvChunker chunker = new CsvChunker(new StringReader(csv), 1, ',', ICSVParser.DEFAULT_QUOTE_CHARACTER,
+                    ICSVParser.DEFAULT_ESCAPE_CHARACTER);
+            for (String chunk = chunker.nextChunk(); chunk != null; chunk = chunker.nextChunk()) {
+                chunked.addAll(new FileHelper().getCsvReader(new StringReader(chunk), 0).readAll());
+            }
+            assertEquals(whole.size(), chunked.size(), csv);
+            for (int i = 0; i < whole.size(); i++) {
+                assertEquals(Arrays.asList(whole.get(i)), Arrays.asList(chunked.get(i)), csv);
+            }
+        }
+    }
+}
@@ -5,8 +5,6 @@ import static com.sproutloud.starter.stream.constants.ApplicationConstants.MOBIL
 import static com.sproutloud.starter.stream.constants.ApplicationConstants.VALID_STATUS;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.log4j.Log4j2;
@@ -15,12 +13,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.integration.annotation.Transformer;
 import org.springframework.messaging.Message;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * 
@@ -30,7 +30,7 @@ import java.util.Objects;
  *
  */
 @Log4j2
-@EnableBinding(Processor.class)
+@EnableBinding({ Processor.class, JobMetadataSink.class })
 @SpringBootApplication
 public class PhoneCertificationApplication {
 
@@ -46,6 +46,12 @@ public class PhoneCertificationApplication {
     @Autowired
     private ObjectMapper mapper;
 
+    /**
+     * {@link JobMetadataCache} of the job level details of records carrying a job reference.
+     */
+    @Autowired
+    private JobMetadataCache jobMetadataCache;
+
     /**
      * Triggers the Spring boot application
      *
@@ -66,14 +72,12 @@ public class PhoneCertificationApplication {
     @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
     public Map<String, Object> performPhoneCertification(Message<?> message) throws JsonProcessingException {
         log.debug("Start of Phone certification: \n");
-        JsonNode inputJsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> input = mapper.convertValue(inputJsonNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> input = PayloadDecoder.decode(mapper, message);
         input.put(StringUtils.IN_TIME, System.currentTimeMillis());
         log.debug("Input details for Phone certification are: \n " + input);
+        Set<String> attached = jobMetadataCache.attach(input);
         if (isInputValid(input)) {
-            Map<String, Object> fieldsData = mapper.convertValue(input.get(FIELDS_DATA), new TypeReference<Map<String, Object>>() {
-            });
+            Map<String, Object> fieldsData = PayloadDecoder.getMap(input, FIELDS_DATA);
             String status = phoneCertification.certifyPhone((String)input.get("country_code"), fieldsData);
             if (VALID_STATUS.equals(status)) {
                 input.put(StringUtils.PHONE_CERTIFICATION, "done");
@@ -86,11 +90,24 @@ public class PhoneCertificationApplication {
             input.put(StringUtils.PHONE_CERTIFICATION, "failed");
             log.error("Input is not valid.");
         }
+        jobMetadataCache.detach(input, attached);
         input.put(StringUtils.JOB_TYPE, StringUtils.PHONE_CERTIFICATION);
         input.put(StringUtils.OUT_TIME, System.currentTimeMillis());
         return input;
     }
 
+    /**
+     * Caches the job metadata published once per job, for the records carrying a job reference, and evicts it on the
+     * tombstone of the complete job.
+     *
+     * @param message job metadata or tombstone published to kafka topic
+     * @throws JsonProcessingException when conversion to json is not possible
+     */
+    @StreamListener(JobMetadataSink.INPUT)
+    public void cacheJobMetadata(Message<?> message) throws JsonProcessingException {
+        jobMetadataCache.receive(mapper, message);
+    }
+
     /**
      * Validates the input received.
      * 
@@ -1,29 +1,37 @@
 package com.sproutloud.starter.stream;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sproutloud.starter.stream.dao.SegmentDao;
 
 import lombok.extern.log4j.Log4j2;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.messaging.Processor;
-import org.springframework.integration.annotation.Transformer;
+import org.springframework.dao.DataAccessException;
+import org.springframework.integration.annotation.Splitter;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 /**
  * Application that processes input data to be ingested to segment table and inserts the data into segment table
@@ -48,6 +56,13 @@ public class SegmentDataIngestionApplication {
     @Autowired
     private SegmentDao dao;
 
+    /**
+     * Channel to which the messages rejected on their data are sent
+     */
+    @Autowired
+    @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+    private MessageChannel errorChannel;
+
     /**
      * Timestamp object to be used for current timestamp
      */
@@ -63,36 +78,72 @@ public class SegmentDataIngestionApplication {
     }
 
     /**
-     * formats the incoming data to be ingested to segment data
+     * formats the incoming data to be ingested to segment data. When the input binding consumes in batch mode, the payload is
+     * a list of messages, whose rows are written together, see {@link #formatInputSegmentDataBatch(Message, List)}.
      * 
      * @param message
-     * @return 
+     * @return output of each message to the data aggregator
+     * @throws IOException
+     */
+    @Splitter(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
+    public List<Map<String, Object>> formatInputSegmentData(Message<?> message) throws IOException {
+        if (message.getPayload() instanceof List) {
+            return formatInputSegmentDataBatch(message, (List<?>) message.getPayload());
+        }
+        return formatInputSegmentDataBatch(message, Collections.singletonList(message.getPayload()));
+    }
+
+    /**
+     * Formats the messages of a micro-batch and writes the rows of all of them together, coalesced per segment table. The
+     * output of each message is returned once the rows are written, and each message with a row rejected on its data is
+     * sent to the errorChannel instead. See the batch-mode consumers section of the README for the binding properties.
+     * 
+     * @param message  message of the batch, whose headers are copied to the rejected messages
+     * @param payloads payload of each message of the batch
+     * @return output of each message to the data aggregator
      * @throws IOException
      */
-    @Transformer(inputChannel = Processor.INPUT, outputChannel = Processor.OUTPUT)
-    public Map<String, Object> formatInputSegmentData(Message<?> message) throws IOException {
-        JsonNode jsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> segmentInput = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
-        Map<String, Object> aggOutput = new HashMap<>();
-        aggOutput.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
-        String validityStatus = validityCheck(segmentInput);
-        if (validityStatus == "valid") {
-            log.debug("********* Processing data to be ingested to segment table: ******************* \n" + segmentInput);
-            List<Map<String, Object>> formattedInput = formatData(segmentInput);
-
-            prepareSegmentInsert(formattedInput);
-        } else {
-            log.error("Input data is invalid: " + validityStatus);
+    private List<Map<String, Object>> formatInputSegmentDataBatch(Message<?> message, List<?> payloads) throws IOException {
+        List<Map<String, Object>> formattedInput = new ArrayList<>();
+        Map<Map<String, Object>, Integer> messageIndexByRow = new IdentityHashMap<>();
+        List<Map<String, Object>> aggOutputs = new ArrayList<>(payloads.size());
+        for (Object payload : payloads) {
+            Map<String, Object> segmentInput = PayloadDecoder.decode(mapper, payload);
+            Map<String, Object> aggOutput = new HashMap<>();
+            aggOutput.put(com.sproutloud.starter.stream.StringUtils.IN_TIME, System.currentTimeMillis());
+            String validityStatus = validityCheck(segmentInput);
+            if (validityStatus == "valid") {
+                log.debug("********* Processing data to be ingested to segment table: ******************* \n" + segmentInput);
+                for (Map<String, Object> row : formatData(segmentInput)) {
+                    formattedInput.add(row);
+                    messageIndexByRow.put(row, aggOutputs.size());
+                }
+            } else {
+                log.error("Input data is invalid: " + validityStatus);
+            }
+            aggOutput.put("job_id", segmentInput.get("job_id"));
+            aggOutput.put("list_id", segmentInput.get("list_id"));
+            aggOutput.put("recipient_id", segmentInput.get("recipient_id"));
+            aggOutputs.add(aggOutput);
+        }
+        if (!formattedInput.isEmpty()) {
+            for (Map.Entry<Map<String, Object>, DataAccessException> rejected : prepareSegmentInsert(formattedInput).entrySet()) {
+                int messageIndex = messageIndexByRow.get(rejected.getKey());
+                if (aggOutputs.set(messageIndex, null) != null) {
+                    Message<Object> failedMessage = MessageBuilder.withPayload(payloads.get(messageIndex))
+                            .copyHeaders(message.getHeaders()).build();
+                    errorChannel.send(new ErrorMessage(new MessageHandlingException(failedMessage, rejected.getValue())));
+                }
+            }
+            aggOutputs.removeIf(Objects::isNull);
         }
 
         log.debug("Sending details to data aggregator channel.");
-        aggOutput.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "segment_data_ingestion");
-        aggOutput.put("job_id", segmentInput.get("job_id"));
-        aggOutput.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
-        aggOutput.put("list_id", segmentInput.get("list_id"));
-        aggOutput.put("recipient_id", segmentInput.get("recipient_id"));
-        return aggOutput;
+        for (Map<String, Object> aggOutput : aggOutputs) {
+            aggOutput.put(com.sproutloud.starter.stream.StringUtils.JOB_TYPE, "segment_data_ingestion");
+            aggOutput.put(com.sproutloud.starter.stream.StringUtils.OUT_TIME, System.currentTimeMillis());
+        }
+        return aggOutputs;
     }
 
     /**
@@ -119,8 +170,7 @@ public class SegmentDataIngestionApplication {
      * @return List<Map<String,Object>>
      */
     public List<Map<String, Object>> formatData(Map<String, Object> segmentInput) {
-        List<String> segments = mapper.convertValue(segmentInput.get("segments"), new TypeReference<List<String>>() {
-        });
+        List<String> segments = PayloadDecoder.getStringList(segmentInput, "segments");
         List<Map<String, Object>> formattedOutput = new ArrayList<>();
 
         for (String segment : segments) {
@@ -146,26 +196,39 @@ public class SegmentDataIngestionApplication {
     }
 
     /**
-     * Method to prepare the segment insert statement
+     * Method to prepare the segment insert statements. The rows are coalesced per target database and account, i.e. per segment
+     * table, and the values of each row are listed in the column order of the first row.
      * 
      * @param formattedInput
+     * @return Map with key as each formatted input rejected on its data, by identity, and value as the failure of its insert
      */
-    public void prepareSegmentInsert(List<Map<String, Object>> formattedInput) {
+    public Map<Map<String, Object>, DataAccessException> prepareSegmentInsert(List<Map<String, Object>> formattedInput) {
         currentTs = new Timestamp(System.currentTimeMillis());
-        String targetDatabase = (String) formattedInput.get(0).get("target_db");
-        String accountId = (String) formattedInput.get(0).get("account_id");
-        List<String> columnValues = new ArrayList<>();
+        List<String> columnKeys = new ArrayList<>(((Map<String, Object>) formattedInput.get(0).get("db_fields")).keySet());
+        Map<List<String>, List<List<Object>>> rowsByTable = new LinkedHashMap<>();
+        Map<List<Object>, Map<String, Object>> inputsByRow = new IdentityHashMap<>();
         for (Map<String, Object> dbRow : formattedInput) {
-            Map<String, String> fieldsMap = new HashMap<>();
-            fieldsMap = (Map<String, String>) dbRow.get("db_fields");
-            String columnVal = fieldsMap.values().stream().map(val -> "'" + val + "'").collect(Collectors.joining(","));
-            columnVal += ",'" + currentTs + "','" + currentTs + "'";
-            columnValues.add(columnVal);
+            Map<String, Object> fieldsMap = (Map<String, Object>) dbRow.get("db_fields");
+            List<Object> columnValues = new ArrayList<>(columnKeys.size() + 2);
+            for (String columnKey : columnKeys) {
+                columnValues.add(fieldsMap.get(columnKey));
+            }
+            columnValues.add(currentTs);
+            columnValues.add(currentTs);
+            inputsByRow.put(columnValues, dbRow);
+            rowsByTable.computeIfAbsent(Arrays.asList((String) dbRow.get("target_db"), (String) dbRow.get("account_id")), table -> new ArrayList<>())
+                    .add(columnValues);
         }
-        String columnKeys = String.join(",", ((Map<String, String>) formattedInput.get(0).get("db_fields")).keySet());
-        columnKeys += ", modified_ts, created_ts";
-
-        dao.runSegmentInsert(targetDatabase, accountId, columnKeys, columnValues);
+        List<String> columnNames = new ArrayList<>(columnKeys);
+        columnNames.add("modified_ts");
+        columnNames.add("created_ts");
+
+        Map<Map<String, Object>, DataAccessException> rejectedInputs = new IdentityHashMap<>();
+        for (Map.Entry<List<String>, List<List<Object>>> table : rowsByTable.entrySet()) {
+            dao.runSegmentInsert(table.getKey().get(0), table.getKey().get(1), columnNames, table.getValue())
+                    .forEach((row, failure) -> rejectedInputs.put(inputsByRow.get(row), failure));
+        }
+        return rejectedInputs;
     }
 
 }
@@ -1,6 +1,9 @@
 package com.sproutloud.starter.stream.dao;
 
 import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.DataAccessException;
 
 /**
  * Used for communication to database for inserting segment data
@@ -11,13 +14,15 @@ import java.util.List;
 public interface SegmentDao {
 
     /**
-     * Runs insert statement for segment data
+     * Runs insert statements for segment data, several rows per statement
      * 
      * @param database
      * @param accountId
-     * @param columnKeys
-     * @param columnValues
+     * @param columnNames
+     * @param rows        values of each row, in the order of columnNames
+     * @return Map with key as each row rejected on its data, by identity, and value as the failure of its insert
      */
-    void runSegmentInsert(String database, String accountId, String columnKeys, List<String> columnValues);
+    Map<List<Object>, DataAccessException> runSegmentInsert(String database, String accountId, List<String> columnNames,
+            List<List<Object>> rows);
 
 }
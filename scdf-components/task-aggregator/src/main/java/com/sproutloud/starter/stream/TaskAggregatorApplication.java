@@ -4,7 +4,6 @@ import static com.sproutloud.starter.stream.properties.TaskAggregatorProperties.
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sproutloud.starter.stream.dao.TaskAggregatorDao;
 import com.sproutloud.starter.stream.redis.RedisObjectService;
@@ -17,11 +16,15 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.KafkaNull;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -35,7 +38,7 @@ import java.util.Objects;
  *
  */
 @Log4j2
-@EnableBinding(Sink.class)
+@EnableBinding({ Sink.class, JobMetadataSource.class })
 @SpringBootApplication
 public class TaskAggregatorApplication {
 
@@ -48,6 +51,12 @@ public class TaskAggregatorApplication {
     @Autowired
     private RedisObjectService redisObject;
 
+    /**
+     * {@link JobMetadataSource} to publish the tombstone of the job metadata of a complete job.
+     */
+    @Autowired
+    private JobMetadataSource jobMetadataSource;
+
     /**
      * Object of LeaseDao class to call methods that communicate with database
      */
@@ -71,9 +80,7 @@ public class TaskAggregatorApplication {
      */
     @StreamListener(Sink.INPUT)
     public void processInputRequest(Message<?> message) throws IOException {
-        JsonNode jsonNode = mapper.readTree((String) message.getPayload());
-        Map<String, Object> inputMsg = mapper.convertValue(jsonNode, new TypeReference<Map<String, Object>>() {
-        });
+        Map<String, Object> inputMsg = PayloadDecoder.decode(mapper, message);
         String validityStatus = validityCheck(inputMsg);
         if (validityStatus == "valid") {
             log.debug("********* Checking the input message ******************* \n" + inputMsg);
@@ -97,9 +104,7 @@ public class TaskAggregatorApplication {
             return "Invalid job type";
         }
 
-        Map<String, Object> fieldsData = mapper.convertValue(inputMsg.get("fields_data"),
-                new TypeReference<Map<String, Object>>() {
-                });
+        Map<String, Object> fieldsData = PayloadDecoder.getMap(inputMsg, "fields_data");
         if (StringUtils.isEmpty(inputMsg.get(JOB_ID))
                 && (CollectionUtils.isEmpty(fieldsData) || StringUtils.isEmpty(fieldsData.get(JOB_ID)))) {
             return "Invalid job id";
@@ -169,6 +174,7 @@ public class TaskAggregatorApplication {
                 dao.writeFailedStatusToDb(jobId,
                         (Long) inputMsg.get(com.sproutloud.starter.stream.StringUtils.OUT_TIME));
                 redisObject.remove(jobId);
+                publishJobMetadataTombstone(jobId);
                 return;
             }
             jobStatus.put(NUMBER_OF_RECORDS, numRecords);
@@ -271,9 +277,22 @@ public class TaskAggregatorApplication {
             dao.writeParentStatusToDb(jobId, jobStatus.get(PARENT_JOB_TYPE).toString(),
                     (Long) jobStatus.get(JOB_MODIFIED_TIMESTAMP), stats);
             redisObject.remove(jobId);
+            publishJobMetadataTombstone(jobId);
         }
     }
 
+    /**
+     * Publishes the tombstone of the job metadata of a complete job, so that it is removed from the compacted job
+     * metadata topic and evicted from the caches of the processors.
+     * 
+     * @param jobId id of the complete job.
+     */
+    private void publishJobMetadataTombstone(String jobId) {
+        log.debug("Publishing job metadata tombstone of job: " + jobId);
+        jobMetadataSource.jobMetadataOutput().send(MessageBuilder.withPayload(KafkaNull.INSTANCE)
+                .setHeader(KafkaHeaders.MESSAGE_KEY, jobId.getBytes(StandardCharsets.UTF_8)).build());
+    }
+
     /**
      * Updates the required count of lease and segment ingestion components. Updates
      * the status if all the records are ingested.
@@ -0,0 +1,97 @@
+package com.sproutloud.starter.stream;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.config.BindingProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.RetryingBatchErrorHandler;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.util.StringUtils;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Error handling of the input bindings consuming in batch mode. The binder does not retry a failed batch, so a batch whose handler throws
+ * is redelivered to the handler up to batch-consumer.max-attempts times, after which each of its records is sent to the errorChannel and
+ * its offsets are committed, so that a poison batch does not block its partition. See the batch-mode consumers section of the README.
+ *
+ * @author mgande
+ */
+@Configuration
+public class BatchConsumerConfig {
+
+    /**
+     * Time in milliseconds before a failed batch is redelivered
+     */
+    @Value("${batch-consumer.retry-interval-ms:1000}")
+    private long retryIntervalMillis;
+
+    /**
+     * Deliveries of a failed batch, the first included, before its records are sent to the errorChannel
+     */
+    @Value("${batch-consumer.max-attempts:10}")
+    private long maxAttempts;
+
+    /**
+     * Builds the customizer setting the batch error handler on the listener containers of the batch-mode bindings
+     *
+     * @param bindingServiceProperties properties of the bindings
+     * @param errorChannel             channel the records of a batch failing every attempt are sent to
+     * @return listener container customizer; registers it as bean
+     */
+    @Bean
+    public ListenerContainerCustomizer<AbstractMessageListenerContainer<?, ?>> batchErrorHandlerCustomizer(
+            BindingServiceProperties bindingServiceProperties,
+            @Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME) MessageChannel errorChannel) {
+        return (container, destination, group) -> {
+            if (isBatchMode(bindingServiceProperties, destination)) {
+                container.setBatchErrorHandler(new RetryingBatchErrorHandler(
+                        new FixedBackOff(retryIntervalMillis, Math.max(0, maxAttempts - 1)), errorChannelRecoverer(errorChannel)));
+            }
+        };
+    }
+
+    /**
+     * Builds the recoverer sending a record of a batch failing every attempt to the errorChannel, with its topic, partition and offset.
+     *
+     * @param errorChannel channel the records are sent to
+     * @return {@link ConsumerRecordRecoverer}
+     */
+    static ConsumerRecordRecoverer errorChannelRecoverer(MessageChannel errorChannel) {
+        return (record, exception) -> errorChannel.send(new ErrorMessage(new MessageHandlingException(
+                MessageBuilder.withPayload(record.value()).setHeader(KafkaHeaders.RECEIVED_TOPIC, record.topic())
+                        .setHeader(KafkaHeaders.RECEIVED_PARTITION_ID, record.partition()).setHeader(KafkaHeaders.OFFSET, record.offset())
+                        .build(),
+                exception)));
+    }
+
+    /**
+     * @param bindingServiceProperties properties of the bindings
+     * @param destination              destination of the listener container
+     * @return true if an input binding of the destination consumes in batch mode
+     */
+    private static boolean isBatchMode(BindingServiceProperties bindingServiceProperties, String destination) {
+        for (Map.Entry<String, BindingProperties> binding : bindingServiceProperties.getBindings().entrySet()) {
+            BindingProperties properties = binding.getValue();
+            String destinations = StringUtils.hasText(properties.getDestination()) ? properties.getDestination() : binding.getKey();
+            if (Objects.nonNull(properties.getConsumer()) && properties.getConsumer().isBatchMode()
+                    && Arrays.asList(StringUtils.commaDelimitedListToStringArray(destinations)).contains(destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
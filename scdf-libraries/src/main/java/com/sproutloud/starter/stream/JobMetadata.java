@@ -0,0 +1,37 @@
+package com.sproutloud.starter.stream;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Util containing the constants of the job metadata side channel. Job level details are published once per job to the
+ * job metadata topic, and records carry only a reference to the job. Once the job is complete, a tombstone keyed by the
+ * job id removes its details from the topic and from the caches of the consumers.
+ *
+ * @author mgande
+ */
+public class JobMetadata {
+
+    /**
+     * Key of the job reference in a record
+     */
+    public static final String JOB_REF = "job_ref";
+
+    /**
+     * Key of the job id in a job metadata message
+     */
+    public static final String JOB_ID = "job_id";
+
+    /**
+     * Keys of the job level details moved to the side channel
+     */
+    public static final List<String> METADATA_KEYS = Collections.unmodifiableList(
+            Arrays.asList("field_details", "dedupe_fields", "is_cass_required", "country_code"));
+
+    /**
+     * Create private constructor to avoid instantiation outside the class and ensure that the class is used as util.
+     */
+    private JobMetadata() {
+    }
+}
@@ -0,0 +1,140 @@
+package com.sproutloud.starter.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.KafkaNull;
+import org.springframework.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Local cache of job metadata keyed by job id, filled from the job metadata channel. Records carrying a job reference
+ * get the job level details attached from the cache, instead of carrying them in every message. A job is only evicted
+ * on its tombstone, published once the job is complete, so the metadata of an active job is never lost.
+ *
+ * @author mgande
+ */
+public class JobMetadataCache {
+
+    /**
+     * Job metadata with key as job id
+     */
+    private final Map<String, Map<String, Object>> jobs = new HashMap<>();
+
+    /**
+     * Maximum time to wait for the metadata of a job not yet received
+     */
+    private final long waitMillis;
+
+    /**
+     * @param waitMillis maximum time to wait for the metadata of a job not yet received
+     */
+    public JobMetadataCache(long waitMillis) {
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Caches the job metadata of a message of the job metadata channel, or evicts the job of a tombstone.
+     *
+     * @param mapper  {@link ObjectMapper} to parse the payload
+     * @param message job metadata, or tombstone keyed by job id
+     * @throws JsonProcessingException when the payload is not a valid json object
+     */
+    public void receive(ObjectMapper mapper, Message<?> message) throws JsonProcessingException {
+        if (Objects.isNull(message.getPayload()) || message.getPayload() instanceof KafkaNull) {
+            Object key = message.getHeaders().get(KafkaHeaders.RECEIVED_MESSAGE_KEY);
+            if (Objects.nonNull(key)) {
+                remove(key instanceof byte[] ? new String((byte[]) key, StandardCharsets.UTF_8) : key.toString());
+            }
+            return;
+        }
+        Map<String, Object> jobMetadata = PayloadDecoder.decode(mapper, message);
+        put((String) jobMetadata.get(JobMetadata.JOB_ID), jobMetadata);
+    }
+
+    /**
+     * Caches the metadata of a job and wakes up the records waiting for it.
+     *
+     * @param jobId    id of the job
+     * @param metadata job level details
+     */
+    public synchronized void put(String jobId, Map<String, Object> metadata) {
+        jobs.put(jobId, metadata);
+        notifyAll();
+    }
+
+    /**
+     * Fetches the metadata of a job, waiting for it to be received if required.
+     *
+     * @param jobId id of the job
+     * @return job level details
+     * @throws IllegalStateException when the metadata is not received in time
+     */
+    public synchronized Map<String, Object> get(String jobId) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        Map<String, Object> metadata = jobs.get(jobId);
+        while (Objects.isNull(metadata)) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IllegalStateException("Job metadata not received for job: " + jobId);
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for job metadata of job: " + jobId, e);
+            }
+            metadata = jobs.get(jobId);
+        }
+        return metadata;
+    }
+
+    /**
+     * Evicts the metadata of a complete job.
+     *
+     * @param jobId id of the job
+     */
+    public synchronized void remove(String jobId) {
+        jobs.remove(jobId);
+    }
+
+    /**
+     * Attaches the job level details to a record carrying a job reference. Details already present in the record are
+     * kept.
+     *
+     * @param record incoming json
+     * @return keys attached to the record, to be detached before sending it on
+     */
+    public Set<String> attach(Map<String, Object> record) {
+        Object jobRef = record.get(JobMetadata.JOB_REF);
+        if (Objects.isNull(jobRef)) {
+            return Collections.emptySet();
+        }
+        Set<String> attached = new HashSet<>();
+        for (Map.Entry<String, Object> detail : get(jobRef.toString()).entrySet()) {
+            if (JobMetadata.METADATA_KEYS.contains(detail.getKey()) && !record.containsKey(detail.getKey())) {
+                record.put(detail.getKey(), detail.getValue());
+                attached.add(detail.getKey());
+            }
+        }
+        return attached;
+    }
+
+    /**
+     * Removes the attached job level details from a record, so that it is sent on with the job reference only.
+     *
+     * @param record   outgoing json
+     * @param attached keys attached to the record
+     */
+    public void detach(Map<String, Object> record, Set<String> attached) {
+        attached.forEach(record::remove);
+    }
+}
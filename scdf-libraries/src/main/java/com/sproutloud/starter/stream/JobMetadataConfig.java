@@ -0,0 +1,30 @@
+package com.sproutloud.starter.stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the local job metadata cache.
+ *
+ * @author mgande
+ */
+@Configuration
+public class JobMetadataConfig {
+
+    /**
+     * Maximum time in milliseconds to wait for the metadata of a job not yet received
+     */
+    @Value("${job-metadata.cache.wait-ms:30000}")
+    private long waitMillis;
+
+    /**
+     * Builds the local job metadata cache
+     *
+     * @return job metadata cache; registers it as bean
+     */
+    @Bean
+    public JobMetadataCache jobMetadataCache() {
+        return new JobMetadataCache(waitMillis);
+    }
+}
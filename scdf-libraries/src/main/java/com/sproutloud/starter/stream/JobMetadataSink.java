@@ -0,0 +1,23 @@
+package com.sproutloud.starter.stream;
+
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.messaging.SubscribableChannel;
+
+/**
+ * Binding to receive the job metadata published by {@link JobMetadataSource}.
+ *
+ * @author mgande
+ */
+public interface JobMetadataSink {
+
+    /**
+     * Name of the job metadata input binding
+     */
+    String INPUT = "jobMetadataInput";
+
+    /**
+     * @return channel the job metadata is received from
+     */
+    @Input(INPUT)
+    SubscribableChannel jobMetadataInput();
+}
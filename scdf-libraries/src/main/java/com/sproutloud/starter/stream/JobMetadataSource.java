@@ -0,0 +1,23 @@
+package com.sproutloud.starter.stream;
+
+import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.messaging.MessageChannel;
+
+/**
+ * Binding to publish job metadata, once per job, and its tombstone once the job is complete.
+ *
+ * @author mgande
+ */
+public interface JobMetadataSource {
+
+    /**
+     * Name of the job metadata output binding
+     */
+    String OUTPUT = "jobMetadataOutput";
+
+    /**
+     * @return channel the job metadata is published to
+     */
+    @Output(OUTPUT)
+    MessageChannel jobMetadataOutput();
+}
@@ -0,0 +1,168 @@
+package com.sproutloud.starter.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.messaging.Message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Util to decode the incoming payloads of the stream processors. The payload is parsed once, straight into a {@link Map} or a typed record,
+ * and the nested objects are read from the parsed map as they are, without building a json tree or converting them again.
+ *
+ * @author mgande
+ */
+public class PayloadDecoder {
+
+    /**
+     * {@link TypeReference} of a decoded payload
+     */
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    /**
+     * Create private constructor to avoid instantiation outside the class and ensure that the class is used as util.
+     */
+    private PayloadDecoder() {
+    }
+
+    /**
+     * Decodes the payload of a message.
+     *
+     * @param mapper  {@link ObjectMapper} to parse the payload
+     * @param message incoming message
+     * @return decoded payload
+     * @throws JsonProcessingException when the payload is not a valid json object
+     */
+    public static Map<String, Object> decode(ObjectMapper mapper, Message<?> message) throws JsonProcessingException {
+        return decode(mapper, Objects.requireNonNull(message).getPayload());
+    }
+
+    /**
+     * Decodes a payload given as json {@link String}, json bytes or smile bytes. An already decoded {@link Map} is returned as is.
+     *
+     * @param mapper  {@link ObjectMapper} to parse the payload
+     * @param payload incoming payload
+     * @return decoded payload
+     * @throws JsonProcessingException when the payload is not a valid json object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> decode(ObjectMapper mapper, Object payload) throws JsonProcessingException {
+        if (payload instanceof Map) {
+            return (Map<String, Object>) payload;
+        }
+        return decode(mapper, payload, mapper.getTypeFactory().constructType(PAYLOAD_TYPE));
+    }
+
+    /**
+     * Decodes the payload of a message straight into a typed record, such as
+     * {@link com.sproutloud.starter.stream.model.PipelineRecord}.
+     *
+     * @param <T>     type of the record
+     * @param mapper  {@link ObjectMapper} to parse the payload
+     * @param message incoming message
+     * @param type    type of the record
+     * @return decoded record
+     * @throws JsonProcessingException when the payload is not a valid json object of the type
+     */
+    public static <T> T decode(ObjectMapper mapper, Message<?> message, Class<T> type) throws JsonProcessingException {
+        Object payload = Objects.requireNonNull(message).getPayload();
+        if (type.isInstance(payload)) {
+            return type.cast(payload);
+        }
+        return decode(mapper, payload, mapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * @param <T>     type of the decoded payload
+     * @param mapper  {@link ObjectMapper} to parse the payload
+     * @param payload json {@link String}, json bytes or smile bytes
+     * @param type    {@link JavaType} of the decoded payload
+     * @return decoded payload
+     * @throws JsonProcessingException when the payload is not a valid json object of the type
+     */
+    private static <T> T decode(ObjectMapper mapper, Object payload, JavaType type) throws JsonProcessingException {
+        if (payload instanceof byte[]) {
+            byte[] bytes = (byte[]) payload;
+            try {
+                return (SmileMessageConverter.isSmile(bytes) ? SmileMessageConverter.getSmileMapper() : mapper).readValue(bytes, type);
+            } catch (JsonProcessingException e) {
+                throw e;
+            } catch (IOException e) {
+                throw JsonMappingException.fromUnexpectedIOE(e);
+            }
+        }
+        return mapper.readValue((String) payload, type);
+    }
+
+    /**
+     * @param input decoded payload
+     * @param key   key of the nested object
+     * @return nested object of the payload, null if absent or not an object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> getMap(Map<String, Object> input, String key) {
+        Object value = input.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    /**
+     * @param input decoded payload
+     * @param key   key of the nested array
+     * @return nested array of the payload with each value as {@link String}, null if absent or not an array
+     */
+    public static List<String> getStringList(Map<String, Object> input, String key) {
+        Object value = input.get(key);
+        if (!(value instanceof List)) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            values.add(asString(item));
+        }
+        return values;
+    }
+
+    /**
+     * Reads an object of objects, such as the field details, with each inner value as {@link String}.
+     *
+     * @param input decoded payload
+     * @param key   key of the nested object
+     * @return nested object of the payload, null if absent or not an object
+     */
+    public static Map<String, Map<String, String>> getStringMaps(Map<String, Object> input, String key) {
+        Object value = input.get(key);
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<String, Map<String, String>> maps = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            Map<String, String> inner = null;
+            if (entry.getValue() instanceof Map) {
+                inner = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> innerEntry : ((Map<?, ?>) entry.getValue()).entrySet()) {
+                    inner.put((String) innerEntry.getKey(), asString(innerEntry.getValue()));
+                }
+            }
+            maps.put((String) entry.getKey(), inner);
+        }
+        return maps;
+    }
+
+    /**
+     * @param value decoded json value
+     * @return value as {@link String}, null for a null value
+     */
+    private static String asString(Object value) {
+        return Objects.isNull(value) ? null : value.toString();
+    }
+}
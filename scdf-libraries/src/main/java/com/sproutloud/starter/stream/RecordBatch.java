@@ -0,0 +1,82 @@
+package com.sproutloud.starter.stream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Util to build and read batched messages, where a single message carries several records and one header shared by all of them.
+ *
+ * @author mgande
+ */
+public class RecordBatch {
+
+    /**
+     * Key of the shared header of a batched message
+     */
+    public static final String BATCH_HEADER = "batch_header";
+
+    /**
+     * Key of the records of a batched message
+     */
+    public static final String BATCH_RECORDS = "batch_records";
+
+    /**
+     * Create private constructor to avoid instantiation outside the class and ensure that the class is used as util.
+     */
+    private RecordBatch() {
+    }
+
+    /**
+     * Builds a batched message.
+     *
+     * @param header  keys shared by all the records
+     * @param records keys specific to each record
+     * @return batched message
+     */
+    public static Map<String, Object> of(Map<String, Object> header, List<Map<String, Object>> records) {
+        Map<String, Object> batch = new HashMap<>();
+        batch.put(BATCH_HEADER, header);
+        batch.put(BATCH_RECORDS, records);
+        return batch;
+    }
+
+    /**
+     * @param message incoming message
+     * @return true if the message is a batched message
+     */
+    public static boolean isBatch(Map<String, Object> message) {
+        return Objects.nonNull(message) && message.get(BATCH_RECORDS) instanceof List;
+    }
+
+    /**
+     * @param batch batched message
+     * @return shared header of the batch, empty if absent
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> getHeader(Map<String, Object> batch) {
+        Object header = batch.get(BATCH_HEADER);
+        return header instanceof Map ? (Map<String, Object>) header : new HashMap<>();
+    }
+
+    /**
+     * Expands a batched message into one message per record, each holding the shared header and the keys of the record. Keys of the record take
+     * precedence over the header. Values of the header are shared, not copied.
+     *
+     * @param batch batched message
+     * @return messages of the records, in batch order
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Map<String, Object>> getRecords(Map<String, Object> batch) {
+        Map<String, Object> header = getHeader(batch);
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (Object record : (List<Object>) batch.get(BATCH_RECORDS)) {
+            Map<String, Object> message = new HashMap<>(header);
+            message.putAll((Map<String, Object>) record);
+            records.add(message);
+        }
+        return records;
+    }
+}
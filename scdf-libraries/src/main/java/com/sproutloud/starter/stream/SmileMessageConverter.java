@@ -0,0 +1,116 @@
+package com.sproutloud.starter.stream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+
+/**
+ * Converts the messages of the bindings with content type application/x-jackson-smile, the binary form of json. Outgoing records are
+ * written as smile, and json text is transcoded to smile. Incoming smile is left as bytes for {@link PayloadDecoder}, which tells smile from
+ * json by its header, unless a specific type is expected.
+ *
+ * @author mgande
+ */
+public class SmileMessageConverter extends AbstractMessageConverter {
+
+    /**
+     * Content type of smile payloads, to be set as content-type of a binding
+     */
+    public static final MimeType SMILE = MimeType.valueOf("application/x-jackson-smile");
+
+    /**
+     * Header written at the start of every smile payload, ":)\n"
+     */
+    private static final byte[] SMILE_HEADER = { ':', ')', '\n' };
+
+    /**
+     * {@link ObjectMapper} to write and read smile
+     */
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /**
+     * {@link ObjectMapper} to read json text
+     */
+    private final ObjectMapper jsonMapper;
+
+    /**
+     * @param jsonMapper {@link ObjectMapper} to read json text
+     */
+    public SmileMessageConverter(ObjectMapper jsonMapper) {
+        super(SMILE);
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * @return {@link ObjectMapper} to write and read smile
+     */
+    public static ObjectMapper getSmileMapper() {
+        return SMILE_MAPPER;
+    }
+
+    /**
+     * @param payload incoming payload
+     * @return true if the payload starts with the smile header
+     */
+    public static boolean isSmile(byte[] payload) {
+        if (payload.length < SMILE_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (payload[i] != SMILE_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    @Override
+    protected boolean canConvertFrom(Message<?> message, Class<?> targetClass) {
+        return message.getPayload() instanceof byte[] && super.canConvertFrom(message, targetClass);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        byte[] payload = (byte[]) message.getPayload();
+        if (Object.class.equals(targetClass) || byte[].class.equals(targetClass)) {
+            return payload;
+        }
+        try {
+            if (String.class.equals(targetClass)) {
+                return jsonMapper.writeValueAsString(SMILE_MAPPER.readTree(payload));
+            }
+            return SMILE_MAPPER.readValue(payload, targetClass);
+        } catch (IOException e) {
+            throw new MessageConversionException(message, "Unable to read smile payload as " + targetClass.getName(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        if (payload instanceof byte[]) {
+            return payload;
+        }
+        try {
+            if (payload instanceof String) {
+                return SMILE_MAPPER.writeValueAsBytes(jsonMapper.readTree((String) payload));
+            }
+            return SMILE_MAPPER.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new MessageConversionException("Unable to write payload as smile", e);
+        }
+    }
+}
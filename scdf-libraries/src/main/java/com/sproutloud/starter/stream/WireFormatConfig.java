@@ -0,0 +1,30 @@
+package com.sproutloud.starter.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.cloud.stream.annotation.StreamMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+
+/**
+ * Registers the binary wire formats of the bindings. A binding is switched to smile with
+ * spring.cloud.stream.bindings.&lt;binding&gt;.content-type=application/x-jackson-smile, and json stays the default. Every processor reads both.
+ *
+ * @author mgande
+ */
+@Configuration
+public class WireFormatConfig {
+
+    /**
+     * Builds the smile message converter
+     *
+     * @param mapper {@link ObjectMapper} to read json text
+     * @return smile message converter; registers it as bean
+     */
+    @Bean
+    @StreamMessageConverter
+    public MessageConverter smileMessageConverter(ObjectMapper mapper) {
+        return new SmileMessageConverter(mapper);
+    }
+}
@@ -0,0 +1,163 @@
+package com.sproutloud.starter.stream.model;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fields data of a list record. The fields common to every list are held in fixed slots, and the list specific fields in a compact
+ * overflow map. Values are kept as read, with their json type, and a field set to null is written back as null, while a field never set
+ * is left out.
+ *
+ * @author mgande
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE,
+        setterVisibility = Visibility.NONE)
+public class FieldsData {
+
+    /*
+     * Names of the common fields
+     */
+    public static final String LIST_ID = "list_id";
+    public static final String RECIPIENT_ID = "recipient_id";
+    public static final String JOB_ID = "job_id";
+    public static final String LOCALITY_CODE = "locality_code";
+    public static final String FIRST_NAME = "first_name";
+    public static final String EMAIL = "email";
+    public static final String MOBILE = "mobile";
+    public static final String ADDRESS1 = "address1";
+    public static final String ADDRESS2 = "address2";
+    public static final String CITY = "city";
+    public static final String STATE = "state";
+    public static final String ZIP = "zip";
+    public static final String DEDUPE_HASH = "dedupe_hash";
+    public static final String CREATED_BY = "created_by";
+    public static final String MODIFIED_BY = "modified_by";
+    public static final String MODIFIED_OP = "modified_op";
+
+    /**
+     * Common fields, in the order of their slots
+     */
+    private static final String[] COMMON_FIELDS = { LIST_ID, RECIPIENT_ID, JOB_ID, LOCALITY_CODE, FIRST_NAME, EMAIL, MOBILE, ADDRESS1,
+            ADDRESS2, CITY, STATE, ZIP, DEDUPE_HASH, CREATED_BY, MODIFIED_BY, MODIFIED_OP };
+
+    /**
+     * Values of the common fields, by slot
+     */
+    private final Object[] commonFields = new Object[COMMON_FIELDS.length];
+
+    /**
+     * Bit of each slot set, even if to null
+     */
+    private int present;
+
+    /**
+     * List specific fields, in the order they were read
+     */
+    @Getter
+    private final Map<String, Object> otherFields = new LinkedHashMap<>(8);
+
+    /**
+     * Reads a field by its name, from its slot if it is a common field, otherwise from the list specific fields.
+     *
+     * @param field name of the field
+     * @return value of the field, null if absent
+     */
+    public Object get(String field) {
+        int slot = slot(field);
+        return slot < 0 ? otherFields.get(field) : commonFields[slot];
+    }
+
+    /**
+     * @param field name of the field
+     * @return true if the field is set, even if to null
+     */
+    public boolean containsKey(String field) {
+        int slot = slot(field);
+        return slot < 0 ? otherFields.containsKey(field) : (present & 1 << slot) != 0;
+    }
+
+    /**
+     * Sets a field by its name, in its slot if it is a common field, otherwise in the list specific fields. Also used by jackson for every
+     * field read.
+     *
+     * @param field name of the field
+     * @param value value of the field, as read
+     */
+    @JsonAnySetter
+    public void put(String field, Object value) {
+        int slot = slot(field);
+        if (slot < 0) {
+            otherFields.put(field, value);
+        } else {
+            commonFields[slot] = value;
+            present |= 1 << slot;
+        }
+    }
+
+    /**
+     * Fields set, common fields first, used by jackson to write the fields data.
+     *
+     * @return {@link Map} with key as field name and value as field value.
+     */
+    @JsonAnyGetter
+    public Map<String, Object> toMap() {
+        Map<String, Object> fields = new LinkedHashMap<>(COMMON_FIELDS.length + otherFields.size());
+        for (int slot = 0; slot < COMMON_FIELDS.length; slot++) {
+            if ((present & 1 << slot) != 0) {
+                fields.put(COMMON_FIELDS[slot], commonFields[slot]);
+            }
+        }
+        fields.putAll(otherFields);
+        return fields;
+    }
+
+    /**
+     * @param field name of a field
+     * @return slot of the field if it is a common field, otherwise -1.
+     */
+    private static int slot(String field) {
+        switch (field) {
+        case LIST_ID:
+            return 0;
+        case RECIPIENT_ID:
+            return 1;
+        case JOB_ID:
+            return 2;
+        case LOCALITY_CODE:
+            return 3;
+        case FIRST_NAME:
+            return 4;
+        case EMAIL:
+            return 5;
+        case MOBILE:
+            return 6;
+        case ADDRESS1:
+            return 7;
+        case ADDRESS2:
+            return 8;
+        case CITY:
+            return 9;
+        case STATE:
+            return 10;
+        case ZIP:
+            return 11;
+        case DEDUPE_HASH:
+            return 12;
+        case CREATED_BY:
+            return 13;
+        case MODIFIED_BY:
+            return 14;
+        case MODIFIED_OP:
+            return 15;
+        default:
+            return -1;
+        }
+    }
+}
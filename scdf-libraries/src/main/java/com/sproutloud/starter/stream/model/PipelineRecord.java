@@ -0,0 +1,261 @@
+package com.sproutloud.starter.stream.model;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.sproutloud.starter.stream.StringUtils;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record passed between the stream processors. The keys read by most of the processors are held in fixed slots, with the fields data as
+ * {@link FieldsData}, and the keys specific to a stage in a compact overflow map which is written back as is. Values are kept as read,
+ * with their json type, and a key set to null is written back as null, while a key never set is left out.
+ *
+ * @author mgande
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.NONE, getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE,
+        setterVisibility = Visibility.NONE)
+public class PipelineRecord {
+
+    /*
+     * Names of the common keys
+     */
+    public static final String JOB_ID = "job_id";
+    public static final String ACCOUNT_ID = "account_id";
+    public static final String TARGET_DB = "target_db";
+    public static final String TARGET_TABLE = "target_table";
+    public static final String ROUTER_FLAG = "router_flag";
+    public static final String FIELDS_DATA = "fields_data";
+    public static final String FIELD_DETAILS = "field_details";
+    public static final String DEDUPE_FIELDS = "dedupe_fields";
+
+    /**
+     * Common keys, in the order of their slots
+     */
+    private static final String[] COMMON_KEYS = { JOB_ID, ACCOUNT_ID, TARGET_DB, TARGET_TABLE, ROUTER_FLAG, StringUtils.JOB_TYPE,
+            StringUtils.IN_TIME, StringUtils.OUT_TIME, StringUtils.EMAIL_CERTIFICATION, StringUtils.PHONE_CERTIFICATION,
+            StringUtils.ADDRESS_CERTIFICATION, StringUtils.IS_CASS_REQUIRED, FIELDS_DATA, FIELD_DETAILS, DEDUPE_FIELDS };
+
+    /**
+     * Values of the common keys, by slot
+     */
+    private final Object[] commonKeys = new Object[COMMON_KEYS.length];
+
+    /**
+     * Bit of each slot set, even if to null
+     */
+    private int present;
+
+    /**
+     * Keys specific to a stage, in the order they were read
+     */
+    @Getter
+    private final Map<String, Object> otherKeys = new LinkedHashMap<>(8);
+
+    /**
+     * Reads a key by its name, from its slot if it is a common key, otherwise from the keys specific to a stage.
+     *
+     * @param key name of the key
+     * @return value of the key, null if absent
+     */
+    public Object get(String key) {
+        int slot = slot(key);
+        return slot < 0 ? otherKeys.get(key) : commonKeys[slot];
+    }
+
+    /**
+     * @param key name of the key
+     * @return true if the key is set, even if to null
+     */
+    public boolean containsKey(String key) {
+        int slot = slot(key);
+        return slot < 0 ? otherKeys.containsKey(key) : (present & 1 << slot) != 0;
+    }
+
+    /**
+     * Sets a key by its name, in its slot if it is a common key, otherwise in the keys specific to a stage. Also used by jackson for every
+     * key read, the fields data being read into {@link FieldsData}.
+     *
+     * @param key   name of the key
+     * @param value value of the key, as read
+     */
+    @JsonAnySetter
+    @SuppressWarnings("unchecked")
+    public void put(String key, Object value) {
+        int slot = slot(key);
+        if (slot < 0) {
+            otherKeys.put(key, value);
+            return;
+        }
+        if (FIELDS_DATA.equals(key) && value instanceof Map) {
+            FieldsData fieldsData = new FieldsData();
+            ((Map<String, Object>) value).forEach(fieldsData::put);
+            value = fieldsData;
+        }
+        commonKeys[slot] = value;
+        present |= 1 << slot;
+    }
+
+    /**
+     * Removes a key by its name, from its slot if it is a common key, otherwise from the keys specific to a stage.
+     *
+     * @param key name of the key
+     * @return removed value of the key, null if absent
+     */
+    public Object remove(String key) {
+        int slot = slot(key);
+        if (slot < 0) {
+            return otherKeys.remove(key);
+        }
+        Object value = commonKeys[slot];
+        commonKeys[slot] = null;
+        present &= ~(1 << slot);
+        return value;
+    }
+
+    /**
+     * Keys set, common keys first, used by jackson to write the record.
+     *
+     * @return {@link Map} with key name as key and key value as value.
+     */
+    @JsonAnyGetter
+    public Map<String, Object> toMap() {
+        Map<String, Object> keys = new LinkedHashMap<>(COMMON_KEYS.length + otherKeys.size());
+        for (int slot = 0; slot < COMMON_KEYS.length; slot++) {
+            if ((present & 1 << slot) != 0) {
+                keys.put(COMMON_KEYS[slot], commonKeys[slot]);
+            }
+        }
+        keys.putAll(otherKeys);
+        return keys;
+    }
+
+    public Object getJobId() {
+        return get(JOB_ID);
+    }
+
+    public Object getAccountId() {
+        return get(ACCOUNT_ID);
+    }
+
+    public Object getTargetDb() {
+        return get(TARGET_DB);
+    }
+
+    public Object getTargetTable() {
+        return get(TARGET_TABLE);
+    }
+
+    public Object getRouterFlag() {
+        return get(ROUTER_FLAG);
+    }
+
+    public Object getJobType() {
+        return get(StringUtils.JOB_TYPE);
+    }
+
+    public void setJobType(Object jobType) {
+        put(StringUtils.JOB_TYPE, jobType);
+    }
+
+    public Object getInTime() {
+        return get(StringUtils.IN_TIME);
+    }
+
+    public void setInTime(Object inTime) {
+        put(StringUtils.IN_TIME, inTime);
+    }
+
+    public Object getOutTime() {
+        return get(StringUtils.OUT_TIME);
+    }
+
+    public void setOutTime(Object outTime) {
+        put(StringUtils.OUT_TIME, outTime);
+    }
+
+    public Object getEmailCertification() {
+        return get(StringUtils.EMAIL_CERTIFICATION);
+    }
+
+    public Object getPhoneCertification() {
+        return get(StringUtils.PHONE_CERTIFICATION);
+    }
+
+    public Object getAddressCertification() {
+        return get(StringUtils.ADDRESS_CERTIFICATION);
+    }
+
+    public Object getCassRequired() {
+        return get(StringUtils.IS_CASS_REQUIRED);
+    }
+
+    /**
+     * @return {@link FieldsData} of the record, null if absent or not an object.
+     */
+    public FieldsData getFieldsData() {
+        Object fieldsData = get(FIELDS_DATA);
+        return fieldsData instanceof FieldsData ? (FieldsData) fieldsData : null;
+    }
+
+    public void setFieldsData(FieldsData fieldsData) {
+        put(FIELDS_DATA, fieldsData);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Map<String, Object>> getFieldDetails() {
+        return (Map<String, Map<String, Object>>) get(FIELD_DETAILS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> getDedupeFields() {
+        return (List<String>) get(DEDUPE_FIELDS);
+    }
+
+    /**
+     * @param key name of a key
+     * @return slot of the key if it is a common key, otherwise -1.
+     */
+    private static int slot(String key) {
+        switch (key) {
+        case JOB_ID:
+            return 0;
+        case ACCOUNT_ID:
+            return 1;
+        case TARGET_DB:
+            return 2;
+        case TARGET_TABLE:
+            return 3;
+        case ROUTER_FLAG:
+            return 4;
+        case StringUtils.JOB_TYPE:
+            return 5;
+        case StringUtils.IN_TIME:
+            return 6;
+        case StringUtils.OUT_TIME:
+            return 7;
+        case StringUtils.EMAIL_CERTIFICATION:
+            return 8;
+        case StringUtils.PHONE_CERTIFICATION:
+            return 9;
+        case StringUtils.ADDRESS_CERTIFICATION:
+            return 10;
+        case StringUtils.IS_CASS_REQUIRED:
+            return 11;
+        case FIELDS_DATA:
+            return 12;
+        case FIELD_DETAILS:
+            return 13;
+        case DEDUPE_FIELDS:
+            return 14;
+        default:
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.sproutloud.starter.stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+
+/**
+ * Unit tests for {@link BatchConsumerConfig}.
+ *
+ * @author mgande
+ */
+class BatchConsumerConfigTest {
+
+    /**
+     * Tests if a record of a batch failing every attempt is sent to the errorChannel with its payload, position and failure.
+     */
+    @Test
+    void testErrorChannelRecoverer() {
+        QueueChannel errorChannel = new QueueChannel();
+        IllegalStateException failure = new IllegalStateException("insert failed");
+        BatchConsumerConfig.errorChannelRecoverer(errorChannel)
+                .accept(new ConsumerRecord<Object, Object>("list_data_insert", 2, 42L, null, "{}".getBytes()), failure);
+
+        ErrorMessage errorMessage = (ErrorMessage) errorChannel.receive(0);
+        MessageHandlingException exception = (MessageHandlingException) errorMessage.getPayload();
+        assertSame(failure, exception.getCause());
+        Message<?> failedMessage = exception.getFailedMessage();
+        assertArrayEquals("{}".getBytes(), (byte[]) failedMessage.getPayload());
+        assertEquals("list_data_insert", failedMessage.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC));
+        assertEquals(2, failedMessage.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION_ID));
+        assertEquals(42L, failedMessage.getHeaders().get(KafkaHeaders.OFFSET));
+    }
+}
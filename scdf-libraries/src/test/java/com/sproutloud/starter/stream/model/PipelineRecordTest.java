@@ -0,0 +1,117 @@
+package com.sproutloud.starter.stream.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the round trip of {@link PipelineRecord} and {@link FieldsData}.
+ *
+ * @author mgande
+ */
+class PipelineRecordTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Record with every kind of value, numbers and booleans in the slots usually holding strings, and nulls.
+     */
+    private Map<String, Object> record() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("list_id", "LI20070000000014");
+        fields.put("job_id", 123);
+        fields.put("email", null);
+        fields.put("zip", "06390");
+        fields.put("score", 1.5);
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("job_id", 123);
+        record.put("account_id", null);
+        record.put("router_flag", "INSERT");
+        record.put("email_certification", "true");
+        record.put("is_cass_required", "true");
+        record.put("in_time", 1600000000000L);
+        record.put("fields_data", fields);
+        record.put("dedupe_fields", Arrays.asList("email", "zip"));
+        record.put("tp_ids", Arrays.asList("AC20070000000022"));
+        record.put("source", null);
+        return record;
+    }
+
+    /**
+     * Tests if a record read and written as json gives back the same values, with their json types and nulls.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testJsonRoundTrip() throws IOException {
+        assertRoundTrip(mapper);
+    }
+
+    /**
+     * Tests if a record read and written as smile gives back the same values, with their json types and nulls.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testSmileRoundTrip() throws IOException {
+        assertRoundTrip(new ObjectMapper(new SmileFactory()));
+    }
+
+    /**
+     * Tests if the values are kept as read, and explicit nulls apart from absent keys.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testValuesKeptAsRead() throws IOException {
+        PipelineRecord record = mapper.readValue(mapper.writeValueAsBytes(record()), PipelineRecord.class);
+        assertEquals(123, record.getJobId());
+        assertEquals("true", record.getCassRequired());
+        assertEquals(1600000000000L, record.getInTime());
+        assertTrue(record.containsKey(PipelineRecord.ACCOUNT_ID));
+        assertNull(record.getAccountId());
+        assertFalse(record.containsKey(PipelineRecord.TARGET_DB));
+        assertEquals(123, record.getFieldsData().get(FieldsData.JOB_ID));
+        assertTrue(record.getFieldsData().containsKey(FieldsData.EMAIL));
+        assertFalse(record.getFieldsData().containsKey(FieldsData.STATE));
+        assertEquals(Arrays.asList("email", "zip"), record.getDedupeFields());
+    }
+
+    /**
+     * Tests if a missing router flag stays missing instead of becoming a value.
+     *
+     * @throws IOException
+     */
+    @Test
+    void testMissingRouterFlag() throws IOException {
+        Map<String, Object> input = record();
+        input.remove(PipelineRecord.ROUTER_FLAG);
+        PipelineRecord record = mapper.readValue(mapper.writeValueAsBytes(input), PipelineRecord.class);
+        assertNull(record.getRouterFlag());
+        assertFalse(record.containsKey(PipelineRecord.ROUTER_FLAG));
+        assertFalse(mapper.writeValueAsString(record).contains(PipelineRecord.ROUTER_FLAG));
+    }
+
+    /**
+     * Reads and writes the record with the given mapper and compares it to the input.
+     */
+    private void assertRoundTrip(ObjectMapper mapper) throws IOException {
+        Map<String, Object> input = record();
+        PipelineRecord record = mapper.readValue(mapper.writeValueAsBytes(input), PipelineRecord.class);
+        Map<String, Object> output = mapper.readValue(mapper.writeValueAsBytes(record), new TypeReference<Map<String, Object>>() {
+        });
+        assertEquals(input, output);
+    }
+}